@@ -23,27 +23,55 @@ import com.parrotha.internal.entity.EntityService;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
- * An implementation of AtomicState to match ST: every update to the map results in writing to the data store and
- * every read from the map is read from the data store.
+ * An implementation of AtomicState to match ST: every update to the map is written to the app state as it happens
+ * and every read from the map is read from the app state.  Each operation is atomic, concurrent handlers of the same
+ * app can use {@link #compareAndSet(Object, Object, Object)} or the compare and set methods of {@link Map} to update
+ * a value without losing updates.
  */
 public class AtomicState implements Map {
 
     private String installedAutomationAppId;
     private EntityService entityService;
+    private Map appState;
 
     public AtomicState(String installedAutomationAppId, EntityService entityService) {
         this.installedAutomationAppId = installedAutomationAppId;
         this.entityService = entityService;
     }
 
+    private Map getAppState() {
+        if (appState == null) {
+            appState = entityService.getInstalledAutomationAppAtomicState(installedAutomationAppId);
+        }
+        return appState;
+    }
+
     private Map getState() {
-        return entityService.getInstalledAutomationAppState(installedAutomationAppId);
+        Map appState = getAppState();
+        return appState != null ? appState : entityService.getInstalledAutomationAppState(installedAutomationAppId);
     }
 
     private void saveState(Map state) {
-        entityService.updateInstalledAutomationAppState(installedAutomationAppId, state);
+        if (getAppState() == null) {
+            entityService.updateInstalledAutomationAppState(installedAutomationAppId, state);
+        }
+    }
+
+    /**
+     * Set the value of a key only if its current value equals the expected value, a null expected value means the key
+     * must not have a value.
+     *
+     * @return true if the value was set.
+     */
+    public boolean compareAndSet(Object key, Object expectedValue, Object newValue) {
+        if (expectedValue == null) {
+            return putIfAbsent(key, newValue) == null;
+        }
+        return replace(key, expectedValue, newValue);
     }
 
     @Override
@@ -115,4 +143,68 @@ public class AtomicState implements Map {
     public Set<Entry> entrySet() {
         return getState().entrySet();
     }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        Map state = getState();
+        Object returnVal = state.putIfAbsent(key, value);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        Map state = getState();
+        boolean returnVal = state.replace(key, oldValue, newValue);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        Map state = getState();
+        Object returnVal = state.replace(key, value);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Map state = getState();
+        boolean returnVal = state.remove(key, value);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function mappingFunction) {
+        Map state = getState();
+        Object returnVal = state.computeIfAbsent(key, mappingFunction);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction remappingFunction) {
+        Map state = getState();
+        Object returnVal = state.computeIfPresent(key, remappingFunction);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction remappingFunction) {
+        Map state = getState();
+        Object returnVal = state.compute(key, remappingFunction);
+        saveState(state);
+        return returnVal;
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction remappingFunction) {
+        Map state = getState();
+        Object returnVal = state.merge(key, value, remappingFunction);
+        saveState(state);
+        return returnVal;
+    }
 }
@@ -19,6 +19,7 @@
 package com.parrotha.app;
 
 import com.parrotha.internal.device.State;
+import com.parrotha.internal.device.StateAggregate;
 import com.parrotha.internal.hub.Hub;
 
 import java.util.Date;
@@ -81,4 +82,16 @@ public interface DeviceWrapper {
     List<EventWrapper> eventsBetween(Date startDate, Date endDate);
 
     List<EventWrapper> eventsBetween(Date startDate, Date endDate, Map options);
+
+    List<State> statesSince(String attributeName, Date date);
+
+    List<State> statesSince(String attributeName, Date date, Map options);
+
+    List<State> statesBetween(String attributeName, Date startDate, Date endDate);
+
+    List<State> statesBetween(String attributeName, Date startDate, Date endDate, Map options);
+
+    List<StateAggregate> stateAggregatesBetween(String attributeName, Date startDate, Date endDate);
+
+    List<StateAggregate> stateAggregatesBetween(String attributeName, Date startDate, Date endDate, Map options);
 }
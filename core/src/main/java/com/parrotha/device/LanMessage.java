@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.device;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A message received from a LAN device.  Keeps the header block and body as they were received and only base64 encodes
+ * them into the legacy "mac: ..., headers: ..., body: ..." description when it is asked for, so that parseLanMessage can
+ * read the fields directly while the message is being handled.
+ */
+public final class LanMessage {
+    private static final ThreadLocal<LanMessage> currentMessage = new ThreadLocal<>();
+
+    private final String macAddress;
+    private final String remoteAddress;
+    private final int remotePort;
+    private final String header;
+    private final byte[] body;
+
+    private String description;
+
+    /**
+     * @param header The request or status line followed by the headers, one per line
+     * @param body   The body as received, can be null
+     */
+    public LanMessage(String macAddress, String remoteAddress, int remotePort, String header, byte[] body) {
+        this.macAddress = macAddress;
+        this.remoteAddress = remoteAddress;
+        this.remotePort = remotePort;
+        this.header = header != null ? header : "";
+        this.body = body != null ? body : new byte[0];
+    }
+
+    /**
+     * Run code, such as a device handler parse method, with this message available to {@link #current(String)}.
+     */
+    public void runAsCurrent(Runnable runnable) {
+        LanMessage previous = currentMessage.get();
+        currentMessage.set(this);
+        try {
+            runnable.run();
+        } finally {
+            if (previous != null) {
+                currentMessage.set(previous);
+            } else {
+                currentMessage.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the message being handled on this thread if description was created from it, otherwise null.
+     */
+    public static LanMessage current(String description) {
+        LanMessage message = currentMessage.get();
+        if (message != null && description != null &&
+                (description == message.description || description.equals(message.getDescription()))) {
+            return message;
+        }
+        return null;
+    }
+
+    public String getMacAddress() {
+        return macAddress;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public int getRemotePort() {
+        return remotePort;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    public String getBody() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    public int getBodyLength() {
+        return body.length;
+    }
+
+    public String getDescription() {
+        if (description == null) {
+            Base64.Encoder encoder = Base64.getEncoder();
+            description = "mac: " + macAddress +
+                    ", headers: " + encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) +
+                    ", body: " + encoder.encodeToString(body);
+        }
+        return description;
+    }
+}
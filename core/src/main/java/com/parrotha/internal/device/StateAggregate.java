@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Summary of the numeric values of a device attribute over one minute or one hour, starting at date.
+ */
+public class StateAggregate implements Serializable {
+    public static final int MINUTE = 60;
+    public static final int HOUR = 3600;
+
+    String deviceId;
+    String name;
+    int resolution;
+    Date date;
+    double min;
+    double max;
+    double sum;
+    double last;
+    int count;
+    String unit;
+
+    public StateAggregate() {
+    }
+
+    /**
+     * @param resolution length of the aggregate in seconds, {@link #MINUTE} or {@link #HOUR}
+     */
+    public StateAggregate(String deviceId, String name, int resolution, Date date, double min, double max, double sum, double last,
+                          int count, String unit) {
+        this.deviceId = deviceId;
+        this.name = name;
+        this.resolution = resolution;
+        this.date = date;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.last = last;
+        this.count = count;
+        this.unit = unit;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getAverage() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    public double getLast() {
+        return last;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public String toString() {
+        return "StateAggregate(" +
+                "name: " + name +
+                ", date: " + date +
+                ", resolution: " + resolution +
+                ", min: " + min +
+                ", max: " + max +
+                ", average: " + getAverage() +
+                ", last: " + last +
+                ", count: " + count +
+                ')';
+    }
+}
@@ -62,6 +62,8 @@ public interface EntityService {
 
     void initialize();
 
+    void shutdown();
+
     String[] getDeviceHandlerByFingerprint(Map<String, String> deviceInfo);
 
     Collection<Device> getDevicesByCapability(String capability);
@@ -116,6 +118,12 @@ public interface EntityService {
 
     Map getInstalledAutomationAppState(String id);
 
+    /**
+     * @return map that reads and writes the state of the installed automation app directly, each operation is atomic.
+     * Null if not supported.
+     */
+    Map getInstalledAutomationAppAtomicState(String id);
+
     boolean updateAutomationAppSourceCode(String id, String sourceCode);
 
     boolean removeAutomationApp(String id);
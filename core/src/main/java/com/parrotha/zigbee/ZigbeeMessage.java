@@ -0,0 +1,437 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zigbee;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decoded incoming zigbee message.  Created once from the APS frame by the zigbee integration and carried next to the
+ * legacy string description, so that parseDescriptionAsMap and getEvent can answer from the decoded fields instead of
+ * splitting the description back apart.  The description itself is only formatted when it is asked for.
+ */
+public final class ZigbeeMessage {
+    public enum Type {
+        /**
+         * Report attributes (0x0A) or read attributes response (0x01) with a successful status
+         */
+        ATTRIBUTE,
+        /**
+         * IAS zone status change notification
+         */
+        ZONE_STATUS,
+        /**
+         * Any other message
+         */
+        CATCH_ALL
+    }
+
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+    private static final String READ_ATTR_PREFIX = "read attr - raw: ";
+    private static final String CATCH_ALL_PREFIX = "catchall: ";
+    // catch all data has always started at the fourth byte of the payload
+    private static final int CATCH_ALL_DATA_OFFSET = 3;
+
+    private static final ThreadLocal<ZigbeeMessage> currentMessage = new ThreadLocal<>();
+
+    private final Type type;
+    private final int profileId;
+    private final int clusterId;
+    private final int sourceAddress;
+    private final int sourceEndpoint;
+    private final int destinationEndpoint;
+    private final int frameControl;
+    private final int manufacturerId;
+    private final int command;
+    private final byte[] payload;
+    private final int dataOffset;
+    // start of each attribute record for attribute messages
+    private final int[] attributeOffsets;
+
+    private String description;
+
+    /**
+     * @param frameControl   The ZCL frame control byte
+     * @param manufacturerId The manufacturer id shown in catch all messages
+     * @param payload        The complete ZCL payload, including the header
+     * @param dataOffset     Index of the first byte after the ZCL header, for attribute messages this is the attribute id
+     */
+    public ZigbeeMessage(Type type, int profileId, int clusterId, int sourceAddress, int sourceEndpoint, int destinationEndpoint,
+                         int frameControl, int manufacturerId, int command, int[] payload, int dataOffset) {
+        this(type, profileId, clusterId, sourceAddress, sourceEndpoint, destinationEndpoint, frameControl, manufacturerId, command,
+                payload, dataOffset, new int[]{dataOffset});
+    }
+
+    /**
+     * @param attributeOffsets Start of each attribute record in an attribute message, the first one is dataOffset
+     */
+    public ZigbeeMessage(Type type, int profileId, int clusterId, int sourceAddress, int sourceEndpoint, int destinationEndpoint,
+                         int frameControl, int manufacturerId, int command, int[] payload, int dataOffset, int[] attributeOffsets) {
+        this.type = type;
+        this.profileId = profileId;
+        this.clusterId = clusterId;
+        this.sourceAddress = sourceAddress;
+        this.sourceEndpoint = sourceEndpoint;
+        this.destinationEndpoint = destinationEndpoint;
+        this.frameControl = frameControl;
+        this.manufacturerId = manufacturerId;
+        this.command = command;
+        this.payload = new byte[payload.length];
+        for (int i = 0; i < payload.length; i++) {
+            this.payload[i] = (byte) payload[i];
+        }
+        this.dataOffset = dataOffset;
+        this.attributeOffsets = attributeOffsets != null && attributeOffsets.length > 0 ? attributeOffsets.clone() : new int[]{dataOffset};
+    }
+
+    /**
+     * Run code, such as a device handler parse method, with this message available to {@link #current(String)}.
+     */
+    public void runAsCurrent(Runnable runnable) {
+        ZigbeeMessage previous = currentMessage.get();
+        currentMessage.set(this);
+        try {
+            runnable.run();
+        } finally {
+            if (previous != null) {
+                currentMessage.set(previous);
+            } else {
+                currentMessage.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the message being handled on this thread if description was created from it, otherwise null.
+     */
+    public static ZigbeeMessage current(String description) {
+        ZigbeeMessage message = currentMessage.get();
+        if (message != null && description != null &&
+                (description == message.description || description.equals(message.getDescription()))) {
+            return message;
+        }
+        return null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getProfileId() {
+        return profileId;
+    }
+
+    public int getClusterId() {
+        return clusterId;
+    }
+
+    public int getSourceAddress() {
+        return sourceAddress;
+    }
+
+    public int getSourceEndpoint() {
+        return sourceEndpoint;
+    }
+
+    public int getDestinationEndpoint() {
+        return destinationEndpoint;
+    }
+
+    public boolean isClusterSpecific() {
+        return (frameControl & 0x3) == 1;
+    }
+
+    public boolean isManufacturerSpecific() {
+        return ((frameControl >> 2) & 1) == 1;
+    }
+
+    public int getDirection() {
+        return (frameControl >> 3) & 1;
+    }
+
+    public int getManufacturerId() {
+        return manufacturerId;
+    }
+
+    public int getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the number of attribute records in an attribute message, including unsuccessful read attribute responses
+     */
+    public int getAttributeCount() {
+        return attributeOffsets.length;
+    }
+
+    public int getAttributeId() {
+        return getAttributeId(0);
+    }
+
+    public int getAttributeId(int index) {
+        int offset = attributeOffsets[index];
+        return unsignedByte(offset) | unsignedByte(offset + 1) << 8;
+    }
+
+    /**
+     * @return false if the attribute is from a read attributes response with an unsuccessful status
+     */
+    public boolean isAttributeSuccess(int index) {
+        return command != 0x01 || unsignedByte(attributeOffsets[index] + 2) == 0;
+    }
+
+    public int getEncoding() {
+        return getEncoding(0);
+    }
+
+    public int getEncoding(int index) {
+        return unsignedByte(getEncodingOffset(index));
+    }
+
+    /**
+     * @return a read only little endian view of the attribute value
+     */
+    public ByteBuffer getValue() {
+        return getValue(0);
+    }
+
+    public ByteBuffer getValue(int index) {
+        int valueOffset = getEncodingOffset(index) + 1;
+        return ByteBuffer.wrap(payload, valueOffset, getAttributeEnd(index) - valueOffset).slice().asReadOnlyBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getZoneStatus() {
+        return unsignedByte(dataOffset) | unsignedByte(dataOffset + 1) << 8;
+    }
+
+    public int getExtendedStatus() {
+        return unsignedByte(dataOffset + 2);
+    }
+
+    /**
+     * @return the message in the string format that device handlers receive in parse
+     */
+    public String getDescription() {
+        String description = this.description;
+        if (description == null) {
+            description = formatDescription();
+            this.description = description;
+        }
+        return description;
+    }
+
+    /**
+     * Same result as parsing the description with zigbee.parseDescriptionAsMap
+     */
+    public Map<String, Object> toDescriptionMap() {
+        if (type == Type.ATTRIBUTE) {
+            Map<String, Object> descriptionMap = new HashMap<>();
+            String dni = hex(sourceAddress, 4);
+            String cluster = hex(clusterId, 4);
+            String size = hex(getSize(), 2);
+            String encoding = hex(getEncoding(), 2);
+            descriptionMap.put("raw", dni + hex(sourceEndpoint, 2) + cluster + size +
+                    hexBytes(dataOffset, dataOffset + 2, false) + encoding + valueHex());
+            descriptionMap.put("dni", dni);
+            descriptionMap.put("endpoint", hex(sourceEndpoint, 2));
+            descriptionMap.put("cluster", cluster);
+            descriptionMap.put("size", size);
+            descriptionMap.put("attrId", hex(getAttributeId(), 4));
+            descriptionMap.put("encoding", encoding);
+            descriptionMap.put("command", hex(command, 2));
+            descriptionMap.put("value", attributeValueHex(0));
+            descriptionMap.put("clusterInt", clusterId);
+            descriptionMap.put("attrInt", getAttributeId());
+            if (attributeOffsets.length > 1) {
+                // the rest of the attributes in the same format as smartthings
+                List<Map<String, Object>> additionalAttributes = new ArrayList<>();
+                for (int i = 1; i < attributeOffsets.length; i++) {
+                    if (isAttributeSuccess(i)) {
+                        Map<String, Object> attribute = new HashMap<>();
+                        attribute.put("attrId", hex(getAttributeId(i), 4));
+                        attribute.put("attrInt", getAttributeId(i));
+                        attribute.put("encoding", hex(getEncoding(i), 2));
+                        attribute.put("value", attributeValueHex(i));
+                        attribute.put("consumedBytes", getAttributeEnd(i) - attributeOffsets[i]);
+                        additionalAttributes.add(attribute);
+                    }
+                }
+                descriptionMap.put("additionalAttrs", additionalAttributes);
+            }
+            return descriptionMap;
+        } else if (type == Type.CATCH_ALL) {
+            Map<String, Object> descriptionMap = new HashMap<>();
+            descriptionMap.put("raw", getDescription().substring(CATCH_ALL_PREFIX.length()));
+            descriptionMap.put("profileId", hex(profileId, 4));
+            descriptionMap.put("clusterId", hex(clusterId, 4));
+            descriptionMap.put("sourceEndpoint", hex(sourceEndpoint, 2));
+            descriptionMap.put("destinationEndpoint", hex(destinationEndpoint, 2));
+            descriptionMap.put("options", "0040");
+            descriptionMap.put("messageType", "00");
+            descriptionMap.put("dni", hex(sourceAddress, 4));
+            descriptionMap.put("isClusterSpecific", (frameControl & 0x3) == 1);
+            descriptionMap.put("isManufacturerSpecific", isManufacturerSpecific());
+            descriptionMap.put("manufacturerId", hex(manufacturerId, 4));
+            descriptionMap.put("command", hex(command, 2));
+            descriptionMap.put("direction", hex(getDirection(), 2));
+            List<String> data = new ArrayList<>();
+            for (int i = CATCH_ALL_DATA_OFFSET; i < payload.length; i++) {
+                data.add(hex(unsignedByte(i), 2));
+            }
+            descriptionMap.put("data", data);
+            descriptionMap.put("clusterInt", clusterId);
+            descriptionMap.put("commandInt", command);
+            return descriptionMap;
+        }
+        return null;
+    }
+
+    /**
+     * Same result as zigbee.getEvent with the description
+     */
+    public Map<String, Object> getEvent() {
+        Map<String, Object> event = new HashMap<>();
+        if (type == Type.ATTRIBUTE && getAttributeId() == 0) {
+            if (clusterId == 8 && getEncoding() == 0x20) {
+                event.put("name", "level");
+                event.put("value", (int) Math.round(valueAsInt() / 2.55));
+            } else if (clusterId == 6 && getEncoding() == 0x10) {
+                int value = valueAsInt();
+                if (value == 0) {
+                    event.put("name", "switch");
+                    event.put("value", "off");
+                } else if (value == 1) {
+                    event.put("name", "switch");
+                    event.put("value", "on");
+                }
+            }
+        }
+        return event;
+    }
+
+    private String formatDescription() {
+        StringBuilder sb = new StringBuilder(128);
+        if (type == Type.ATTRIBUTE) {
+            String dni = hex(sourceAddress, 4);
+            String cluster = hex(clusterId, 4);
+            String size = hex(getSize(), 2);
+            String encoding = hex(getEncoding(), 2);
+            String value = valueHex();
+            sb.append(READ_ATTR_PREFIX).append(dni).append(hex(sourceEndpoint, 2)).append(cluster).append(size)
+                    .append(hexBytes(dataOffset, dataOffset + 2, false)).append(encoding).append(value)
+                    .append(", dni: ").append(dni)
+                    .append(", endpoint: ").append(hex(sourceEndpoint, 2))
+                    .append(", cluster: ").append(cluster)
+                    .append(", size: ").append(size)
+                    .append(", attrId: ").append(hex(getAttributeId(), 4))
+                    .append(", encoding: ").append(encoding)
+                    .append(", command: ").append(hex(command, 2))
+                    .append(", value: ").append(value);
+        } else if (type == Type.ZONE_STATUS) {
+            sb.append("zone status 0x").append(hex(getZoneStatus(), 4))
+                    .append(" -- extended status 0x").append(hex(getExtendedStatus(), 2));
+            if (payload.length >= dataOffset + 6) {
+                sb.append(" -- zone ID 0x").append(hex(unsignedByte(dataOffset + 3), 2))
+                        .append(" -- delay 0x").append(hex(unsignedByte(dataOffset + 4) | unsignedByte(dataOffset + 5) << 8, 4));
+            }
+        } else {
+            // catchall: [profileId] [clusterId] [sourceEndpoint] [destinationEndpoint] [options] [messageType] [dni]
+            //           [isClusterSpecific] [isManufacturerSpecific] [manufacturerId] [command] [direction] [data]
+            sb.append(CATCH_ALL_PREFIX).append(hex(profileId, 4)).append(' ').append(hex(clusterId, 4)).append(' ')
+                    .append(hex(sourceEndpoint, 2)).append(' ').append(hex(destinationEndpoint, 2)).append(" 0040 00 ")
+                    .append(hex(sourceAddress, 4)).append(' ').append(hex(frameControl & 0x3, 2)).append(' ')
+                    .append(hex((frameControl >> 2) & 1, 2)).append(' ').append(hex(manufacturerId, 4)).append(' ')
+                    .append(hex(command, 2)).append(' ').append(hex(getDirection(), 2)).append(' ')
+                    .append(hexBytes(Math.min(CATCH_ALL_DATA_OFFSET, payload.length), payload.length, false));
+        }
+        return sb.toString();
+    }
+
+    // size of the attribute record in hex characters, including the status for read attribute responses
+    private int getSize() {
+        return (payload.length - dataOffset) * 2;
+    }
+
+    private int getEncodingOffset(int index) {
+        // read attributes responses have a status byte after the attribute id
+        return attributeOffsets[index] + (command == 0x01 ? 3 : 2);
+    }
+
+    private int getAttributeEnd(int index) {
+        return index + 1 < attributeOffsets.length ? attributeOffsets[index + 1] : payload.length;
+    }
+
+    // the description has always shown everything after the first encoding as the value
+    private String valueHex() {
+        return hexBytes(getEncodingOffset(0) + 1, payload.length, false);
+    }
+
+    private String attributeValueHex(int index) {
+        int valueOffset = getEncodingOffset(index) + 1;
+        int valueEnd = getAttributeEnd(index);
+        int encoding = getEncoding(index);
+        // 16 bit integers are shown most significant byte first
+        return hexBytes(valueOffset, valueEnd, (encoding == 0x21 || encoding == 0x29) && valueEnd - valueOffset > 1);
+    }
+
+    // the value of the first attribute as a number, with the bytes in the order they are shown in the description map
+    private int valueAsInt() {
+        int valueOffset = getEncodingOffset(0) + 1;
+        int valueEnd = getAttributeEnd(0);
+        int length = valueEnd - valueOffset;
+        if (length < 1 || length > 3) {
+            return Integer.parseInt(hexBytes(valueOffset, valueEnd, false), 16);
+        }
+        int value = 0;
+        for (int i = valueOffset; i < valueEnd; i++) {
+            value = value << 8 | unsignedByte(i);
+        }
+        return value;
+    }
+
+    private int unsignedByte(int index) {
+        return payload[index] & 0xFF;
+    }
+
+    private String hexBytes(int from, int to, boolean reverse) {
+        char[] chars = new char[Math.max(0, to - from) * 2];
+        for (int i = from, c = 0; i < to; i++, c += 2) {
+            int b = unsignedByte(reverse ? to - 1 - (i - from) : i);
+            chars[c] = HEX_CHARS[b >> 4];
+            chars[c + 1] = HEX_CHARS[b & 0xF];
+        }
+        return new String(chars);
+    }
+
+    // same as String.format("%0<minDigits>X", value)
+    private static String hex(int value, int minDigits) {
+        int digits = Math.max(minDigits, (35 - Integer.numberOfLeadingZeros(value)) / 4);
+        char[] chars = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[i] = HEX_CHARS[value & 0xF];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+}
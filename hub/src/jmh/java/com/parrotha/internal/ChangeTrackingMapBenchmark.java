@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal;
+
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.Maps;
+import groovy.json.JsonBuilder;
+import groovy.json.JsonSlurperClassic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares copying state through json and diffing the whole map (what every script call used to do) with tracking
+ * changes as they are made.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ChangeTrackingMapBenchmark {
+    @Param({"10", "100", "1000"})
+    public int entries;
+
+    private Map<String, Object> state;
+
+    @Setup
+    public void setup() {
+        state = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            Map<String, Object> nested = new LinkedHashMap<>();
+            nested.put("value", i);
+            nested.put("name", "item" + i);
+            List<Object> list = new ArrayList<>();
+            list.add(i);
+            list.add("entry" + i);
+            nested.put("list", list);
+            state.put("key" + i, nested);
+        }
+    }
+
+    @Benchmark
+    public Object jsonCopyUnchanged() {
+        Map map = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(state).toString());
+        Map mapCopy = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(map).toString());
+        map.get("key0");
+        return Maps.difference(map, mapCopy);
+    }
+
+    @Benchmark
+    public Object jsonCopyOneChange() {
+        Map map = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(state).toString());
+        Map mapCopy = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(map).toString());
+        ((Map) map.get("key0")).put("value", -1);
+        MapDifference diff = Maps.difference(map, mapCopy);
+        return diff.entriesDiffering();
+    }
+
+    @Benchmark
+    public Object trackedUnchanged() {
+        ChangeTrackingMap map = new ChangeTrackingMap(state);
+        map.get("key0");
+        return map.changes();
+    }
+
+    @Benchmark
+    public Object trackedOneChange() {
+        ChangeTrackingMap map = new ChangeTrackingMap(state);
+        ((Map) map.get("key0")).put("value", -1);
+        return map.changes();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares copying a device with java serialization (what the data store used to do on every read) with reading
+ * and updating immutable device snapshots.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DeviceSnapshotBenchmark {
+    @Param({"10", "100", "1000"})
+    public int entries;
+
+    private Device device;
+    private DeviceSnapshot snapshot;
+    private Map<String, Object> changedState;
+
+    @Setup
+    public void setup() {
+        device = new Device();
+        device.setId(UUID.randomUUID().toString());
+        device.setDeviceHandlerId(UUID.randomUUID().toString());
+        device.setName("Benchmark Device");
+        device.setDeviceNetworkId("ABCD");
+        device.getIntegration().setId(UUID.randomUUID().toString());
+        device.getIntegration().setOption("zigbeeId", "0011223344556677");
+
+        Map<String, Object> state = new LinkedHashMap<>();
+        Map<String, Object> data = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            Map<String, Object> nested = new LinkedHashMap<>();
+            nested.put("value", i);
+            nested.put("name", "item" + i);
+            List<Object> list = new ArrayList<>();
+            list.add(i);
+            list.add("entry" + i);
+            nested.put("list", list);
+            state.put("key" + i, nested);
+            data.put("data" + i, "value" + i);
+        }
+        device.setState(state);
+        device.setData(data);
+        for (int i = 0; i < 10; i++) {
+            device.setCurrentState(new com.parrotha.internal.device.State(UUID.randomUUID().toString(), "attribute" + i,
+                    Integer.toString(i), null, new Date()));
+        }
+
+        snapshot = DeviceSnapshot.of(device);
+        changedState = new LinkedHashMap<>(snapshot.getState());
+        changedState.put("key0", "changed");
+    }
+
+    @Benchmark
+    public Device serializationClone() {
+        return SerializationUtils.clone(device);
+    }
+
+    @Benchmark
+    public String snapshotRead() {
+        // what the hot paths need, the device handler id of a device
+        return snapshot.getDeviceHandlerId();
+    }
+
+    @Benchmark
+    public Device snapshotToDevice() {
+        return snapshot.toDevice();
+    }
+
+    @Benchmark
+    public DeviceSnapshot snapshotCurrentStateUpdate() {
+        return snapshot.withCurrentState(
+                new com.parrotha.internal.device.State("id", "attribute0", "1", null, new Date()));
+    }
+
+    @Benchmark
+    public DeviceSnapshot snapshotStateUpdate() {
+        return snapshot.withState(changedState);
+    }
+}
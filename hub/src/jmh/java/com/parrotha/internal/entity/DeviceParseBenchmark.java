@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.entity;
+
+import com.parrotha.internal.device.Device;
+import com.parrotha.internal.device.DeviceScriptDelegateImpl;
+import com.parrotha.internal.groovy.ScriptClassCache;
+import com.parrotha.internal.script.ParrotHubDelegatingScript;
+import groovy.lang.Binding;
+import groovy.lang.Script;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares calling parse on a device handler the way every message used to be handled, with a new script instance and
+ * delegate per call going through {@link groovy.util.DelegatingScript#invokeMethod(String, Object)}, against reusing a
+ * pooled instance with a rebound delegate and a cached method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class DeviceParseBenchmark {
+    private static final String DEVICE_HANDLER = "metadata {\n" +
+            "    definition(name: 'Benchmark Switch', namespace: 'parrotha', author: 'parrotha') {\n" +
+            "        capability 'Switch'\n" +
+            "    }\n" +
+            "}\n" +
+            "def parse(String description) {\n" +
+            "    def parts = description.split(':')\n" +
+            "    return [name: parts[0], value: parts[1].trim()]\n" +
+            "}\n";
+
+    private Class<Script> scriptClass;
+    private Device device;
+    private ParrotHubDelegatingScript pooledScript;
+    private ScriptMethodCache scriptMethodCache;
+
+    @Setup
+    public void setup() throws Exception {
+        scriptClass = new ScriptClassCache().getScriptClass("DH_benchmark", DEVICE_HANDLER);
+        device = new Device();
+        device.setId(UUID.randomUUID().toString());
+        device.setDeviceNetworkId("ABCD");
+        device.setState(new HashMap<>());
+
+        pooledScript = (ParrotHubDelegatingScript) scriptClass.getConstructor().newInstance();
+        pooledScript.setDelegate(new DeviceScriptDelegateImpl(device, null, null, null, null, null));
+        scriptMethodCache = new ScriptMethodCache();
+    }
+
+    @Benchmark
+    public Object newInstancePerCall() throws Exception {
+        ParrotHubDelegatingScript script = (ParrotHubDelegatingScript) scriptClass.getConstructor().newInstance();
+        script.setDelegate(new DeviceScriptDelegateImpl(device, null, null, null, null, null));
+        return script.invokeMethod("parse", "switch: on");
+    }
+
+    @Benchmark
+    public Object pooledInstance() {
+        pooledScript.setBinding(new Binding());
+        ((DeviceScriptDelegateImpl) pooledScript.getDelegate()).setDevice(device);
+        return scriptMethodCache.invokeMethod(pooledScript, "parse", "switch: on");
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import com.parrotha.internal.app.Subscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares finding the subscriptions for an event with the subscription index against scanning the subscriptions
+ * of the device the way EventService used to.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SubscriptionIndexBenchmark {
+    private static final String[] ATTRIBUTES = {null, "switch", "switch.on", "switch.off", "temperature", "motion", "motion.active",
+            "contact", "battery", "level"};
+
+    @Param({"5000"})
+    public int subscriptionCount;
+
+    @Param({"10", "100"})
+    public int subscriptionsPerDevice;
+
+    private SubscriptionIndex subscriptionIndex;
+    private Map<String, Subscription> subscriptionInfo;
+    private Map<String, List<String>> deviceToSubscriptionMap;
+    private Map<String, List<String>> locationToSubscriptionMap;
+    private Event deviceEvent;
+    private Event locationEvent;
+
+    @Setup
+    public void setup() {
+        subscriptionIndex = new SubscriptionIndex();
+        subscriptionInfo = new HashMap<>();
+        deviceToSubscriptionMap = new HashMap<>();
+        locationToSubscriptionMap = new HashMap<>();
+        String locationId = UUID.randomUUID().toString();
+        String firstDeviceId = null;
+        int deviceCount = subscriptionCount / subscriptionsPerDevice;
+        for (int d = 0; d < deviceCount; d++) {
+            String deviceId = UUID.randomUUID().toString();
+            if (firstDeviceId == null) {
+                firstDeviceId = deviceId;
+            }
+            for (int s = 0; s < subscriptionsPerDevice; s++) {
+                Subscription subscription = createSubscription("app" + (s % 20), ATTRIBUTES[s % ATTRIBUTES.length]);
+                subscription.setDeviceId(deviceId);
+                subscriptionInfo.put(subscription.getId(), subscription);
+                deviceToSubscriptionMap.computeIfAbsent(deviceId, key -> new ArrayList<>()).add(subscription.getId());
+                subscriptionIndex.add(subscription);
+            }
+        }
+        for (int s = 0; s < 100; s++) {
+            Subscription subscription = createSubscription("app" + (s % 20), s % 2 == 0 ? "mode" : "sunset");
+            subscription.setLocationId(locationId);
+            subscriptionInfo.put(subscription.getId(), subscription);
+            locationToSubscriptionMap.computeIfAbsent(locationId, key -> new ArrayList<>()).add(subscription.getId());
+            subscriptionIndex.add(subscription);
+        }
+
+        deviceEvent = new Event(UUID.randomUUID().toString(), "switch", "on", null, true, "Switch", true, null, null, new Date(),
+                "DEVICE", firstDeviceId, false);
+        locationEvent = new Event(UUID.randomUUID().toString(), "mode", "Away", null, true, "Home", true, null, null, new Date(),
+                "LOCATION", locationId, false);
+    }
+
+    private Subscription createSubscription(String appId, String attributeNameAndValue) {
+        Subscription subscription = new Subscription("handler", appId);
+        subscription.setId(UUID.randomUUID().toString());
+        subscription.setAttributeNameAndValue(attributeNameAndValue);
+        return subscription;
+    }
+
+    @Benchmark
+    public List<Subscription> indexDeviceEvent() {
+        return subscriptionIndex.getSubscriptions(deviceEvent);
+    }
+
+    @Benchmark
+    public List<Subscription> scanDeviceEvent() {
+        return scan(deviceEvent, deviceToSubscriptionMap.get(deviceEvent.getSourceId()));
+    }
+
+    @Benchmark
+    public List<Subscription> indexLocationEvent() {
+        return subscriptionIndex.getSubscriptions(locationEvent);
+    }
+
+    @Benchmark
+    public List<Subscription> scanLocationEvent() {
+        return scan(locationEvent, locationToSubscriptionMap.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    private List<Subscription> scan(Event event, List<String> subscriptions) {
+        List<Subscription> matches = new ArrayList<>();
+        for (String subscriptionId : subscriptions) {
+            Subscription subscription = subscriptionInfo.get(subscriptionId);
+            String attributeNameAndValue = subscription.getAttributeNameAndValue();
+            if (attributeNameAndValue == null || (event.getName() != null && (event.getName().equals(attributeNameAndValue) ||
+                    (event.getValue() != null && (event.getName() + "." + event.getValue()).equals(attributeNameAndValue))))) {
+                if ((!subscription.isFilterEvents() || event.isStateChange()) && subscription.getHandlerMethod() != null &&
+                        subscription.getSubscribedAppId() != null) {
+                    matches.add(subscription);
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zigbee;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a device handler parsing a level attribute report from its string description, the way every report used to be
+ * handled, against decoding the frame into a {@link ZigbeeMessage} and answering parseDescriptionAsMap and getEvent from it.
+ * The decoded path also pays for building the message and formatting the description that parse receives.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ZigbeeReportBenchmark {
+    // report attributes, level control cluster, current level (0x0000) uint8 (0x20) = 0xFE
+    private static final int[] PAYLOAD = new int[]{0x18, 0x7A, 0x0A, 0x00, 0x00, 0x20, 0xFE};
+
+    private String description;
+
+    @Setup
+    public void setup() {
+        description = createMessage().getDescription();
+    }
+
+    @Benchmark
+    public void stringDescription(Blackhole blackhole) {
+        blackhole.consume(ZigBeeImpl.parseDescriptionAsMap(description));
+        blackhole.consume(ZigBeeImpl.getEvent(description));
+    }
+
+    @Benchmark
+    public void decodedMessage(Blackhole blackhole) {
+        ZigbeeMessage zigbeeMessage = createMessage();
+        String parseDescription = zigbeeMessage.getDescription();
+        zigbeeMessage.runAsCurrent(() -> {
+            blackhole.consume(ZigBeeImpl.parseDescriptionAsMap(parseDescription));
+            blackhole.consume(ZigBeeImpl.getEvent(parseDescription));
+        });
+    }
+
+    private static ZigbeeMessage createMessage() {
+        return new ZigbeeMessage(ZigbeeMessage.Type.ATTRIBUTE, 0x0104, 0x0008, 0x3F9A, 0x0A, 0x01, 0x18, 0, 0x0A, PAYLOAD, 3);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zwave;
+
+import com.parrotha.internal.utils.HexUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats common Z-Wave reports.  The reflective benchmarks look up the command class by name and decode the
+ * payload through a List&lt;Short&gt; the way parse used to, the others use the generated command table and byte payloads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ZwaveCommandBenchmark {
+    private static final String[] DESCRIPTIONS = new String[]{
+            "zw device: 0B, command: 2003, payload: FF",
+            "zw device: 0B, command: 2503, payload: 00",
+            "zw device: 0B, command: 2603, payload: 63",
+            "zw device: 0B, command: 7006, payload: 03 02 01 F4",
+            "zw device: 0B, command: 7105, payload: 15 01",
+            "zw device: 0B, command: 7205, payload: 01 0F 00 01 00 01"
+    };
+
+    private final Zwave zwave = new Zwave();
+    private final Map<Integer, Integer> commandVersions = new HashMap<>();
+    private List<Command> commands;
+
+    @Setup
+    public void setup() {
+        commandVersions.put(0x71, 2);
+        commands = new ArrayList<>();
+        for (String description : DESCRIPTIONS) {
+            commands.add(zwave.parse(description, commandVersions));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String description : DESCRIPTIONS) {
+            blackhole.consume(zwave.parse(description, commandVersions));
+        }
+    }
+
+    @Benchmark
+    public void parseReflective(Blackhole blackhole) throws ReflectiveOperationException {
+        for (String description : DESCRIPTIONS) {
+            blackhole.consume(parseReflective(description));
+        }
+    }
+
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        for (Command command : commands) {
+            blackhole.consume(command.format());
+        }
+    }
+
+    @Benchmark
+    public void formatList(Blackhole blackhole) {
+        for (Command command : commands) {
+            blackhole.consume(command.getCMD() + HexUtils.shortListToHexString(command.getPayload()));
+        }
+    }
+
+    private Command parseReflective(String description) throws ReflectiveOperationException {
+        String[] descriptionArray = description.split(",");
+        String payloadString = descriptionArray[2].substring("payload: ".length()).trim();
+        String commandString = descriptionArray[1].trim().substring("command: ".length()).trim();
+        ZWaveCommandEnum zWaveCommand = ZWaveCommandEnum.getZWaveClass(commandString);
+        int version = commandVersions.getOrDefault(zWaveCommand.getCommandClass(), zWaveCommand.getMaxVersion());
+        Command cmd = Class.forName("com.parrotha.zwave.commands." + zWaveCommand.getPackageName() + "v" + version + "." +
+                zWaveCommand.getClassName()).asSubclass(Command.class).getDeclaredConstructor().newInstance();
+        cmd.setPayload(HexUtils.hexStringToShortList(payloadString));
+        return cmd;
+    }
+}
@@ -22,6 +22,7 @@ import com.parrotha.internal.device.Attribute;
 import com.parrotha.internal.device.Device;
 import com.parrotha.internal.device.DeviceService;
 import com.parrotha.internal.device.State;
+import com.parrotha.internal.device.StateAggregate;
 import com.parrotha.internal.entity.EntityService;
 import com.parrotha.internal.hub.Hub;
 import com.parrotha.internal.hub.LocationService;
@@ -255,6 +256,55 @@ public class DeviceWrapperImpl extends GroovyObjectSupport implements DeviceWrap
         return entityService.eventsBetween("DEVICE", device.getId(), startDate, endDate, maxEvents);
     }
 
+    @Override
+    public List<State> statesSince(String attributeName, Date date) {
+        return statesSince(attributeName, date, null);
+    }
+
+    @Override
+    public List<State> statesSince(String attributeName, Date date, Map options) {
+        return statesBetween(attributeName, date, new Date(), options);
+    }
+
+    @Override
+    public List<State> statesBetween(String attributeName, Date startDate, Date endDate) {
+        return statesBetween(attributeName, startDate, endDate, null);
+    }
+
+    @Override
+    public List<State> statesBetween(String attributeName, Date startDate, Date endDate, Map options) {
+        int maxStates = 10;
+        if (options != null && options.get("max") != null) {
+            maxStates = ObjectUtils.objectToInt(options.get("max"));
+        }
+        return deviceService.statesBetween(device.getId(), attributeName, startDate, endDate, maxStates);
+    }
+
+    @Override
+    public List<StateAggregate> stateAggregatesBetween(String attributeName, Date startDate, Date endDate) {
+        return stateAggregatesBetween(attributeName, startDate, endDate, null);
+    }
+
+    /**
+     * @param options max: maximum number of aggregates, resolution: "minute" or "hour", picked from the range if not set.
+     */
+    @Override
+    public List<StateAggregate> stateAggregatesBetween(String attributeName, Date startDate, Date endDate, Map options) {
+        int maxAggregates = -1;
+        int resolution = 0;
+        if (options != null) {
+            if (options.get("max") != null) {
+                maxAggregates = ObjectUtils.objectToInt(options.get("max"));
+            }
+            if ("minute".equals(String.valueOf(options.get("resolution")))) {
+                resolution = StateAggregate.MINUTE;
+            } else if ("hour".equals(String.valueOf(options.get("resolution")))) {
+                resolution = StateAggregate.HOUR;
+            }
+        }
+        return deviceService.stateAggregatesBetween(device.getId(), attributeName, startDate, endDate, resolution, maxAggregates);
+    }
+
     @Override
     public String toString() {
         return device.getDisplayName();
@@ -19,7 +19,9 @@
 package com.parrotha.entity;
 
 import com.google.common.collect.Maps;
+import com.parrotha.internal.ServiceFactory;
 import com.parrotha.internal.entity.EntityScriptDelegateUtils;
+import com.parrotha.internal.http.HttpEngine;
 import com.parrotha.internal.http.ParrotHttpRequest;
 import groovy.json.JsonSlurper;
 import groovy.lang.Closure;
@@ -28,7 +30,7 @@ import groovyx.net.http.HttpResponseDecorator;
 import groovyx.net.http.Method;
 import groovyx.net.http.ParrotHubHTTPBuilder;
 import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -120,28 +122,38 @@ public abstract class EntityScriptDelegateCommon {
     }
 
     protected void asyncHttpRequest(String httpMethod, String callbackMethod, Map params, Map data) {
-        new Thread(() -> {
-            CloseableHttpResponse httpResponse = null;
-            String body = null;
-            try {
-                httpResponse = ParrotHttpRequest.doApacheHttpRequest(httpMethod, params);
-                if (httpResponse.getEntity().getContentLength() > 0) {
-                    body = EntityUtils.toString(httpResponse.getEntity());
-                    EntityUtils.consume(httpResponse.getEntity());
-                }
-            } catch (URISyntaxException | IOException e) {
-                logger.warn("Exception with http request", e);
-                //TODO: add to AsyncResponse
-            }
-            if (httpResponse != null && callbackMethod != null) {
+        HttpEngine httpEngine = getHttpEngine();
+        HttpUriRequest request;
+        try {
+            request = ParrotHttpRequest.buildApacheHttpRequest(httpEngine, httpMethod, params);
+        } catch (URISyntaxException e) {
+            logger.warn("Exception with http request", e);
+            return;
+        }
+        boolean queued = httpEngine.executeAsync(request, callbackMethod == null ? null : new HttpEngine.ResponseCallback() {
+            @Override
+            public void completed(CloseableHttpResponse response, String body) {
                 if (data != null) {
-                    runEntityMethod(callbackMethod, new AsyncResponseImpl(httpResponse, body), data);
+                    runEntityMethod(callbackMethod, new AsyncResponseImpl(response, body), data);
                 } else {
-                    runEntityMethod(callbackMethod, new AsyncResponseImpl(httpResponse, body));
+                    runEntityMethod(callbackMethod, new AsyncResponseImpl(response, body));
                 }
             }
-        }).start();
 
+            @Override
+            public void failed(Exception e) {
+                logger.warn("Exception with http request", e);
+                //TODO: add to AsyncResponse
+            }
+        });
+        if (!queued) {
+            logger.warn("Async http request to " + request.getURI() + " was rejected" +
+                    (callbackMethod != null ? ", " + callbackMethod + " will not be called" : ""));
+        }
+    }
+
+    protected HttpEngine getHttpEngine() {
+        return ServiceFactory.getHttpEngine();
     }
 
     private Object httpRequest(Method httpMethod, Map params, Closure closure) throws URISyntaxException, IOException {
@@ -164,15 +176,16 @@ public abstract class EntityScriptDelegateCommon {
      * @Deprecated
      */
     private HttpResponseDecorator doHttpBuilderRequest(Method httpMethod, Map params) throws URISyntaxException, IOException {
-        ParrotHubHTTPBuilder httpBuilder = new ParrotHubHTTPBuilder();
+        HttpEngine httpEngine = getHttpEngine();
         Map paramsCopy = Maps.newHashMap(params);
+        Integer timeout = null;
         if (paramsCopy.containsKey("timeout")) {
             Object timeoutObj = paramsCopy.remove("timeout");
             if (timeoutObj instanceof Number) {
-                int timeout = ((Number) timeoutObj).intValue();
-                //TODO: process timeout, set it on httpBuilder somehow.
+                timeout = ((Number) timeoutObj).intValue();
             }
         }
+        ParrotHubHTTPBuilder httpBuilder = new ParrotHubHTTPBuilder(httpEngine.getClient(), httpEngine.getRequestConfig(timeout));
 
         Object response = httpBuilder.request(httpMethod, paramsCopy, null);
         if (response != null && response instanceof HttpResponseDecorator) {
@@ -18,52 +18,91 @@
  */
 package com.parrotha.internal;
 
-import com.google.common.collect.MapDifference;
-import com.google.common.collect.Maps;
 import groovy.json.JsonBuilder;
 import groovy.json.JsonSlurperClassic;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.function.BiConsumer;
-import java.util.function.BiFunction;
-import java.util.function.Function;
 
-public class ChangeTrackingMap implements Map {
+/**
+ * Tracks changes made to entity state during a script call without copying the state up front.  The original map is
+ * never modified, values written by the script are kept in a working map.  Nested maps and collections are copied the
+ * first time they are read so changes made to them can be found by comparing with the original.  Values are normalized
+ * when written and when first read from the original so they read back the same as after being stored as json.  Only
+ * changed values are checked for being json compatible.
+ */
+public class ChangeTrackingMap extends AbstractMap implements Map {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeTrackingMap.class);
 
     // https://docs.smartthings.com/en/latest/smartapp-developers-guide/state.html#how-state-works
-    private Map map;
-    private Map mapCopy;
+    private final Map original;
+    // keys written by the script and nested values copied on read
+    private Map working = new LinkedHashMap();
+    // keys of the original map that have been removed, not used once the working map holds every key
+    private final Set removed = new HashSet();
+    private boolean materialized = false;
 
     public ChangeTrackingMap(Map map) {
-        if (map != null) {
-            this.map = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(map).toString());
-        } else {
-            this.map = new HashMap();
-        }
-        //serialize state to json and back to filter out any bad values
-        //https://docs.smartthings.com/en/latest/smartapp-developers-guide/state.html#persistence-model
-        this.mapCopy = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(this.map).toString());
-        // old way which resulted in serialization exception
-        //this.mapCopy = SerializationUtils.clone((HashMap) this.map);
+        this.original = map != null ? map : Collections.emptyMap();
     }
 
-    // https://stackoverflow.com/questions/38015282/how-to-get-the-difference-between-two-maps-java/42950187#42950187
     // ST returns a ChangeSet Object where the first item is removed keys, the second item
     public ChangeSet changes() {
-        MapDifference diff = Maps.difference(map, mapCopy);
-        Map added = diff.entriesOnlyOnLeft();
-        Set removed = diff.entriesOnlyOnRight().keySet();
+        Set removedKeys;
+        if (materialized) {
+            removedKeys = new HashSet();
+            for (Object key : original.keySet()) {
+                if (!working.containsKey(key)) {
+                    removedKeys.add(key);
+                }
+            }
+        } else {
+            removedKeys = new HashSet(removed);
+        }
+
+        Map added = new HashMap();
         Map updated = new HashMap();
-        for (Object key : diff.entriesDiffering().keySet()) {
-            updated.put(key, map.get(key));
+        for (Object entryObj : working.entrySet()) {
+            Entry entry = (Entry) entryObj;
+            Object key = entry.getKey();
+            Object value = entry.getValue();
+            boolean existing = original.containsKey(key);
+            Object originalValue = existing ? original.get(key) : null;
+            if (existing && Objects.equals(value, originalValue)) {
+                continue;
+            }
+            // the value may only differ from the original by how it is normalized, compare what both are stored as
+            originalValue = normalize(originalValue);
+            //serialize changed values to json and back to filter out any bad values
+            //https://docs.smartthings.com/en/latest/smartapp-developers-guide/state.html#persistence-model
+            try {
+                value = toJsonValue(value);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to store state value for " + key + ": " + e.getMessage());
+                continue;
+            }
+            if (!existing) {
+                added.put(key, value);
+            } else if (!Objects.equals(value, originalValue)) {
+                updated.put(key, value);
+            }
         }
 
-        return new ChangeSet(removed, updated, added);
+        return new ChangeSet(removedKeys, updated, added);
     }
 
     public class ChangeSet {
@@ -101,6 +140,10 @@ public class ChangeTrackingMap implements Map {
             this.added = added;
         }
 
+        public boolean isEmpty() {
+            return removed.isEmpty() && updated.isEmpty() && added.isEmpty();
+        }
+
         @Override
         public String toString() {
             return "ChangeSet(" +
@@ -114,132 +157,205 @@ public class ChangeTrackingMap implements Map {
 
     @Override
     public int size() {
-        return map.size();
+        if (materialized) {
+            return working.size();
+        }
+        int size = original.size() - removed.size();
+        for (Object key : working.keySet()) {
+            if (!original.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return map.isEmpty();
+        return size() == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return map.containsKey(key);
-    }
-
-    @Override
-    public boolean containsValue(Object value) {
-        return map.containsValue(value);
+        if (materialized || working.containsKey(key)) {
+            return working.containsKey(key);
+        }
+        return !removed.contains(key) && original.containsKey(key);
     }
 
     @Override
     public Object get(Object key) {
-        return map.get(key);
+        if (materialized || working.containsKey(key)) {
+            return working.get(key);
+        }
+        if (removed.contains(key)) {
+            return null;
+        }
+        Object value = original.get(key);
+        Object readValue = readValue(value);
+        // keep nested copies the script may change, and normalized values so they are only normalized once
+        if (readValue != value) {
+            working.put(key, readValue);
+        }
+        return readValue;
     }
 
     @Nullable
     @Override
     public Object put(Object key, Object value) {
-        return map.put(key, value);
+        Object previous = get(key);
+        // nested maps and collections are kept as is so the script can keep changing them after the put
+        working.put(key, value instanceof Map || value instanceof Collection ? value : normalize(value));
+        removed.remove(key);
+        return previous;
     }
 
     @Override
     public Object remove(Object key) {
-        return map.remove(key);
+        Object previous = get(key);
+        working.remove(key);
+        if (!materialized && original.containsKey(key)) {
+            removed.add(key);
+        }
+        return previous;
     }
 
     @Override
     public void putAll(@NotNull Map m) {
-        map.putAll(m);
+        for (Object entryObj : m.entrySet()) {
+            Entry entry = (Entry) entryObj;
+            put(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
     public void clear() {
-        map.clear();
+        working = new LinkedHashMap();
+        removed.clear();
+        materialized = true;
     }
 
+    /*
+     * Views of the whole map need every value, copy the rest of the original into the working map.
+     */
     @NotNull
     @Override
-    public Set keySet() {
-        return map.keySet();
+    public Set<Entry> entrySet() {
+        materialize();
+        return working.entrySet();
     }
 
     @NotNull
     @Override
-    public Collection values() {
-        return map.values();
+    public Set keySet() {
+        materialize();
+        return working.keySet();
     }
 
     @NotNull
     @Override
-    public Set<Entry> entrySet() {
-        return map.entrySet();
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        return map.equals(o);
-    }
-
-    @Override
-    public int hashCode() {
-        return map.hashCode();
-    }
-
-    @Override
-    public Object getOrDefault(Object key, Object defaultValue) {
-        return map.getOrDefault(key, defaultValue);
-    }
-
-    @Override
-    public void forEach(BiConsumer action) {
-        map.forEach(action);
-    }
-
-    @Override
-    public void replaceAll(BiFunction function) {
-        map.replaceAll(function);
-    }
-
-    @Nullable
-    @Override
-    public Object putIfAbsent(Object key, Object value) {
-        return map.putIfAbsent(key, value);
-    }
-
-    @Override
-    public boolean remove(Object key, Object value) {
-        return map.remove(key, value);
-    }
-
-    @Override
-    public boolean replace(Object key, Object oldValue, Object newValue) {
-        return map.replace(key, oldValue, newValue);
+    public Collection values() {
+        materialize();
+        return working.values();
     }
 
-    @Nullable
-    @Override
-    public Object replace(Object key, Object value) {
-        return map.replace(key, value);
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        Map fullMap = new LinkedHashMap();
+        for (Object entryObj : original.entrySet()) {
+            Entry entry = (Entry) entryObj;
+            Object key = entry.getKey();
+            if (working.containsKey(key)) {
+                fullMap.put(key, working.get(key));
+            } else if (!removed.contains(key)) {
+                fullMap.put(key, readValue(entry.getValue()));
+            }
+        }
+        for (Object entryObj : working.entrySet()) {
+            Entry entry = (Entry) entryObj;
+            if (!fullMap.containsKey(entry.getKey())) {
+                fullMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        working = fullMap;
+        removed.clear();
+        materialized = true;
     }
 
-    @Override
-    public Object computeIfAbsent(Object key, @NotNull Function mappingFunction) {
-        return map.computeIfAbsent(key, mappingFunction);
+    /**
+     * Deep copy nested maps, lists and sets, other values are returned as is.
+     */
+    public static Object copy(Object value) {
+        if (value instanceof Map) {
+            Map mapCopy = new LinkedHashMap();
+            for (Object entryObj : ((Map) value).entrySet()) {
+                Entry entry = (Entry) entryObj;
+                mapCopy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return mapCopy;
+        } else if (value instanceof List) {
+            List listCopy = new ArrayList(((List) value).size());
+            for (Object item : (List) value) {
+                listCopy.add(copy(item));
+            }
+            return listCopy;
+        } else if (value instanceof Set) {
+            Set setCopy = new LinkedHashSet(((Set) value).size());
+            for (Object item : (Set) value) {
+                setCopy.add(copy(item));
+            }
+            return setCopy;
+        } else if (value instanceof Collection) {
+            List collectionCopy = new ArrayList(((Collection) value).size());
+            for (Object item : (Collection) value) {
+                collectionCopy.add(copy(item));
+            }
+            return collectionCopy;
+        }
+        return value;
     }
 
-    @Override
-    public Object computeIfPresent(Object key, @NotNull BiFunction remappingFunction) {
-        return map.computeIfPresent(key, remappingFunction);
+    /**
+     * The value the script reads for a value in the original map, nested maps and collections are copied and other
+     * values are normalized.
+     */
+    private static Object readValue(Object value) {
+        if (value instanceof Map) {
+            Map mapCopy = new LinkedHashMap();
+            for (Object entryObj : ((Map) value).entrySet()) {
+                Entry entry = (Entry) entryObj;
+                mapCopy.put(entry.getKey(), readValue(entry.getValue()));
+            }
+            return mapCopy;
+        } else if (value instanceof Collection) {
+            Collection collectionCopy = value instanceof Set ? new LinkedHashSet(((Set) value).size()) :
+                    new ArrayList(((Collection) value).size());
+            for (Object item : (Collection) value) {
+                collectionCopy.add(readValue(item));
+            }
+            return collectionCopy;
+        }
+        return normalize(value);
     }
 
-    @Override
-    public Object compute(Object key, @NotNull BiFunction remappingFunction) {
-        return map.compute(key, remappingFunction);
+    private static Object normalize(Object value) {
+        try {
+            return toJsonValue(value);
+        } catch (RuntimeException e) {
+            // keep the value, changes() leaves it out of the change set
+            return value;
+        }
     }
 
-    @Override
-    public Object merge(Object key, @NotNull Object value, @NotNull BiFunction remappingFunction) {
-        return map.merge(key, value, remappingFunction);
+    /**
+     * Convert a value to what it will be read back as after being stored as json.
+     */
+    public static Object toJsonValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer) {
+            return value;
+        }
+        Map wrapper = (Map) new JsonSlurperClassic().parseText(new JsonBuilder(Collections.singletonMap("value", value)).toString());
+        return wrapper.get("value");
     }
 }
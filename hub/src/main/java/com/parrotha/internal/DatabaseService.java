@@ -18,41 +18,102 @@
  */
 package com.parrotha.internal;
 
+import com.parrotha.internal.database.DatasourceFactory;
+import com.parrotha.internal.database.PooledDataSource;
 import com.parrotha.internal.database.ScriptRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 public class DatabaseService {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseService.class);
 
     public void createDatabase() {
-
-        try {
-            logger.trace("Creating database");
-            Connection c = DriverManager.getConnection("jdbc:hsqldb:file:database/testdb", "SA", "");
+        logger.trace("Creating database");
+        // the scheduler and event history may be in separate databases
+        try (Connection c = DatasourceFactory.getDataSource(DatasourceFactory.SCHEDULER).getConnection()) {
             // check for existing tables
             ScriptRunner scriptRunner = new ScriptRunner(c, true, true);
             DatabaseMetaData md = c.getMetaData();
 
             createTableTablesIfNotExisting(md, scriptRunner, "QRTZ_%", "/org/quartz/impl/jdbcjobstore/tables_hsqldb.sql");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        try (Connection c = DatasourceFactory.getDataSource(DatasourceFactory.EVENTS).getConnection()) {
+            ScriptRunner scriptRunner = new ScriptRunner(c, true, true);
+            DatabaseMetaData md = c.getMetaData();
+
             createTableTablesIfNotExisting(md, scriptRunner, "EVENT_HISTORY", "/database/hsqldb/create_event_history.sql");
+            // indexes used by eventsBetween and the event history retention
+            createIndexIfNotExisting(md, c, "EVENT_HISTORY", "EVENT_HISTORY_DATE_INDEX",
+                    "CREATE INDEX EVENT_HISTORY_DATE_INDEX ON EVENT_HISTORY (DATE)");
+            createIndexIfNotExisting(md, c, "EVENT_HISTORY", "EVENT_HISTORY_SOURCE_DATE_INDEX",
+                    "CREATE INDEX EVENT_HISTORY_SOURCE_DATE_INDEX ON EVENT_HISTORY (SOURCE, DATE)");
             createTableTablesIfNotExisting(md, scriptRunner, "DEVICE_STATE_HISTORY", "/database/hsqldb/create_device_state_history.sql");
-
-            c.close();
+            // state history tables created before states were stored have no number column
+            updateTableIfColumnMissing(md, c, "DEVICE_STATE_HISTORY", "NUMBER_VALUE",
+                    "ALTER TABLE DEVICE_STATE_HISTORY ADD COLUMN NUMBER_VALUE DOUBLE BEFORE UNIT",
+                    "CREATE INDEX DEVICE_STATE_HISTORY_DATE_INDEX ON DEVICE_STATE_HISTORY (DATE)");
+            createTableTablesIfNotExisting(md, scriptRunner, "DEVICE_STATE_AGGREGATE", "/database/hsqldb/create_device_state_aggregate.sql");
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Rewrite the database files to give back the space of deleted rows.  The database can not be used until this
+     * finishes, so it should only run after many rows have been deleted.
+     *
+     * @return number of bytes the database files shrank by.
+     */
+    public long compactDatabase() {
+        PooledDataSource dataSource = DatasourceFactory.getDataSource(DatasourceFactory.EVENTS);
+        String databasePath = dataSource.getSettings().getHsqldbFilePath();
+        long sizeBefore = getDatabaseSize(databasePath);
+        try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement()) {
+            statement.execute("CHECKPOINT DEFRAG");
+        } catch (SQLException e) {
+            logger.warn("Exception compacting database", e);
+            return 0;
+        }
+        return Math.max(0, sizeBefore - getDatabaseSize(databasePath));
+    }
+
+    private long getDatabaseSize(String databasePath) {
+        if (databasePath == null) {
+            // not a file database, the size is not known
+            return 0;
+        }
+        File databaseFile = new File(databasePath);
+        File[] files = databaseFile.getAbsoluteFile().getParentFile().listFiles(
+                (dir, name) -> name.startsWith(databaseFile.getName() + "."));
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Close the connection pool.  Services that queue writes to the database must be shut down first.
+     */
+    public void shutdown() {
+        DatasourceFactory.shutdown();
+    }
+
     private void createTableTablesIfNotExisting(DatabaseMetaData md, ScriptRunner scriptRunner, String tableNamePattern, String scriptFile) {
         try {
             ResultSet rs = md.getTables(null, null, tableNamePattern, null);
@@ -66,4 +127,37 @@ public class DatabaseService {
             e.printStackTrace();
         }
     }
+
+    private void createIndexIfNotExisting(DatabaseMetaData md, Connection c, String tableName, String indexName, String sql) {
+        try {
+            ResultSet rs = md.getIndexInfo(null, null, tableName, false, true);
+            while (rs.next()) {
+                if (indexName.equals(rs.getString("INDEX_NAME"))) {
+                    return;
+                }
+            }
+            logger.trace("Creating database index " + indexName);
+            try (Statement statement = c.createStatement()) {
+                statement.execute(sql);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void updateTableIfColumnMissing(DatabaseMetaData md, Connection c, String tableName, String columnName, String... statements) {
+        try {
+            ResultSet rs = md.getColumns(null, null, tableName, columnName);
+            if (!rs.next()) {
+                logger.trace("Updating database table " + tableName);
+                try (Statement statement = c.createStatement()) {
+                    for (String sql : statements) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 }
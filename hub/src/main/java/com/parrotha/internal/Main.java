@@ -24,7 +24,9 @@ import com.parrotha.internal.device.DeviceService;
 import com.parrotha.internal.entity.EntityService;
 import com.parrotha.internal.extension.ExtensionApiHandler;
 import com.parrotha.internal.extension.ExtensionService;
+import com.parrotha.internal.hub.EventApiHandler;
 import com.parrotha.internal.hub.LocationApiHandler;
+import com.parrotha.internal.hub.MetricsApiHandler;
 import com.parrotha.internal.hub.ScheduleService;
 import com.parrotha.internal.hub.SettingsApiHandler;
 import com.parrotha.internal.integration.IntegrationApiHandler;
@@ -41,7 +43,7 @@ public class Main {
         ServiceFactory.getConfigurationService().initialize();
 
         // try building database
-        new DatabaseService().createDatabase();
+        ServiceFactory.getDatabaseService().createDatabase();
 
         // start UI
         UIFramework uiFramework = new UIFramework();
@@ -63,12 +65,14 @@ public class Main {
         extensionService.initialize();
 
         // configure api
-        new DeviceApiHandler(deviceService, entityService).setupApi(uiFramework.getApp());
+        new DeviceApiHandler(deviceService, entityService, ServiceFactory.getEventBus()).setupApi(uiFramework.getApp());
         new AutomationAppApiHandler(ServiceFactory.getAutomationAppService(), entityService, scheduleService).setupApi(uiFramework.getApp());
         new IntegrationApiHandler(ServiceFactory.getIntegrationService()).setupApi(uiFramework.getApp());
         new LocationApiHandler(ServiceFactory.getLocationService()).setupApi(uiFramework.getApp());
         new SettingsApiHandler(entityService).setupApi(uiFramework.getApp());
         new ExtensionApiHandler(extensionService).setupApi(uiFramework.getApp());
+        new MetricsApiHandler(ServiceFactory.getMetricsService()).setupApi(uiFramework.getApp());
+        new EventApiHandler(ServiceFactory.getEventBus()).setupApi(uiFramework.getApp());
 
         Thread myShutdownHook = new Thread(() -> {
             logger.info("In the middle of a shutdown");
@@ -76,6 +80,11 @@ public class Main {
             ServiceFactory.getScheduleService().shutdown();
             uiFramework.stop();
             ServiceFactory.getIntegrationService().stop();
+            entityService.shutdown();
+            ServiceFactory.getHttpEngine().shutdown();
+            // write out queued event history before the database is closed
+            ServiceFactory.getEventService().shutdown();
+            ServiceFactory.getDatabaseService().shutdown();
         }
         );
 
@@ -19,30 +19,65 @@
 package com.parrotha.internal;
 
 import com.parrotha.internal.app.AutomationAppService;
+import com.parrotha.internal.app.AutomationAppStateStore;
+import com.parrotha.internal.database.DatasourceFactory;
 import com.parrotha.internal.device.DeviceIntegrationServiceImpl;
 import com.parrotha.internal.device.DeviceService;
+import com.parrotha.internal.device.DeviceStateHistory;
+import com.parrotha.internal.device.DeviceStateHistorySQLDataStore;
+import com.parrotha.internal.device.DeviceYamlDataStore;
+import com.parrotha.internal.entity.EntityJob;
 import com.parrotha.internal.entity.EntityService;
 import com.parrotha.internal.entity.EntityServiceImpl;
+import com.parrotha.internal.entity.EventDispatcher;
 import com.parrotha.internal.extension.ExtensionService;
+import com.parrotha.internal.groovy.ScriptClassCache;
+import com.parrotha.internal.http.HttpEngine;
+import com.parrotha.internal.hub.EventBus;
+import com.parrotha.internal.hub.EventHistoryRetention;
+import com.parrotha.internal.hub.EventJournal;
+import com.parrotha.internal.hub.EventSQLDataStore;
 import com.parrotha.internal.hub.EventService;
 import com.parrotha.internal.hub.LocationService;
 import com.parrotha.internal.hub.LocationServiceImpl;
+import com.parrotha.internal.hub.MetricsService;
+import com.parrotha.internal.hub.NeighborTable;
 import com.parrotha.internal.hub.ScheduleService;
+import com.parrotha.internal.hub.SubscriptionJournal;
+import com.parrotha.internal.hub.TimerWheelScheduler;
 import com.parrotha.internal.integration.ConfigurationService;
 import com.parrotha.internal.integration.ConfigurationServiceImpl;
+import com.parrotha.internal.integration.DeviceMessagePipeline;
 import com.parrotha.internal.integration.IntegrationRegistry;
 import com.parrotha.internal.integration.IntegrationService;
 
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class ServiceFactory {
     private static ConfigurationService configurationService;
 
     public static ConfigurationService getConfigurationService() {
         if (configurationService == null) {
             configurationService = new ConfigurationServiceImpl();
+            // connection pools are set up from the database section of the configuration
+            DatasourceFactory.setConfigurationService(configurationService);
         }
         return configurationService;
     }
 
+    private static DatabaseService databaseService;
+
+    public static DatabaseService getDatabaseService() {
+        if (databaseService == null) {
+            getMetricsService().registerMetrics("database", DatasourceFactory::getMetrics);
+            databaseService = new DatabaseService();
+        }
+        return databaseService;
+    }
+
     private static LocationService locationService;
 
     public static LocationService getLocationService() {
@@ -56,7 +91,23 @@ public class ServiceFactory {
 
     public static DeviceService getDeviceService() {
         if (deviceService == null) {
-            deviceService = new DeviceService(getIntegrationRegistry(), getExtensionService());
+            DeviceYamlDataStore deviceDataStore = new DeviceYamlDataStore(
+                    getConfigurationService().getConfigurationValue("deviceDataStore.writeDelayMillis", 2000));
+            getMetricsService().registerMetrics("deviceDataStore", deviceDataStore::getMetrics);
+            deviceService = new DeviceService(deviceDataStore, getIntegrationRegistry(), getExtensionService());
+            deviceService.setScriptClassCache(getScriptClassCache());
+            ConfigurationService configurationService = getConfigurationService();
+            DeviceStateHistory stateHistory = new DeviceStateHistory(new DeviceStateHistorySQLDataStore(),
+                    configurationService.getConfigurationValue("deviceStateHistory.capacity", 4096),
+                    configurationService.getConfigurationValue("deviceStateHistory.batchSize", 256),
+                    configurationService.getConfigurationValue("deviceStateHistory.flushIntervalMillis", 1000),
+                    configurationService.getConfigurationValue("deviceStateHistory.maxBlockMillis", 1000),
+                    configurationService.getConfigurationValue("deviceStateHistory.rollupIntervalSeconds", 60),
+                    configurationService.getConfigurationValue("deviceStateHistory.stateRetentionDays", 7),
+                    configurationService.getConfigurationValue("deviceStateHistory.minuteRetentionDays", 30),
+                    configurationService.getConfigurationValue("deviceStateHistory.hourRetentionDays", 730));
+            getMetricsService().registerMetrics("deviceStateHistory", stateHistory::getMetrics);
+            deviceService.setStateHistory(stateHistory);
         }
         return deviceService;
     }
@@ -65,7 +116,36 @@ public class ServiceFactory {
 
     public static EventService getEventService() {
         if (eventService == null) {
-            eventService = new EventService(getLocationService());
+            ConfigurationService configurationService = getConfigurationService();
+            EventJournal eventJournal = new EventJournal(new EventSQLDataStore(),
+                    configurationService.getConfigurationValue("eventJournal.capacity", 4096),
+                    configurationService.getConfigurationValue("eventJournal.batchSize", 256),
+                    configurationService.getConfigurationValue("eventJournal.flushIntervalMillis", 250),
+                    configurationService.getConfigurationValue("eventJournal.maxBlockMillis", 1000));
+            getMetricsService().registerMetrics("eventJournal", eventJournal::getMetrics);
+            SubscriptionJournal subscriptionJournal = new SubscriptionJournal(new File("config/subscriptions.yaml"),
+                    new File("config/subscriptions.journal"),
+                    configurationService.getConfigurationValue("subscriptionJournal.compactThreshold", 500));
+            eventService = new EventService(getLocationService(), eventJournal, subscriptionJournal);
+            Map<String, EventHistoryRetention.Policy> policies = new LinkedHashMap<>();
+            // history is kept until a limit is configured, so upgrading does not delete existing events
+            int maxAgeDays = configurationService.getConfigurationValue("eventHistory.maxAgeDays", 0);
+            int maxEvents = configurationService.getConfigurationValue("eventHistory.maxEvents", 0);
+            for (String source : List.of("DEVICE", "IAA", "HUB", "LOCATION")) {
+                String prefix = "eventHistory." + source.toLowerCase() + ".";
+                policies.put(source, new EventHistoryRetention.Policy(
+                        configurationService.getConfigurationValue(prefix + "maxAgeDays", maxAgeDays),
+                        configurationService.getConfigurationValue(prefix + "maxEvents", maxEvents)));
+            }
+            EventHistoryRetention retention = new EventHistoryRetention(eventJournal, policies,
+                    configurationService.getConfigurationValue("eventHistory.purgeIntervalMinutes", 60),
+                    configurationService.getConfigurationValue("eventHistory.purgeBatchSize", 500),
+                    configurationService.getConfigurationValue("eventHistory.purgeBatchPauseMillis", 100),
+                    configurationService.getConfigurationValue("eventHistory.compactIntervalHours", 24),
+                    configurationService.getConfigurationValue("eventHistory.compactMinEvents", 10000),
+                    getDatabaseService()::compactDatabase);
+            getMetricsService().registerMetrics("eventHistoryRetention", retention::getMetrics);
+            eventService.setEventHistoryRetention(retention);
         }
         return eventService;
     }
@@ -75,6 +155,14 @@ public class ServiceFactory {
     public static AutomationAppService getAutomationAppService() {
         if (automationAppService == null) {
             automationAppService = new AutomationAppService(getExtensionService());
+            automationAppService.setScriptClassCache(getScriptClassCache());
+            ConfigurationService configurationService = getConfigurationService();
+            AutomationAppStateStore stateStore = new AutomationAppStateStore(automationAppService.getAutomationAppDataStore(),
+                    new File(configurationService.getConfigurationValue("automationAppState.logDirectory", "config/installedAutomationAppState")),
+                    configurationService.getConfigurationValue("automationAppState.snapshotThreshold", 200),
+                    configurationService.getConfigurationValue("automationAppState.snapshotIntervalSeconds", 300));
+            getMetricsService().registerMetrics("automationAppState", stateStore::getMetrics);
+            automationAppService.setStateStore(stateStore);
         }
         return automationAppService;
     }
@@ -83,18 +171,127 @@ public class ServiceFactory {
 
     public static EntityService getEntityService() {
         if (entityService == null) {
-            entityService = new EntityServiceImpl(getDeviceService(), getAutomationAppService(), getEventService(),
-                    getLocationService(), getScheduleService(), getIntegrationRegistry());
+            EntityServiceImpl entityServiceImpl = new EntityServiceImpl(getDeviceService(), getAutomationAppService(), getEventService(),
+                    getLocationService(), getScheduleService(), getIntegrationRegistry(), getEventDispatcher());
+            entityServiceImpl.setScriptClassCache(getScriptClassCache());
+            entityServiceImpl.setEventBus(getEventBus());
+            entityService = entityServiceImpl;
         }
         return entityService;
     }
 
+    private static ScriptClassCache scriptClassCache;
+
+    public static ScriptClassCache getScriptClassCache() {
+        if (scriptClassCache == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            scriptClassCache = new ScriptClassCache(
+                    new File(configurationService.getConfigurationValue("scriptCache.directory", "cache/scripts")),
+                    configurationService.getConfigurationValue("scriptCache.maxEntries", 1000),
+                    configurationService.getConfigurationValue("scriptCache.warmUpThreads",
+                            Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+            getMetricsService().registerMetrics("scriptCache", scriptClassCache::getMetrics);
+        }
+        return scriptClassCache;
+    }
+
+    private static HttpEngine httpEngine;
+
+    public static synchronized HttpEngine getHttpEngine() {
+        if (httpEngine == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            httpEngine = new HttpEngine(configurationService.getConfigurationValue("http.maxConnections", 20),
+                    configurationService.getConfigurationValue("http.maxConnectionsPerHost", 4),
+                    configurationService.getConfigurationValue("http.connectTimeout", 10),
+                    configurationService.getConfigurationValue("http.socketTimeout", 30),
+                    configurationService.getConfigurationValue("http.keepAlive", 60),
+                    configurationService.getConfigurationValue("http.maxQueuedRequests", 500),
+                    configurationService.getConfigurationValue("http.callbackThreadCount", 4));
+            getMetricsService().registerMetrics("http", httpEngine::getMetrics);
+        }
+        return httpEngine;
+    }
+
+    private static EventBus eventBus;
+
+    public static EventBus getEventBus() {
+        if (eventBus == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            eventBus = new EventBus(configurationService.getConfigurationValue("eventBus.workerCount", 2),
+                    configurationService.getConfigurationValue("eventBus.queueLimit", 100));
+            getMetricsService().registerMetrics("eventBus", eventBus::getMetrics);
+        }
+        return eventBus;
+    }
+
+    private static EventDispatcher eventDispatcher;
+
+    public static EventDispatcher getEventDispatcher() {
+        if (eventDispatcher == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            EventDispatcher.OverflowPolicy overflowPolicy;
+            try {
+                overflowPolicy = EventDispatcher.OverflowPolicy.valueOf(
+                        configurationService.getConfigurationValue("eventDispatcher.overflowPolicy", "COALESCE").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                overflowPolicy = EventDispatcher.OverflowPolicy.COALESCE;
+            }
+            eventDispatcher = new EventDispatcher(
+                    configurationService.getConfigurationValue("eventDispatcher.workerCount",
+                            Math.max(2, Runtime.getRuntime().availableProcessors())),
+                    configurationService.getConfigurationValue("eventDispatcher.mailboxLimit", 100),
+                    overflowPolicy,
+                    configurationService.getConfigurationValue("eventDispatcher.virtualThreads", true));
+            getMetricsService().registerMetrics("eventDispatcher", eventDispatcher::getMetrics);
+        }
+        return eventDispatcher;
+    }
+
+    private static DeviceMessagePipeline deviceMessagePipeline;
+
+    public static DeviceMessagePipeline getDeviceMessagePipeline() {
+        if (deviceMessagePipeline == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            DeviceMessagePipeline.OverflowPolicy overflowPolicy;
+            try {
+                overflowPolicy = DeviceMessagePipeline.OverflowPolicy.valueOf(
+                        configurationService.getConfigurationValue("deviceMessagePipeline.overflowPolicy", "DROP_OLDEST").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                overflowPolicy = DeviceMessagePipeline.OverflowPolicy.DROP_OLDEST;
+            }
+            deviceMessagePipeline = new DeviceMessagePipeline(
+                    configurationService.getConfigurationValue("deviceMessagePipeline.workerCount",
+                            Math.max(2, Runtime.getRuntime().availableProcessors())),
+                    configurationService.getConfigurationValue("deviceMessagePipeline.queueLimit", 50),
+                    overflowPolicy,
+                    configurationService.getConfigurationValue("deviceMessagePipeline.maxBlockMillis", 100));
+            getMetricsService().registerMetrics("deviceMessagePipeline", deviceMessagePipeline::getMetrics);
+        }
+        return deviceMessagePipeline;
+    }
+
+    private static NeighborTable neighborTable;
+
+    public static NeighborTable getNeighborTable() {
+        if (neighborTable == null) {
+            ConfigurationService configurationService = getConfigurationService();
+            neighborTable = new NeighborTable(
+                    configurationService.getConfigurationValue("neighborTable.ttlSeconds", 60),
+                    configurationService.getConfigurationValue("neighborTable.negativeTtlSeconds", 10),
+                    configurationService.getConfigurationValue("neighborTable.minRefreshIntervalSeconds", 1));
+            getMetricsService().registerMetrics("neighborTable", neighborTable::getMetrics);
+        }
+        return neighborTable;
+    }
+
     private static IntegrationService integrationService;
 
     public static IntegrationService getIntegrationService() {
         if (integrationService == null) {
             integrationService = new IntegrationService(getIntegrationRegistry(), getConfigurationService(), getExtensionService(),
                     getDeviceIntegrationService(), getDeviceService(), getEntityService(), getLocationService());
+            integrationService.setDeviceMessagePipeline(getDeviceMessagePipeline());
+            integrationService.setNeighborTableService(getNeighborTable());
         }
         return integrationService;
     }
@@ -112,7 +309,15 @@ public class ServiceFactory {
 
     public static ScheduleService getScheduleService() {
         if (scheduleService == null) {
-            scheduleService = new ScheduleService();
+            ConfigurationService configurationService = getConfigurationService();
+            TimerWheelScheduler singleRunScheduler = new TimerWheelScheduler(EntityJob::run,
+                    configurationService.getConfigurationValue("scheduler.singleRunThreadCount", 3),
+                    configurationService.getConfigurationValue("scheduler.tickMillis", 100),
+                    new File("config/schedules.journal"),
+                    configurationService.getConfigurationValue("scheduler.journalCompactThreshold", 500));
+            getMetricsService().registerMetrics("singleRunScheduler", singleRunScheduler::getMetrics);
+            scheduleService = new ScheduleService(configurationService.getConfigurationValue("scheduler.threadCount", 3),
+                    singleRunScheduler);
         }
         return scheduleService;
     }
@@ -126,6 +331,15 @@ public class ServiceFactory {
         return deviceIntegrationService;
     }
 
+    private static MetricsService metricsService;
+
+    public static MetricsService getMetricsService() {
+        if (metricsService == null) {
+            metricsService = new MetricsService();
+        }
+        return metricsService;
+    }
+
     private static IntegrationRegistry integrationRegistry;
 
     public static IntegrationRegistry getIntegrationRegistry() {
@@ -68,6 +68,7 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -390,6 +391,18 @@ public class AutomationAppScriptDelegateImpl extends EntityScriptDelegateCommon
         eventService.removeSubscriptionsOfAutomationApp(installedAutomationApp.getId());
     }
 
+    public void unsubscribe(Object object) {
+        if (object instanceof DeviceWrapper) {
+            eventService.removeDeviceSubscriptions(installedAutomationApp.getId(),
+                    Collections.singletonList(((DeviceWrapper) object).getId()));
+        } else if (object instanceof DeviceWrapperList) {
+            eventService.removeDeviceSubscriptions(installedAutomationApp.getId(),
+                    ((DeviceWrapperList) object).stream().map(DeviceWrapper::getId).collect(Collectors.toList()));
+        } else {
+            getLog().warn("unsubscribe is not supported for " + (object != null ? object.getClass().getName() : "null"));
+        }
+    }
+
     public void subscribe(Object object, MetaMethod handlerMethod) {
         if (handlerMethod != null) {
             subscribe(object, null, handlerMethod.getName(), null);
@@ -424,9 +437,8 @@ public class AutomationAppScriptDelegateImpl extends EntityScriptDelegateCommon
                 eventService.addDeviceSubscription(((DeviceWrapper) object).getId(), installedAutomationApp.getId(), attributeName, handlerMethod,
                         options);
             } else if (object instanceof DeviceWrapperList) {
-                for (DeviceWrapper deviceWrapper : (DeviceWrapperList) object) {
-                    eventService.addDeviceSubscription(deviceWrapper.getId(), installedAutomationApp.getId(), attributeName, handlerMethod, options);
-                }
+                eventService.addDeviceSubscriptions(((DeviceWrapperList) object).stream().map(DeviceWrapper::getId).collect(Collectors.toList()),
+                        installedAutomationApp.getId(), attributeName, handlerMethod, options);
             } else if (object instanceof LocationWrapper) {
                 eventService
                         .addLocationSubscription(((LocationWrapper) object).getId(), installedAutomationApp.getId(), attributeName, handlerMethod,
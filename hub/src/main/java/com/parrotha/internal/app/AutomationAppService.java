@@ -27,14 +27,13 @@ import com.parrotha.internal.device.Device;
 import com.parrotha.internal.extension.ExtensionService;
 import com.parrotha.internal.extension.ExtensionState;
 import com.parrotha.internal.extension.ExtensionStateListener;
+import com.parrotha.internal.groovy.ScriptClassCache;
 import com.parrotha.internal.script.ParrotHubDelegatingScript;
 import com.parrotha.internal.system.OAuthToken;
-import groovy.lang.GroovyShell;
 import groovy.util.DelegatingScript;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.codehaus.groovy.control.CompilerConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.Yaml;
@@ -51,6 +50,7 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -62,6 +62,8 @@ public class AutomationAppService implements ExtensionStateListener {
 
     AutomationAppDataStore automationAppDataStore;
     ExtensionService extensionService;
+    ScriptClassCache scriptClassCache = new ScriptClassCache();
+    AutomationAppStateStore stateStore;
 
     public AutomationAppService(AutomationAppDataStore automationAppDataStore) {
         this.automationAppDataStore = automationAppDataStore;
@@ -80,12 +82,36 @@ public class AutomationAppService implements ExtensionStateListener {
         this.automationAppDataStore = automationAppDataStore;
     }
 
+    public AutomationAppDataStore getAutomationAppDataStore() {
+        return automationAppDataStore;
+    }
+
+    public void setScriptClassCache(ScriptClassCache scriptClassCache) {
+        this.scriptClassCache = scriptClassCache;
+    }
+
+    public void setStateStore(AutomationAppStateStore stateStore) {
+        this.stateStore = stateStore;
+    }
+
     public Collection<InstalledAutomationApp> getAllInstalledAutomationApps() {
         return automationAppDataStore.getAllInstalledAutomationApps();
     }
 
     public InstalledAutomationApp getInstalledAutomationApp(String id) {
-        return automationAppDataStore.getInstalledAutomationAppById(id);
+        InstalledAutomationApp installedAutomationApp = automationAppDataStore.getInstalledAutomationAppById(id);
+        if (installedAutomationApp != null && stateStore != null) {
+            // the state store has changes that may not have been written to the data store yet
+            installedAutomationApp.setState(stateStore.getState(id));
+        }
+        return installedAutomationApp;
+    }
+
+    /**
+     * @return map backed by the state of the installed automation app, null if state is not kept in a state store.
+     */
+    public Map getAtomicState(String id) {
+        return stateStore != null ? stateStore.getAtomicState(id) : null;
     }
 
     public boolean updateInstalledAutomationApp(InstalledAutomationApp installedAutomationApp) {
@@ -141,16 +167,33 @@ public class AutomationAppService implements ExtensionStateListener {
     }
 
     public boolean removeInstalledAutomationApp(String installedAutomationAppId) {
-        return automationAppDataStore.deleteInstalledAutomationApp(installedAutomationAppId);
+        // delete from the data store first so the state can not be loaded again once it is removed from the state store
+        boolean deleted = automationAppDataStore.deleteInstalledAutomationApp(installedAutomationAppId);
+        if (deleted && stateStore != null) {
+            stateStore.remove(installedAutomationAppId);
+        }
+        return deleted;
     }
 
     public boolean saveState(String installedAutomationAppId, ChangeTrackingMap state) {
+        if (stateStore != null) {
+            ChangeTrackingMap.ChangeSet stateChanges = state.changes();
+            if (!stateChanges.isEmpty()) {
+                Map updated = new LinkedHashMap(stateChanges.getUpdated());
+                updated.putAll(stateChanges.getAdded());
+                stateStore.applyChanges(installedAutomationAppId, stateChanges.getRemoved(), updated);
+            }
+            return true;
+        }
         InstalledAutomationApp installedAutomationApp = automationAppDataStore
                 .getInstalledAutomationAppById(installedAutomationAppId);
         if (installedAutomationApp != null) {
             Map existingState = installedAutomationApp.getState();
             if (existingState != null) {
                 ChangeTrackingMap.ChangeSet stateChanges = state.changes();
+                if (stateChanges.isEmpty()) {
+                    return true;
+                }
                 for (Object key : stateChanges.getRemoved()) {
                     existingState.remove(key);
                 }
@@ -165,6 +208,10 @@ public class AutomationAppService implements ExtensionStateListener {
     }
 
     public boolean saveState(String installedAutomationAppId, Map state) {
+        if (stateStore != null) {
+            stateStore.replaceState(installedAutomationAppId, state);
+            return true;
+        }
         InstalledAutomationApp installedAutomationApp = automationAppDataStore
                 .getInstalledAutomationAppById(installedAutomationAppId);
         if (installedAutomationApp != null) {
@@ -249,6 +296,9 @@ public class AutomationAppService implements ExtensionStateListener {
         if (extensionService != null) {
             extensionService.unregisterStateListener(this);
         }
+        if (stateStore != null) {
+            stateStore.shutdown();
+        }
     }
 
     public Collection<AutomationApp> getAllAutomationApps(boolean includeChildren) {
@@ -497,12 +547,12 @@ public class AutomationAppService implements ExtensionStateListener {
         return automationAppInfo;
     }
 
-    private static Map extractAutomationAppDefinition(String automationAppScript) {
+    private Map extractAutomationAppDefinition(String automationAppScript) {
         AutomationAppScriptDelegateImpl aasd = extractAutomationAppInformation(automationAppScript);
         return aasd.definitionInfo;
     }
 
-    private static Map extractAutomationAppPreferences(String automationAppScript) {
+    private Map extractAutomationAppPreferences(String automationAppScript) {
         AutomationAppScriptDelegateImpl aasd = extractAutomationAppInformation(automationAppScript);
         return aasd.preferences;
     }
@@ -517,11 +567,9 @@ public class AutomationAppService implements ExtensionStateListener {
         return automationAppScriptDelegate.definitionInfo;
     }
 
-    private static AutomationAppScriptDelegateImpl extractAutomationAppInformation(String automationAppScript) {
-        CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
-        compilerConfiguration.setScriptBaseClass("com.parrotha.internal.script.ParrotHubDelegatingScript");
-        GroovyShell shell = new GroovyShell(compilerConfiguration);
-        ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) shell.parse(automationAppScript);
+    private AutomationAppScriptDelegateImpl extractAutomationAppInformation(String automationAppScript) {
+        ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) scriptClassCache.createScript(
+                automationAppScript);
         parrotHubDelegatingScript.setDelegate(new AutomationAppScriptDelegateImpl(new InstalledAutomationApp()));
 
         parrotHubDelegatingScript.invokeMethod("run", null);
@@ -0,0 +1,497 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.app;
+
+import com.parrotha.internal.ChangeTrackingMap;
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurperClassic;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keeps the state of installed automation apps in memory.  Changes are appended to a write ahead log for each app and
+ * the state is written to the automation app data store (a snapshot) once the log gets long, on a timer and on
+ * shutdown.  Loading an app replays its log on top of the state in the data store.
+ * <p>
+ * Each app has its own lock, the map returned by {@link #getAtomicState(String)} performs every operation, including
+ * the compare and set operations of {@link Map}, under that lock.
+ */
+public class AutomationAppStateStore {
+    private static final Logger logger = LoggerFactory.getLogger(AutomationAppStateStore.class);
+
+    private final AutomationAppDataStore automationAppDataStore;
+    private final File logDirectory;
+    private final int snapshotThreshold;
+    private final int snapshotIntervalSeconds;
+
+    private final Map<String, AppState> appStates = new ConcurrentHashMap<>();
+    private ScheduledExecutorService snapshotTimer;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder compareAndSetFailures = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder replayedEntries = new LongAdder();
+
+    /**
+     * @param automationAppDataStore  Store that snapshots are written to.
+     * @param logDirectory            Directory for the write ahead logs.
+     * @param snapshotThreshold       Number of log entries after which the state of an app is written to the data store.
+     * @param snapshotIntervalSeconds How often the state of apps with log entries is written to the data store, 0 to
+     *                                only write once the threshold is reached and on shutdown.
+     */
+    public AutomationAppStateStore(AutomationAppDataStore automationAppDataStore, File logDirectory, int snapshotThreshold,
+                                   int snapshotIntervalSeconds) {
+        this.automationAppDataStore = automationAppDataStore;
+        this.logDirectory = logDirectory;
+        this.snapshotThreshold = Math.max(1, snapshotThreshold);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * @return a copy of the top level of the app state, null if the app does not exist.
+     */
+    public Map getState(String installedAutomationAppId) {
+        AppState appState = getAppState(installedAutomationAppId);
+        return appState != null ? appState.copyState() : null;
+    }
+
+    /**
+     * Map backed by the app state, values read from it are copies so changing them does not change the state.
+     *
+     * @return null if the app does not exist.
+     */
+    public Map getAtomicState(String installedAutomationAppId) {
+        return getAppState(installedAutomationAppId);
+    }
+
+    /**
+     * Apply the changes made to state during a script call.  Values should already be json compatible.
+     */
+    public void applyChanges(String installedAutomationAppId, Collection removed, Map updated) {
+        AppState appState = getAppState(installedAutomationAppId);
+        if (appState != null) {
+            appState.update(false, removed, updated);
+        }
+    }
+
+    public void replaceState(String installedAutomationAppId, Map state) {
+        AppState appState = getAppState(installedAutomationAppId);
+        if (appState != null) {
+            Map newState = state != null ? (Map) ChangeTrackingMap.toJsonValue(state) : Collections.emptyMap();
+            appState.update(true, Collections.emptyList(), newState);
+        }
+    }
+
+    /**
+     * Forget the state of an app that has been removed, call after the app is deleted from the data store so the state
+     * is not loaded again.
+     */
+    public void remove(String installedAutomationAppId) {
+        AppState appState = appStates.remove(installedAutomationAppId);
+        if (appState != null) {
+            synchronized (appState) {
+                appState.deleted = true;
+            }
+        }
+        try {
+            Files.deleteIfExists(getLogFile(installedAutomationAppId).toPath());
+        } catch (IOException e) {
+            logger.warn("Unable to remove state log for " + installedAutomationAppId, e);
+        }
+    }
+
+    /**
+     * Write the state of every app with log entries to the data store.
+     */
+    public void snapshot() {
+        for (AppState appState : appStates.values()) {
+            synchronized (appState) {
+                if (appState.logEntries > 0) {
+                    appState.snapshot();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        ScheduledExecutorService timer;
+        synchronized (this) {
+            timer = snapshotTimer;
+            snapshotTimer = null;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        snapshot();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        int logEntries = 0;
+        for (AppState appState : appStates.values()) {
+            logEntries += appState.logEntries;
+        }
+        metrics.put("apps", appStates.size());
+        metrics.put("logEntries", logEntries);
+        metrics.put("writes", writes.sum());
+        metrics.put("compareAndSetFailures", compareAndSetFailures.sum());
+        metrics.put("snapshots", snapshots.sum());
+        metrics.put("replayedEntries", replayedEntries.sum());
+        return metrics;
+    }
+
+    private AppState getAppState(String installedAutomationAppId) {
+        if (installedAutomationAppId == null) {
+            return null;
+        }
+        AppState appState = appStates.get(installedAutomationAppId);
+        if (appState == null) {
+            appState = appStates.computeIfAbsent(installedAutomationAppId, this::loadAppState);
+            startSnapshotTimer();
+        }
+        return appState;
+    }
+
+    private AppState loadAppState(String installedAutomationAppId) {
+        InstalledAutomationApp installedAutomationApp = automationAppDataStore.getInstalledAutomationAppById(installedAutomationAppId);
+        if (installedAutomationApp == null) {
+            return null;
+        }
+        AppState appState = new AppState(installedAutomationAppId, installedAutomationApp.getState());
+        synchronized (appState) {
+            appState.replayLog();
+        }
+        return appState;
+    }
+
+    private synchronized void startSnapshotTimer() {
+        if (snapshotTimer != null || snapshotIntervalSeconds <= 0) {
+            return;
+        }
+        ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        snapshotTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("AutomationAppStateSnapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotTimer.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException e) {
+                logger.warn("Exception writing automation app state", e);
+            }
+        }, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private File getLogFile(String installedAutomationAppId) {
+        return new File(logDirectory, installedAutomationAppId + ".log");
+    }
+
+    private class AppState extends AbstractMap {
+        private final String id;
+        private final File logFile;
+        private final Map state;
+        private int logEntries = 0;
+        private boolean deleted = false;
+
+        AppState(String id, Map state) {
+            this.id = id;
+            this.logFile = getLogFile(id);
+            this.state = state != null ? new LinkedHashMap(state) : new LinkedHashMap();
+        }
+
+        synchronized Map copyState() {
+            return new LinkedHashMap(state);
+        }
+
+        @Override
+        public synchronized int size() {
+            return state.size();
+        }
+
+        @Override
+        public synchronized boolean containsKey(Object key) {
+            return state.containsKey(key);
+        }
+
+        @Override
+        public synchronized Object get(Object key) {
+            return ChangeTrackingMap.copy(state.get(key));
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            Object jsonValue = ChangeTrackingMap.toJsonValue(value);
+            synchronized (this) {
+                Object previous = state.get(key);
+                update(false, Collections.emptyList(), Collections.singletonMap(key, jsonValue));
+                return ChangeTrackingMap.copy(previous);
+            }
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            if (!state.containsKey(key)) {
+                return null;
+            }
+            Object previous = state.get(key);
+            update(false, Collections.singletonList(key), Collections.emptyMap());
+            return ChangeTrackingMap.copy(previous);
+        }
+
+        @Override
+        public void putAll(@NotNull Map m) {
+            Map jsonValues = (Map) ChangeTrackingMap.toJsonValue(m);
+            update(false, Collections.emptyList(), jsonValues);
+        }
+
+        @Override
+        public void clear() {
+            update(true, Collections.emptyList(), Collections.emptyMap());
+        }
+
+        @Override
+        public Object putIfAbsent(Object key, Object value) {
+            Object jsonValue = ChangeTrackingMap.toJsonValue(value);
+            synchronized (this) {
+                Object current = state.get(key);
+                if (current == null) {
+                    update(false, Collections.emptyList(), Collections.singletonMap(key, jsonValue));
+                } else {
+                    compareAndSetFailures.increment();
+                }
+                return ChangeTrackingMap.copy(current);
+            }
+        }
+
+        @Override
+        public boolean replace(Object key, Object oldValue, Object newValue) {
+            Object jsonOldValue = ChangeTrackingMap.toJsonValue(oldValue);
+            Object jsonNewValue = ChangeTrackingMap.toJsonValue(newValue);
+            synchronized (this) {
+                if (!state.containsKey(key) || !Objects.equals(state.get(key), jsonOldValue)) {
+                    compareAndSetFailures.increment();
+                    return false;
+                }
+                update(false, Collections.emptyList(), Collections.singletonMap(key, jsonNewValue));
+                return true;
+            }
+        }
+
+        @Override
+        public Object replace(Object key, Object value) {
+            Object jsonValue = ChangeTrackingMap.toJsonValue(value);
+            synchronized (this) {
+                if (!state.containsKey(key)) {
+                    return null;
+                }
+                Object previous = state.get(key);
+                update(false, Collections.emptyList(), Collections.singletonMap(key, jsonValue));
+                return ChangeTrackingMap.copy(previous);
+            }
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            Object jsonValue = ChangeTrackingMap.toJsonValue(value);
+            synchronized (this) {
+                if (!state.containsKey(key) || !Objects.equals(state.get(key), jsonValue)) {
+                    compareAndSetFailures.increment();
+                    return false;
+                }
+                update(false, Collections.singletonList(key), Collections.emptyMap());
+                return true;
+            }
+        }
+
+        @Override
+        public synchronized Object computeIfAbsent(Object key, @NotNull Function mappingFunction) {
+            Object current = state.get(key);
+            if (current != null) {
+                return ChangeTrackingMap.copy(current);
+            }
+            return compute(key, (k, v) -> mappingFunction.apply(k));
+        }
+
+        @Override
+        public synchronized Object computeIfPresent(Object key, @NotNull BiFunction remappingFunction) {
+            if (state.get(key) == null) {
+                return null;
+            }
+            return compute(key, remappingFunction);
+        }
+
+        @Override
+        public synchronized Object compute(Object key, @NotNull BiFunction remappingFunction) {
+            Object newValue = ChangeTrackingMap.toJsonValue(remappingFunction.apply(key, ChangeTrackingMap.copy(state.get(key))));
+            if (newValue == null) {
+                if (state.containsKey(key)) {
+                    update(false, Collections.singletonList(key), Collections.emptyMap());
+                }
+                return null;
+            }
+            update(false, Collections.emptyList(), Collections.singletonMap(key, newValue));
+            return ChangeTrackingMap.copy(newValue);
+        }
+
+        @Override
+        public synchronized Object merge(Object key, @NotNull Object value, @NotNull BiFunction remappingFunction) {
+            Object current = state.get(key);
+            return compute(key, (k, v) -> current == null ? value : remappingFunction.apply(v, value));
+        }
+
+        /*
+         * Views are copies of the state, changing them does not change the state.
+         */
+        @NotNull
+        @Override
+        public synchronized Set<Entry> entrySet() {
+            return ((Map) ChangeTrackingMap.copy(state)).entrySet();
+        }
+
+        /**
+         * Apply changes and append them to the log as a single entry.
+         *
+         * @param clear   Remove all keys before applying the other changes.
+         * @param removed Keys to remove.
+         * @param updated Keys and json compatible values to put.
+         */
+        synchronized void update(boolean clear, Collection removed, Map updated) {
+            if (!clear && removed.isEmpty() && updated.isEmpty()) {
+                return;
+            }
+            if (clear) {
+                state.clear();
+            }
+            for (Object key : removed) {
+                state.remove(key);
+            }
+            state.putAll(updated);
+            writes.increment();
+            if (deleted) {
+                return;
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            if (clear) {
+                entry.put("clear", true);
+            }
+            if (!removed.isEmpty()) {
+                entry.put("remove", new ArrayList(removed));
+            }
+            if (!updated.isEmpty()) {
+                entry.put("put", updated);
+            }
+            logEntries++;
+            if (logEntries >= snapshotThreshold) {
+                snapshot();
+                return;
+            }
+            try {
+                Files.createDirectories(logDirectory.toPath());
+                Files.write(logFile.toPath(), (JsonOutput.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.warn("Exception writing state log for " + id + ", writing state", e);
+                snapshot();
+            }
+        }
+
+        void replayLog() {
+            if (!logFile.exists()) {
+                return;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Map entry = (Map) new JsonSlurperClassic().parseText(line);
+                        if (Boolean.TRUE.equals(entry.get("clear"))) {
+                            state.clear();
+                        }
+                        if (entry.get("remove") instanceof List) {
+                            for (Object key : (List) entry.get("remove")) {
+                                state.remove(key);
+                            }
+                        }
+                        if (entry.get("put") instanceof Map) {
+                            state.putAll((Map) entry.get("put"));
+                        }
+                        logEntries++;
+                        replayedEntries.increment();
+                    } catch (RuntimeException e) {
+                        // most likely a partial line from a crash while appending
+                        logger.warn("Skipping unreadable state log entry for " + id + ": " + line);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Exception reading state log for " + id, e);
+            }
+            if (logEntries > 0) {
+                snapshot();
+            }
+        }
+
+        /**
+         * Write the state to the data store and clear the log, called holding the lock.
+         */
+        void snapshot() {
+            try {
+                automationAppDataStore.updateInstalledAutomationAppState(id, state);
+                Files.deleteIfExists(logFile.toPath());
+                logEntries = 0;
+                snapshots.increment();
+            } catch (IllegalArgumentException e) {
+                // the app has been removed
+                logEntries = 0;
+            } catch (IOException e) {
+                logger.warn("Unable to clear state log for " + id, e);
+            }
+        }
+    }
+}
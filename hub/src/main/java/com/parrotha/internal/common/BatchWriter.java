@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collects items in a bounded ring buffer and hands them to a background thread in batches.  A batch is written
+ * when it reaches the batch size or when the oldest item has waited for the flush interval.
+ * <p>
+ * When the buffer is full, callers wait up to the max block time for space and then write the item themselves.
+ * <p>
+ * A batch that fails to write is retried with a doubling backoff, and dropped once it has failed max attempts times.
+ */
+public class BatchWriter<T> {
+    private static final Logger logger = LoggerFactory.getLogger(BatchWriter.class);
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_RETRY_BACKOFF_MILLIS = 100;
+
+    private final String name;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long maxBlockNanos;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final Consumer<List<T>> writer;
+
+    private final Object lock = new Object();
+    private final Object[] buffer;
+    private int head = 0;
+    private int count = 0;
+    // sequence numbers, used by flush to wait for items added before it was called
+    private long addedSequence = 0;
+    private long writtenSequence = 0;
+    private long oldestAddedNanos = 0;
+    private int flushRequests = 0;
+    private boolean running = true;
+    private final Thread writerThread;
+
+    private final LongAdder added = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder overflowWrites = new LongAdder();
+    private final LongAdder batchNanos = new LongAdder();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+
+    /**
+     * @param name                Name used for the background thread and log messages.
+     * @param capacity            Size of the ring buffer.
+     * @param batchSize           Maximum number of items handed to the writer at once.
+     * @param flushIntervalMillis How long an item can wait for a batch to fill up.
+     * @param maxBlockMillis      How long a caller waits for space in a full buffer before writing the item itself.
+     * @param writer              Writes a batch of items, called from the background thread.
+     */
+    public BatchWriter(String name, int capacity, int batchSize, long flushIntervalMillis, long maxBlockMillis,
+                       Consumer<List<T>> writer) {
+        this(name, capacity, batchSize, flushIntervalMillis, maxBlockMillis, DEFAULT_MAX_ATTEMPTS,
+                DEFAULT_RETRY_BACKOFF_MILLIS, writer);
+    }
+
+    /**
+     * @param maxAttempts        How many times a batch is written before it is dropped.
+     * @param retryBackoffMillis How long to wait before the first retry, doubled for each retry after that.
+     */
+    public BatchWriter(String name, int capacity, int batchSize, long flushIntervalMillis, long maxBlockMillis,
+                       int maxAttempts, long retryBackoffMillis, Consumer<List<T>> writer) {
+        this.name = name;
+        this.buffer = new Object[Math.max(1, capacity)];
+        this.batchSize = Math.max(1, Math.min(batchSize, buffer.length));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, flushIntervalMillis));
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxBlockMillis));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        this.writer = writer;
+        this.writerThread = new Thread(this::run, name + "-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void add(T item) {
+        synchronized (lock) {
+            if (running) {
+                long deadline = System.nanoTime() + maxBlockNanos;
+                long remaining = maxBlockNanos;
+                if (count == buffer.length) {
+                    blocked.increment();
+                }
+                while (count == buffer.length && running && remaining > 0 && waitOnLock(remaining)) {
+                    remaining = deadline - System.nanoTime();
+                }
+                if (count < buffer.length && running) {
+                    if (count == 0) {
+                        oldestAddedNanos = System.nanoTime();
+                    }
+                    buffer[(head + count) % buffer.length] = item;
+                    count++;
+                    addedSequence++;
+                    added.increment();
+                    // wake up the writer to start the flush interval or write a full batch
+                    if (count == 1 || count >= batchSize) {
+                        lock.notifyAll();
+                    }
+                    return;
+                }
+            }
+        }
+        // buffer is still full or the writer has stopped, write on the calling thread
+        overflowWrites.increment();
+        List<T> items = new ArrayList<>(1);
+        items.add(item);
+        write(items);
+    }
+
+    /**
+     * Wait until all items added before this call have been written.
+     *
+     * @return true if everything was written before the timeout.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            long target = addedSequence;
+            if (writtenSequence >= target) {
+                return true;
+            }
+            flushRequests++;
+            try {
+                lock.notifyAll();
+                long remaining = deadline - System.nanoTime();
+                while (writtenSequence < target && writerThread.isAlive() && remaining > 0 && waitOnLock(remaining)) {
+                    remaining = deadline - System.nanoTime();
+                }
+                return writtenSequence >= target;
+            } finally {
+                flushRequests--;
+            }
+        }
+    }
+
+    /**
+     * Write everything in the buffer and stop the background thread.  Items added after shutdown are written on the
+     * calling thread.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            writerThread.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            logger.warn(name + " did not finish writing before shutdown, " + getQueueDepth() + " items not written");
+        }
+    }
+
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return count;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long batchCount = batches.sum();
+        metrics.put("capacity", buffer.length);
+        metrics.put("batchSize", batchSize);
+        metrics.put("flushIntervalMillis", TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+        metrics.put("queueDepth", getQueueDepth());
+        metrics.put("added", added.sum());
+        metrics.put("written", written.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("blocked", blocked.sum());
+        metrics.put("overflowWrites", overflowWrites.sum());
+        metrics.put("batches", batchCount);
+        metrics.put("batchSizeAvg", batchCount > 0 ? (double) (written.sum() + dropped.sum()) / batchCount : 0.0);
+        metrics.put("batchLatencyAvgMillis", batchCount > 0 ? batchNanos.sum() / batchCount / 1_000_000.0 : 0.0);
+        metrics.put("batchLatencyMaxMillis", maxBatchNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    private void run() {
+        while (true) {
+            List<T> items;
+            synchronized (lock) {
+                // wait for a full batch, the flush interval to pass, a flush request or shutdown
+                while (true) {
+                    if (count >= batchSize || (count > 0 && (flushRequests > 0 || !running))) {
+                        break;
+                    }
+                    if (count == 0 && !running) {
+                        return;
+                    }
+                    if (count == 0) {
+                        waitOnLock(0);
+                    } else {
+                        long remaining = oldestAddedNanos + flushIntervalNanos - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        waitOnLock(remaining);
+                    }
+                }
+                int size = Math.min(count, batchSize);
+                items = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    items.add((T) buffer[head]);
+                    buffer[head] = null;
+                    head = (head + 1) % buffer.length;
+                }
+                count -= size;
+                // items left over have not waited long, start their interval now
+                oldestAddedNanos = System.nanoTime();
+                // wake up callers waiting for space
+                lock.notifyAll();
+            }
+
+            write(items);
+
+            synchronized (lock) {
+                writtenSequence += items.size();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void write(List<T> items) {
+        long start = System.nanoTime();
+        try {
+            long backoffMillis = retryBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    writer.accept(items);
+                    written.add(items.size());
+                    return;
+                } catch (Exception e) {
+                    failed.add(items.size());
+                    if (attempt >= maxAttempts || !sleep(backoffMillis)) {
+                        dropped.add(items.size());
+                        logger.warn("Exception writing " + items.size() + " items for " + name + ", dropping them after " +
+                                attempt + " attempts", e);
+                        return;
+                    }
+                    logger.warn("Exception writing " + items.size() + " items for " + name + ", retrying in " +
+                            backoffMillis + "ms", e);
+                    retries.increment();
+                    backoffMillis *= 2;
+                }
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            batches.increment();
+            batchNanos.add(elapsed);
+            maxBatchNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted.
+     */
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted.
+     */
+    private boolean waitOnLock(long nanos) {
+        try {
+            if (nanos <= 0) {
+                lock.wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(lock, nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -26,10 +26,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -37,6 +41,31 @@ import java.util.zip.ZipInputStream;
 
 public class FileSystemUtils {
 
+    public interface FileContentWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Write a file by writing to a temporary file in the same directory and then renaming it over the original, so
+     * a crash part way through a write never leaves a truncated file behind.
+     *
+     * @param file          The file to write.
+     * @param contentWriter Writes the file contents.
+     * @throws IOException
+     */
+    public static void writeFileAtomically(File file, FileContentWriter contentWriter) throws IOException {
+        Path target = file.toPath();
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            contentWriter.write(writer);
+        }
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public static void createDirectory(String directory, boolean createParent) {
         File directoryFile = new File(directory);
         if (!directoryFile.exists()) {
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delays writes of frequently changing items so that several changes made within the write delay end up in a single
+ * write.  Items are marked dirty and a background thread writes them once the delay has passed.
+ */
+public class WriteBehindWriter {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindWriter.class);
+
+    private final String name;
+    private final long writeDelayMillis;
+    private final Consumer<String> writer;
+
+    // key to the time it was first marked dirty
+    private final Map<String, Long> dirtyItems = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean shutdown = false;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+
+    /**
+     * @param name             Name used for the background thread.
+     * @param writeDelayMillis How long to wait after the first change before writing, 0 writes immediately.
+     * @param writer           Called with the key of the item to write.
+     */
+    public WriteBehindWriter(String name, long writeDelayMillis, Consumer<String> writer) {
+        this.name = name;
+        this.writeDelayMillis = Math.max(0, writeDelayMillis);
+        this.writer = writer;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void markDirty(String key) {
+        if (shutdown || writeDelayMillis == 0) {
+            write(key);
+            return;
+        }
+        if (dirtyItems.putIfAbsent(key, System.nanoTime()) == null) {
+            scheduler.schedule(() -> flush(key), writeDelayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    /**
+     * Forget any pending write, used when the item is being deleted.
+     */
+    public void cancel(String key) {
+        dirtyItems.remove(key);
+    }
+
+    /**
+     * Write an item now if it has pending changes.
+     */
+    public void flush(String key) {
+        if (dirtyItems.remove(key) != null) {
+            write(key);
+        }
+    }
+
+    /**
+     * Write all items that have pending changes.
+     */
+    public void flush() {
+        for (String key : new ArrayList<>(dirtyItems.keySet())) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Stop the background thread and write everything that is still pending.  Changes made after shutdown are
+     * written immediately.
+     */
+    public void shutdown() {
+        shutdown = true;
+        List<Runnable> pending = scheduler.shutdownNow();
+        if (logger.isDebugEnabled()) {
+            logger.debug(name + " shutting down, " + pending.size() + " pending writes");
+        }
+        flush();
+    }
+
+    public int getDirtyCount() {
+        return dirtyItems.size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long writeCount = writes.sum();
+        metrics.put("writeDelayMillis", writeDelayMillis);
+        metrics.put("dirtyCount", getDirtyCount());
+        long now = System.nanoTime();
+        long oldestDirtyNanos = 0;
+        for (Long dirtySince : dirtyItems.values()) {
+            oldestDirtyNanos = Math.max(oldestDirtyNanos, now - dirtySince);
+        }
+        metrics.put("oldestDirtyAgeMillis", oldestDirtyNanos / 1_000_000.0);
+        metrics.put("writes", writeCount);
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("failures", failures.sum());
+        metrics.put("flushLatencyAvgMillis", writeCount > 0 ? writeNanos.sum() / writeCount / 1_000_000.0 : 0.0);
+        metrics.put("flushLatencyMaxMillis", maxWriteNanos.get() / 1_000_000.0);
+        return metrics;
+    }
+
+    private void write(String key) {
+        long start = System.nanoTime();
+        try {
+            writer.accept(key);
+        } catch (Exception e) {
+            failures.increment();
+            logger.warn("Exception writing " + key + " for " + name, e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            writes.increment();
+            writeNanos.add(elapsed);
+            maxWriteNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+}
@@ -27,7 +27,7 @@ public class ConnectionProviderImpl implements ConnectionProvider {
 
     @Override
     public Connection getConnection() throws SQLException {
-        return DatasourceFactory.getDataSource().getConnection();
+        return DatasourceFactory.getDataSource(DatasourceFactory.SCHEDULER).getConnection();
     }
 
     @Override
@@ -19,39 +19,100 @@
 package com.parrotha.internal.database;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.parrotha.internal.integration.ConfigurationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.beans.PropertyVetoException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Creates the connection pools.  The event history and scheduler can be given their own pool, or their own database,
+ * by adding a database.events or database.scheduler section to the configuration; without one they share the
+ * default pool.
+ */
 public class DatasourceFactory {
     private static final Logger logger = LoggerFactory.getLogger(DatasourceFactory.class);
 
-    private static ComboPooledDataSource dataSource;
+    public static final String DEFAULT = "default";
+    public static final String EVENTS = "events";
+    public static final String SCHEDULER = "scheduler";
+
+    private static ConfigurationService configurationService;
+    private static final Map<String, PooledDataSource> dataSources = new LinkedHashMap<>();
+
+    public static synchronized void setConfigurationService(ConfigurationService configurationService1) {
+        configurationService = configurationService1;
+    }
 
-    public static ComboPooledDataSource getDataSource() {
+    public static PooledDataSource getDataSource() {
+        return getDataSource(DEFAULT);
+    }
+
+    public static synchronized PooledDataSource getDataSource(String name) {
+        if (!DEFAULT.equals(name) && !DatasourceSettings.isConfigured(configurationService, name)) {
+            return getDataSource(DEFAULT);
+        }
+        PooledDataSource dataSource = dataSources.get(name);
         if (dataSource == null) {
-            dataSource = new ComboPooledDataSource();
-            try {
-                //TODO: get these settings from the configuration.yaml file, we could be using an external database
-                dataSource.setDriverClass("org.hsqldb.jdbcDriver"); //loads the jdbc driver
-                dataSource.setJdbcUrl("jdbc:hsqldb:file:database/testdb");
-                dataSource.setUser("SA");
-                dataSource.setPassword("");
-            } catch (PropertyVetoException e) {
-                logger.warn("Exception", e);
+            dataSource = createDataSource(name, DatasourceSettings.fromConfiguration(configurationService, name));
+            dataSources.put(name, dataSource);
+        }
+        return dataSource;
+    }
+
+    static PooledDataSource createDataSource(String name, DatasourceSettings settings) {
+        ComboPooledDataSource comboPooledDataSource = new ComboPooledDataSource(name);
+        try {
+            comboPooledDataSource.setDriverClass(settings.getDriverClass()); //loads the jdbc driver
+        } catch (PropertyVetoException e) {
+            logger.warn("Exception", e);
+        }
+        comboPooledDataSource.setJdbcUrl(settings.getJdbcUrl());
+        comboPooledDataSource.setUser(settings.getUser());
+        comboPooledDataSource.setPassword(settings.getPassword());
+        comboPooledDataSource.setInitialPoolSize(settings.getMinPoolSize());
+        comboPooledDataSource.setMinPoolSize(settings.getMinPoolSize());
+        comboPooledDataSource.setMaxPoolSize(settings.getMaxPoolSize());
+        comboPooledDataSource.setAcquireIncrement(1);
+        // the same few queries are run over and over, so keep them prepared
+        comboPooledDataSource.setMaxStatementsPerConnection(settings.getMaxStatementsPerConnection());
+        comboPooledDataSource.setCheckoutTimeout(settings.getCheckoutTimeoutMillis());
+        comboPooledDataSource.setMaxIdleTime(settings.getMaxIdleTimeSeconds());
+
+        PooledDataSource dataSource = new PooledDataSource(name, comboPooledDataSource, settings);
+        if (!settings.getHsqldbStatements().isEmpty()) {
+            try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement()) {
+                for (String sql : settings.getHsqldbStatements()) {
+                    statement.execute(sql);
+                }
+            } catch (SQLException e) {
+                logger.warn("Exception applying database settings for " + name, e);
             }
         }
         return dataSource;
     }
 
-    public static void setDataSource(ComboPooledDataSource dataSource1) {
-        dataSource = dataSource1;
+    public static synchronized void setDataSource(String name, PooledDataSource dataSource) {
+        dataSources.put(name, dataSource);
     }
 
-    public static void shutdown() {
-        if (dataSource != null)
+    public static synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (PooledDataSource dataSource : dataSources.values()) {
+            metrics.put(dataSource.getName(), dataSource.getMetrics());
+        }
+        return metrics;
+    }
+
+    public static synchronized void shutdown() {
+        for (PooledDataSource dataSource : dataSources.values()) {
             dataSource.close();
-        dataSource = null;
+        }
+        dataSources.clear();
     }
 }
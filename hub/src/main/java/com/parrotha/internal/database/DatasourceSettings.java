@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.database;
+
+import com.parrotha.internal.integration.ConfigurationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection and pool settings of a data source, read from the database section of config/configuration.yaml.
+ * Settings of a named data source are read from database.&lt;name&gt; and fall back to the database section, for
+ * example:
+ * <pre>
+ * database:
+ *   maxPoolSize: 10
+ *   writeDelayMillis: 500
+ *   events:
+ *     maxPoolSize: 4
+ *   scheduler:
+ *     jdbcUrl: jdbc:hsqldb:hsql://localhost/parrothub
+ * </pre>
+ */
+public class DatasourceSettings {
+    static final String HSQLDB_FILE_PREFIX = "jdbc:hsqldb:file:";
+
+    private String driverClass = "org.hsqldb.jdbcDriver";
+    private String jdbcUrl = HSQLDB_FILE_PREFIX + "database/testdb";
+    private String user = "SA";
+    private String password = "";
+    private int minPoolSize = 1;
+    private int maxPoolSize = 10;
+    private int maxStatementsPerConnection = 50;
+    private int checkoutTimeoutMillis = 10000;
+    private int maxIdleTimeSeconds = 600;
+
+    // HSQLDB file settings, null leaves the database setting as it is
+    private Integer cacheRows;
+    private Integer cacheSizeKb;
+    private Integer logSizeMb;
+    private Integer writeDelayMillis;
+
+    /**
+     * Check if the named data source has its own settings.  Data sources without settings share the default pool.
+     */
+    public static boolean isConfigured(ConfigurationService configurationService, String name) {
+        return configurationService != null && configurationService.getConfigurationValue("database." + name) instanceof Map;
+    }
+
+    public static DatasourceSettings fromConfiguration(ConfigurationService configurationService, String name) {
+        DatasourceSettings settings = new DatasourceSettings();
+        if (configurationService == null) {
+            return settings;
+        }
+        String prefix = "database." + name + ".";
+        settings.driverClass = getString(configurationService, prefix, "driverClass", settings.driverClass);
+        settings.jdbcUrl = getString(configurationService, prefix, "jdbcUrl", settings.jdbcUrl);
+        settings.user = getString(configurationService, prefix, "user", settings.user);
+        settings.password = getString(configurationService, prefix, "password", settings.password);
+        settings.minPoolSize = getInt(configurationService, prefix, "minPoolSize", settings.minPoolSize);
+        settings.maxPoolSize = Math.max(settings.minPoolSize, getInt(configurationService, prefix, "maxPoolSize", settings.maxPoolSize));
+        settings.maxStatementsPerConnection = getInt(configurationService, prefix, "maxStatementsPerConnection",
+                settings.maxStatementsPerConnection);
+        settings.checkoutTimeoutMillis = getInt(configurationService, prefix, "checkoutTimeoutMillis", settings.checkoutTimeoutMillis);
+        settings.maxIdleTimeSeconds = getInt(configurationService, prefix, "maxIdleTimeSeconds", settings.maxIdleTimeSeconds);
+        settings.cacheRows = getInteger(configurationService, prefix, "cacheRows");
+        settings.cacheSizeKb = getInteger(configurationService, prefix, "cacheSizeKb");
+        settings.logSizeMb = getInteger(configurationService, prefix, "logSizeMb");
+        settings.writeDelayMillis = getInteger(configurationService, prefix, "writeDelayMillis");
+        return settings;
+    }
+
+    private static String getString(ConfigurationService configurationService, String prefix, String key, String defaultValue) {
+        return configurationService.getConfigurationValue(prefix + key,
+                configurationService.getConfigurationValue("database." + key, defaultValue));
+    }
+
+    private static int getInt(ConfigurationService configurationService, String prefix, String key, int defaultValue) {
+        return configurationService.getConfigurationValue(prefix + key,
+                configurationService.getConfigurationValue("database." + key, defaultValue));
+    }
+
+    private static Integer getInteger(ConfigurationService configurationService, String prefix, String key) {
+        int value = getInt(configurationService, prefix, key, -1);
+        return value > -1 ? value : null;
+    }
+
+    /**
+     * @return the path of the database files for an HSQLDB file database, otherwise null.
+     */
+    public String getHsqldbFilePath() {
+        if (!jdbcUrl.startsWith(HSQLDB_FILE_PREFIX)) {
+            return null;
+        }
+        String path = jdbcUrl.substring(HSQLDB_FILE_PREFIX.length());
+        int propertiesIndex = path.indexOf(';');
+        return propertiesIndex > -1 ? path.substring(0, propertiesIndex) : path;
+    }
+
+    /**
+     * SQL statements that apply the HSQLDB cache and log settings.  These are stored in the database so they are run
+     * each time the pool is created.
+     */
+    public List<String> getHsqldbStatements() {
+        List<String> statements = new ArrayList<>();
+        if (getHsqldbFilePath() == null) {
+            return statements;
+        }
+        if (cacheRows != null) {
+            statements.add("SET FILES CACHE ROWS " + cacheRows);
+        }
+        if (cacheSizeKb != null) {
+            statements.add("SET FILES CACHE SIZE " + cacheSizeKb);
+        }
+        if (logSizeMb != null) {
+            statements.add("SET FILES LOG SIZE " + logSizeMb);
+        }
+        if (writeDelayMillis != null) {
+            // a longer delay batches more writes to disk, but more recent changes are lost if the hub loses power
+            statements.add("SET FILES WRITE DELAY " + writeDelayMillis + " MILLIS");
+        }
+        return statements;
+    }
+
+    public String getDriverClass() {
+        return driverClass;
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public int getMaxStatementsPerConnection() {
+        return maxStatementsPerConnection;
+    }
+
+    public int getCheckoutTimeoutMillis() {
+        return checkoutTimeoutMillis;
+    }
+
+    public int getMaxIdleTimeSeconds() {
+        return maxIdleTimeSeconds;
+    }
+}
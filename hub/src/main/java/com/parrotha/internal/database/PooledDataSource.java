@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.database;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool that keeps track of how long callers wait for a connection and how busy the pool is.
+ */
+public class PooledDataSource implements DataSource {
+    private static final Logger logger = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private final String name;
+    private final ComboPooledDataSource dataSource;
+    private final DatasourceSettings settings;
+
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder checkoutFailures = new LongAdder();
+    private final LongAdder checkoutWaitNanos = new LongAdder();
+    private final LongAccumulator maxCheckoutWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public PooledDataSource(String name, ComboPooledDataSource dataSource, DatasourceSettings settings) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.settings = settings;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DatasourceSettings getSettings() {
+        return settings;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = dataSource.getConnection();
+            recordCheckout(start);
+            return connection;
+        } catch (SQLException e) {
+            checkoutFailures.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = dataSource.getConnection(username, password);
+            recordCheckout(start);
+            return connection;
+        } catch (SQLException e) {
+            checkoutFailures.increment();
+            throw e;
+        }
+    }
+
+    private void recordCheckout(long start) {
+        long waitNanos = System.nanoTime() - start;
+        checkouts.increment();
+        checkoutWaitNanos.add(waitNanos);
+        maxCheckoutWaitNanos.accumulate(waitNanos);
+    }
+
+    public void close() {
+        dataSource.close();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("jdbcUrl", settings.getJdbcUrl());
+        metrics.put("maxPoolSize", settings.getMaxPoolSize());
+        try {
+            int busyConnections = dataSource.getNumBusyConnectionsDefaultUser();
+            metrics.put("connections", dataSource.getNumConnectionsDefaultUser());
+            metrics.put("busyConnections", busyConnections);
+            metrics.put("idleConnections", dataSource.getNumIdleConnectionsDefaultUser());
+            metrics.put("threadsAwaitingConnection", dataSource.getThreadsAwaitingConnectionDefaultUser());
+            metrics.put("utilization", settings.getMaxPoolSize() > 0 ? (double) busyConnections / settings.getMaxPoolSize() : 0.0);
+            metrics.put("cachedStatements", dataSource.getStatementCacheNumStatementsDefaultUser());
+        } catch (SQLException e) {
+            logger.debug("Unable to read pool status of " + name, e);
+        }
+        long checkoutCount = checkouts.sum();
+        metrics.put("checkouts", checkoutCount);
+        metrics.put("checkoutFailures", checkoutFailures.sum());
+        metrics.put("averageCheckoutWaitMillis",
+                checkoutCount > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(checkoutWaitNanos.sum() / checkoutCount) / 1000 : 0.0);
+        metrics.put("maxCheckoutWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxCheckoutWaitNanos.get()));
+        return metrics;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(dataSource)) {
+            return iface.cast(dataSource);
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(dataSource) || dataSource.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates short, increasing string keys for history tables.  Keys are the current time in milliseconds with a
+ * 16 bit counter, written as fixed width base 36 so that sorting the strings sorts the keys by creation time.
+ */
+public class SequentialIdGenerator {
+    private static final int KEY_LENGTH = 13;
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    public String nextId() {
+        long timeId = System.currentTimeMillis() << 16;
+        long id = lastId.updateAndGet(last -> Math.max(last + 1, timeId));
+        String key = Long.toString(id, 36);
+        if (key.length() >= KEY_LENGTH) {
+            return key;
+        }
+        StringBuilder paddedKey = new StringBuilder(KEY_LENGTH);
+        for (int i = key.length(); i < KEY_LENGTH; i++) {
+            paddedKey.append('0');
+        }
+        return paddedKey.append(key).toString();
+    }
+}
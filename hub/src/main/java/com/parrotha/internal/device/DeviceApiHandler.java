@@ -22,6 +22,8 @@ import com.parrotha.app.EventWrapper;
 import com.parrotha.exception.DeviceHandlerInUseException;
 import com.parrotha.internal.BaseApiHandler;
 import com.parrotha.internal.entity.EntityService;
+import com.parrotha.internal.hub.EventApiHandler;
+import com.parrotha.internal.hub.EventBus;
 import groovy.json.JsonBuilder;
 import groovy.json.JsonSlurper;
 import io.javalin.Javalin;
@@ -43,29 +45,17 @@ import java.util.concurrent.Future;
 public class DeviceApiHandler extends BaseApiHandler {
     DeviceService deviceService;
     EntityService entityService;
+    EventBus eventBus;
 
-    public DeviceApiHandler(DeviceService deviceService, EntityService entityService) {
+    public DeviceApiHandler(DeviceService deviceService, EntityService entityService, EventBus eventBus) {
         this.deviceService = deviceService;
         this.entityService = entityService;
+        this.eventBus = eventBus;
     }
 
     public void setupApi(Javalin app) {
-        app.ws("/api/devices/:id/events", ws -> {
-            final Map<String, DeviceSocketEventListener> deviceSocketEventListenerMap = new HashMap<>();
-            ws.onConnect(ctx -> {
-                String deviceId = ctx.pathParam("id");
-                DeviceSocketEventListener deviceEventListener = new DeviceSocketEventListener();
-                deviceEventListener.registerCtx(deviceId, ctx);
-                deviceSocketEventListenerMap.put(ctx.getSessionId(), deviceEventListener);
-                entityService.registerEventListener(deviceEventListener);
-            });
-
-            ws.onClose(ctx -> {
-                DeviceSocketEventListener deviceEventListener = deviceSocketEventListenerMap.remove(ctx.getSessionId());
-                entityService.unregisterEventListener(deviceEventListener);
-                deviceEventListener.unregisterCtx();
-            });
-        });
+        app.ws("/api/devices/:id/events",
+                ws -> EventApiHandler.setupEventSocket(ws, eventBus, ctx -> EventBus.Filter.forDevice(ctx.pathParam("id"))));
 
         app.get("/api/devices/:id/settings", ctx -> {
             String id = ctx.pathParam("id");
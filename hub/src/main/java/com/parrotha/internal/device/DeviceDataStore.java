@@ -22,10 +22,16 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 public interface DeviceDataStore {
     Collection<Device> getAllDevices();
 
+    /**
+     * Read only view of all devices, does not copy the devices.
+     */
+    Collection<DeviceSnapshot> getAllDeviceSnapshots();
+
     Collection<Device> getDevicesByCapability(String capability);
 
     Collection<Device> getDevicesByDeviceHandler(String deviceHandlerId);
@@ -36,6 +42,18 @@ public interface DeviceDataStore {
 
     Device getDeviceByIntegrationAndDNI(String integrationId, String deviceNetworkId);
 
+    /**
+     * Same as {@link #getDeviceById(String)} but returns the stored immutable snapshot instead of a copy.
+     */
+    DeviceSnapshot getDeviceSnapshotById(String id);
+
+    DeviceSnapshot getDeviceSnapshotByIntegrationAndDNI(String integrationId, String deviceNetworkId);
+
+    /**
+     * Changes whenever a device network id is added, changed or removed.
+     */
+    long getDeviceNetworkIdVersion();
+
     String createDevice(Device device);
 
     List<Device> getDeviceChildDevices(String parentDeviceId);
@@ -53,6 +71,14 @@ public interface DeviceDataStore {
 
     boolean updateDeviceState(String deviceId, Map deviceState);
 
+    /**
+     * Replace the state of a device with the result of the update, the update is applied to the current state while no
+     * other change to the device can be made.
+     */
+    boolean updateDeviceState(String deviceId, UnaryOperator<Map> stateUpdate);
+
+    boolean updateDeviceCurrentState(String deviceId, State currentState);
+
     Collection<DeviceHandler> getAllDeviceHandlers();
 
     DeviceHandler getDeviceHandler(String id);
@@ -74,4 +100,9 @@ public interface DeviceDataStore {
     boolean updateDeviceHandlerSourceCode(String id, String sourceCode);
 
     String addDeviceHandlerSourceCode(String sourceCode, DeviceHandler deviceHandler);
+
+    /**
+     * Write any pending device changes to storage.
+     */
+    void shutdown();
 }
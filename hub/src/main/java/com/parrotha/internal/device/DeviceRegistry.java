@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * In memory registry of device snapshots, indexed by integration and device network id, parent device, parent
+ * automation app, integration and device handler.
+ * <p>
+ * Lookups do not lock.  Changes to a device are made while holding the lock for that device, so the device and all of
+ * its index entries are updated together and writers to different devices do not block each other.  Index lookups are
+ * checked against the current snapshot, so a reader never gets a device that no longer matches the index it was found
+ * through.
+ */
+class DeviceRegistry {
+    // shared by all registries so that a reloaded registry never repeats a version
+    private static final AtomicLong deviceNetworkIdVersion = new AtomicLong();
+
+    private final Map<String, DeviceSnapshot> devices = new ConcurrentHashMap<>();
+    private final Map<String, String> dniIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> parentDeviceIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> parentAppIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> integrationIndex = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> deviceHandlerIndex = new ConcurrentHashMap<>();
+
+    // one lock per device, removed along with the device
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    DeviceSnapshot get(String deviceId) {
+        return devices.get(deviceId);
+    }
+
+    Collection<DeviceSnapshot> getAll() {
+        return Collections.unmodifiableCollection(devices.values());
+    }
+
+    int size() {
+        return devices.size();
+    }
+
+    /**
+     * Changes whenever a device network id is added, changed or removed, so lookups by device network id can be cached
+     * until the next change.  Read it before the lookups whose results are cached.
+     */
+    long getDeviceNetworkIdVersion() {
+        return deviceNetworkIdVersion.get();
+    }
+
+    DeviceSnapshot getByIntegrationAndDNI(String integrationId, String deviceNetworkId) {
+        if (deviceNetworkId == null) {
+            return null;
+        }
+        String key = dniKey(integrationId, deviceNetworkId);
+        String deviceId = dniIndex.get(key);
+        if (deviceId == null) {
+            return null;
+        }
+        DeviceSnapshot device = devices.get(deviceId);
+        if (device != null && key.equals(dniKey(device))) {
+            return device;
+        }
+        return null;
+    }
+
+    List<DeviceSnapshot> getByParentDevice(String parentDeviceId) {
+        return lookup(parentDeviceIndex, parentDeviceId, DeviceSnapshot::getParentDeviceId);
+    }
+
+    List<DeviceSnapshot> getByParentApp(String parentInstalledAutomationAppId) {
+        return lookup(parentAppIndex, parentInstalledAutomationAppId, DeviceSnapshot::getParentInstalledAutomationAppId);
+    }
+
+    List<DeviceSnapshot> getByIntegration(String integrationId) {
+        return lookup(integrationIndex, integrationId, DeviceSnapshot::getIntegrationId);
+    }
+
+    List<DeviceSnapshot> getByDeviceHandler(String deviceHandlerId) {
+        return lookup(deviceHandlerIndex, deviceHandlerId, DeviceSnapshot::getDeviceHandlerId);
+    }
+
+    /**
+     * Add a device or replace it if it already exists.
+     */
+    void put(DeviceSnapshot device) {
+        withLock(device.getId(), () -> {
+            DeviceSnapshot existing = devices.put(device.getId(), device);
+            reindex(existing, device);
+            return null;
+        });
+    }
+
+    /**
+     * Apply an update to an existing device.
+     *
+     * @return the updated device or null if the device does not exist
+     */
+    DeviceSnapshot update(String deviceId, UnaryOperator<DeviceSnapshot> update) {
+        return withLock(deviceId, () -> {
+            DeviceSnapshot existing = devices.get(deviceId);
+            if (existing == null) {
+                return null;
+            }
+            DeviceSnapshot updated = update.apply(existing);
+            devices.put(deviceId, updated);
+            reindex(existing, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Replace a device only if it has not changed since expected was read.
+     */
+    boolean replace(String deviceId, DeviceSnapshot expected, DeviceSnapshot replacement) {
+        return withLock(deviceId, () -> {
+            if (!devices.replace(deviceId, expected, replacement)) {
+                return false;
+            }
+            reindex(expected, replacement);
+            return true;
+        });
+    }
+
+    DeviceSnapshot remove(String deviceId) {
+        return withLock(deviceId, () -> {
+            DeviceSnapshot existing = devices.remove(deviceId);
+            if (existing != null) {
+                reindex(existing, null);
+            }
+            return existing;
+        });
+    }
+
+    /**
+     * Run a change to a device while holding its lock.  The lock is dropped once the device no longer exists, a thread
+     * that was waiting on a dropped lock takes the new one instead.
+     */
+    private <T> T withLock(String deviceId, Supplier<T> change) {
+        while (true) {
+            Object lock = locks.computeIfAbsent(deviceId, id -> new Object());
+            synchronized (lock) {
+                if (locks.get(deviceId) != lock) {
+                    continue;
+                }
+                try {
+                    return change.get();
+                } finally {
+                    if (!devices.containsKey(deviceId)) {
+                        locks.remove(deviceId, lock);
+                    }
+                }
+            }
+        }
+    }
+
+    static String dniKey(String integrationId, String deviceNetworkId) {
+        return (integrationId != null ? integrationId : "null") + ":" + deviceNetworkId.toUpperCase();
+    }
+
+    private static String dniKey(DeviceSnapshot device) {
+        return device.getDeviceNetworkId() != null ? dniKey(device.getIntegrationId(), device.getDeviceNetworkId()) : null;
+    }
+
+    // called while holding the lock for the device
+    private void reindex(DeviceSnapshot existing, DeviceSnapshot updated) {
+        String deviceId = existing != null ? existing.getId() : updated.getId();
+
+        String oldDniKey = existing != null ? dniKey(existing) : null;
+        String newDniKey = updated != null ? dniKey(updated) : null;
+        if (oldDniKey != null && !oldDniKey.equals(newDniKey)) {
+            dniIndex.remove(oldDniKey, deviceId);
+        }
+        if (newDniKey != null) {
+            dniIndex.put(newDniKey, deviceId);
+        }
+        if (!Objects.equals(oldDniKey, newDniKey)) {
+            // after the index change, so a reader that saw the new version also sees the new index
+            deviceNetworkIdVersion.incrementAndGet();
+        }
+
+        reindex(parentDeviceIndex, deviceId, existing, updated, DeviceSnapshot::getParentDeviceId);
+        reindex(parentAppIndex, deviceId, existing, updated, DeviceSnapshot::getParentInstalledAutomationAppId);
+        reindex(integrationIndex, deviceId, existing, updated, DeviceSnapshot::getIntegrationId);
+        reindex(deviceHandlerIndex, deviceId, existing, updated, DeviceSnapshot::getDeviceHandlerId);
+    }
+
+    private static void reindex(Map<String, Set<String>> index, String deviceId, DeviceSnapshot existing, DeviceSnapshot updated,
+                                Function<DeviceSnapshot, String> keyFunction) {
+        String oldKey = existing != null ? keyFunction.apply(existing) : null;
+        String newKey = updated != null ? keyFunction.apply(updated) : null;
+        if (Objects.equals(oldKey, newKey)) {
+            return;
+        }
+        if (StringUtils.isNotEmpty(oldKey)) {
+            // compute keeps removal of an empty set from racing with another device being added to it
+            index.computeIfPresent(oldKey, (key, ids) -> {
+                ids.remove(deviceId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+        if (StringUtils.isNotEmpty(newKey)) {
+            index.compute(newKey, (key, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                }
+                ids.add(deviceId);
+                return ids;
+            });
+        }
+    }
+
+    private List<DeviceSnapshot> lookup(Map<String, Set<String>> index, String key, Function<DeviceSnapshot, String> keyFunction) {
+        List<DeviceSnapshot> result = new ArrayList<>();
+        if (StringUtils.isEmpty(key)) {
+            return result;
+        }
+        Set<String> deviceIds = index.get(key);
+        if (deviceIds != null) {
+            for (String deviceId : deviceIds) {
+                DeviceSnapshot device = devices.get(deviceId);
+                if (device != null && key.equals(keyFunction.apply(device))) {
+                    result.add(device);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -106,6 +106,18 @@ public class DeviceScriptDelegateImpl extends EntityScriptDelegateCommon impleme
         this.state = new ChangeTrackingMap(device.getState());
     }
 
+    /**
+     * Point the delegate at a newer copy of its device so that the delegate can be reused for the next script call.
+     *
+     * @param device The device.
+     */
+    public void setDevice(Device device) {
+        this.device = new DeviceWrapperImpl(device, deviceService, entityService, locationService);
+        this.state = new ChangeTrackingMap(device.getState());
+        // the zigbee helper holds on to the device wrapper
+        this.zigbee = null;
+    }
+
     public void sendHubCommand(HubAction action) {
         new Thread(() -> {
             if (action.getDni() == null) {
@@ -30,17 +30,16 @@ import com.parrotha.internal.Main;
 import com.parrotha.internal.extension.ExtensionService;
 import com.parrotha.internal.extension.ExtensionState;
 import com.parrotha.internal.extension.ExtensionStateListener;
+import com.parrotha.internal.groovy.ScriptClassCache;
 import com.parrotha.internal.integration.Integration;
 import com.parrotha.internal.integration.IntegrationRegistry;
 import com.parrotha.internal.script.ParrotHubDelegatingScript;
 import groovy.lang.GString;
-import groovy.lang.GroovyShell;
 import groovy.util.DelegatingScript;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.codehaus.groovy.control.CompilerConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.Yaml;
@@ -54,17 +53,22 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class DeviceService implements ExtensionStateListener {
@@ -76,6 +80,10 @@ public class DeviceService implements ExtensionStateListener {
     private IntegrationRegistry integrationRegistry;
     private DeviceDataStore deviceDataStore;
     private ExtensionService extensionService;
+    private ScriptClassCache scriptClassCache = new ScriptClassCache();
+    private DeviceStateHistory stateHistory;
+    private final List<Runnable> deviceHandlersChangedListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> deviceRemovedListeners = new CopyOnWriteArrayList<>();
 
     public DeviceService(DeviceDataStore deviceDataStore, IntegrationRegistry integrationRegistry, ExtensionService extensionService) {
         this.deviceDataStore = deviceDataStore;
@@ -89,6 +97,14 @@ public class DeviceService implements ExtensionStateListener {
         this.extensionService = extensionService;
     }
 
+    public void setScriptClassCache(ScriptClassCache scriptClassCache) {
+        this.scriptClassCache = scriptClassCache;
+    }
+
+    public void setStateHistory(DeviceStateHistory stateHistory) {
+        this.stateHistory = stateHistory;
+    }
+
     /**
      * @param parentType
      * @param parentType
@@ -166,11 +182,11 @@ public class DeviceService implements ExtensionStateListener {
                     if (obj instanceof String || obj instanceof GString) {
                         processStringRetObj(device, obj.toString());
                     } else if (obj instanceof HubAction) {
-                        HubAction hubAction = (HubAction) retObj;
+                        HubAction hubAction = (HubAction) obj;
                         if (hubAction.getDni() == null) {
                             hubAction.setDni(device.getDeviceNetworkId());
                         }
-                        processHubAction(device.getIntegration().getId(), hubAction);
+                        processHubAction(device.getIntegration() != null ? device.getIntegration().getId() : null, hubAction);
                     } else {
                         logger.warn("TODO: process this: " + obj.getClass().getName());
                     }
@@ -310,20 +326,23 @@ public class DeviceService implements ExtensionStateListener {
     }
 
     public boolean saveDeviceState(String deviceId, ChangeTrackingMap deviceState) {
-        Device existingDevice = deviceDataStore.getDeviceById(deviceId);
-        if (existingDevice != null) {
-            Map existingState = existingDevice.getState();
-            if (existingState != null) {
-                ChangeTrackingMap.ChangeSet stateChanges = deviceState.changes();
+        if (deviceDataStore.getDeviceSnapshotById(deviceId) != null) {
+            ChangeTrackingMap.ChangeSet stateChanges = deviceState.changes();
+            if (stateChanges.isEmpty()) {
+                return true;
+            }
+            // merge with the current state while the device is locked, so changes saved at the same time for the same
+            // device are not lost
+            deviceDataStore.updateDeviceState(deviceId, existingState -> {
+                // unchanged values are shared with the existing snapshot
+                Map newState = existingState != null ? new LinkedHashMap(existingState) : new LinkedHashMap();
                 for (Object key : stateChanges.getRemoved()) {
-                    existingState.remove(key);
+                    newState.remove(key);
                 }
-                existingState.putAll(stateChanges.getUpdated());
-                existingState.putAll(stateChanges.getAdded());
-                deviceDataStore.updateDeviceState(deviceId, existingState);
-            } else {
-                deviceDataStore.updateDeviceState(deviceId, deviceState);
-            }
+                newState.putAll(stateChanges.getUpdated());
+                newState.putAll(stateChanges.getAdded());
+                return newState;
+            });
         }
         return true;
     }
@@ -391,7 +410,7 @@ public class DeviceService implements ExtensionStateListener {
         if (integrationId != null) {
             Future<Boolean> removeDeviceFuture = integrationRegistry.removeDeviceAsync(integrationId, deviceNetworkId, force);
             if (removeDeviceFuture.isDone()) {
-                deviceDataStore.deleteDevice(id);
+                deleteDevice(id);
             } else {
                 devicesToRemove.put(id, removeDeviceFuture);
                 //wait for future to resolve then remove device from db
@@ -407,7 +426,7 @@ public class DeviceService implements ExtensionStateListener {
                         try {
                             Boolean result = removeDeviceFuture.get(5, TimeUnit.SECONDS);
                             if (result != null && result.booleanValue()) {
-                                deviceDataStore.deleteDevice(id);
+                                deleteDevice(id);
                             }
                         } catch (InterruptedException | ExecutionException | TimeoutException e) {
                             logger.warn("Exception while getting device future", e);
@@ -419,7 +438,7 @@ public class DeviceService implements ExtensionStateListener {
             return removeDeviceFuture;
         } else {
             // there is no integration, so just remove device.
-            boolean removedDeviceStatus = deviceDataStore.deleteDevice(id);
+            boolean removedDeviceStatus = deleteDevice(id);
             return CompletableFuture.completedFuture(removedDeviceStatus);
         }
     }
@@ -442,7 +461,21 @@ public class DeviceService implements ExtensionStateListener {
             return false;
         }
 
-        return deviceDataStore.deleteDevice(device.getId());
+        return deleteDevice(device.getId());
+    }
+
+    private boolean deleteDevice(String id) {
+        boolean deleted = deviceDataStore.deleteDevice(id);
+        if (deleted) {
+            for (Consumer<String> listener : deviceRemovedListeners) {
+                try {
+                    listener.accept(id);
+                } catch (Exception e) {
+                    logger.warn("Exception in device removed listener", e);
+                }
+            }
+        }
+        return deleted;
     }
 
     public Collection<Device> getAllDevices() {
@@ -465,34 +498,54 @@ public class DeviceService implements ExtensionStateListener {
         return deviceDataStore.getDeviceByIntegrationAndDNI(integrationId, deviceNetworkId);
     }
 
+    public Collection<DeviceSnapshot> getAllDeviceSnapshots() {
+        return deviceDataStore.getAllDeviceSnapshots();
+    }
+
+    /**
+     * Read only view of a device, use this instead of {@link #getDeviceById(String)} when the device is not modified.
+     */
+    public DeviceSnapshot getDeviceSnapshotById(String id) {
+        return deviceDataStore.getDeviceSnapshotById(id);
+    }
+
+    public DeviceSnapshot getDeviceSnapshotByIntegrationAndDNI(String integrationId, String deviceNetworkId) {
+        return deviceDataStore.getDeviceSnapshotByIntegrationAndDNI(integrationId, deviceNetworkId);
+    }
+
     public Device getDeviceByIntegrationParameters(String integrationId, Map<String, String> integrationParameters) {
-        for (Device device : getAllDevices()) {
-            if (device.getIntegration() != null
-                    && device.getIntegration().getId() != null
-                    && device.getIntegration().getId().equals(integrationId)
+        for (DeviceSnapshot device : deviceDataStore.getAllDeviceSnapshots()) {
+            if (device.getIntegrationId() != null
+                    && device.getIntegrationId().equals(integrationId)
                     && deviceMatchesIntegrationParameters(device, integrationParameters)) {
-                return device;
+                return device.toDevice();
             }
         }
         return null;
     }
 
+    /**
+     * Changes whenever a device network id is added, changed or removed, used to know when cached device lookups are stale.
+     */
+    public long getDeviceNetworkIdVersion() {
+        return deviceDataStore.getDeviceNetworkIdVersion();
+    }
+
     public boolean deviceExists(String integrationId, String deviceNetworkId, boolean includeUnaffiliated) {
-        return getDeviceByIntegrationAndDNI(includeUnaffiliated ? null : integrationId, deviceNetworkId) != null;
+        return getDeviceSnapshotByIntegrationAndDNI(includeUnaffiliated ? null : integrationId, deviceNetworkId) != null;
     }
 
     public boolean deviceExists(String integrationId, String deviceNetworkId, Map<String, String> additionalIntegrationParameters) {
         if (deviceNetworkId != null) {
-            Device device = getDeviceByIntegrationAndDNI(integrationId, deviceNetworkId);
+            DeviceSnapshot device = getDeviceSnapshotByIntegrationAndDNI(integrationId, deviceNetworkId);
             if (device != null) {
                 // check additional integration options
                 return deviceMatchesIntegrationParameters(device, additionalIntegrationParameters);
             }
         } else {
-            for (Device device : getAllDevices()) {
-                if (device.getIntegration() != null
-                        && device.getIntegration().getId() != null
-                        && device.getIntegration().getId().equals(integrationId)
+            for (DeviceSnapshot device : deviceDataStore.getAllDeviceSnapshots()) {
+                if (device.getIntegrationId() != null
+                        && device.getIntegrationId().equals(integrationId)
                         && deviceMatchesIntegrationParameters(device, additionalIntegrationParameters)) {
                     return true;
                 }
@@ -503,30 +556,56 @@ public class DeviceService implements ExtensionStateListener {
 
     protected boolean deviceMatchesIntegrationParameters(Device device, Map<String, String> additionalIntegrationParameters) {
         if (device != null && device.getIntegration() != null) {
-            //check additional integration options
-            if (additionalIntegrationParameters != null) {
-                for (String key : additionalIntegrationParameters.keySet()) {
-                    Object option = additionalIntegrationParameters.get(key);
-                    if (option == null && device.getIntegration().getOption(key) != null) {
-                        return false;
-                    }
-                    if (option != null && !option.equals(device.getIntegration().getOption(key))) {
-                        return false;
-                    }
+            return integrationOptionsMatch(device.getIntegration().getOptions(), additionalIntegrationParameters);
+        }
+        return false;
+    }
+
+    protected boolean deviceMatchesIntegrationParameters(DeviceSnapshot device, Map<String, String> additionalIntegrationParameters) {
+        if (device != null) {
+            return integrationOptionsMatch(device.getIntegrationOptions(), additionalIntegrationParameters);
+        }
+        return false;
+    }
+
+    private boolean integrationOptionsMatch(Map<String, String> options, Map<String, String> additionalIntegrationParameters) {
+        //check additional integration options
+        if (additionalIntegrationParameters != null) {
+            for (String key : additionalIntegrationParameters.keySet()) {
+                Object option = additionalIntegrationParameters.get(key);
+                Object deviceOption = options != null ? options.get(key) : null;
+                if (option == null && deviceOption != null) {
+                    return false;
+                }
+                if (option != null && !option.equals(deviceOption)) {
+                    return false;
                 }
             }
-            return true;
         }
-        return false;
+        return true;
     }
 
     public void updateDeviceState(Event event) {
-        Device d = deviceDataStore.getDeviceById(event.getDevice().getId());
         State s = new State(UUID.randomUUID().toString(), event.getName(), event.getValue(), event.getUnit(), event.getDate());
-        d.setCurrentState(s);
-        //TODO: store state history in database
-        //TODO: use write behind cache for saving device
-        deviceDataStore.updateDevice(d);
+        if (stateHistory != null) {
+            stateHistory.addState(event.getDevice().getId(), s);
+        }
+        deviceDataStore.updateDeviceCurrentState(event.getDevice().getId(), s);
+    }
+
+    public List<State> statesBetween(String deviceId, String attributeName, Date startDate, Date endDate, int maxStates) {
+        if (stateHistory == null) {
+            return Collections.emptyList();
+        }
+        return stateHistory.getStates(deviceId, attributeName, startDate, endDate, maxStates);
+    }
+
+    public List<StateAggregate> stateAggregatesBetween(String deviceId, String attributeName, Date startDate, Date endDate,
+                                                       int resolution, int maxAggregates) {
+        if (stateHistory == null) {
+            return Collections.emptyList();
+        }
+        return stateHistory.getAggregates(deviceId, attributeName, startDate, endDate, resolution, maxAggregates);
     }
 
     public void updateDeviceSetting(String id, String name, Object value) {
@@ -553,6 +632,10 @@ public class DeviceService implements ExtensionStateListener {
         if (extensionService != null) {
             extensionService.unregisterStateListener(this);
         }
+        if (stateHistory != null) {
+            stateHistory.shutdown();
+        }
+        deviceDataStore.shutdown();
     }
 
     public Collection<DeviceHandler> getAllDeviceHandlers() {
@@ -627,6 +710,7 @@ public class DeviceService implements ExtensionStateListener {
                 DeviceHandler newDeviceHandler = new DeviceHandler(id, fileName, metadata);
                 if (!newDeviceHandler.equalsIgnoreId(existingDeviceHandler)) {
                     deviceDataStore.updateDeviceHandler(newDeviceHandler);
+                    deviceHandlersChanged();
                 }
             } catch (IOException e) {
                 logger.warn("IOException while attempting to load file " + fileName, e);
@@ -681,6 +765,7 @@ public class DeviceService implements ExtensionStateListener {
                 deviceDataStore.addDeviceHandler(newDHInfo);
             }
         }
+        deviceHandlersChanged();
     }
 
     private Map<String, DeviceHandler> processDeviceHandlerInfo() {
@@ -773,11 +858,8 @@ public class DeviceService implements ExtensionStateListener {
     }
 
     private Map extractDeviceHandlerMetadata(String deviceHandlerScript) {
-        CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
-        compilerConfiguration.setScriptBaseClass("com.parrotha.internal.script.ParrotHubDelegatingScript");
-        GroovyShell shell = new GroovyShell(compilerConfiguration);
-
-        ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) shell.parse(deviceHandlerScript);
+        ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) scriptClassCache.createScript(
+                deviceHandlerScript);
         return extractDeviceHandlerMetadata(parrotHubDelegatingScript);
     }
 
@@ -809,7 +891,9 @@ public class DeviceService implements ExtensionStateListener {
         if (devicesInUse.size() > 0) {
             throw new DeviceHandlerInUseException("Device Handler in use", devicesInUse);
         } else {
-            return deviceDataStore.deleteDeviceHandler(id);
+            boolean deleted = deviceDataStore.deleteDeviceHandler(id);
+            deviceHandlersChanged();
+            return deleted;
         }
     }
 
@@ -821,9 +905,38 @@ public class DeviceService implements ExtensionStateListener {
         metadata.put("type", DeviceHandler.Type.USER);
         String dhId = deviceDataStore
                 .addDeviceHandlerSourceCode(sourceCode, new DeviceHandler(null, null, metadata));
+        deviceHandlersChanged();
         return dhId;
     }
 
+    /**
+     * Register a listener that is called after device handlers have been added, updated or removed.
+     *
+     * @param listener The listener.
+     */
+    public void addDeviceHandlersChangedListener(Runnable listener) {
+        deviceHandlersChangedListeners.add(listener);
+    }
+
+    /**
+     * Register a listener that is called with the id of a device after the device has been deleted.
+     *
+     * @param listener The listener.
+     */
+    public void addDeviceRemovedListener(Consumer<String> listener) {
+        deviceRemovedListeners.add(listener);
+    }
+
+    private void deviceHandlersChanged() {
+        for (Runnable listener : deviceHandlersChangedListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                logger.warn("Exception in device handlers changed listener", e);
+            }
+        }
+    }
+
     @Override
     public void stateUpdated(ExtensionState state) {
         String extensionId = state.getId();
@@ -857,6 +970,7 @@ public class DeviceService implements ExtensionStateListener {
             for (String dhId : dhIds) {
                 deviceDataStore.deleteDeviceHandler(dhId);
             }
+            deviceHandlersChanged();
         }
     }
 
@@ -0,0 +1,372 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import com.parrotha.internal.integration.Integration;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable point in time view of a {@link Device}.
+ * <p>
+ * The device data store keeps these instead of live {@link Device} objects so that readers can look at a device
+ * without copying it, and updates replace the snapshot with a new one that shares all unchanged parts.
+ * Use {@link #toDevice()} when a mutable {@link Device} is needed.
+ */
+public final class DeviceSnapshot {
+    private final String id;
+    private final String deviceHandlerId;
+    private final String name;
+    private final String label;
+    private final String modelName;
+    private final String manufacturerName;
+    private final String deviceNetworkId;
+    private final String parentDeviceId;
+    private final String parentInstalledAutomationAppId;
+    private final String integrationId;
+    private final Map<String, String> integrationOptions;
+    private final Map state;
+    private final Map data;
+    private final Map<String, State> currentStates;
+    private final List<DeviceSetting> settings;
+    private final Date created;
+    private final Date updated;
+
+    private DeviceSnapshot(String id, String deviceHandlerId, String name, String label, String modelName, String manufacturerName,
+                           String deviceNetworkId, String parentDeviceId, String parentInstalledAutomationAppId, String integrationId,
+                           Map<String, String> integrationOptions, Map state, Map data, Map<String, State> currentStates,
+                           List<DeviceSetting> settings, Date created, Date updated) {
+        this.id = id;
+        this.deviceHandlerId = deviceHandlerId;
+        this.name = name;
+        this.label = label;
+        this.modelName = modelName;
+        this.manufacturerName = manufacturerName;
+        this.deviceNetworkId = deviceNetworkId;
+        this.parentDeviceId = parentDeviceId;
+        this.parentInstalledAutomationAppId = parentInstalledAutomationAppId;
+        this.integrationId = integrationId;
+        this.integrationOptions = integrationOptions;
+        this.state = state;
+        this.data = data;
+        this.currentStates = currentStates;
+        this.settings = settings;
+        this.created = created;
+        this.updated = updated;
+    }
+
+    public static DeviceSnapshot of(Device device) {
+        Integration integration = device.getIntegration();
+        return new DeviceSnapshot(device.getId(), device.getDeviceHandlerId(), device.getName(), device.getLabel(), device.getModelName(),
+                device.getManufacturerName(), device.getDeviceNetworkId(), device.getParentDeviceId(),
+                device.getParentInstalledAutomationAppId(), integration.getId(), freezeOptions(integration.getOptions()),
+                (Map) freeze(device.getState()), (Map) freeze(device.getData()), freezeCurrentStates(device.getCurrentStates()),
+                freezeSettings(device.getSettings()), copyDate(device.getCreated()), copyDate(device.getUpdated()));
+    }
+
+    /**
+     * Create a mutable copy of this device.  Maps and lists in state and data are copied, values are shared.
+     */
+    public Device toDevice() {
+        Device device = new Device();
+        device.setId(id);
+        device.setDeviceHandlerId(deviceHandlerId);
+        device.setName(name);
+        device.setLabel(label);
+        device.setModelName(modelName);
+        device.setManufacturerName(manufacturerName);
+        device.setDeviceNetworkId(deviceNetworkId);
+        device.setParentDeviceId(parentDeviceId);
+        device.setParentInstalledAutomationAppId(parentInstalledAutomationAppId);
+        Integration integration = new Integration();
+        integration.setId(integrationId);
+        integration.setOptions(integrationOptions != null ? new HashMap<>(integrationOptions) : null);
+        device.setIntegration(integration);
+        device.setState((Map) thaw(state));
+        device.setData((Map) thaw(data));
+        device.setCurrentStates(currentStates != null ? new HashMap<>(currentStates) : null);
+        if (settings != null) {
+            List<DeviceSetting> settingsCopy = new ArrayList<>(settings.size());
+            for (DeviceSetting setting : settings) {
+                settingsCopy.add(new DeviceSetting(setting.toMap()));
+            }
+            device.setSettings(settingsCopy);
+        }
+        device.setCreated(copyDate(created));
+        device.setUpdated(copyDate(updated));
+        return device;
+    }
+
+    /**
+     * Apply the fields that the data store allows a device update to change.
+     */
+    DeviceSnapshot withUpdatesFrom(Device device) {
+        Integration integration = device.getIntegration();
+        return new DeviceSnapshot(id, device.getDeviceHandlerId(), device.getName(), device.getLabel(), modelName, manufacturerName,
+                device.getDeviceNetworkId(), parentDeviceId, parentInstalledAutomationAppId,
+                integration != null ? integration.getId() : integrationId, integrationOptions,
+                (Map) freeze(device.getState()), (Map) freeze(device.getData()), freezeCurrentStates(device.getCurrentStates()),
+                freezeSettings(device.getSettings()), created, new Date());
+    }
+
+    DeviceSnapshot withState(Map newState) {
+        return new DeviceSnapshot(id, deviceHandlerId, name, label, modelName, manufacturerName, deviceNetworkId, parentDeviceId,
+                parentInstalledAutomationAppId, integrationId, integrationOptions, (Map) freeze(newState), data, currentStates, settings,
+                created, updated);
+    }
+
+    DeviceSnapshot withCurrentState(State currentState) {
+        Map<String, State> newCurrentStates = currentStates != null ? new HashMap<>(currentStates) : new HashMap<>();
+        newCurrentStates.put(currentState.getName(), currentState);
+        return new DeviceSnapshot(id, deviceHandlerId, name, label, modelName, manufacturerName, deviceNetworkId, parentDeviceId,
+                parentInstalledAutomationAppId, integrationId, integrationOptions, state, data,
+                Collections.unmodifiableMap(newCurrentStates), settings, created, new Date());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDeviceHandlerId() {
+        return deviceHandlerId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getDisplayName() {
+        return label == null ? name : label;
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public String getManufacturerName() {
+        return manufacturerName;
+    }
+
+    public String getDeviceNetworkId() {
+        return deviceNetworkId;
+    }
+
+    public String getParentDeviceId() {
+        return parentDeviceId;
+    }
+
+    public String getParentInstalledAutomationAppId() {
+        return parentInstalledAutomationAppId;
+    }
+
+    public String getIntegrationId() {
+        return integrationId;
+    }
+
+    public String getIntegrationOption(String option) {
+        return integrationOptions != null ? integrationOptions.get(option) : null;
+    }
+
+    public Map<String, String> getIntegrationOptions() {
+        return integrationOptions;
+    }
+
+    /**
+     * @return read only view of the device state, nested maps and lists are read only as well.
+     */
+    public Map getState() {
+        return state;
+    }
+
+    /**
+     * @return read only view of the device data, nested maps and lists are read only as well.
+     */
+    public Map getData() {
+        return data;
+    }
+
+    public Object getDataValue(String key) {
+        return data != null ? data.get(key) : null;
+    }
+
+    public Map<String, State> getCurrentStates() {
+        return currentStates;
+    }
+
+    public State currentState(String attributeName) {
+        return currentStates != null ? currentStates.get(attributeName) : null;
+    }
+
+    public Map<String, Object> getSettingsMap() {
+        Map<String, Object> settingsMap = new HashMap<>();
+        if (settings != null) {
+            for (DeviceSetting setting : settings) {
+                settingsMap.put(setting.getName(), setting.getValueAsType());
+            }
+        }
+        return settingsMap;
+    }
+
+    List<DeviceSetting> getSettings() {
+        return settings;
+    }
+
+    public Date getCreated() {
+        return copyDate(created);
+    }
+
+    public Date getUpdated() {
+        return copyDate(updated);
+    }
+
+    private static Date copyDate(Date date) {
+        return date != null ? new Date(date.getTime()) : null;
+    }
+
+    private static Map<String, String> freezeOptions(Map<String, String> options) {
+        return options != null ? Collections.unmodifiableMap(new HashMap<>(options)) : null;
+    }
+
+    private static Map<String, State> freezeCurrentStates(Map<String, State> currentStates) {
+        // State has no setters so the values can be shared
+        return currentStates != null ? Collections.unmodifiableMap(new HashMap<>(currentStates)) : null;
+    }
+
+    private static List<DeviceSetting> freezeSettings(List<DeviceSetting> settings) {
+        if (settings == null) {
+            return null;
+        }
+        List<DeviceSetting> settingsCopy = new ArrayList<>(settings.size());
+        for (DeviceSetting setting : settings) {
+            settingsCopy.add(new DeviceSetting(setting.toMap()));
+        }
+        return Collections.unmodifiableList(settingsCopy);
+    }
+
+    /**
+     * Make a read only copy of a tree of maps and lists.  Parts of the tree that are already frozen are shared.
+     */
+    static Object freeze(Object value) {
+        if (value instanceof FrozenMap || value instanceof FrozenList) {
+            return value;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), freeze(entry.getValue()));
+            }
+            return new FrozenMap(copy);
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object item : (List<?>) value) {
+                copy.add(freeze(item));
+            }
+            return new FrozenList(copy);
+        }
+        if (value instanceof Date) {
+            return copyDate((Date) value);
+        }
+        return value;
+    }
+
+    /**
+     * Make a mutable copy of a tree of maps and lists.
+     */
+    static Object thaw(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), thaw(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object item : (List<?>) value) {
+                copy.add(thaw(item));
+            }
+            return copy;
+        }
+        if (value instanceof Date) {
+            return copyDate((Date) value);
+        }
+        return value;
+    }
+
+    private static final class FrozenMap extends AbstractMap<Object, Object> implements Serializable {
+        private final Map<Object, Object> map;
+
+        private FrozenMap(Map<Object, Object> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Set<Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableMap(map).entrySet();
+        }
+
+        @Override
+        public Object get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+
+    private static final class FrozenList extends AbstractList<Object> implements Serializable {
+        private final List<Object> list;
+
+        private FrozenList(List<Object> list) {
+            this.list = list;
+        }
+
+        @Override
+        public Object get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+}
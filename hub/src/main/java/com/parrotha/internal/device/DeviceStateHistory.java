@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import com.parrotha.internal.common.BatchWriter;
+import com.parrotha.internal.database.SequentialIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * History of device attribute values.  States are queued and written to the data store in batches.  A background job
+ * rolls numeric states up into minute aggregates and minute aggregates into hour aggregates, so that long ranges are
+ * answered from the aggregates instead of every state.  States and each aggregate resolution have their own retention.
+ */
+public class DeviceStateHistory {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceStateHistory.class);
+
+    private static final long MINUTE_MILLIS = TimeUnit.SECONDS.toMillis(StateAggregate.MINUTE);
+    private static final long HOUR_MILLIS = TimeUnit.SECONDS.toMillis(StateAggregate.HOUR);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long QUERY_FLUSH_TIMEOUT_MILLIS = 5000;
+    // states are dated before they reach the queue, give late ones a moment before their minute is rolled up
+    private static final long ROLLUP_DELAY_MILLIS = 5000;
+
+    private final DeviceStateHistoryDataStore dataStore;
+    private final BatchWriter<StateHistoryEntry> batchWriter;
+    private final SequentialIdGenerator idGenerator = new SequentialIdGenerator();
+    private final long stateRetentionMillis;
+    private final long minuteRetentionMillis;
+    private final long hourRetentionMillis;
+    private ScheduledExecutorService rollupTimer;
+
+    // everything before these times has been rolled up, -1 until the first roll up
+    private long minutesRolledUpTo = -1;
+    private long hoursRolledUpTo = -1;
+
+    private final LongAdder rollups = new LongAdder();
+    private final LongAdder rollupFailures = new LongAdder();
+    private final LongAdder aggregatesWritten = new LongAdder();
+    private volatile long lastRollupMillis = 0;
+
+    public DeviceStateHistory(DeviceStateHistoryDataStore dataStore) {
+        this(dataStore, 4096, 256, 1000, 1000, 60, 7, 30, 730);
+    }
+
+    /**
+     * @param dataStore             Where states and aggregates are written.
+     * @param capacity              How many states can be queued.
+     * @param batchSize             Maximum number of states written in one batch.
+     * @param flushIntervalMillis   How long a state can wait for a batch to fill up.
+     * @param maxBlockMillis        How long to wait for space when the queue is full before writing the state directly.
+     * @param rollupIntervalSeconds How often aggregates are rolled up and old history deleted, 0 to not run in the background.
+     * @param stateRetentionDays    How long states are kept.
+     * @param minuteRetentionDays   How long minute aggregates are kept.
+     * @param hourRetentionDays     How long hour aggregates are kept.
+     */
+    public DeviceStateHistory(DeviceStateHistoryDataStore dataStore, int capacity, int batchSize, long flushIntervalMillis,
+                              long maxBlockMillis, int rollupIntervalSeconds, int stateRetentionDays, int minuteRetentionDays,
+                              int hourRetentionDays) {
+        this.dataStore = dataStore;
+        this.batchWriter = new BatchWriter<>("DeviceStateHistory", capacity, batchSize, flushIntervalMillis, maxBlockMillis,
+                dataStore::saveStates);
+        this.stateRetentionMillis = TimeUnit.DAYS.toMillis(stateRetentionDays);
+        this.minuteRetentionMillis = TimeUnit.DAYS.toMillis(minuteRetentionDays);
+        this.hourRetentionMillis = TimeUnit.DAYS.toMillis(hourRetentionDays);
+
+        if (rollupIntervalSeconds > 0) {
+            ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+            rollupTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = defaultThreadFactory.newThread(runnable);
+                thread.setName("DeviceStateHistoryRollup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rollupTimer.scheduleWithFixedDelay(() -> {
+                try {
+                    rollup(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    rollupFailures.increment();
+                    logger.warn("Exception rolling up device state history", e);
+                }
+            }, rollupIntervalSeconds, rollupIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void addState(String deviceId, State state) {
+        if (deviceId == null || state == null || state.getName() == null || state.getDate() == null) {
+            return;
+        }
+        batchWriter.add(StateHistoryEntry.fromState(idGenerator.nextId(), deviceId, state));
+    }
+
+    /**
+     * @param maxStates maximum number of states returned, -1 for all
+     * @return states of the attribute after startDate and before endDate, newest first.
+     */
+    public List<State> getStates(String deviceId, String name, Date startDate, Date endDate, int maxStates) {
+        batchWriter.flush(QUERY_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return dataStore.getStates(deviceId, name, startDate, endDate, maxStates).stream()
+                .map(StateHistoryEntry::toState).collect(Collectors.toList());
+    }
+
+    /**
+     * Aggregates are written by the roll up, so the last minute or hour is not available until it has been rolled up.
+     *
+     * @param resolution    {@link StateAggregate#MINUTE} or {@link StateAggregate#HOUR}, 0 to use minutes for ranges of up
+     *                      to a day that are still kept and hours otherwise
+     * @param maxAggregates maximum number of aggregates returned, -1 for all
+     * @return aggregates of the attribute starting from startDate to endDate, oldest first.
+     */
+    public List<StateAggregate> getAggregates(String deviceId, String name, Date startDate, Date endDate, int resolution,
+                                              int maxAggregates) {
+        if (resolution <= 0) {
+            resolution = getResolution(startDate, endDate, System.currentTimeMillis());
+        }
+        return dataStore.getAggregates(deviceId, name, resolution, startDate, endDate, maxAggregates);
+    }
+
+    int getResolution(Date startDate, Date endDate, long now) {
+        if (endDate.getTime() - startDate.getTime() <= DAY_MILLIS && startDate.getTime() >= now - minuteRetentionMillis) {
+            return StateAggregate.MINUTE;
+        }
+        return StateAggregate.HOUR;
+    }
+
+    /**
+     * Roll up complete minutes and hours that have not been rolled up yet and delete history past its retention.
+     */
+    synchronized void rollup(long now) {
+        long start = System.nanoTime();
+        batchWriter.flush(QUERY_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // states of complete minutes into minute aggregates, an hour of states at a time when catching up
+        long minutesEnd = floor(now - ROLLUP_DELAY_MILLIS, MINUTE_MILLIS);
+        if (minutesRolledUpTo < 0) {
+            minutesRolledUpTo = getRolledUpTo(StateAggregate.MINUTE, MINUTE_MILLIS);
+        }
+        minutesRolledUpTo = Math.max(minutesRolledUpTo, floor(now - stateRetentionMillis, MINUTE_MILLIS));
+        while (minutesRolledUpTo < minutesEnd) {
+            long end = Math.min(minutesRolledUpTo + HOUR_MILLIS, minutesEnd);
+            Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+            for (StateHistoryEntry entry : dataStore.getNumericStates(new Date(minutesRolledUpTo), new Date(end))) {
+                double value = entry.getNumberValue();
+                getAggregate(aggregates, entry.getDeviceId(), entry.getName(), floor(entry.getDate().getTime(), MINUTE_MILLIS))
+                        .add(value, value, value, value, 1, entry.getDate().getTime(), entry.getUnit());
+            }
+            saveAggregates(aggregates, StateAggregate.MINUTE);
+            minutesRolledUpTo = end;
+        }
+
+        // minute aggregates of complete hours into hour aggregates, a day at a time when catching up
+        long hoursEnd = floor(minutesRolledUpTo, HOUR_MILLIS);
+        if (hoursRolledUpTo < 0) {
+            hoursRolledUpTo = getRolledUpTo(StateAggregate.HOUR, HOUR_MILLIS);
+        }
+        hoursRolledUpTo = Math.max(hoursRolledUpTo, floor(now - minuteRetentionMillis, HOUR_MILLIS));
+        while (hoursRolledUpTo < hoursEnd) {
+            long end = Math.min(hoursRolledUpTo + DAY_MILLIS, hoursEnd);
+            Map<String, Aggregate> aggregates = new LinkedHashMap<>();
+            for (StateAggregate minute : dataStore.getAggregates(null, null, StateAggregate.MINUTE, new Date(hoursRolledUpTo),
+                    new Date(end), -1)) {
+                getAggregate(aggregates, minute.getDeviceId(), minute.getName(), floor(minute.getDate().getTime(), HOUR_MILLIS))
+                        .add(minute.getMin(), minute.getMax(), minute.getSum(), minute.getLast(), minute.getCount(),
+                                minute.getDate().getTime(), minute.getUnit());
+            }
+            saveAggregates(aggregates, StateAggregate.HOUR);
+            hoursRolledUpTo = end;
+        }
+
+        dataStore.deleteStatesBefore(new Date(now - stateRetentionMillis));
+        dataStore.deleteAggregatesBefore(StateAggregate.MINUTE, new Date(now - minuteRetentionMillis));
+        dataStore.deleteAggregatesBefore(StateAggregate.HOUR, new Date(now - hourRetentionMillis));
+
+        rollups.increment();
+        lastRollupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private long getRolledUpTo(int resolution, long resolutionMillis) {
+        Date lastAggregateDate = dataStore.getLastAggregateDate(resolution);
+        return lastAggregateDate != null ? lastAggregateDate.getTime() + resolutionMillis : 0;
+    }
+
+    private static long floor(long time, long resolutionMillis) {
+        return time - Math.floorMod(time, resolutionMillis);
+    }
+
+    private static Aggregate getAggregate(Map<String, Aggregate> aggregates, String deviceId, String name, long date) {
+        return aggregates.computeIfAbsent(deviceId + '\u0000' + name + '\u0000' + date, key -> new Aggregate(deviceId, name, date));
+    }
+
+    private void saveAggregates(Map<String, Aggregate> aggregates, int resolution) {
+        if (aggregates.isEmpty()) {
+            return;
+        }
+        List<StateAggregate> stateAggregates = new ArrayList<>(aggregates.size());
+        for (Aggregate aggregate : aggregates.values()) {
+            stateAggregates.add(aggregate.toStateAggregate(resolution));
+        }
+        dataStore.saveAggregates(stateAggregates);
+        aggregatesWritten.add(stateAggregates.size());
+    }
+
+    public void shutdown() {
+        ScheduledExecutorService timer;
+        synchronized (this) {
+            timer = rollupTimer;
+            rollupTimer = null;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        batchWriter.shutdown(30, TimeUnit.SECONDS);
+        dataStore.shutdown();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(batchWriter.getMetrics());
+        metrics.put("rollups", rollups.sum());
+        metrics.put("rollupFailures", rollupFailures.sum());
+        metrics.put("aggregatesWritten", aggregatesWritten.sum());
+        metrics.put("lastRollupMillis", lastRollupMillis);
+        return metrics;
+    }
+
+    private static class Aggregate {
+        private final String deviceId;
+        private final String name;
+        private final long date;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double sum = 0;
+        private double last;
+        private long lastDate = Long.MIN_VALUE;
+        private int count = 0;
+        private String unit;
+
+        Aggregate(String deviceId, String name, long date) {
+            this.deviceId = deviceId;
+            this.name = name;
+            this.date = date;
+        }
+
+        void add(double min, double max, double sum, double last, int count, long date, String unit) {
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.sum += sum;
+            this.count += count;
+            if (date >= lastDate) {
+                this.last = last;
+                this.lastDate = date;
+                this.unit = unit;
+            }
+        }
+
+        StateAggregate toStateAggregate(int resolution) {
+            return new StateAggregate(deviceId, name, resolution, new Date(date), min, max, sum, last, count, unit);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import java.util.Date;
+import java.util.List;
+
+public interface DeviceStateHistoryDataStore {
+    void saveStates(List<StateHistoryEntry> entries);
+
+    /**
+     * @param maxStates maximum number of states returned, -1 for all
+     * @return states of the attribute after startDate and before endDate, newest first.
+     */
+    List<StateHistoryEntry> getStates(String deviceId, String name, Date startDate, Date endDate, int maxStates);
+
+    /**
+     * @return numeric states of all devices from startDate (inclusive) to endDate (exclusive), ordered by date.
+     */
+    List<StateHistoryEntry> getNumericStates(Date startDate, Date endDate);
+
+    void saveAggregates(List<StateAggregate> aggregates);
+
+    /**
+     * @param deviceId  device of the aggregates, null for all devices
+     * @param name      attribute of the aggregates, null for all attributes
+     * @param maxStates maximum number of aggregates returned, -1 for all
+     * @return aggregates starting from startDate (inclusive) to endDate (exclusive), ordered by date.
+     */
+    List<StateAggregate> getAggregates(String deviceId, String name, int resolution, Date startDate, Date endDate, int maxStates);
+
+    /**
+     * @return start date of the newest aggregate or null if there are none.
+     */
+    Date getLastAggregateDate(int resolution);
+
+    void deleteStatesBefore(Date date);
+
+    void deleteAggregatesBefore(int resolution, Date date);
+
+    void shutdown();
+}
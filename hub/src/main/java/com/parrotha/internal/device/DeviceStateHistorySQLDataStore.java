@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import com.parrotha.internal.database.DatasourceFactory;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Query;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+public class DeviceStateHistorySQLDataStore implements DeviceStateHistoryDataStore {
+    private static final String AGGREGATE_COLUMNS = "DEVICE_ID, NAME, RESOLUTION, DATE, VALUE_MIN, VALUE_MAX, VALUE_SUM, VALUE_LAST, " +
+            "VALUE_COUNT, UNIT";
+
+    private Jdbi jdbi;
+
+    public DeviceStateHistorySQLDataStore() {
+        this(DatasourceFactory.getDataSource(DatasourceFactory.EVENTS));
+    }
+
+    DeviceStateHistorySQLDataStore(DataSource dataSource) {
+        jdbi = Jdbi.create(dataSource);
+
+        jdbi.registerRowMapper(StateHistoryEntry.class, (rs, ctx) -> {
+            double number = rs.getDouble("NUMBER_VALUE");
+            // check for null straight away, reading another column changes what wasNull reports
+            Double numberValue = rs.wasNull() ? null : number;
+            return new StateHistoryEntry(rs.getString("ID"), rs.getString("DEVICE_ID"), rs.getString("NAME"), rs.getString("VALUE"),
+                    numberValue, rs.getString("UNIT"), Date.from(rs.getTimestamp("DATE").toInstant()));
+        });
+        jdbi.registerRowMapper(StateAggregate.class, (rs, ctx) -> new StateAggregate(rs.getString("DEVICE_ID"), rs.getString("NAME"),
+                rs.getInt("RESOLUTION"), Date.from(rs.getTimestamp("DATE").toInstant()), rs.getDouble("VALUE_MIN"),
+                rs.getDouble("VALUE_MAX"), rs.getDouble("VALUE_SUM"), rs.getDouble("VALUE_LAST"), rs.getInt("VALUE_COUNT"),
+                rs.getString("UNIT")));
+    }
+
+    @Override
+    public void saveStates(List<StateHistoryEntry> entries) {
+        jdbi.useTransaction(handle -> {
+            PreparedBatch batch = handle.prepareBatch("insert into DEVICE_STATE_HISTORY (ID, DEVICE_ID, NAME, VALUE, NUMBER_VALUE, UNIT, DATE) " +
+                    "values (?, ?, ?, ?, ?, ?, ?)");
+            for (StateHistoryEntry entry : entries) {
+                batch.add(entry.getId(),
+                        entry.getDeviceId(),
+                        entry.getName(),
+                        getTruncatedString(entry.getValue(), 255),
+                        entry.getNumberValue(),
+                        entry.getUnit(),
+                        entry.getDate());
+            }
+            batch.execute();
+        });
+    }
+
+    private String getTruncatedString(String value, int length) {
+        if (value != null && value.length() > length) {
+            value = value.substring(0, length - 3) + "...";
+        }
+        return value;
+    }
+
+    @Override
+    public List<StateHistoryEntry> getStates(String deviceId, String name, Date startDate, Date endDate, int maxStates) {
+        return jdbi.withHandle(handle -> {
+            Query query = handle.createQuery("select ID, DEVICE_ID, NAME, VALUE, NUMBER_VALUE, UNIT, DATE FROM DEVICE_STATE_HISTORY " +
+                            "WHERE DEVICE_ID = :deviceId AND NAME = :name AND DATE > :startDate AND DATE < :endDate " +
+                            "ORDER BY DATE DESC")
+                    .bind("deviceId", deviceId)
+                    .bind("name", name)
+                    .bind("startDate", startDate)
+                    .bind("endDate", endDate);
+            if (maxStates > -1) {
+                query.setMaxRows(maxStates);
+            }
+            return query.mapTo(StateHistoryEntry.class).list();
+        });
+    }
+
+    @Override
+    public List<StateHistoryEntry> getNumericStates(Date startDate, Date endDate) {
+        return jdbi.withHandle(handle ->
+                handle.createQuery("select ID, DEVICE_ID, NAME, VALUE, NUMBER_VALUE, UNIT, DATE FROM DEVICE_STATE_HISTORY " +
+                                "WHERE DATE >= :startDate AND DATE < :endDate AND NUMBER_VALUE IS NOT NULL ORDER BY DATE")
+                        .bind("startDate", startDate)
+                        .bind("endDate", endDate)
+                        .mapTo(StateHistoryEntry.class).list()
+        );
+    }
+
+    @Override
+    public void saveAggregates(List<StateAggregate> aggregates) {
+        jdbi.useTransaction(handle -> {
+            // aggregates are rebuilt when a roll up is repeated after a restart, replace the existing row
+            PreparedBatch batch = handle.prepareBatch("MERGE INTO DEVICE_STATE_AGGREGATE T " +
+                    "USING (VALUES (CAST(? AS VARCHAR(36)), CAST(? AS VARCHAR(255)), CAST(? AS INTEGER), CAST(? AS TIMESTAMP), " +
+                    "CAST(? AS DOUBLE), CAST(? AS DOUBLE), CAST(? AS DOUBLE), CAST(? AS DOUBLE), CAST(? AS INTEGER), CAST(? AS VARCHAR(50)))) " +
+                    "AS V (" + AGGREGATE_COLUMNS + ") " +
+                    "ON T.DEVICE_ID = V.DEVICE_ID AND T.NAME = V.NAME AND T.RESOLUTION = V.RESOLUTION AND T.DATE = V.DATE " +
+                    "WHEN MATCHED THEN UPDATE SET T.VALUE_MIN = V.VALUE_MIN, T.VALUE_MAX = V.VALUE_MAX, T.VALUE_SUM = V.VALUE_SUM, " +
+                    "T.VALUE_LAST = V.VALUE_LAST, T.VALUE_COUNT = V.VALUE_COUNT, T.UNIT = V.UNIT " +
+                    "WHEN NOT MATCHED THEN INSERT (" + AGGREGATE_COLUMNS + ") VALUES (V.DEVICE_ID, V.NAME, V.RESOLUTION, V.DATE, " +
+                    "V.VALUE_MIN, V.VALUE_MAX, V.VALUE_SUM, V.VALUE_LAST, V.VALUE_COUNT, V.UNIT)");
+            for (StateAggregate aggregate : aggregates) {
+                batch.add(aggregate.getDeviceId(),
+                        aggregate.getName(),
+                        aggregate.getResolution(),
+                        aggregate.getDate(),
+                        aggregate.getMin(),
+                        aggregate.getMax(),
+                        aggregate.getSum(),
+                        aggregate.getLast(),
+                        aggregate.getCount(),
+                        aggregate.getUnit());
+            }
+            batch.execute();
+        });
+    }
+
+    @Override
+    public List<StateAggregate> getAggregates(String deviceId, String name, int resolution, Date startDate, Date endDate, int maxStates) {
+        return jdbi.withHandle(handle -> {
+            StringBuilder sql = new StringBuilder("select " + AGGREGATE_COLUMNS + " FROM DEVICE_STATE_AGGREGATE " +
+                    "WHERE RESOLUTION = :resolution AND DATE >= :startDate AND DATE < :endDate");
+            if (deviceId != null) {
+                sql.append(" AND DEVICE_ID = :deviceId");
+            }
+            if (name != null) {
+                sql.append(" AND NAME = :name");
+            }
+            sql.append(" ORDER BY DATE");
+            Query query = handle.createQuery(sql.toString())
+                    .bind("resolution", resolution)
+                    .bind("startDate", startDate)
+                    .bind("endDate", endDate);
+            if (deviceId != null) {
+                query.bind("deviceId", deviceId);
+            }
+            if (name != null) {
+                query.bind("name", name);
+            }
+            if (maxStates > -1) {
+                query.setMaxRows(maxStates);
+            }
+            return query.mapTo(StateAggregate.class).list();
+        });
+    }
+
+    @Override
+    public Date getLastAggregateDate(int resolution) {
+        Timestamp timestamp = jdbi.withHandle(handle -> handle.createQuery("select MAX(DATE) FROM DEVICE_STATE_AGGREGATE WHERE RESOLUTION = :resolution")
+                .bind("resolution", resolution)
+                .mapTo(Timestamp.class).one());
+        return timestamp != null ? new Date(timestamp.getTime()) : null;
+    }
+
+    @Override
+    public void deleteStatesBefore(Date date) {
+        jdbi.useHandle(handle -> handle.createUpdate("DELETE FROM DEVICE_STATE_HISTORY WHERE DATE < :date")
+                .bind("date", date)
+                .execute());
+    }
+
+    @Override
+    public void deleteAggregatesBefore(int resolution, Date date) {
+        jdbi.useHandle(handle -> handle.createUpdate("DELETE FROM DEVICE_STATE_AGGREGATE WHERE RESOLUTION = :resolution AND DATE < :date")
+                .bind("resolution", resolution)
+                .bind("date", date)
+                .execute());
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
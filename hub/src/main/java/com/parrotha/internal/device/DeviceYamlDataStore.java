@@ -18,11 +18,12 @@
  */
 package com.parrotha.internal.device;
 
+import com.parrotha.internal.common.FileSystemUtils;
+import com.parrotha.internal.common.WriteBehindWriter;
 import com.parrotha.internal.integration.Integration;
 import groovy.json.JsonBuilder;
 import groovy.json.JsonSlurperClassic;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,31 +38,56 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class DeviceYamlDataStore implements DeviceDataStore {
     private static final Logger logger = LoggerFactory.getLogger(DeviceYamlDataStore.class);
-    private Map<String, Device> devices;
+    // devices are stored as immutable snapshots, updates replace the snapshot
+    private volatile DeviceRegistry devices;
 
-    private Map<String, String> deviceDNItoIdMap;
-    private Map<String, Set<String>> childDeviceMap;
-    private Map<String, Set<String>> appChildDeviceMap;
+    // device changes are written by a background thread so that rapid updates to a device end up in a single write
+    private final WriteBehindWriter deviceWriter;
+    // per device locks that keep the file write and the delete of a device apart, held during file io so they are
+    // separate from the registry locks
+    private final Map<String, Object> deviceFileLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Yaml> deviceYaml = ThreadLocal.withInitial(() -> {
+        Yaml yaml = new Yaml();
+        yaml.setBeanAccess(BeanAccess.FIELD);
+        return yaml;
+    });
+
+    public DeviceYamlDataStore() {
+        this(2000);
+    }
+
+    /**
+     * @param writeDelayMillis How long to collect changes to a device before writing it to disk.
+     */
+    public DeviceYamlDataStore(long writeDelayMillis) {
+        this.deviceWriter = new WriteBehindWriter("DeviceYamlDataStore", writeDelayMillis, this::writeDevice);
+    }
 
     @Override
     public Collection<Device> getAllDevices() {
-        return getDevices().values();
+        return getDevices().getAll().stream().map(DeviceSnapshot::toDevice).collect(Collectors.toList());
+    }
+
+    @Override
+    public Collection<DeviceSnapshot> getAllDeviceSnapshots() {
+        return getDevices().getAll();
     }
 
     @Override
@@ -70,16 +96,12 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         if (StringUtils.isBlank(capability)) {
             return devices;
         }
-        for (Device device : getAllDevices()) {
-            DeviceHandler deviceHandler = getDeviceHandler(device.getDeviceHandlerId());
-            if (deviceHandler != null) {
-                List<String> capabilityList = deviceHandler.getCapabilityList();
-                if (capabilityList != null) {
-                    for (String deviceCapability : capabilityList) {
-                        if (capability.equalsIgnoreCase(StringUtils.deleteWhitespace(deviceCapability))) {
-                            devices.add(device);
-                        }
-                    }
+        // capabilities come from the device handler, find the handlers first and then their devices
+        Set<String> deviceHandlerIds = getCapabilityIndex().get(capabilityKey(capability));
+        if (deviceHandlerIds != null) {
+            for (String deviceHandlerId : deviceHandlerIds) {
+                for (DeviceSnapshot device : getDevices().getByDeviceHandler(deviceHandlerId)) {
+                    devices.add(device.toDevice());
                 }
             }
         }
@@ -91,17 +113,15 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         if (StringUtils.isBlank(deviceHandlerId)) {
             return new ArrayList<>();
         }
-        return getAllDevices().stream().filter(device -> deviceHandlerId.equals(device.getDeviceHandlerId())).collect(Collectors.toSet());
+        return getDevices().getByDeviceHandler(deviceHandlerId).stream().map(DeviceSnapshot::toDevice).collect(Collectors.toSet());
     }
 
     @Override
     public Collection<Device> getDevicesByExtension(String extensionId) {
         Collection<Device> devices = new HashSet<>();
         for (DeviceHandler deviceHandler : getAllDeviceHandlers()) {
-            for (Device device : getAllDevices()) {
-                if (deviceHandler.getId() != null && deviceHandler.getId().equals(device.getDeviceHandlerId())) {
-                    devices.add(device);
-                }
+            for (DeviceSnapshot device : getDevices().getByDeviceHandler(deviceHandler.getId())) {
+                devices.add(device.toDevice());
             }
         }
         return devices;
@@ -109,60 +129,56 @@ public class DeviceYamlDataStore implements DeviceDataStore {
 
     @Override
     public Device getDeviceById(String id) {
-        Device device = getDevices().get(id);
+        DeviceSnapshot device = getDeviceSnapshotById(id);
         if (device != null) {
-            return SerializationUtils.clone(device);
+            return device.toDevice();
         }
         return null;
     }
 
+    @Override
+    public DeviceSnapshot getDeviceSnapshotById(String id) {
+        if (id == null) {
+            return null;
+        }
+        return getDevices().get(id);
+    }
+
     @Override
     public Device getDeviceByIntegrationAndDNI(String integrationId, String deviceNetworkId) {
-        Device device = getDevices().get(
-                getDeviceDNItoIDMap().get((integrationId != null ? integrationId : "null") + ":" + deviceNetworkId.toUpperCase()));
+        DeviceSnapshot device = getDeviceSnapshotByIntegrationAndDNI(integrationId, deviceNetworkId);
         if (device != null) {
-            return SerializationUtils.clone(device);
+            return device.toDevice();
         }
         return null;
     }
 
+    @Override
+    public DeviceSnapshot getDeviceSnapshotByIntegrationAndDNI(String integrationId, String deviceNetworkId) {
+        return getDevices().getByIntegrationAndDNI(integrationId, deviceNetworkId);
+    }
+
+    @Override
+    public long getDeviceNetworkIdVersion() {
+        return getDevices().getDeviceNetworkIdVersion();
+    }
+
     @Override
     public List<Device> getDeviceChildDevices(String parentDeviceId) {
-        List<Device> childDevices = new ArrayList<>();
-        Set<String> childDeviceIds = getChildDeviceMap().get(parentDeviceId);
-
-        if (childDeviceIds != null && childDeviceIds.size() > 0) {
-            for (String childDeviceId : childDeviceIds) {
-                Device childDevice = getDeviceById(childDeviceId);
-                if (childDevice != null) {
-                    childDevices.add(childDevice);
-                }
-            }
-        }
-        return childDevices;
+        return getDevices().getByParentDevice(parentDeviceId).stream().map(DeviceSnapshot::toDevice).collect(Collectors.toList());
     }
 
     @Override
     public List<Device> getInstalledAutomationAppIdChildDevices(String parentInstalledAutomationAppId) {
-        List<Device> childDevices = new ArrayList<>();
-        Set<String> childDeviceIds = getAppChildDeviceMap().get(parentInstalledAutomationAppId);
-
-        if (childDeviceIds != null && childDeviceIds.size() > 0) {
-            for (String childDeviceId : childDeviceIds) {
-                Device childDevice = getDeviceById(childDeviceId);
-                if (childDevice != null) {
-                    childDevices.add(childDevice);
-                }
-            }
-        }
-        return childDevices;
+        return getDevices().getByParentApp(parentInstalledAutomationAppId).stream().map(DeviceSnapshot::toDevice)
+                .collect(Collectors.toList());
     }
 
     @Override
     public Device getInstalledAutomationAppChildDevice(String parentInstalledAutomationAppId, String deviceNetworkId) {
-        Device device = getDeviceByIntegrationAndDNI(null, deviceNetworkId);
+        DeviceSnapshot device = getDeviceSnapshotByIntegrationAndDNI(null, deviceNetworkId);
         if (device != null && parentInstalledAutomationAppId.equals(device.getParentInstalledAutomationAppId())) {
-            return device;
+            return device.toDevice();
         }
         return null;
     }
@@ -170,15 +186,10 @@ public class DeviceYamlDataStore implements DeviceDataStore {
     public String createDevice(Device device) {
         String deviceId = UUID.randomUUID().toString();
         device.setId(deviceId);
-        getDevices().put(deviceId, device);
-        if (StringUtils.isNotEmpty(device.getParentDeviceId())) {
-            addChildDevice(getChildDeviceMap(), device.getParentDeviceId(), device.getId());
-        } else if (StringUtils.isNotEmpty(device.getParentInstalledAutomationAppId())) {
-            addChildDevice(getAppChildDeviceMap(), device.getParentInstalledAutomationAppId(), device.getId());
-        }
-        getDeviceDNItoIDMap().put((device.getIntegration() != null ? device.getIntegration().getId() : "null") + ":" + device.getDeviceNetworkId(),
-                deviceId);
+        getDevices().put(DeviceSnapshot.of(device));
         saveDevice(deviceId);
+        // new devices are written right away
+        deviceWriter.flush(deviceId);
 
         return deviceId;
     }
@@ -186,8 +197,6 @@ public class DeviceYamlDataStore implements DeviceDataStore {
     @Override
     public String createDevice(String deviceHandlerId, String deviceName, String deviceNetworkId, String integrationId,
                                Map<String, Object> deviceData, Map<String, String> additionalIntegrationParameters) {
-        Map<String, Device> deviceSettings = getDevices();
-
         String deviceId = UUID.randomUUID().toString();
 
         Device d = new Device();
@@ -201,119 +210,115 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         d.setDeviceHandlerId(deviceHandlerId);
         d.setId(deviceId);
 
-        deviceSettings.put(deviceId, d);
-        getDeviceDNItoIDMap().put((integrationId != null ? integrationId : "null") + ":" + deviceNetworkId, deviceId);
+        getDevices().put(DeviceSnapshot.of(d));
 
         saveDevice(deviceId);
+        // new devices are written right away
+        deviceWriter.flush(deviceId);
 
         return deviceId;
     }
 
     @Override
     public boolean updateDevice(Device device) {
-        Device existingDevice = getDevices().get(device.getId());
-        if (existingDevice != null) {
-            // if device network id was updated, update dni to id map
-            if (!existingDevice.getDeviceNetworkId().equals(device.getDeviceNetworkId())) {
-                getDeviceDNItoIDMap().remove(existingDevice.getDeviceNetworkId());
-                getDeviceDNItoIDMap().put(device.getDeviceNetworkId(), existingDevice.getId());
-                existingDevice.setDeviceNetworkId(device.getDeviceNetworkId());
-            }
-            // TODO: check for changes instead of assigning all values and writing
-            existingDevice.setDeviceHandlerId(device.getDeviceHandlerId());
-            existingDevice.setName(device.getName());
-            existingDevice.setCurrentStates(device.getCurrentStates());
-            existingDevice.setLabel(device.getLabel());
-            existingDevice.setSettings(device.getSettings());
-            existingDevice.setState(device.getState());
-            existingDevice.setData(device.getData());
-            existingDevice.setUpdated(new Date());
-
-            if (device.getIntegration() != null) {
-                if (existingDevice.getIntegration() == null) {
-                    existingDevice.setIntegration(new Integration());
-                }
-                existingDevice.getIntegration().setId(device.getIntegration().getId());
-            }
+        // the registry moves the device to its new device network id, parent and handler entries along with the update
+        // TODO: check for changes instead of assigning all values and writing
+        replaceDevice(device.getId(), existing -> existing.withUpdatesFrom(device));
+        return true;
+    }
 
-            saveDevice(existingDevice.getId());
-        } else {
-            throw new IllegalArgumentException("Device does not exist");
-        }
+    @Override
+    public boolean updateDeviceState(String deviceId, Map deviceState) {
+        replaceDevice(deviceId, existing -> existing.withState(deviceState));
+        return true;
+    }
 
+    @Override
+    public boolean updateDeviceState(String deviceId, UnaryOperator<Map> stateUpdate) {
+        replaceDevice(deviceId, existing -> existing.withState(stateUpdate.apply(existing.getState())));
         return true;
     }
 
     @Override
-    public boolean updateDeviceState(String deviceId, Map deviceState) {
-        Device existingDevice = getDevices().get(deviceId);
-        if (existingDevice != null) {
-            existingDevice.setState(new LinkedHashMap(deviceState));
-            saveDevice(existingDevice.getId());
-        } else {
+    public boolean updateDeviceCurrentState(String deviceId, State currentState) {
+        replaceDevice(deviceId, existing -> existing.withCurrentState(currentState));
+        return true;
+    }
+
+    private void replaceDevice(String deviceId, UnaryOperator<DeviceSnapshot> update) {
+        DeviceSnapshot updated = getDevices().update(deviceId, update);
+        if (updated == null) {
             throw new IllegalArgumentException("Device does not exist");
         }
-
-        return true;
+        saveDevice(deviceId);
     }
 
     @Override
     public boolean deleteDevice(String id) {
-        //delete file in devices
-        File deviceConfig = new File("config/devices/" + id + ".yaml");
-        boolean deleted = deviceConfig.delete();
-        if (!deleted) {
-            logger.warn("Unable to remove device config file for " + id);
-            return false;
-        }
+        deviceWriter.cancel(id);
+        DeviceRegistry devices = getDevices();
+        // keeps a write in progress from recreating the file of the device
+        synchronized (fileLockFor(id)) {
+            //delete file in devices
+            File deviceConfig = new File("config/devices/" + id + ".yaml");
+            boolean deleted = deviceConfig.delete();
+            if (!deleted) {
+                logger.warn("Unable to remove device config file for " + id);
+                return false;
+            }
 
-        getDevices().remove(id);
+            devices.remove(id);
+            deviceFileLocks.remove(id);
+        }
 
         return true;
     }
 
-    private Map<String, Device> getDevices() {
-        if (devices == null) {
-            loadDevices();
-        }
-        return devices;
+    @Override
+    public void shutdown() {
+        deviceWriter.shutdown();
     }
 
-    private Map<String, String> getDeviceDNItoIDMap() {
-        if (deviceDNItoIdMap == null) {
-            loadDevices();
-        }
-        return deviceDNItoIdMap;
+    public Map<String, Object> getMetrics() {
+        return deviceWriter.getMetrics();
     }
 
-    private Map<String, Set<String>> getAppChildDeviceMap() {
-        if (appChildDeviceMap == null) {
+    private DeviceRegistry getDevices() {
+        DeviceRegistry devices = this.devices;
+        if (devices == null) {
             loadDevices();
+            devices = this.devices;
         }
-        return appChildDeviceMap;
+        return devices;
     }
 
-    private Map<String, Set<String>> getChildDeviceMap() {
-        if (childDeviceMap == null) {
-            loadDevices();
-        }
-        return childDeviceMap;
+    private void saveDevice(String deviceId) {
+        deviceWriter.markDirty(deviceId);
     }
 
-    synchronized private void saveDevice(String deviceId) {
-        Device d = getDevices().get(deviceId);
+    private Object fileLockFor(String deviceId) {
+        return deviceFileLocks.computeIfAbsent(deviceId, id -> new Object());
+    }
 
-        //synchronize this on each device, don't need to synchronize for all
-        synchronized (d) {
+    private void writeDevice(String deviceId) {
+        DeviceRegistry devices = getDevices();
+        synchronized (fileLockFor(deviceId)) {
+            DeviceSnapshot device = devices.get(deviceId);
+            if (device == null) {
+                // device was deleted before it was written
+                return;
+            }
             try {
-                Yaml yaml = new Yaml();
-                yaml.setBeanAccess(BeanAccess.FIELD);
-                File deviceConfig = new File("config/devices/" + deviceId + ".yaml");
-                FileWriter fileWriter = new FileWriter(deviceConfig);
-                yaml.dump(convertDeviceToMap(d), fileWriter);
-                fileWriter.close();
+                Map deviceMap = convertDeviceToMap(device);
+                FileSystemUtils.writeFileAtomically(new File("config/devices/" + deviceId + ".yaml"),
+                        writer -> deviceYaml.get().dump(deviceMap, writer));
+                if (deviceMap.get("state") != null) {
+                    // keep the filtered state in memory, unless the device has changed since we read it
+                    devices.replace(deviceId, device,
+                            device.withState((Map) new JsonSlurperClassic().parseText((String) deviceMap.get("state"))));
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                throw new UncheckedIOException(e);
             }
         }
     }
@@ -323,10 +328,7 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         if (devices != null) {
             return;
         }
-        Map<String, Device> newDevices = new HashMap<>();
-        Map<String, String> newDeviceDNItoIdMap = new HashMap<>();
-        Map<String, Set<String>> newChildDeviceMap = new HashMap<>();
-        Map<String, Set<String>> newAppChildDeviceMap = new HashMap<>();
+        DeviceRegistry newDevices = new DeviceRegistry();
 
         File deviceConfigDir = new File("config/devices/");
         if (deviceConfigDir.exists() && deviceConfigDir.isDirectory()) {
@@ -339,15 +341,7 @@ public class DeviceYamlDataStore implements DeviceDataStore {
                     try {
                         Map deviceMap = yaml.load(new FileInputStream(f));
                         Device d = createDeviceFromMap(deviceMap);
-                        newDevices.put(d.getId(), d);
-                        newDeviceDNItoIdMap.put(
-                                (d.getIntegration() != null ? d.getIntegration().getId() : "null") + ":" + d.getDeviceNetworkId().toUpperCase(),
-                                d.getId());
-                        if (StringUtils.isNotEmpty(d.getParentDeviceId())) {
-                            addChildDevice(newChildDeviceMap, d.getParentDeviceId(), d.getId());
-                        } else if (StringUtils.isNotEmpty(d.getParentInstalledAutomationAppId())) {
-                            addChildDevice(newAppChildDeviceMap, d.getParentInstalledAutomationAppId(), d.getId());
-                        }
+                        newDevices.put(DeviceSnapshot.of(d));
                     } catch (FileNotFoundException e) {
                         e.printStackTrace();
                     } catch (Exception e) {
@@ -358,9 +352,6 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         }
 
         devices = newDevices;
-        deviceDNItoIdMap = newDeviceDNItoIdMap;
-        childDeviceMap = newChildDeviceMap;
-        this.appChildDeviceMap = newAppChildDeviceMap;
     }
 
 
@@ -416,7 +407,7 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         return device;
     }
 
-    private Map convertDeviceToMap(Device device) {
+    private Map convertDeviceToMap(DeviceSnapshot device) {
         HashMap<String, Object> map = new HashMap<>();
         map.put("id", device.getId());
         map.put("deviceHandlerId", device.getDeviceHandlerId());
@@ -427,12 +418,14 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         map.put("deviceNetworkId", device.getDeviceNetworkId());
         map.put("parentDeviceId", device.getParentDeviceId());
         map.put("parentInstalledAutomationAppId", device.getParentInstalledAutomationAppId());
-        map.put("integration", device.getIntegration().toMap());
+        Map<String, Object> integrationMap = new HashMap<>();
+        integrationMap.put("id", device.getIntegrationId());
+        integrationMap.put("options", device.getIntegrationOptions() != null ? new HashMap<>(device.getIntegrationOptions()) : null);
+        map.put("integration", integrationMap);
         //serialize state to json and back to filter out any bad values
         //https://docs.smartthings.com/en/latest/smartapp-developers-guide/state.html#persistence-model
         if (device.getState() != null) {
             map.put("state", new JsonBuilder(device.getState()).toString());
-            device.setState((Map) new JsonSlurperClassic().parseText((String) map.get("state")));
         }
         if (device.getData() != null) {
             map.put("data", new JsonBuilder(device.getData()).toString());
@@ -460,15 +453,9 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         return map;
     }
 
-    private void addChildDevice(Map<String, Set<String>> childDeviceMap, String parentId, String childDeviceId) {
-        if (childDeviceMap.containsKey(parentId)) {
-            childDeviceMap.get(parentId).add(childDeviceId);
-        } else {
-            childDeviceMap.put(parentId, new HashSet<>(Collections.singleton(childDeviceId)));
-        }
-    }
-
     private Map<String, DeviceHandler> deviceHandlerInfo;
+    // capability to the ids of the device handlers that have it, rebuilt after device handlers change
+    private volatile Map<String, Set<String>> capabilityIndex;
 
     public Collection<DeviceHandler> getAllDeviceHandlers() {
         return getDeviceHandlerInfo().values();
@@ -505,15 +492,50 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         return deviceHandlerInfo;
     }
 
+    private Map<String, Set<String>> getCapabilityIndex() {
+        Map<String, Set<String>> capabilityIndex = this.capabilityIndex;
+        if (capabilityIndex == null) {
+            // built under the lock so a device handler change can not be overwritten by an index built before it
+            synchronized (this) {
+                capabilityIndex = this.capabilityIndex;
+                if (capabilityIndex == null) {
+                    capabilityIndex = new HashMap<>();
+                    for (DeviceHandler deviceHandler : getAllDeviceHandlers()) {
+                        if (deviceHandler.getCapabilityList() != null) {
+                            for (String capability : deviceHandler.getCapabilityList()) {
+                                if (StringUtils.isNotBlank(capability)) {
+                                    capabilityIndex.computeIfAbsent(capabilityKey(capability), key -> new HashSet<>())
+                                            .add(deviceHandler.getId());
+                                }
+                            }
+                        }
+                    }
+                    this.capabilityIndex = capabilityIndex;
+                }
+            }
+        }
+        return capabilityIndex;
+    }
+
+    private synchronized void clearCapabilityIndex() {
+        capabilityIndex = null;
+    }
+
+    private static String capabilityKey(String capability) {
+        return StringUtils.deleteWhitespace(capability).toLowerCase();
+    }
+
     @Override
     public void updateDeviceHandler(DeviceHandler deviceHandler) {
         getDeviceHandlerInfo().put(deviceHandler.getId(), deviceHandler);
+        clearCapabilityIndex();
         saveDeviceHandlers();
     }
 
     @Override
     public void addDeviceHandler(DeviceHandler deviceHandler) {
         getDeviceHandlerInfo().put(deviceHandler.getId(), deviceHandler);
+        clearCapabilityIndex();
         saveDeviceHandlers();
     }
 
@@ -530,6 +552,7 @@ public class DeviceYamlDataStore implements DeviceDataStore {
         }
 
         getDeviceHandlerInfo().remove(id);
+        clearCapabilityIndex();
         saveDeviceHandlers();
         return true;
     }
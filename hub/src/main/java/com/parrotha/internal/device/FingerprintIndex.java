@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of the fingerprints of all device handlers, used to find the device handler for a joining device.
+ * <p>
+ * A fingerprint that has any of manufacturer, model, mfr, prod or intg set can only score high enough to be picked
+ * when at least one of those matches, so fingerprints are bucketed by those values and only the buckets for the
+ * values of the joining device are scored, together with the fingerprints that have none of them.  Scoring and the
+ * order fingerprints are compared in (which decides ties) are the same as scoring every fingerprint.
+ */
+public class FingerprintIndex {
+    private static final String[] IDENTITY_FIELDS = {"manufacturer", "model", "mfr", "prod", "intg"};
+
+    private final IndexedFingerprint[] fingerprints;
+    private final BitSet withoutIdentity;
+    private final Map<String, BitSet> identityBuckets;
+
+    private FingerprintIndex(IndexedFingerprint[] fingerprints, BitSet withoutIdentity, Map<String, BitSet> identityBuckets) {
+        this.fingerprints = fingerprints;
+        this.withoutIdentity = withoutIdentity;
+        this.identityBuckets = identityBuckets;
+    }
+
+    public static FingerprintIndex build(Collection<DeviceHandler> deviceHandlers) {
+        // equal fingerprints from different device handlers map to the last one, like the map this index replaces
+        Map<Fingerprint, String> fingerprintMap = new HashMap<>();
+        if (deviceHandlers != null) {
+            for (DeviceHandler deviceHandler : deviceHandlers) {
+                List<Fingerprint> deviceHandlerFingerprints = deviceHandler.getFingerprints();
+                if (deviceHandlerFingerprints != null) {
+                    for (Fingerprint fingerprint : deviceHandlerFingerprints) {
+                        fingerprintMap.put(fingerprint, deviceHandler.getId());
+                    }
+                }
+            }
+        }
+
+        IndexedFingerprint[] fingerprints = new IndexedFingerprint[fingerprintMap.size()];
+        BitSet withoutIdentity = new BitSet();
+        Map<String, BitSet> identityBuckets = new HashMap<>();
+        int ordinal = 0;
+        for (Map.Entry<Fingerprint, String> entry : fingerprintMap.entrySet()) {
+            IndexedFingerprint fingerprint = new IndexedFingerprint(entry.getKey(), entry.getValue());
+            fingerprints[ordinal] = fingerprint;
+            boolean hasIdentity = false;
+            for (int i = 0; i < IDENTITY_FIELDS.length; i++) {
+                if (fingerprint.identity[i] != null) {
+                    hasIdentity = true;
+                    identityBuckets.computeIfAbsent(bucketKey(i, fingerprint.identity[i]), k -> new BitSet()).set(ordinal);
+                }
+            }
+            if (!hasIdentity) {
+                withoutIdentity.set(ordinal);
+            }
+            ordinal++;
+        }
+        return new FingerprintIndex(fingerprints, withoutIdentity, identityBuckets);
+    }
+
+    public int size() {
+        return fingerprints.length;
+    }
+
+    /**
+     * Find the fingerprint with the highest score for a device.
+     *
+     * @param deviceInfo Information from the joining device, profileId, endpointId, inClusters, outClusters,
+     *                   manufacturer, model, mfr, prod and intg.
+     * @return The best match, or null if no fingerprint scores above 0.  Fingerprints that cannot score above 90 are
+     * skipped, so a match with a score of 90 or less is not necessarily the best one.
+     */
+    public Match findBestMatch(Map<String, String> deviceInfo) {
+        if (deviceInfo == null || deviceInfo.size() == 0) {
+            return null;
+        }
+
+        BitSet candidates = (BitSet) withoutIdentity.clone();
+        for (int i = 0; i < IDENTITY_FIELDS.length; i++) {
+            String value = deviceInfo.get(IDENTITY_FIELDS[i]);
+            if (value != null) {
+                BitSet bucket = identityBuckets.get(bucketKey(i, value));
+                if (bucket != null) {
+                    candidates.or(bucket);
+                }
+            }
+        }
+
+        int matchingScore = 0;
+        IndexedFingerprint matchingFingerprint = null;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            int score = fingerprints[i].score(deviceInfo);
+            if (score > matchingScore) {
+                matchingScore = score;
+                matchingFingerprint = fingerprints[i];
+            }
+        }
+        if (matchingFingerprint == null) {
+            return null;
+        }
+        return new Match(matchingFingerprint.deviceHandlerId, matchingFingerprint.fingerprint, matchingScore);
+    }
+
+    private static String bucketKey(int identityField, String value) {
+        return identityField + ":" + value;
+    }
+
+    public static class Match {
+        private final String deviceHandlerId;
+        private final Fingerprint fingerprint;
+        private final int score;
+
+        Match(String deviceHandlerId, Fingerprint fingerprint, int score) {
+            this.deviceHandlerId = deviceHandlerId;
+            this.fingerprint = fingerprint;
+            this.score = score;
+        }
+
+        public String getDeviceHandlerId() {
+            return deviceHandlerId;
+        }
+
+        public Fingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * A fingerprint with blank values replaced by null and the sorted cluster lists computed up front.
+     */
+    private static class IndexedFingerprint {
+        private final Fingerprint fingerprint;
+        private final String deviceHandlerId;
+        private final String profileId;
+        private final String endpointId;
+        private final String inClusters;
+        private final String sortedInClusters;
+        private final String outClusters;
+        private final String sortedOutClusters;
+        // in the order of IDENTITY_FIELDS
+        private final String[] identity;
+
+        IndexedFingerprint(Fingerprint fingerprint, String deviceHandlerId) {
+            this.fingerprint = fingerprint;
+            this.deviceHandlerId = deviceHandlerId;
+            this.profileId = notBlank(fingerprint.getProfileId());
+            this.endpointId = notBlank(fingerprint.getEndpointId());
+            this.inClusters = notBlank(fingerprint.getInClusters());
+            this.sortedInClusters = inClusters != null ? fingerprint.getSortedInClusters() : null;
+            this.outClusters = notBlank(fingerprint.getOutClusters());
+            this.sortedOutClusters = outClusters != null ? fingerprint.getSortedOutClusters() : null;
+            this.identity = new String[]{notBlank(fingerprint.getManufacturer()), notBlank(fingerprint.getModel()),
+                    notBlank(fingerprint.getMfr()), notBlank(fingerprint.getProd()), notBlank(fingerprint.getIntg())};
+        }
+
+        private static String notBlank(String value) {
+            return StringUtils.isNotBlank(value) ? value : null;
+        }
+
+        int score(Map<String, String> deviceInfo) {
+            if (deviceInfo == null || deviceInfo.size() == 0) {
+                return 0;
+            }
+
+            int fingerprintItemCount = 0;
+            int matchCount = 0;
+            int weight = 0;
+
+            if (profileId != null) {
+                fingerprintItemCount++;
+                if (profileId.equals(deviceInfo.get("profileId"))) {
+                    matchCount++;
+                    weight += 1;
+                }
+            }
+
+            if (endpointId != null) {
+                fingerprintItemCount++;
+                if (endpointId.equals(deviceInfo.get("endpointId"))) {
+                    matchCount++;
+                    weight += 1;
+                }
+            }
+
+            if (inClusters != null) {
+                fingerprintItemCount++;
+                String deviceInClusters = deviceInfo.get("inClusters");
+                if (inClusters.equals(deviceInClusters)) {
+                    matchCount++;
+                    weight += 2;
+                } else if (sortedInClusters.equals(deviceInClusters)) {
+                    matchCount++;
+                    weight += 1;
+                }
+            }
+
+            if (outClusters != null) {
+                fingerprintItemCount++;
+                String deviceOutClusters = deviceInfo.get("outClusters");
+                if (outClusters.equals(deviceOutClusters)) {
+                    matchCount++;
+                    weight += 2;
+                } else if (sortedOutClusters.equals(deviceOutClusters)) {
+                    matchCount++;
+                    weight += 1;
+                }
+            }
+
+            boolean[] identityMatch = new boolean[IDENTITY_FIELDS.length];
+            for (int i = 0; i < IDENTITY_FIELDS.length; i++) {
+                if (identity[i] != null) {
+                    fingerprintItemCount++;
+                    if (identity[i].equals(deviceInfo.get(IDENTITY_FIELDS[i]))) {
+                        identityMatch[i] = true;
+                        matchCount++;
+                        // manufacturer counts for less than the rest
+                        weight += i == 0 ? 2 : 3;
+                    }
+                }
+            }
+            boolean modelMatch = identityMatch[1];
+            boolean mfrMatch = identityMatch[2];
+            boolean prodMatch = identityMatch[3];
+            boolean intgMatch = identityMatch[4];
+
+            if (mfrMatch && modelMatch && prodMatch && intgMatch && (fingerprintItemCount == 4)) {
+                // matched all four, best match
+                return 100;
+            }
+
+            if (mfrMatch && modelMatch && prodMatch && (fingerprintItemCount == 3)) {
+                // matched all three, best match
+                return 99;
+            }
+
+            // similar match, all items, slightly less score
+            if (fingerprintItemCount == matchCount && weight > 4) {
+                return 98;
+            }
+
+            // similar match, all items, even less score
+            if (fingerprintItemCount == matchCount && weight > 3) {
+                return 97;
+            }
+
+            return Math.round((((float) matchCount / (float) fingerprintItemCount) * 100) + weight);
+        }
+    }
+}
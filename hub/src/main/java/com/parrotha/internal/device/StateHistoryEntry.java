@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * A device attribute value in the state history.  Numeric values are kept as a double, the string value is only kept
+ * when it is not numeric or does not format back to the same string.
+ */
+public class StateHistoryEntry {
+    private final String id;
+    private final String deviceId;
+    private final String name;
+    private final String value;
+    private final Double numberValue;
+    private final String unit;
+    private final Date date;
+
+    public StateHistoryEntry(String id, String deviceId, String name, String value, Double numberValue, String unit, Date date) {
+        this.id = id;
+        this.deviceId = deviceId;
+        this.name = name;
+        this.value = value;
+        this.numberValue = numberValue;
+        this.unit = unit;
+        this.date = date;
+    }
+
+    public static StateHistoryEntry fromState(String id, String deviceId, State state) {
+        String value = state.getValue();
+        Double numberValue = parseNumber(value);
+        if (numberValue != null && value.equals(formatNumber(numberValue))) {
+            value = null;
+        }
+        return new StateHistoryEntry(id, deviceId, state.getName(), value, numberValue, state.getUnit(), state.getDate());
+    }
+
+    public State toState() {
+        return new State(id, name, getStringValue(), unit, date);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value as stored, null when the number value formats to the original string.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public String getStringValue() {
+        if (value != null || numberValue == null) {
+            return value;
+        }
+        return formatNumber(numberValue);
+    }
+
+    public Double getNumberValue() {
+        return numberValue;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    static Double parseNumber(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        char first = value.charAt(0);
+        if (!Character.isDigit(first) && first != '-' && first != '+' && first != '.') {
+            return null;
+        }
+        try {
+            double number = new BigDecimal(value).doubleValue();
+            return Double.isInfinite(number) ? null : number;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String formatNumber(double number) {
+        return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+    }
+}
@@ -34,15 +34,24 @@ public class EntityJob implements Job {
         String type = (String) context.getJobDetail().getJobDataMap().get("type");
         String id = (String) context.getJobDetail().getJobDataMap().get("id");
         Object dataObj = context.getJobDetail().getJobDataMap().get("data");
-        Map data = null;
-        if (dataObj instanceof String) {
-            data = (Map) new JsonSlurperClassic().parseText((String) dataObj);
+        run(type, id, handlerMethod, dataObj instanceof String ? (String) dataObj : null);
+    }
+
+    /**
+     * Run a scheduled handler method, shared by quartz jobs and the single run scheduler.
+     *
+     * @param data Json data for the handler method, may be null.
+     */
+    public static void run(String type, String id, String handlerMethod, String data) {
+        Map dataMap = null;
+        if (data != null) {
+            dataMap = (Map) new JsonSlurperClassic().parseText(data);
         }
 
         if (ScheduleService.INSTALLED_AUTOMATION_APP_TYPE.equals(type)) {
-            ServiceFactory.getEntityService().runInstalledAutomationAppMethod(id, handlerMethod, data);
+            ServiceFactory.getEntityService().runInstalledAutomationAppMethod(id, handlerMethod, dataMap);
         } else if (ScheduleService.DEVICE_TYPE.equals(type)) {
-            ServiceFactory.getEntityService().runDeviceMethod(id, handlerMethod, data);
+            ServiceFactory.getEntityService().runDeviceMethod(id, handlerMethod, dataMap);
         }
     }
 }
@@ -18,6 +18,7 @@
  */
 package com.parrotha.internal.entity;
 
+import com.parrotha.device.LanMessage;
 import org.apache.commons.lang.StringUtils;
 
 import java.util.Base64;
@@ -32,6 +33,10 @@ public class EntityScriptDelegateUtils {
         if (StringUtils.isBlank(stringToParse)) {
             return new HashMap();
         }
+        LanMessage lanMessage = LanMessage.current(stringToParse);
+        if (lanMessage != null) {
+            return parseLanMessage(lanMessage);
+        }
         Map<String, Object> lanMessageMap = new HashMap<>();
 
         Map<String, String> lanMessageInterim = stringToMap(stringToParse, ",",
@@ -58,6 +63,21 @@ public class EntityScriptDelegateUtils {
         return lanMessageMap;
     }
 
+    // same result as parsing the description of the message, without base 64 encoding and decoding the headers and body
+    private static Map parseLanMessage(LanMessage lanMessage) {
+        Map<String, Object> lanMessageMap = new HashMap<>();
+        lanMessageMap.put("mac", lanMessage.getMacAddress());
+        String header = lanMessage.getHeader();
+        if (StringUtils.isEmpty(header)) {
+            lanMessageMap.put("headers", null);
+        } else {
+            lanMessageMap.put("header", header);
+            lanMessageMap.put("headers", stringToMap(header, "\n", ":"));
+        }
+        lanMessageMap.put("body", lanMessage.getBodyLength() > 0 ? lanMessage.getBody() : null);
+        return lanMessageMap;
+    }
+
     public static Map stringToMap(String stringToSplit, String entrySeparator, String keyValueSeparator) {
         Map<String, Object> map = new HashMap<>();
         String[] stringToSplitArray = stringToSplit.split(entrySeparator);
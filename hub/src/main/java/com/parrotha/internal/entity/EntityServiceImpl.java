@@ -38,8 +38,11 @@ import com.parrotha.internal.device.DeviceHandler;
 import com.parrotha.internal.device.DevicePreferencesDelegate;
 import com.parrotha.internal.device.DeviceScriptDelegateImpl;
 import com.parrotha.internal.device.DeviceService;
+import com.parrotha.internal.device.DeviceSnapshot;
 import com.parrotha.internal.device.DeviceTilesDelegate;
-import com.parrotha.internal.device.Fingerprint;
+import com.parrotha.internal.device.FingerprintIndex;
+import com.parrotha.internal.groovy.ScriptClassCache;
+import com.parrotha.internal.hub.EventBus;
 import com.parrotha.internal.hub.EventService;
 import com.parrotha.internal.hub.LocationService;
 import com.parrotha.internal.hub.ScheduleService;
@@ -47,13 +50,12 @@ import com.parrotha.internal.integration.IntegrationRegistry;
 import com.parrotha.internal.script.ParrotHubDelegatingScript;
 import com.parrotha.internal.system.OAuthToken;
 import groovy.json.JsonBuilder;
+import groovy.lang.Binding;
 import groovy.lang.GString;
-import groovy.lang.GroovyClassLoader;
 import groovy.lang.MissingMethodException;
 import groovy.lang.Script;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.codehaus.groovy.control.CompilerConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,10 +68,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class EntityServiceImpl implements EntityService {
     private static final Logger logger = LoggerFactory.getLogger(EntityServiceImpl.class);
@@ -80,29 +83,58 @@ public class EntityServiceImpl implements EntityService {
     private LocationService locationService;
     private ScheduleService scheduleService;
     private IntegrationRegistry integrationRegistry;
+    private EventDispatcher eventDispatcher;
 
-    private Set<EventListener> eventListeners = new HashSet<>();
+    // set by the service factory, events are not published to listeners without one
+    private EventBus eventBus;
 
-    private Map<String, Class<Script>> deviceHandlerScripts = new HashMap<>();
+    private final Map<EventListener, EventBus.Subscriber> eventListeners = new ConcurrentHashMap<>();
+
+    private ScriptClassCache scriptClassCache = new ScriptClassCache();
+
+    private Map<String, Class<Script>> deviceHandlerScripts = new ConcurrentHashMap<>();
+
+    // device id to a script instance that is not in use, only for scripts without instance fields
+    private final Map<String, ParrotHubDelegatingScript> idleDeviceScripts = new ConcurrentHashMap<>();
+    private final ScriptMethodCache scriptMethodCache = new ScriptMethodCache();
 
     public EntityServiceImpl(DeviceService deviceService, AutomationAppService automationAppService,
                              EventService eventService, LocationService locationService,
                              ScheduleService scheduleService, IntegrationRegistry integrationRegistry) {
+        this(deviceService, automationAppService, eventService, locationService, scheduleService, integrationRegistry,
+                new EventDispatcher());
+    }
+
+    public EntityServiceImpl(DeviceService deviceService, AutomationAppService automationAppService,
+                             EventService eventService, LocationService locationService,
+                             ScheduleService scheduleService, IntegrationRegistry integrationRegistry,
+                             EventDispatcher eventDispatcher) {
         this.deviceService = deviceService;
         this.automationAppService = automationAppService;
         this.eventService = eventService;
         this.locationService = locationService;
         this.scheduleService = scheduleService;
         this.integrationRegistry = integrationRegistry;
+        this.eventDispatcher = eventDispatcher;
+        deviceService.addDeviceHandlersChangedListener(this::rebuildFingerprintIndex);
+        deviceService.addDeviceRemovedListener(idleDeviceScripts::remove);
+    }
+
+    public void setScriptClassCache(ScriptClassCache scriptClassCache) {
+        this.scriptClassCache = scriptClassCache;
     }
 
     @Override
     public void clearDeviceHandlerScripts() {
         deviceHandlerScripts.clear();
+        idleDeviceScripts.clear();
     }
 
     private void clearDeviceHandlerScript(String id) {
-        deviceHandlerScripts.remove(id);
+        Class<Script> scriptClass = deviceHandlerScripts.remove(id);
+        if (scriptClass != null) {
+            idleDeviceScripts.values().removeIf(script -> script.getClass().equals(scriptClass));
+        }
     }
 
     public void sendEvent(Map properties, DeviceWrapper deviceWrapper) {
@@ -156,12 +188,12 @@ public class EntityServiceImpl implements EntityService {
         notifyEventListeners(event);
 
         for (Subscription subscription : subscriptions) {
-            //TODO: should this be a thread pool?
             //TODO: create a copy of the event so that this is thread safe.
-            new Thread(() -> {
-                runInstalledAutomationAppMethod(subscription.getSubscribedAppId(), subscription.getHandlerMethod(),
-                        new EventWrapperImpl(event));
-            }).start();
+            // handlers for the same installed automation app run in order, a newer event for the same subscription
+            // and attribute can replace a pending one if the app falls behind.
+            eventDispatcher.dispatch(subscription.getSubscribedAppId(), subscription.getId() + ":" + event.getName(),
+                    () -> runInstalledAutomationAppMethod(subscription.getSubscribedAppId(), subscription.getHandlerMethod(),
+                            new EventWrapperImpl(event)));
         }
     }
 
@@ -175,33 +207,37 @@ public class EntityServiceImpl implements EntityService {
         return eventService.eventsBetween(source, sourceId, startDate, endDate, maxEvents);
     }
 
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
     @Override
     public void registerEventListener(EventListener eventListener) {
-        synchronized (eventListeners) {
-            eventListeners.add(eventListener);
+        if (eventBus == null) {
+            logger.warn("No event bus, event listener not registered");
+            return;
         }
+        eventListeners.computeIfAbsent(eventListener,
+                listener -> eventBus.subscribe(EventBus.Filter.ALL, message -> listener.eventReceived(message.getEvent()), null));
     }
 
     @Override
     public void unregisterEventListener(EventListener eventListener) {
-        synchronized (eventListeners) {
-            eventListeners.remove(eventListener);
+        EventBus.Subscriber subscriber = eventListeners.remove(eventListener);
+        if (subscriber != null) {
+            eventBus.unsubscribe(subscriber);
         }
     }
 
     private void notifyEventListeners(Event event) {
-        if (eventListeners.size() > 0) {
-            new Thread(() -> {
-                for (EventListener eventListener : eventListeners) {
-                    eventListener.eventReceived(event);
-                }
-            }).start();
+        if (eventBus != null) {
+            eventBus.publish(event);
         }
     }
 
     @Override
     public void runDeviceMethodByDNI(String integrationId, String deviceNetworkId, String methodName, Object... args) {
-        Device device = deviceService.getDeviceByIntegrationAndDNI(integrationId, deviceNetworkId);
+        DeviceSnapshot device = deviceService.getDeviceSnapshotByIntegrationAndDNI(integrationId, deviceNetworkId);
         if (device != null) {
             runDeviceMethod(device.getId(), methodName, args);
         }
@@ -213,26 +249,17 @@ public class EntityServiceImpl implements EntityService {
             // get device settings
             Device device = deviceService.getDeviceById(id);
 
+            ParrotHubDelegatingScript parrotHubDelegatingScript = null;
             try {
-                ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) s.getConstructor()
-                        .newInstance();
-                parrotHubDelegatingScript.setDelegate(
-                        new DeviceScriptDelegateImpl(device, deviceService, this, locationService, scheduleService,
-                                automationAppService));
-
-                Object returnObject;
-                if (args != null && args instanceof Object[]) {
-                    if (args.length == 1) {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, args[0]);
-                    } else if (args.length == 0) {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, null);
-                    } else {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, args);
-                    }
-                } else {
-                    returnObject = parrotHubDelegatingScript.invokeMethod(methodName, null);
+                parrotHubDelegatingScript = borrowDeviceScript(id, s, device);
+                if ((args == null || args.length == 0) && scriptMethodCache.isMissingMethod(parrotHubDelegatingScript, methodName)) {
+                    // optional methods like installed or configure do not have to be defined by the device handler
+                    logger.debug("Method {} not defined for device {}", methodName, id);
+                    return;
                 }
 
+                Object returnObject = scriptMethodCache.invokeMethod(parrotHubDelegatingScript, methodName, toInvokeArguments(args));
+
                 if (logger.isDebugEnabled()) {
                     logger.debug("State: " + new JsonBuilder(
                             ((DeviceScriptDelegateImpl) parrotHubDelegatingScript.getDelegate()).getState()).toString());
@@ -243,17 +270,12 @@ public class EntityServiceImpl implements EntityService {
                                 .getState());
 
                 processReturnObject(returnObject, device);
-            } catch (MissingMethodException missingMethodException) {
-                if (missingMethodException.getMessage() != null &&
-                        !missingMethodException.getMessage().replaceAll("\n", "")
-                                .matches("No signature of method: DH_[0-9a-z]*\\." +
-                                        methodName + "\\(\\).*")) {
-                    logger.warn("Exception: ", missingMethodException);
-                }
             } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
                 logger.warn("Exception: ", e);
             } catch (Throwable throwable) {
                 logger.warn("Exception: ", throwable);
+            } finally {
+                returnDeviceScript(id, parrotHubDelegatingScript);
             }
         }
         //TODO: throw device or device handler not found exception?
@@ -293,25 +315,10 @@ public class EntityServiceImpl implements EntityService {
             // get device settings
             Device device = deviceService.getDeviceById(id);
 
+            ParrotHubDelegatingScript parrotHubDelegatingScript = null;
             try {
-                ParrotHubDelegatingScript parrotHubDelegatingScript = (ParrotHubDelegatingScript) s.getConstructor()
-                        .newInstance();
-                parrotHubDelegatingScript.setDelegate(
-                        new DeviceScriptDelegateImpl(device, deviceService, this, locationService, scheduleService,
-                                automationAppService));
-
-                Object returnObject;
-                if (args != null && args instanceof Object[]) {
-                    if (args.length == 1) {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, args[0]);
-                    } else if (args.length == 0) {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, null);
-                    } else {
-                        returnObject = parrotHubDelegatingScript.invokeMethod(methodName, args);
-                    }
-                } else {
-                    returnObject = parrotHubDelegatingScript.invokeMethod(methodName, null);
-                }
+                parrotHubDelegatingScript = borrowDeviceScript(id, s, device);
+                Object returnObject = scriptMethodCache.invokeMethod(parrotHubDelegatingScript, methodName, toInvokeArguments(args));
 
                 // save state
                 deviceService.saveDeviceState(id,
@@ -321,12 +328,52 @@ public class EntityServiceImpl implements EntityService {
                 return returnObject;
             } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
                 e.printStackTrace();
+            } finally {
+                returnDeviceScript(id, parrotHubDelegatingScript);
             }
         }
         //TODO: throw device or device handler not found exception?
         return null;
     }
 
+    // same conversion of arguments as the previous calls to invokeMethod did, a single argument is passed as is.
+    private static Object toInvokeArguments(Object[] args) {
+        if (args == null || args.length == 0) {
+            return null;
+        } else if (args.length == 1) {
+            return args[0];
+        }
+        return args;
+    }
+
+    /**
+     * Get a script instance for a device, reusing the idle instance of the device if there is one.  Reused instances
+     * get a new binding and their delegate is pointed at the current copy of the device.  Scripts with instance fields
+     * are never returned for reuse, so they still get a new instance on every call.
+     */
+    private ParrotHubDelegatingScript borrowDeviceScript(String id, Class<Script> scriptClass, Device device)
+            throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        ParrotHubDelegatingScript parrotHubDelegatingScript = idleDeviceScripts.remove(id);
+        if (parrotHubDelegatingScript != null && parrotHubDelegatingScript.getClass().equals(scriptClass)) {
+            parrotHubDelegatingScript.setBinding(new Binding());
+            ((DeviceScriptDelegateImpl) parrotHubDelegatingScript.getDelegate()).setDevice(device);
+            return parrotHubDelegatingScript;
+        }
+
+        parrotHubDelegatingScript = (ParrotHubDelegatingScript) scriptClass.getConstructor().newInstance();
+        parrotHubDelegatingScript.setDelegate(
+                new DeviceScriptDelegateImpl(device, deviceService, this, locationService, scheduleService,
+                        automationAppService));
+        return parrotHubDelegatingScript;
+    }
+
+    private void returnDeviceScript(String id, ParrotHubDelegatingScript parrotHubDelegatingScript) {
+        // only one idle instance is kept per device, concurrent calls for a device use their own instance
+        if (parrotHubDelegatingScript != null && scriptMethodCache.isReusable(parrotHubDelegatingScript.getClass())) {
+            idleDeviceScripts.putIfAbsent(id, parrotHubDelegatingScript);
+        }
+    }
+
     public void reprocessAutomationApps() {
         automationAppService.reprocessAutomationApps();
     }
@@ -346,56 +393,79 @@ public class EntityServiceImpl implements EntityService {
     public void initialize() {
         deviceService.initialize();
         automationAppService.initialize();
+        warmUpScripts();
+    }
+
+    /**
+     * Load the scripts of the device handlers and automation apps that are in use in the background, so the first
+     * message for a device or app does not have to wait for its script to compile.
+     */
+    private void warmUpScripts() {
+        List<Runnable> tasks = new ArrayList<>();
+        deviceService.getAllDeviceSnapshots().stream()
+                .map(DeviceSnapshot::getDeviceHandlerId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(deviceHandlerId -> tasks.add(() -> getScriptForDeviceHandler(deviceHandlerId)));
+        automationAppService.getAllInstalledAutomationApps().stream()
+                .map(InstalledAutomationApp::getAutomationAppId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(automationAppId -> tasks.add(() -> getScriptForAutomationApp(automationAppId)));
+        scriptClassCache.warmUp(tasks);
     }
 
     public void shutdown() {
+        // let queued event handlers finish before the services they use go away
+        eventDispatcher.shutdown(10, TimeUnit.SECONDS);
+        if (eventBus != null) {
+            eventBus.shutdown();
+        }
         automationAppService.shutdown();
         deviceService.shutdown();
     }
 
-    private Map<Fingerprint, String> fingerprints;
-
-    private Map<Fingerprint, String> getFingerprints() {
-        if (fingerprints == null) {
-            fingerprints = new HashMap<>();
-            //List<Map<String, String>> fingerprints = new ArrayList<>();
+    private volatile FingerprintIndex fingerprintIndex;
 
-            for (DeviceHandler dhInfo : deviceService.getAllDeviceHandlers()) {
-                List<Fingerprint> dhInfoFPs = dhInfo.getFingerprints();
-                if (dhInfoFPs != null) {
-                    for (Fingerprint fp : dhInfoFPs) {
-                        fingerprints.put(fp, dhInfo.getId());
-                    }
+    private FingerprintIndex getFingerprintIndex() {
+        FingerprintIndex index = fingerprintIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = fingerprintIndex;
+                if (index == null) {
+                    index = FingerprintIndex.build(deviceService.getAllDeviceHandlers());
+                    fingerprintIndex = index;
                 }
             }
         }
-        return fingerprints;
+        return index;
+    }
+
+    private void rebuildFingerprintIndex() {
+        // build the new index before replacing the old one, so device pairing never sees a partial index
+        if (fingerprintIndex != null) {
+            synchronized (this) {
+                fingerprintIndex = FingerprintIndex.build(deviceService.getAllDeviceHandlers());
+            }
+        }
     }
 
     public String[] getDeviceHandlerByFingerprint(Map<String, String> deviceInfo) {
-        Map<Fingerprint, String> fingerprints = getFingerprints();
+        FingerprintIndex fingerprintIndex = getFingerprintIndex();
         if (logger.isDebugEnabled()) {
-            logger.debug("Fingerprints! " + fingerprints);
+            logger.debug("Fingerprints! " + fingerprintIndex.size());
         }
         if (logger.isDebugEnabled()) {
             logger.debug("deviceInfo: " + deviceInfo);
         }
-        int matchingScore = 0;
-        Fingerprint matchingFingerprint = null;
-        for (Fingerprint fingerprint : fingerprints.keySet()) {
-            int score = fingerprintScore(fingerprint, deviceInfo);
-            if (score > matchingScore) {
-                matchingScore = score;
-                matchingFingerprint = fingerprint;
-            }
-        }
+        FingerprintIndex.Match match = fingerprintIndex.findBestMatch(deviceInfo);
         // TODO: what should be the minimum score?
-        if (matchingFingerprint != null && matchingScore > 90) {
+        if (match != null && match.getScore() > 90) {
             if (logger.isDebugEnabled()) {
-                logger.debug("We have a matching fingerprint! " + matchingFingerprint.getDeviceJoinName() + " id: " +
-                        fingerprints.get(matchingFingerprint) + " score: " + matchingScore);
+                logger.debug("We have a matching fingerprint! " + match.getFingerprint().getDeviceJoinName() + " id: " +
+                        match.getDeviceHandlerId() + " score: " + match.getScore());
             }
-            return new String[]{fingerprints.get(matchingFingerprint), matchingFingerprint.getDeviceJoinName()};
+            return new String[]{match.getDeviceHandlerId(), match.getFingerprint().getDeviceJoinName()};
         }
 
         // if no match, return Thing
@@ -413,130 +483,8 @@ public class EntityServiceImpl implements EntityService {
         return deviceService.getDevicesByCapability(capability);
     }
 
-    private int fingerprintScore(Fingerprint fingerprint, Map<String, String> deviceInfo) {
-        if (deviceInfo == null || deviceInfo.size() == 0) {
-            return 0;
-        }
-
-        int fingerprintItemCount = 0;
-        int deviceInfoItemCount = deviceInfo.size();
-        int matchCount = 0;
-        int weight = 0;
-
-        boolean mfrMatch = false;
-        boolean modelMatch = false;
-        boolean prodMatch = false;
-        boolean intgMatch = false;
-
-        if (StringUtils.isNotBlank(fingerprint.getProfileId())) {
-            fingerprintItemCount++;
-            if (fingerprint.getProfileId().equals(deviceInfo.get("profileId"))) {
-                matchCount++;
-                weight += 1;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getEndpointId())) {
-            fingerprintItemCount++;
-            if (fingerprint.getEndpointId().equals(deviceInfo.get("endpointId"))) {
-                matchCount++;
-                weight += 1;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getInClusters())) {
-            fingerprintItemCount++;
-            if (fingerprint.getInClusters().equals(deviceInfo.get("inClusters"))) {
-                matchCount++;
-                weight += 2;
-            } else if (fingerprint.getSortedInClusters().equals(deviceInfo.get("inClusters"))) {
-                matchCount++;
-                weight += 1;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getOutClusters())) {
-            fingerprintItemCount++;
-            if (fingerprint.getOutClusters().equals(deviceInfo.get("outClusters"))) {
-                matchCount++;
-                weight += 2;
-            } else if (fingerprint.getSortedOutClusters().equals(deviceInfo.get("outClusters"))) {
-                matchCount++;
-                weight += 1;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getManufacturer())) {
-            fingerprintItemCount++;
-            if (fingerprint.getManufacturer().equals(deviceInfo.get("manufacturer"))) {
-                matchCount++;
-                weight += 2;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getModel())) {
-            fingerprintItemCount++;
-            if (fingerprint.getModel().equals(deviceInfo.get("model"))) {
-                modelMatch = true;
-                matchCount++;
-                weight += 3;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getMfr())) {
-            fingerprintItemCount++;
-            if (fingerprint.getMfr().equals(deviceInfo.get("mfr"))) {
-                mfrMatch = true;
-                matchCount++;
-                weight += 3;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getProd())) {
-            fingerprintItemCount++;
-            if (fingerprint.getProd().equals(deviceInfo.get("prod"))) {
-                prodMatch = true;
-                matchCount++;
-                weight += 3;
-            }
-        }
-
-        if (StringUtils.isNotBlank(fingerprint.getIntg())) {
-            fingerprintItemCount++;
-            if (fingerprint.getIntg().equals(deviceInfo.get("intg"))) {
-                intgMatch = true;
-                matchCount++;
-                weight += 3;
-            }
-        }
-
-        if (mfrMatch && modelMatch && prodMatch && intgMatch && (fingerprintItemCount == 4)) {
-            // matched all four, best match
-            return 100;
-        }
-
-        if (mfrMatch && modelMatch && prodMatch && (fingerprintItemCount == 3)) {
-            // matched all three, best match
-            return 99;
-        }
-
-        // similar match, all items, slightly less score
-        if (fingerprintItemCount == matchCount && weight > 4) {
-            return 98;
-        }
-
-        // similar match, all items, even less score
-        if (fingerprintItemCount == matchCount && weight > 3) {
-            return 97;
-        }
-
-        int score = Math.round((((float) matchCount / (float) fingerprintItemCount) * 100) + weight);
-
-        return score;
-    }
-
     private Class<Script> getScriptForDevice(String id) {
-        Device device = deviceService.getDeviceById(id);
+        DeviceSnapshot device = deviceService.getDeviceSnapshotById(id);
 
         if (device != null) {
             String deviceHandlerId = device.getDeviceHandlerId();
@@ -562,11 +510,7 @@ public class EntityServiceImpl implements EntityService {
                     if (is != null) {
                         String srcCode = IOUtils.toString(is, StandardCharsets.UTF_8);
 
-                        CompilerConfiguration config = new CompilerConfiguration();
-                        config.setScriptBaseClass("com.parrotha.internal.script.ParrotHubDelegatingScript");
-
-                        GroovyClassLoader gcl = new GroovyClassLoader(this.getClass().getClassLoader(), config);
-                        Class<Script> scriptClass = (Class<Script>) gcl.parseClass(srcCode, "DH_" + deviceHandlerId);
+                        Class<Script> scriptClass = scriptClassCache.getScriptClass("DH_" + deviceHandlerId, srcCode);
 
                         deviceHandlerScripts.put(deviceHandlerId, scriptClass);
                         s = scriptClass;
@@ -901,7 +845,7 @@ public class EntityServiceImpl implements EntityService {
         }
     }
 
-    private Map<String, Class<Script>> automationAppScripts = new HashMap<>();
+    private Map<String, Class<Script>> automationAppScripts = new ConcurrentHashMap<>();
 
     public void clearAutomationAppScripts() {
         automationAppScripts.clear();
@@ -935,11 +879,7 @@ public class EntityServiceImpl implements EntityService {
                     if (is != null) {
                         String srcCode = IOUtils.toString(is, StandardCharsets.UTF_8);
 
-                        CompilerConfiguration config = new CompilerConfiguration();
-                        config.setScriptBaseClass("com.parrotha.internal.script.ParrotHubDelegatingScript");
-
-                        GroovyClassLoader gcl = new GroovyClassLoader(this.getClass().getClassLoader(), config);
-                        Class<Script> scriptClass = (Class<Script>) gcl.parseClass(srcCode, "AA_" + automationAppId);
+                        Class<Script> scriptClass = scriptClassCache.getScriptClass("AA_" + automationAppId, srcCode);
 
                         automationAppScripts.put(automationAppId, scriptClass);
                         s = scriptClass;
@@ -1204,7 +1144,7 @@ public class EntityServiceImpl implements EntityService {
 
     @Override
     public Object getParentForDevice(String deviceId) {
-        Device device = deviceService.getDeviceById(deviceId);
+        DeviceSnapshot device = deviceService.getDeviceSnapshotById(deviceId);
         if (device == null) {
             return null;
         }
@@ -1227,6 +1167,11 @@ public class EntityServiceImpl implements EntityService {
         return automationAppService.getInstalledAutomationApp(id).getState();
     }
 
+    @Override
+    public Map getInstalledAutomationAppAtomicState(String id) {
+        return automationAppService.getAtomicState(id);
+    }
+
     public boolean updateAutomationAppSourceCode(String id, String sourceCode) {
         if (automationAppService.updateAutomationAppSourceCode(id, sourceCode)) {
             reprocessAutomationApp(id);
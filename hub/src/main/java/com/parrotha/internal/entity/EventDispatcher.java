@@ -0,0 +1,385 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.entity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs event subscription handlers on a bounded worker pool.  Each installed automation app gets its own mailbox that
+ * is drained by at most one worker at a time, so an app sees its events in the order they were sent while different
+ * apps run in parallel.  A mailbox is removed once it drains, so apps that are removed or stop getting events do not
+ * keep one around.  Event listeners (web sockets, etc) are served by the {@link com.parrotha.internal.hub.EventBus}.
+ */
+public class EventDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(EventDispatcher.class);
+
+    // number of deliveries a worker makes from one mailbox before giving other mailboxes a turn
+    private static final int FAIRNESS_BATCH_SIZE = 16;
+
+    public enum OverflowPolicy {
+        // reject the incoming event
+        DROP_NEWEST,
+        // discard the oldest pending event to make room
+        DROP_OLDEST,
+        // replace a pending event with the same key (same subscription and attribute) in its place in the mailbox,
+        // otherwise reject the incoming event
+        COALESCE
+    }
+
+    private final int workerCount;
+    private final int mailboxLimit;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean virtualThreadsRequested;
+
+    private volatile ThreadPoolExecutor workerPool;
+    private volatile boolean virtualThreads = false;
+    private volatile boolean shutdown = false;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    // counts of mailboxes that have been removed, so the totals in the metrics do not go down
+    private final Counters removedMailboxCounters = new Counters();
+
+    public EventDispatcher() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()), 100, OverflowPolicy.COALESCE, true);
+    }
+
+    public EventDispatcher(int workerCount, int mailboxLimit, OverflowPolicy overflowPolicy, boolean virtualThreads) {
+        this.workerCount = Math.max(1, workerCount);
+        this.mailboxLimit = Math.max(1, mailboxLimit);
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.COALESCE;
+        this.virtualThreadsRequested = virtualThreads;
+    }
+
+    /**
+     * Queue a subscription handler for an installed automation app.
+     *
+     * @param installedAutomationAppId the app that owns the handler, handlers for the same app run one at a time in order
+     * @param coalesceKey              pending deliveries with an equal key can be replaced when the mailbox is full
+     * @param handler                  the handler to run
+     * @return false if the handler was rejected
+     */
+    public boolean dispatch(String installedAutomationAppId, Object coalesceKey, Runnable handler) {
+        if (installedAutomationAppId == null || handler == null) {
+            return false;
+        }
+        Delivery delivery = new Delivery(coalesceKey, handler);
+        while (true) {
+            Boolean offered = mailboxes.computeIfAbsent(installedAutomationAppId, Mailbox::new).offer(delivery);
+            if (offered != null) {
+                return offered;
+            }
+            // the mailbox was removed after it drained, get a new one
+        }
+    }
+
+    /**
+     * Stop accepting events and wait for queued handlers to finish.
+     *
+     * @param timeout how long to wait for the mailboxes to drain
+     * @param unit    unit of the timeout
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        shutdown = true;
+        ThreadPoolExecutor pool = workerPool;
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(timeout, unit)) {
+                    logger.warn("Timed out waiting for event handlers to finish, " + getQueueDepth() + " events not delivered");
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            queueDepth += mailbox.getQueueDepth();
+        }
+        return queueDepth;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("workerCount", workerCount);
+        metrics.put("virtualThreads", virtualThreads);
+        metrics.put("mailboxLimit", mailboxLimit);
+        metrics.put("overflowPolicy", overflowPolicy.name());
+        ThreadPoolExecutor pool = workerPool;
+        metrics.put("activeWorkers", pool != null ? pool.getActiveCount() : 0);
+
+        long queueDepth = 0;
+        Counters totals = new Counters();
+        removedMailboxCounters.addTo(totals);
+        Map<String, Object> mailboxMetrics = new HashMap<>();
+        for (Map.Entry<String, Mailbox> entry : mailboxes.entrySet()) {
+            Mailbox mailbox = entry.getValue();
+            queueDepth += mailbox.getQueueDepth();
+            mailbox.counters.addTo(totals);
+            mailboxMetrics.put(entry.getKey(), mailbox.getMetrics());
+        }
+        long delivered = totals.delivered.sum();
+        metrics.put("queueDepth", queueDepth);
+        metrics.put("delivered", delivered);
+        metrics.put("rejected", totals.rejected.sum());
+        metrics.put("coalesced", totals.coalesced.sum());
+        metrics.put("failed", totals.failed.sum());
+        metrics.put("handlerLatencyAvgMillis", delivered > 0 ? nanosToMillis(totals.handlerNanos.sum() / delivered) : 0.0);
+        metrics.put("handlerLatencyMaxMillis", nanosToMillis(totals.maxHandlerNanos.get()));
+        metrics.put("mailboxes", mailboxMetrics);
+        return metrics;
+    }
+
+    private boolean execute(Mailbox mailbox) {
+        try {
+            getWorkerPool().execute(mailbox);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private ThreadPoolExecutor getWorkerPool() {
+        if (workerPool == null) {
+            synchronized (this) {
+                if (workerPool == null) {
+                    // the pool queue holds at most one entry per mailbox, so it is bounded by the number of apps
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), createThreadFactory());
+                    pool.allowCoreThreadTimeOut(true);
+                    workerPool = pool;
+                }
+            }
+        }
+        return workerPool;
+    }
+
+    private ThreadFactory createThreadFactory() {
+        if (virtualThreadsRequested) {
+            // virtual threads are available starting with Java 21, look them up reflectively so we still run on Java 11
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "EventDispatcher-", 1L);
+                ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+                virtualThreads = true;
+                return threadFactory;
+            } catch (Exception e) {
+                logger.debug("Virtual threads not available, using platform threads");
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("EventDispatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class Delivery {
+        private final Object coalesceKey;
+        // replaced when a newer delivery with the same key is coalesced into this one, guarded by the mailbox lock
+        private Runnable handler;
+
+        Delivery(Object coalesceKey, Runnable handler) {
+            this.coalesceKey = coalesceKey;
+            this.handler = handler;
+        }
+    }
+
+    private static class Counters {
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder handlerNanos = new LongAdder();
+        private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+        void addTo(Counters totals) {
+            totals.delivered.add(delivered.sum());
+            totals.rejected.add(rejected.sum());
+            totals.coalesced.add(coalesced.sum());
+            totals.failed.add(failed.sum());
+            totals.handlerNanos.add(handlerNanos.sum());
+            totals.maxHandlerNanos.accumulateAndGet(maxHandlerNanos.get(), Math::max);
+        }
+    }
+
+    private class Mailbox implements Runnable {
+        private final String name;
+        private final Deque<Delivery> queue = new ArrayDeque<>();
+        // true while the mailbox is queued on or running in the worker pool, guarded by this
+        private boolean scheduled = false;
+        // set once the mailbox has been removed from the mailbox map, guarded by this
+        private boolean removed = false;
+
+        private final Counters counters = new Counters();
+
+        Mailbox(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return whether the delivery was accepted, or null if this mailbox has been removed and a new one is needed
+         */
+        Boolean offer(Delivery delivery) {
+            synchronized (this) {
+                if (removed) {
+                    return null;
+                }
+                if (shutdown) {
+                    counters.rejected.increment();
+                    return false;
+                }
+                if (queue.size() >= mailboxLimit) {
+                    if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                        queue.pollFirst();
+                        counters.rejected.increment();
+                    } else if (overflowPolicy == OverflowPolicy.COALESCE && coalesce(delivery)) {
+                        // the mailbox is not empty so it is already scheduled
+                        return true;
+                    } else {
+                        counters.rejected.increment();
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Mailbox " + name + " is full, rejecting event");
+                        }
+                        return false;
+                    }
+                }
+                queue.addLast(delivery);
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            if (!execute(this)) {
+                // pool is shutting down, deliver on the caller's thread so the event is not lost
+                run();
+            }
+            return true;
+        }
+
+        // called with the mailbox lock held when the queue is full, the pending delivery keeps its place in the queue
+        private boolean coalesce(Delivery delivery) {
+            if (delivery.coalesceKey == null) {
+                return false;
+            }
+            for (Delivery pending : queue) {
+                if (Objects.equals(pending.coalesceKey, delivery.coalesceKey)) {
+                    pending.handler = delivery.handler;
+                    counters.coalesced.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int getQueueDepth() {
+            return queue.size();
+        }
+
+        @Override
+        public void run() {
+            int processed = 0;
+            while (true) {
+                Runnable handler;
+                synchronized (this) {
+                    Delivery delivery = queue.pollFirst();
+                    if (delivery == null) {
+                        scheduled = false;
+                        // remove drained mailboxes so removed apps do not keep one around
+                        removed = mailboxes.remove(name, this);
+                        if (removed) {
+                            counters.addTo(removedMailboxCounters);
+                        }
+                        return;
+                    }
+                    handler = delivery.handler;
+                }
+                deliver(handler);
+
+                if (++processed >= FAIRNESS_BATCH_SIZE && !shutdown) {
+                    // let other mailboxes have a turn, this mailbox stays scheduled
+                    if (execute(this)) {
+                        return;
+                    }
+                    processed = 0;
+                }
+            }
+        }
+
+        private void deliver(Runnable handler) {
+            long start = System.nanoTime();
+            try {
+                handler.run();
+            } catch (Throwable t) {
+                counters.failed.increment();
+                logger.warn("Exception in event handler for " + name, t);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                counters.delivered.increment();
+                counters.handlerNanos.add(elapsed);
+                counters.maxHandlerNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+
+        Map<String, Object> getMetrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            long deliveredCount = counters.delivered.sum();
+            metrics.put("queueDepth", getQueueDepth());
+            metrics.put("delivered", deliveredCount);
+            metrics.put("rejected", counters.rejected.sum());
+            metrics.put("coalesced", counters.coalesced.sum());
+            metrics.put("failed", counters.failed.sum());
+            metrics.put("handlerLatencyAvgMillis",
+                    deliveredCount > 0 ? nanosToMillis(counters.handlerNanos.sum() / deliveredCount) : 0.0);
+            metrics.put("handlerLatencyMaxMillis", nanosToMillis(counters.maxHandlerNanos.get()));
+            return metrics;
+        }
+    }
+}
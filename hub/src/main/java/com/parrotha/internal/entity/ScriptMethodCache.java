@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.entity;
+
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClass;
+import groovy.lang.MetaMethod;
+import groovy.util.DelegatingScript;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the methods of entity scripts once per script class and method name.  {@link DelegatingScript} looks for a
+ * method on the delegate first and only falls back to the script after a {@link groovy.lang.MissingMethodException}, so
+ * calling a method such as parse that is defined in the script creates and throws an exception on every call.  Methods
+ * that are only defined in the script are invoked directly instead.
+ */
+class ScriptMethodCache {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final ClassValue<Map<String, Resolution>> resolutions = new ClassValue<>() {
+        @Override
+        protected Map<String, Resolution> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final ClassValue<Boolean> reusable = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Field field : type.getDeclaredFields()) {
+                // @Field variables of the script, static ones are shared by every instance anyway
+                if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    };
+
+    /**
+     * Check if instances of a script class can be reused between calls.  Scripts that declare instance fields, for
+     * example with @Field, would keep the values of those fields from one call to the next, so they get a new instance
+     * for every call.
+     */
+    boolean isReusable(Class<?> scriptClass) {
+        return reusable.get(scriptClass);
+    }
+
+    /**
+     * Check if a method is missing from both the script and its delegate, so that calling it would only result in a
+     * {@link groovy.lang.MissingMethodException}.
+     */
+    boolean isMissingMethod(DelegatingScript script, String methodName) {
+        Resolution resolution = resolve(script, methodName);
+        return !resolution.scriptResponds && !resolution.delegateResponds;
+    }
+
+    /**
+     * Invoke a method on a script, same as {@link DelegatingScript#invokeMethod(String, Object)}.
+     *
+     * @param script     The script.
+     * @param methodName The name of the method.
+     * @param arguments  Null, a single argument or an array of arguments.
+     * @return The value returned by the method.
+     */
+    Object invokeMethod(DelegatingScript script, String methodName, Object arguments) {
+        Resolution resolution = resolve(script, methodName);
+        if (resolution.directMethod != null) {
+            Object[] args = arguments == null ? NO_ARGS : InvokerHelper.asArray(arguments);
+            if (resolution.directMethod.getParameterTypes().length == args.length && resolution.directMethod.isValidMethod(args)) {
+                return resolution.directMethod.doMethodInvoke(script, args);
+            }
+        }
+        return script.invokeMethod(methodName, arguments);
+    }
+
+    private Resolution resolve(DelegatingScript script, String methodName) {
+        Class<?> delegateClass = script.getDelegate() != null ? script.getDelegate().getClass() : null;
+        Map<String, Resolution> scriptResolutions = resolutions.get(script.getClass());
+        Resolution resolution = scriptResolutions.get(methodName);
+        if (resolution == null || resolution.delegateClass != delegateClass) {
+            resolution = new Resolution(script.getClass(), delegateClass, methodName);
+            scriptResolutions.put(methodName, resolution);
+        }
+        return resolution;
+    }
+
+    private static class Resolution {
+        private final Class<?> delegateClass;
+        private final boolean scriptResponds;
+        private final boolean delegateResponds;
+        private final MetaMethod directMethod;
+
+        Resolution(Class<?> scriptClass, Class<?> delegateClass, String methodName) {
+            this.delegateClass = delegateClass;
+            this.scriptResponds = respondsTo(scriptClass, methodName);
+            this.delegateResponds = delegateClass != null && respondsTo(delegateClass, methodName);
+
+            // only call the script method directly when there is no doubt which method groovy would pick
+            List<MetaMethod> scriptMethods = GroovySystem.getMetaClassRegistry().getMetaClass(scriptClass).getMethods().stream()
+                    .filter(method -> method.getName().equals(methodName))
+                    .collect(Collectors.toList());
+            if (!delegateResponds && scriptMethods.size() == 1 && scriptMethods.get(0).getDeclaringClass().getTheClass() == scriptClass &&
+                    !scriptMethods.get(0).isVargsMethod() && !respondsTo(scriptClass, "methodMissing")) {
+                this.directMethod = scriptMethods.get(0);
+            } else {
+                this.directMethod = null;
+            }
+        }
+
+        // a class with methodMissing responds to every name, DelegatingScript hands any method the delegate does not
+        // have to the script so methodMissing is called, same as before methods were resolved up front
+        private static boolean respondsTo(Class<?> type, String methodName) {
+            MetaClass metaClass = GroovySystem.getMetaClassRegistry().getMetaClass(type);
+            return metaClass.getMethods().stream()
+                    .anyMatch(method -> method.getName().equals(methodName) || method.getName().equals("methodMissing")) ||
+                    metaClass.getMetaMethods().stream().anyMatch(method -> method.getName().equals(methodName));
+        }
+    }
+}
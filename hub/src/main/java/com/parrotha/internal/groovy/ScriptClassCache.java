@@ -0,0 +1,376 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.groovy;
+
+import com.parrotha.internal.hub.HubUtils;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import groovy.lang.Script;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiles device handler and automation app scripts and keeps the generated bytecode on disk, so that a script
+ * that has not changed since the last start is loaded from the cache instead of going through the Groovy compiler.
+ * Entries are keyed by a hash of the script source, the script name, the hub version and the Groovy version.
+ */
+public class ScriptClassCache {
+    private static final Logger logger = LoggerFactory.getLogger(ScriptClassCache.class);
+
+    private static final String SCRIPT_BASE_CLASS = "com.parrotha.internal.script.ParrotHubDelegatingScript";
+    private static final int FILE_MAGIC = 0x50485343;
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".classes";
+
+    private final File cacheDirectory;
+    private final int maxEntries;
+    private final int warmUpThreads;
+    private final ClassLoader parentClassLoader;
+
+    // scripts currently being loaded or compiled, so concurrent requests for the same script only compile it once
+    private final Map<String, CompletableFuture<Class<Script>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+    private final LongAdder compileFailures = new LongAdder();
+    private final LongAdder diskFailures = new LongAdder();
+    private volatile long lastWarmUpMillis = 0;
+    private volatile int lastWarmUpCount = 0;
+
+    /**
+     * Creates a cache that only compiles scripts and does not store anything on disk.
+     */
+    public ScriptClassCache() {
+        this(null, 0, 1);
+    }
+
+    /**
+     * @param cacheDirectory Directory for the compiled scripts, null to disable the disk cache.
+     * @param maxEntries     Maximum number of compiled scripts kept on disk, least recently used are removed first.
+     * @param warmUpThreads  Number of threads used to compile scripts in {@link #warmUp(Collection)}.
+     */
+    public ScriptClassCache(File cacheDirectory, int maxEntries, int warmUpThreads) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxEntries = maxEntries;
+        this.warmUpThreads = Math.max(1, warmUpThreads);
+        this.parentClassLoader = ScriptClassCache.class.getClassLoader();
+        if (cacheDirectory != null && !cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+            logger.warn("Unable to create script cache directory {}", cacheDirectory);
+        }
+    }
+
+    /**
+     * Get the class for a script.  The class name is derived from the script source.
+     *
+     * @param sourceCode Groovy source of the script.
+     * @return The script class.
+     */
+    public Class<Script> getScriptClass(String sourceCode) {
+        return getScriptClass("Script_" + sha256(sourceCode).substring(0, 16), sourceCode);
+    }
+
+    /**
+     * Get the class for a script, loading it from the disk cache if it has been compiled before.
+     *
+     * @param scriptName Name of the script class.
+     * @param sourceCode Groovy source of the script.
+     * @return The script class.
+     * @throws org.codehaus.groovy.control.CompilationFailedException if the script does not compile.
+     */
+    public Class<Script> getScriptClass(String scriptName, String sourceCode) {
+        String cacheKey = sha256(FILE_FORMAT_VERSION + "\n" + HubUtils.getHubVersion() + "\n" + GroovySystem.getVersion() + "\n" +
+                SCRIPT_BASE_CLASS + "\n" + scriptName + "\n" + sourceCode);
+
+        CompletableFuture<Class<Script>> future = new CompletableFuture<>();
+        CompletableFuture<Class<Script>> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            Class<Script> scriptClass = loadOrCompile(cacheKey, scriptName, sourceCode);
+            future.complete(scriptClass);
+            return scriptClass;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, future);
+        }
+    }
+
+    /**
+     * Create a new instance of a script, like {@link groovy.lang.GroovyShell#parse(String)} but using the cache.
+     *
+     * @param sourceCode Groovy source of the script.
+     * @return A new script instance.
+     */
+    public Script createScript(String sourceCode) {
+        return InvokerHelper.createScript(getScriptClass(sourceCode), new Binding());
+    }
+
+    /**
+     * Run tasks, typically ones that load script classes, in the background on a bounded pool.  The pool is shut down
+     * once all the tasks are complete.
+     *
+     * @param tasks Tasks to run.
+     * @return A future that completes when all tasks have run.
+     */
+    public CompletableFuture<Void> warmUp(Collection<Runnable> tasks) {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService warmUpExecutor = Executors.newFixedThreadPool(Math.min(warmUpThreads, tasks.size()), r -> {
+            Thread thread = new Thread(r, "script-warm-up-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        long start = System.currentTimeMillis();
+        CompletableFuture<?>[] futures = tasks.stream().map(task -> CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.warn("Exception while warming up script", e);
+            }
+        }, warmUpExecutor)).toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(futures).whenComplete((v, t) -> {
+            warmUpExecutor.shutdown();
+            lastWarmUpMillis = System.currentTimeMillis() - start;
+            lastWarmUpCount = futures.length;
+            logger.info("Warmed up {} scripts in {} ms", futures.length, lastWarmUpMillis);
+        });
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long compileCount = compiles.sum();
+        metrics.put("diskCacheEnabled", cacheDirectory != null);
+        metrics.put("diskHits", diskHits.sum());
+        metrics.put("diskFailures", diskFailures.sum());
+        metrics.put("compiles", compileCount);
+        metrics.put("compileFailures", compileFailures.sum());
+        metrics.put("compileAvgMillis", compileCount > 0 ? compileNanos.sum() / compileCount / 1_000_000.0 : 0.0);
+        metrics.put("lastWarmUpCount", lastWarmUpCount);
+        metrics.put("lastWarmUpMillis", lastWarmUpMillis);
+        return metrics;
+    }
+
+    private Class<Script> loadOrCompile(String cacheKey, String scriptName, String sourceCode) {
+        File cacheFile = cacheDirectory != null ? new File(cacheDirectory, cacheKey + FILE_EXTENSION) : null;
+        if (cacheFile != null && cacheFile.exists()) {
+            try {
+                CompiledScript compiledScript = readCacheFile(cacheFile, cacheKey);
+                Class<Script> scriptClass = compiledScript.loadScriptClass(parentClassLoader);
+                cacheFile.setLastModified(System.currentTimeMillis());
+                diskHits.increment();
+                return scriptClass;
+            } catch (IOException | ClassNotFoundException | LinkageError e) {
+                diskFailures.increment();
+                logger.warn("Unable to load cached script " + scriptName + ", recompiling", e);
+                cacheFile.delete();
+            }
+        }
+
+        CompiledScript compiledScript = compile(scriptName, sourceCode);
+        Class<Script> scriptClass;
+        try {
+            scriptClass = compiledScript.loadScriptClass(parentClassLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Compiled script class not found: " + compiledScript.mainClassName, e);
+        }
+        if (cacheFile != null) {
+            try {
+                writeCacheFile(cacheFile, cacheKey, compiledScript);
+                removeOldEntries();
+            } catch (IOException e) {
+                diskFailures.increment();
+                logger.warn("Unable to write cached script " + scriptName, e);
+            }
+        }
+        return scriptClass;
+    }
+
+    private CompiledScript compile(String scriptName, String sourceCode) {
+        long start = System.nanoTime();
+        try {
+            CompilerConfiguration config = new CompilerConfiguration();
+            config.setScriptBaseClass(SCRIPT_BASE_CLASS);
+
+            GroovyClassLoader gcl = new GroovyClassLoader(parentClassLoader, config);
+            CompilationUnit compilationUnit = new CompilationUnit(config, null, gcl);
+            SourceUnit sourceUnit = compilationUnit.addSource(scriptName, sourceCode);
+            compilationUnit.compile(Phases.CLASS_GENERATION);
+
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (Object groovyClass : compilationUnit.getClasses()) {
+                classes.put(((GroovyClass) groovyClass).getName(), ((GroovyClass) groovyClass).getBytes());
+            }
+            compiles.increment();
+            return new CompiledScript(sourceUnit.getAST().getMainClassName(), classes);
+        } catch (RuntimeException e) {
+            compileFailures.increment();
+            throw e;
+        } finally {
+            compileNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private CompiledScript readCacheFile(File cacheFile, String cacheKey) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (in.readInt() != FILE_MAGIC || !cacheKey.equals(in.readUTF())) {
+                throw new IOException("Invalid cache file " + cacheFile);
+            }
+            String mainClassName = in.readUTF();
+            int classCount = in.readInt();
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String className = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(className, bytes);
+            }
+            return new CompiledScript(mainClassName, classes);
+        }
+    }
+
+    private void writeCacheFile(File cacheFile, String cacheKey, CompiledScript compiledScript) throws IOException {
+        Path target = cacheFile.toPath();
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp" + Thread.currentThread().getId());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeUTF(cacheKey);
+            out.writeUTF(compiledScript.mainClassName);
+            out.writeInt(compiledScript.classes.size());
+            for (Map.Entry<String, byte[]> entry : compiledScript.classes.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void removeOldEntries() {
+        File[] cacheFiles = cacheDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (cacheFiles == null || cacheFiles.length <= maxEntries) {
+            return;
+        }
+        Arrays.sort(cacheFiles, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < cacheFiles.length - maxEntries; i++) {
+            cacheFiles[i].delete();
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class CompiledScript {
+        private final String mainClassName;
+        private final Map<String, byte[]> classes;
+
+        CompiledScript(String mainClassName, Map<String, byte[]> classes) {
+            this.mainClassName = mainClassName;
+            this.classes = classes;
+        }
+
+        @SuppressWarnings("unchecked")
+        Class<Script> loadScriptClass(ClassLoader parent) throws ClassNotFoundException {
+            return (Class<Script>) Class.forName(mainClassName, false, new CompiledScriptClassLoader(parent, classes));
+        }
+    }
+
+    /**
+     * Defines the classes of a single compiled script from their bytecode.
+     */
+    private static class CompiledScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        CompiledScriptClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
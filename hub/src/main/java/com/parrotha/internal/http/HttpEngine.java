@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hub wide http client used by the httpGet/httpPost and asynchttp methods available to apps and device handlers.
+ * Connections are pooled and kept alive per host, so repeated requests to the same api reuse connections and tls
+ * sessions.  Async requests are limited per host, requests beyond the limit wait in a per host queue instead of
+ * holding a thread, and response callbacks run on a bounded callback pool.
+ */
+public class HttpEngine {
+    private static final Logger logger = LoggerFactory.getLogger(HttpEngine.class);
+
+    public interface ResponseCallback {
+        /**
+         * @param response the response, it is closed and its entity consumed
+         * @param body     the response body, null if there was none
+         */
+        void completed(CloseableHttpResponse response, String body);
+
+        void failed(Exception e);
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final int maxQueuedRequests;
+    private final RequestConfig defaultRequestConfig;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ThreadPoolExecutor requestPool;
+    private final ThreadPoolExecutor callbackPool;
+
+    private final Map<String, HostQueue> hostQueues = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public HttpEngine() {
+        this(20, 4, 10, 30, 60, 500, 4);
+    }
+
+    /**
+     * @param maxConnections        Total number of pooled connections, also the number of async requests in flight.
+     * @param maxConnectionsPerHost Number of pooled connections and async requests in flight for one host.
+     * @param connectTimeout        Seconds to wait for a connection.
+     * @param socketTimeout         Default seconds to wait for data, requests can override with a timeout parameter.
+     * @param keepAlive             Most seconds an idle connection is kept for reuse.
+     * @param maxQueuedRequests     Async requests that can wait for a connection before new ones are rejected.
+     * @param callbackThreadCount   Number of threads running async response callbacks.
+     */
+    public HttpEngine(int maxConnections, int maxConnectionsPerHost, int connectTimeout, int socketTimeout, int keepAlive,
+                      int maxQueuedRequests, int callbackThreadCount) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxConnectionsPerHost = Math.max(1, Math.min(maxConnectionsPerHost, this.maxConnections));
+        this.maxQueuedRequests = Math.max(1, maxQueuedRequests);
+
+        defaultRequestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout * 1000)
+                .setConnectionRequestTimeout(connectTimeout * 1000)
+                .setSocketTimeout(socketTimeout * 1000)
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(keepAlive, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(this.maxConnections);
+        connectionManager.setDefaultMaxPerRoute(this.maxConnectionsPerHost);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        long keepAliveMillis = keepAlive * 1000L;
+        client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    // use the server's keep alive if it sends one, but never keep a connection longer than configured
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.SECONDS)
+                .build();
+
+        requestPool = newPool("HttpRequest-", this.maxConnections, new LinkedBlockingQueue<>());
+        // when callbacks back up, the request thread runs the callback which slows down new requests
+        callbackPool = newPool("HttpCallback-", Math.max(1, callbackThreadCount), new ArrayBlockingQueue<>(this.maxQueuedRequests));
+        callbackPool.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ThreadPoolExecutor newPool(String name, int threadCount, BlockingQueue<Runnable> queue) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName(name + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * The shared client, responses must be closed or their entity consumed to return the connection to the pool.
+     */
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Request config with a different socket timeout.
+     *
+     * @param timeout seconds to wait for data, if null the default config is returned
+     */
+    public RequestConfig getRequestConfig(Integer timeout) {
+        if (timeout == null) {
+            return defaultRequestConfig;
+        }
+        return RequestConfig.copy(defaultRequestConfig).setSocketTimeout(timeout * 1000).build();
+    }
+
+    /**
+     * Send a request without waiting for the response.
+     *
+     * @return false if the request was rejected because too many requests are waiting
+     */
+    public boolean executeAsync(HttpUriRequest request, ResponseCallback callback) {
+        if (queued.incrementAndGet() > maxQueuedRequests) {
+            queued.decrementAndGet();
+            rejected.increment();
+            logger.warn("Too many http requests waiting, rejecting request to " + request.getURI());
+            return false;
+        }
+        HttpHost host = URIUtils.extractHost(request.getURI());
+        String hostKey = host != null ? host.toString() : "";
+        hostQueues.computeIfAbsent(hostKey, k -> new HostQueue()).offer(new AsyncRequest(request, callback));
+        return true;
+    }
+
+    private void run(HttpUriRequest request, ResponseCallback callback) {
+        long start = System.nanoTime();
+        CloseableHttpResponse response = null;
+        String body = null;
+        Exception exception = null;
+        try {
+            response = client.execute(request);
+            if (response.getEntity() != null) {
+                body = EntityUtils.toString(response.getEntity());
+            }
+        } catch (IOException | RuntimeException e) {
+            exception = e;
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException e) {
+                    logger.debug("Exception closing http response", e);
+                }
+            }
+        }
+        long latency = System.nanoTime() - start;
+        requests.increment();
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+
+        if (exception != null) {
+            failed.increment();
+        }
+        if (callback == null) {
+            if (exception != null) {
+                logger.warn("Exception with http request", exception);
+            }
+            return;
+        }
+
+        final CloseableHttpResponse finalResponse = response;
+        final String finalBody = body;
+        final Exception finalException = exception;
+        try {
+            callbackPool.execute(() -> {
+                try {
+                    if (finalException != null) {
+                        callback.failed(finalException);
+                    } else {
+                        callback.completed(finalResponse, finalBody);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Exception in http response callback", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Http response callback rejected, engine is shutting down");
+        }
+    }
+
+    public void shutdown() {
+        requestPool.shutdownNow();
+        callbackPool.shutdown();
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn("Exception closing http client", e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long requestCount = requests.sum();
+        metrics.put("requests", requestCount);
+        metrics.put("failed", failed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("queueDepth", queued.get());
+        metrics.put("callbackQueueDepth", callbackPool.getQueue().size());
+        metrics.put("averageLatencyMillis", requestCount > 0 ? latencyNanos.sum() / requestCount / 1_000_000 : 0);
+        metrics.put("maxLatencyMillis", maxLatencyNanos.get() / 1_000_000);
+        PoolStats poolStats = connectionManager.getTotalStats();
+        metrics.put("connectionsLeased", poolStats.getLeased());
+        metrics.put("connectionsAvailable", poolStats.getAvailable());
+        metrics.put("connectionsPending", poolStats.getPending());
+        metrics.put("maxConnections", maxConnections);
+        metrics.put("maxConnectionsPerHost", maxConnectionsPerHost);
+        return metrics;
+    }
+
+    private class AsyncRequest implements Runnable {
+        private final HttpUriRequest request;
+        private final ResponseCallback callback;
+
+        AsyncRequest(HttpUriRequest request, ResponseCallback callback) {
+            this.request = request;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            HttpEngine.this.run(request, callback);
+        }
+
+        /**
+         * The request can not be run because the engine is shutting down, let the callback know it failed.
+         */
+        void reject() {
+            queued.decrementAndGet();
+            rejected.increment();
+            String message = "Http request to " + request.getURI() + " rejected, engine is shutting down";
+            if (callback == null) {
+                logger.warn(message);
+                return;
+            }
+            try {
+                callback.failed(new RejectedExecutionException(message));
+            } catch (RuntimeException e) {
+                logger.warn("Exception in http response callback", e);
+            }
+        }
+    }
+
+    /**
+     * Async requests for one host, at most maxConnectionsPerHost of them are running at a time.
+     */
+    private class HostQueue {
+        private final Deque<AsyncRequest> pending = new ArrayDeque<>();
+        // guarded by this
+        private int running = 0;
+
+        void offer(AsyncRequest task) {
+            synchronized (this) {
+                if (running >= maxConnectionsPerHost) {
+                    pending.addLast(task);
+                    return;
+                }
+                running++;
+            }
+            submit(task);
+        }
+
+        private void submit(AsyncRequest task) {
+            while (true) {
+                try {
+                    AsyncRequest submitted = task;
+                    requestPool.execute(() -> {
+                        queued.decrementAndGet();
+                        try {
+                            submitted.run();
+                        } finally {
+                            next();
+                        }
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // nothing will run again, fail the waiting requests too instead of leaving them queued
+                    task.reject();
+                    synchronized (this) {
+                        task = pending.pollFirst();
+                        if (task == null) {
+                            running--;
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void next() {
+            AsyncRequest task;
+            synchronized (this) {
+                task = pending.pollFirst();
+                if (task == null) {
+                    running--;
+                    return;
+                }
+            }
+            submit(task);
+        }
+    }
+}
@@ -22,12 +22,9 @@ import com.google.common.collect.Maps;
 import groovy.json.JsonBuilder;
 import groovy.lang.GString;
 import org.apache.http.client.entity.EntityBuilder;
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 
 import java.io.IOException;
 import java.net.URI;
@@ -131,7 +128,10 @@ public class ParrotHttpRequest {
         return httpResponse;
     }
 
-    public static CloseableHttpResponse doApacheHttpRequest(String method, Map params) throws URISyntaxException, IOException {
+    /**
+     * Build a request for the shared http engine from the parameters passed to the asynchttp methods.
+     */
+    public static HttpUriRequest buildApacheHttpRequest(HttpEngine httpEngine, String method, Map params) throws URISyntaxException {
         Map paramsCopy = Maps.newHashMap(params);
 
         Object uriObj = paramsCopy.remove("uri");
@@ -185,13 +185,13 @@ public class ParrotHttpRequest {
             contentType = contentTypeObj.toString();
         }
 
-        int timeout = 30;
+        Integer timeout = null;
         Object timeoutObj = paramsCopy.remove("timeout");
         if (timeoutObj instanceof Number) {
             timeout = ((Number) timeoutObj).intValue();
         }
 
-        RequestBuilder requestBuilder = RequestBuilder.create(method).setUri(uri);
+        RequestBuilder requestBuilder = RequestBuilder.create(method).setUri(uri).setConfig(httpEngine.getRequestConfig(timeout));
 
         Object body = paramsCopy.remove("body");
         if (body != null) {
@@ -217,11 +217,6 @@ public class ParrotHttpRequest {
         requestBuilder.addHeader("Accept", contentType);
         requestBuilder.addHeader("Content-Type", requestContentType);
 
-        HttpUriRequest httpUriRequest = requestBuilder.build();
-
-        CloseableHttpClient httpclient = HttpClients.createDefault();
-        CloseableHttpResponse reponse = httpclient.execute(httpUriRequest);
-
-        return reponse;
+        return requestBuilder.build();
     }
 }
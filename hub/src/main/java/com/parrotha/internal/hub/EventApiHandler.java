@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.internal.BaseApiHandler;
+import io.javalin.Javalin;
+import io.javalin.websocket.WsContext;
+import io.javalin.websocket.WsHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public class EventApiHandler extends BaseApiHandler {
+    private static final Logger logger = LoggerFactory.getLogger(EventApiHandler.class);
+
+    // web socket close code for "try again later"
+    private static final int TRY_AGAIN_LATER = 1013;
+
+    private EventBus eventBus;
+
+    public EventApiHandler(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public void setupApi(Javalin app) {
+        // all hub events, optionally filtered with the deviceId, appId, source and name query parameters
+        app.ws("/api/events", ws -> setupEventSocket(ws, eventBus, ctx -> EventBus.Filter.fromParameters(ctx.queryParamMap())));
+    }
+
+    /**
+     * Send events matching the filter to each connected web socket, a socket that can not keep up is closed.
+     */
+    public static void setupEventSocket(WsHandler ws, EventBus eventBus, Function<WsContext, EventBus.Filter> filterFunction) {
+        final Map<String, EventBus.Subscriber> subscribers = new ConcurrentHashMap<>();
+        ws.onConnect(ctx -> {
+            EventBus.Subscriber subscriber = eventBus.subscribe(filterFunction.apply(ctx),
+                    message -> ctx.send(message.getJson()),
+                    () -> {
+                        subscribers.remove(ctx.getSessionId());
+                        ctx.session.close(TRY_AGAIN_LATER, "Too many undelivered events");
+                    });
+            subscribers.put(ctx.getSessionId(), subscriber);
+        });
+
+        ws.onClose(ctx -> eventBus.unsubscribe(subscribers.remove(ctx.getSessionId())));
+
+        ws.onError(ctx -> logger.debug("Event socket error", ctx.error()));
+    }
+}
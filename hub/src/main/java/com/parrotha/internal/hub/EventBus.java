@@ -0,0 +1,437 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import groovy.json.JsonOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to subscribers (web sockets, event listeners) by topic.  Subscribers are indexed by the device or
+ * app they want events from, or by event source, so an event is only offered to subscribers that can match it.  Each
+ * subscriber has its own bounded queue drained by a shared worker pool, a subscriber that falls too far behind is
+ * evicted, or has its oldest events dropped if it can not be evicted.  Events are serialized to json at most once no
+ * matter how many subscribers receive them.
+ */
+public class EventBus {
+    private static final Logger logger = LoggerFactory.getLogger(EventBus.class);
+
+    private static final String ALL_TOPIC = "*";
+
+    private final int workerCount;
+    private final int queueLimit;
+
+    // topic -> subscribers, topics are source:sourceId (DEVICE:<id>, IAA:<id>), source (DEVICE, HUB, ...) or *
+    private final Map<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+    private volatile ThreadPoolExecutor workerPool;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder serialized = new LongAdder();
+
+    public EventBus() {
+        this(2, 100);
+    }
+
+    /**
+     * @param workerCount Number of threads delivering events to subscribers.
+     * @param queueLimit  Number of undelivered events a subscriber can have before it is evicted.
+     */
+    public EventBus(int workerCount, int queueLimit) {
+        this.workerCount = Math.max(1, workerCount);
+        this.queueLimit = Math.max(1, queueLimit);
+    }
+
+    /**
+     * @param filter    Events to receive.
+     * @param consumer  Receives the events in order, on one of the event bus threads.
+     * @param onEvicted Called when the subscriber is evicted for falling behind.  If null the subscriber is never
+     *                  evicted, its oldest events are dropped instead.
+     */
+    public Subscriber subscribe(Filter filter, Consumer<EventMessage> consumer, Runnable onEvicted) {
+        Subscriber subscriber = new Subscriber(filter != null ? filter : Filter.ALL, consumer, onEvicted);
+        for (String topic : subscriber.filter.getTopics()) {
+            // add inside compute so an unsubscribe can not remove the set between creating and adding to it
+            topics.compute(topic, (k, subscribers) -> {
+                if (subscribers == null) {
+                    subscribers = new CopyOnWriteArraySet<>();
+                }
+                subscribers.add(subscriber);
+                return subscribers;
+            });
+        }
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        if (subscriber == null) {
+            return;
+        }
+        subscriber.closed = true;
+        for (String topic : subscriber.filter.getTopics()) {
+            // remove topics without subscribers, device topics would otherwise be left behind by every closed socket
+            topics.computeIfPresent(topic, (k, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    public void publish(Event event) {
+        if (event == null) {
+            return;
+        }
+        published.increment();
+        EventMessage message = null;
+        String source = event.getSource();
+        message = offer(topics.get(ALL_TOPIC), event, message);
+        if (source != null) {
+            message = offer(topics.get(source), event, message);
+            if (event.getSourceId() != null) {
+                offer(topics.get(source + ":" + event.getSourceId()), event, message);
+            }
+        }
+    }
+
+    private EventMessage offer(Set<Subscriber> subscribers, Event event, EventMessage message) {
+        if (subscribers == null || subscribers.isEmpty()) {
+            return message;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.filter.matches(event)) {
+                if (message == null) {
+                    message = new EventMessage(event);
+                }
+                subscriber.offer(message);
+            }
+        }
+        return message;
+    }
+
+    public int getSubscriberCount() {
+        Set<Subscriber> subscribers = new HashSet<>();
+        for (Set<Subscriber> topicSubscribers : topics.values()) {
+            subscribers.addAll(topicSubscribers);
+        }
+        return subscribers.size();
+    }
+
+    public void shutdown() {
+        ThreadPoolExecutor pool = workerPool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("subscribers", getSubscriberCount());
+        metrics.put("topics", topics.size());
+        metrics.put("queueLimit", queueLimit);
+        metrics.put("published", published.sum());
+        metrics.put("serialized", serialized.sum());
+        metrics.put("delivered", delivered.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("evicted", evicted.sum());
+        metrics.put("failed", failed.sum());
+        return metrics;
+    }
+
+    private boolean execute(Runnable runnable) {
+        try {
+            getWorkerPool().execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private ThreadPoolExecutor getWorkerPool() {
+        if (workerPool == null) {
+            synchronized (this) {
+                if (workerPool == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = defaultThreadFactory.newThread(runnable);
+                        thread.setName("EventBus-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    workerPool = pool;
+                }
+            }
+        }
+        return workerPool;
+    }
+
+    /**
+     * An event shared by all subscribers that receive it.
+     */
+    public class EventMessage {
+        private final Event event;
+        private volatile String json;
+
+        EventMessage(Event event) {
+            this.event = event;
+        }
+
+        public Event getEvent() {
+            return event;
+        }
+
+        public String getJson() {
+            String json = this.json;
+            if (json == null) {
+                synchronized (this) {
+                    json = this.json;
+                    if (json == null) {
+                        Map<String, Object> map = new LinkedHashMap<>();
+                        map.put("id", event.getId());
+                        map.put("name", event.getName());
+                        map.put("value", event.getValue());
+                        map.put("unit", event.getUnit());
+                        map.put("source", event.getSource());
+                        map.put("sourceId", event.getSourceId());
+                        map.put("displayName", event.getDisplayName());
+                        map.put("descriptionText", event.getDescriptionText());
+                        map.put("isStateChange", event.isStateChange());
+                        map.put("date", event.getDate() != null ? event.getDate().getTime() : null);
+                        json = JsonOutput.toJson(map);
+                        this.json = json;
+                        serialized.increment();
+                    }
+                }
+            }
+            return json;
+        }
+    }
+
+    public class Subscriber implements Runnable {
+        private final Filter filter;
+        private final Consumer<EventMessage> consumer;
+        private final Runnable onEvicted;
+        private final Deque<EventMessage> queue = new ArrayDeque<>();
+        // true while the subscriber is queued on or running in the worker pool, guarded by this
+        private boolean scheduled = false;
+        private volatile boolean closed = false;
+
+        Subscriber(Filter filter, Consumer<EventMessage> consumer, Runnable onEvicted) {
+            this.filter = filter;
+            this.consumer = consumer;
+            this.onEvicted = onEvicted;
+        }
+
+        public Filter getFilter() {
+            return filter;
+        }
+
+        void offer(EventMessage message) {
+            if (closed) {
+                return;
+            }
+            synchronized (this) {
+                if (queue.size() >= queueLimit) {
+                    if (onEvicted != null) {
+                        queue.clear();
+                        evict();
+                        return;
+                    }
+                    queue.pollFirst();
+                    dropped.increment();
+                }
+                queue.addLast(message);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            if (!execute(this)) {
+                synchronized (this) {
+                    queue.clear();
+                    scheduled = false;
+                }
+            }
+        }
+
+        private void evict() {
+            unsubscribe(this);
+            evicted.increment();
+            logger.info("Evicting event subscriber that fell " + queueLimit + " events behind");
+            // close on a worker thread, closing a socket can block
+            if (!execute(() -> runQuietly(onEvicted))) {
+                runQuietly(onEvicted);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                EventMessage message;
+                synchronized (this) {
+                    message = queue.pollFirst();
+                    if (message == null || closed) {
+                        queue.clear();
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    consumer.accept(message);
+                    delivered.increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    logger.warn("Exception delivering event to subscriber", e);
+                }
+            }
+        }
+
+        private void runQuietly(Runnable runnable) {
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                logger.warn("Exception evicting event subscriber", e);
+            }
+        }
+    }
+
+    /**
+     * Which events a subscriber receives.  Empty sets match everything, device and app ids match events from any of
+     * the listed devices or apps.
+     */
+    public static class Filter {
+        public static final Filter ALL = new Filter(null, null, null, null);
+
+        private final Set<String> deviceIds;
+        private final Set<String> appIds;
+        private final Set<String> sources;
+        private final Set<String> names;
+
+        public Filter(Collection<String> deviceIds, Collection<String> appIds, Collection<String> sources, Collection<String> names) {
+            this.deviceIds = toSet(deviceIds);
+            this.appIds = toSet(appIds);
+            this.sources = toSet(sources);
+            this.names = toSet(names);
+        }
+
+        public static Filter forDevice(String deviceId) {
+            return new Filter(Collections.singleton(deviceId), null, null, null);
+        }
+
+        /**
+         * Build a filter from query parameters, each parameter is a comma separated list: deviceId, appId, source and
+         * name (or attribute).
+         */
+        public static Filter fromParameters(Map<String, List<String>> parameters) {
+            return new Filter(split(parameters.get("deviceId")), split(parameters.get("appId")), split(parameters.get("source")),
+                    mergeNames(split(parameters.get("name")), split(parameters.get("attribute"))));
+        }
+
+        public boolean matches(Event event) {
+            if (!sources.isEmpty() && !sources.contains(event.getSource())) {
+                return false;
+            }
+            if (!names.isEmpty() && !names.contains(event.getName())) {
+                return false;
+            }
+            if (!deviceIds.isEmpty() || !appIds.isEmpty()) {
+                if ("DEVICE".equals(event.getSource())) {
+                    return deviceIds.contains(event.getSourceId());
+                } else if ("IAA".equals(event.getSource())) {
+                    return appIds.contains(event.getSourceId());
+                }
+                return false;
+            }
+            return true;
+        }
+
+        /*
+         * The most specific topics a matching event is published to.
+         */
+        Set<String> getTopics() {
+            Set<String> topics = new HashSet<>();
+            if (!deviceIds.isEmpty() || !appIds.isEmpty()) {
+                for (String deviceId : deviceIds) {
+                    topics.add("DEVICE:" + deviceId);
+                }
+                for (String appId : appIds) {
+                    topics.add("IAA:" + appId);
+                }
+            } else if (!sources.isEmpty()) {
+                topics.addAll(sources);
+            } else {
+                topics.add(ALL_TOPIC);
+            }
+            return topics;
+        }
+
+        private static Set<String> toSet(Collection<String> values) {
+            if (values == null || values.isEmpty()) {
+                return Collections.emptySet();
+            }
+            return Collections.unmodifiableSet(new HashSet<>(values));
+        }
+
+        private static Set<String> split(List<String> values) {
+            Set<String> set = new HashSet<>();
+            if (values != null) {
+                for (String value : values) {
+                    for (String item : value.split(",")) {
+                        if (!item.isBlank()) {
+                            set.add(item.trim());
+                        }
+                    }
+                }
+            }
+            return set;
+        }
+
+        private static Set<String> mergeNames(Set<String> names, Set<String> attributes) {
+            names.addAll(attributes);
+            return names;
+        }
+    }
+}
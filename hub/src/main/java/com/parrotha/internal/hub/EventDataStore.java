@@ -26,7 +26,30 @@ import java.util.List;
 public interface EventDataStore {
     void saveEvent(Event event);
 
+    void saveEvents(List<Event> events);
+
     List<Event> eventsSince(String source, String sourceId, Date date, int maxEvents);
 
     List<Event> eventsBetween(String source, String sourceId, Date startDate, Date endDate, int maxEvents);
+
+    int countEvents(String source);
+
+    /**
+     * Delete up to maxEvents events of the source that are older than date.
+     *
+     * @return number of events deleted.
+     */
+    int deleteEventsBefore(String source, Date date, int maxEvents);
+
+    /**
+     * Delete the oldest events of the source.
+     *
+     * @return number of events deleted.
+     */
+    int deleteOldestEvents(String source, int maxEvents);
+
+    /**
+     * Write any pending events to storage.
+     */
+    void shutdown();
 }
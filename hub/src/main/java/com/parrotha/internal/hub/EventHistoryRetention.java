@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Deletes old events from the event history on a background thread.  Each event source (DEVICE, IAA, HUB, LOCATION)
+ * has a maximum age and a maximum number of events.  Events are deleted in small batches with a pause in between so
+ * that saving new events is not held up.  After enough events have been deleted the database is compacted to give
+ * the space back.
+ */
+public class EventHistoryRetention {
+    private static final Logger logger = LoggerFactory.getLogger(EventHistoryRetention.class);
+
+    private final EventDataStore eventDataStore;
+    private final Map<String, Policy> policies;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final long compactIntervalMillis;
+    private final int compactMinEvents;
+    private final LongSupplier compactDatabase;
+    private ScheduledExecutorService purgeTimer;
+
+    private long lastCompactTime = 0;
+    private long eventsPurgedSinceCompact = 0;
+
+    private final Map<String, LongAdder> eventsPurged = new ConcurrentHashMap<>();
+    private final LongAdder purgeRuns = new LongAdder();
+    private final LongAdder purgeFailures = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder bytesReclaimed = new LongAdder();
+    private volatile long lastPurgeMillis = 0;
+    private volatile long lastCompactMillis = 0;
+
+    /**
+     * @param eventDataStore       Where the events are deleted from.
+     * @param policies             Retention of each event source, sources without a policy are kept.
+     * @param purgeIntervalMinutes How often old events are deleted, 0 to not run in the background.
+     * @param batchSize            Number of events deleted at once.
+     * @param batchPauseMillis     Pause between batches.
+     * @param compactIntervalHours Minimum time between compactions, 0 to never compact.
+     * @param compactMinEvents     Number of events that have to be deleted before the database is compacted.
+     * @param compactDatabase      Compacts the database and returns the number of bytes reclaimed.
+     */
+    public EventHistoryRetention(EventDataStore eventDataStore, Map<String, Policy> policies, int purgeIntervalMinutes, int batchSize,
+                                 long batchPauseMillis, int compactIntervalHours, int compactMinEvents, LongSupplier compactDatabase) {
+        this.eventDataStore = eventDataStore;
+        this.policies = new LinkedHashMap<>(policies);
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMillis = batchPauseMillis;
+        this.compactIntervalMillis = TimeUnit.HOURS.toMillis(compactIntervalHours);
+        this.compactMinEvents = compactMinEvents;
+        this.compactDatabase = compactDatabase;
+
+        if (purgeIntervalMinutes > 0) {
+            ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+            purgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = defaultThreadFactory.newThread(runnable);
+                thread.setName("EventHistoryRetention");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // the first purge waits a minute so it does not slow down start up
+            purgeTimer.scheduleWithFixedDelay(() -> {
+                try {
+                    purge(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    purgeFailures.increment();
+                    logger.warn("Exception deleting old events", e);
+                }
+            }, 1, purgeIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Delete events past their retention and compact the database if it is due.
+     */
+    synchronized void purge(long now) {
+        long start = System.nanoTime();
+        for (Map.Entry<String, Policy> entry : policies.entrySet()) {
+            String source = entry.getKey();
+            Policy policy = entry.getValue();
+            if (policy.getMaxAgeDays() > 0) {
+                Date date = new Date(now - TimeUnit.DAYS.toMillis(policy.getMaxAgeDays()));
+                deleteInBatches(source, Integer.MAX_VALUE, maxEvents -> eventDataStore.deleteEventsBefore(source, date, maxEvents));
+            }
+            if (policy.getMaxEvents() > 0) {
+                int excessEvents = eventDataStore.countEvents(source) - policy.getMaxEvents();
+                if (excessEvents > 0) {
+                    deleteInBatches(source, excessEvents, maxEvents -> eventDataStore.deleteOldestEvents(source, maxEvents));
+                }
+            }
+        }
+        purgeRuns.increment();
+        lastPurgeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        if (compactIntervalMillis > 0 && eventsPurgedSinceCompact >= compactMinEvents && now - lastCompactTime >= compactIntervalMillis) {
+            long compactStart = System.nanoTime();
+            bytesReclaimed.add(compactDatabase.getAsLong());
+            compactions.increment();
+            lastCompactMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compactStart);
+            lastCompactTime = now;
+            eventsPurgedSinceCompact = 0;
+        }
+    }
+
+    private interface BatchDelete {
+        int delete(int maxEvents);
+    }
+
+    private void deleteInBatches(String source, int totalEvents, BatchDelete batchDelete) {
+        int remaining = totalEvents;
+        while (remaining > 0) {
+            int size = Math.min(batchSize, remaining);
+            int deleted = batchDelete.delete(size);
+            eventsPurged.computeIfAbsent(source, key -> new LongAdder()).add(deleted);
+            eventsPurgedSinceCompact += deleted;
+            remaining -= deleted;
+            if (deleted < size) {
+                return;
+            }
+            if (batchPauseMillis > 0) {
+                try {
+                    Thread.sleep(batchPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        ScheduledExecutorService timer;
+        synchronized (this) {
+            timer = purgeTimer;
+            purgeTimer = null;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<String, Long> purgedBySource = new LinkedHashMap<>();
+        long purged = 0;
+        for (String source : policies.keySet()) {
+            LongAdder sourcePurged = eventsPurged.get(source);
+            long count = sourcePurged != null ? sourcePurged.sum() : 0;
+            purgedBySource.put(source, count);
+            purged += count;
+        }
+        metrics.put("purgeRuns", purgeRuns.sum());
+        metrics.put("purgeFailures", purgeFailures.sum());
+        metrics.put("eventsPurged", purged);
+        metrics.put("eventsPurgedBySource", purgedBySource);
+        metrics.put("lastPurgeMillis", lastPurgeMillis);
+        metrics.put("compactions", compactions.sum());
+        metrics.put("bytesReclaimed", bytesReclaimed.sum());
+        metrics.put("lastCompactMillis", lastCompactMillis);
+        return metrics;
+    }
+
+    public static class Policy {
+        private final int maxAgeDays;
+        private final int maxEvents;
+
+        /**
+         * @param maxAgeDays Events older than this are deleted, 0 to keep events of any age.
+         * @param maxEvents  The oldest events over this number are deleted, 0 for no limit.
+         */
+        public Policy(int maxAgeDays, int maxEvents) {
+            this.maxAgeDays = maxAgeDays;
+            this.maxEvents = maxEvents;
+        }
+
+        public int getMaxAgeDays() {
+            return maxAgeDays;
+        }
+
+        public int getMaxEvents() {
+            return maxEvents;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import com.parrotha.internal.common.BatchWriter;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues events in memory and writes them to the wrapped data store in batches on a background thread, so
+ * saving an event does not wait on the database.  Queries wait for queued events to be written first.
+ */
+public class EventJournal implements EventDataStore {
+    private static final long QUERY_FLUSH_TIMEOUT_MILLIS = 5000;
+
+    private final EventDataStore eventDataStore;
+    private final BatchWriter<Event> batchWriter;
+
+    public EventJournal(EventDataStore eventDataStore) {
+        this(eventDataStore, 4096, 256, 250, 1000);
+    }
+
+    /**
+     * @param eventDataStore      Where the events are written.
+     * @param capacity            How many events can be queued.
+     * @param batchSize           Maximum number of events written in one batch.
+     * @param flushIntervalMillis How long an event can wait for a batch to fill up.
+     * @param maxBlockMillis      How long to wait for space when the queue is full before writing the event directly.
+     */
+    public EventJournal(EventDataStore eventDataStore, int capacity, int batchSize, long flushIntervalMillis, long maxBlockMillis) {
+        this.eventDataStore = eventDataStore;
+        this.batchWriter = new BatchWriter<>("EventJournal", capacity, batchSize, flushIntervalMillis, maxBlockMillis,
+                eventDataStore::saveEvents);
+    }
+
+    @Override
+    public void saveEvent(Event event) {
+        batchWriter.add(event);
+    }
+
+    @Override
+    public void saveEvents(List<Event> events) {
+        for (Event event : events) {
+            batchWriter.add(event);
+        }
+    }
+
+    @Override
+    public List<Event> eventsSince(String source, String sourceId, Date date, int maxEvents) {
+        batchWriter.flush(QUERY_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return eventDataStore.eventsSince(source, sourceId, date, maxEvents);
+    }
+
+    @Override
+    public List<Event> eventsBetween(String source, String sourceId, Date startDate, Date endDate, int maxEvents) {
+        batchWriter.flush(QUERY_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return eventDataStore.eventsBetween(source, sourceId, startDate, endDate, maxEvents);
+    }
+
+    @Override
+    public int countEvents(String source) {
+        batchWriter.flush(QUERY_FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return eventDataStore.countEvents(source);
+    }
+
+    @Override
+    public int deleteEventsBefore(String source, Date date, int maxEvents) {
+        return eventDataStore.deleteEventsBefore(source, date, maxEvents);
+    }
+
+    @Override
+    public int deleteOldestEvents(String source, int maxEvents) {
+        return eventDataStore.deleteOldestEvents(source, maxEvents);
+    }
+
+    @Override
+    public void shutdown() {
+        batchWriter.shutdown(30, TimeUnit.SECONDS);
+        eventDataStore.shutdown();
+    }
+
+    public Map<String, Object> getMetrics() {
+        return batchWriter.getMetrics();
+    }
+}
@@ -20,22 +20,25 @@ package com.parrotha.internal.hub;
 
 import com.parrotha.device.Event;
 import com.parrotha.internal.database.DatasourceFactory;
+import com.parrotha.internal.database.SequentialIdGenerator;
 import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
 import org.jdbi.v3.core.statement.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 
 public class EventSQLDataStore implements EventDataStore {
     private static final Logger logger = LoggerFactory.getLogger(EventSQLDataStore.class);
 
     private Jdbi jdbi;
+    private final SequentialIdGenerator idGenerator = new SequentialIdGenerator();
 
     public EventSQLDataStore() {
-        jdbi = Jdbi.create(DatasourceFactory.getDataSource());
+        jdbi = Jdbi.create(DatasourceFactory.getDataSource(DatasourceFactory.EVENTS));
 
         jdbi.registerRowMapper(Event.class, (rs, ctx) -> new Event(rs.getString("ID"), rs.getString("NAME"), rs.getString("VALUE"),
                 rs.getString("DESCRIPTION_TEXT"), rs.getBoolean("DISPLAYED"), rs.getString("DISPLAY_NAME"),
@@ -46,27 +49,39 @@ public class EventSQLDataStore implements EventDataStore {
 
     @Override
     public void saveEvent(Event event) {
-        jdbi.useHandle(handle -> {
-            // truncate value and description for now, maybe up the value size in the database in the future?
-            handle.execute("insert into EVENT_HISTORY (ID, NAME, VALUE, DESCRIPTION_TEXT, DISPLAYED, DISPLAY_NAME," +
-                            "IS_STATE_CHANGE, UNIT, DATA, DATE, SOURCE, SOURCE_ID, IS_DIGITAL) " +
-                            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                    UUID.randomUUID().toString(),
-                    event.getName(),
-                    getTruncatedString(event.getValue(), 255),
-                    getTruncatedString(event.getDescriptionText(), 255),
-                    event.isDisplayed(),
-                    event.getDisplayName(),
-                    event.isStateChange(),
-                    event.getUnit(),
-                    event.getData(),
-                    event.getDate(),
-                    event.getSource(),
-                    event.getSourceId(),
-                    event.isDigital());
+        saveEvents(Collections.singletonList(event));
+    }
+
+    @Override
+    public void saveEvents(List<Event> events) {
+        jdbi.useTransaction(handle -> {
+            PreparedBatch batch = handle.prepareBatch("insert into EVENT_HISTORY (ID, NAME, VALUE, DESCRIPTION_TEXT, DISPLAYED, " +
+                    "DISPLAY_NAME, IS_STATE_CHANGE, UNIT, DATA, DATE, SOURCE, SOURCE_ID, IS_DIGITAL) " +
+                    "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            for (Event event : events) {
+                // truncate value and description for now, maybe up the value size in the database in the future?
+                batch.add(idGenerator.nextId(),
+                        event.getName(),
+                        getTruncatedString(event.getValue(), 255),
+                        getTruncatedString(event.getDescriptionText(), 255),
+                        event.isDisplayed(),
+                        event.getDisplayName(),
+                        event.isStateChange(),
+                        event.getUnit(),
+                        event.getData(),
+                        event.getDate(),
+                        event.getSource(),
+                        event.getSourceId(),
+                        event.isDigital());
+            }
+            batch.execute();
         });
     }
 
+    @Override
+    public void shutdown() {
+    }
+
     private String getTruncatedString(String value, int length) {
         if (value != null && value.length() > length) {
             value = value.substring(0, length - 3) + "...";
@@ -95,15 +110,48 @@ public class EventSQLDataStore implements EventDataStore {
 
     @Override
     public List<Event> eventsBetween(String source, String sourceId, Date startDate, Date endDate, int maxEvents) {
-        List<Event> events = jdbi.withHandle(handle ->
-                handle.createQuery("select ID, NAME, VALUE, DESCRIPTION_TEXT, DISPLAYED, DISPLAY_NAME, " +
-                                "IS_STATE_CHANGE, UNIT, DATA, DATE, SOURCE, SOURCE_ID, IS_DIGITAL FROM EVENT_HISTORY " +
-                                "WHERE DATE > :startDate AND DATE < :endDate;")
-                        .bind("startDate", startDate)
-                        .bind("endDate", endDate)
-                        .setMaxRows(maxEvents)
-                        .mapTo(Event.class).list()
+        List<Event> events = jdbi.withHandle(handle -> {
+                    Query query = handle.createQuery("select ID, NAME, VALUE, DESCRIPTION_TEXT, DISPLAYED, DISPLAY_NAME, " +
+                                    "IS_STATE_CHANGE, UNIT, DATA, DATE, SOURCE, SOURCE_ID, IS_DIGITAL FROM EVENT_HISTORY " +
+                                    "WHERE SOURCE = :source AND SOURCE_ID = :sourceId " +
+                                    "AND DATE > :startDate AND DATE < :endDate;")
+                            .bind("source", source)
+                            .bind("sourceId", sourceId)
+                            .bind("startDate", startDate)
+                            .bind("endDate", endDate);
+                    if (maxEvents > -1) {
+                        query.setMaxRows(maxEvents);
+                    }
+                    return query.mapTo(Event.class).list();
+                }
         );
         return events;
     }
+
+    @Override
+    public int countEvents(String source) {
+        return jdbi.withHandle(handle -> handle.createQuery("select COUNT(*) FROM EVENT_HISTORY WHERE SOURCE = :source")
+                .bind("source", source)
+                .mapTo(Integer.class).one());
+    }
+
+    @Override
+    public int deleteEventsBefore(String source, Date date, int maxEvents) {
+        // limited to a small number of events so that inserts are not held up by a long delete
+        return jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM EVENT_HISTORY WHERE ID IN (select ID FROM EVENT_HISTORY " +
+                        "WHERE SOURCE = :source AND DATE < :date LIMIT :maxEvents)")
+                .bind("source", source)
+                .bind("date", date)
+                .bind("maxEvents", maxEvents)
+                .execute());
+    }
+
+    @Override
+    public int deleteOldestEvents(String source, int maxEvents) {
+        return jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM EVENT_HISTORY WHERE ID IN (select ID FROM EVENT_HISTORY " +
+                        "WHERE SOURCE = :source ORDER BY DATE LIMIT :maxEvents)")
+                .bind("source", source)
+                .bind("maxEvents", maxEvents)
+                .execute());
+    }
 }
@@ -26,15 +26,10 @@ import com.parrotha.internal.app.InstalledAutomationApp;
 import com.parrotha.internal.app.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -48,13 +43,27 @@ public class EventService {
     private Map<String, Subscription> subscriptionInfo;
     private Map<String, List<String>> deviceToSubscriptionMap;
     private Map<String, List<String>> locationToSubscriptionMap;
+    private final SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+    private SubscriptionJournal subscriptionJournal = new SubscriptionJournal();
+    private volatile boolean subscriptionsLoaded = false;
     private EventDataStore eventDataStore;
     private LocationService locationService;
+    private EventHistoryRetention eventHistoryRetention;
 
     public EventService(LocationService locationService) {
         this.locationService = locationService;
     }
 
+    public EventService(LocationService locationService, EventDataStore eventDataStore, SubscriptionJournal subscriptionJournal) {
+        this.locationService = locationService;
+        this.eventDataStore = eventDataStore;
+        this.subscriptionJournal = subscriptionJournal;
+    }
+
+    public void setEventHistoryRetention(EventHistoryRetention eventHistoryRetention) {
+        this.eventHistoryRetention = eventHistoryRetention;
+    }
+
     public EventDataStore getEventDataStore() {
         if (eventDataStore == null) {
             eventDataStore = new EventSQLDataStore();
@@ -66,49 +75,14 @@ public class EventService {
         if (subscriptionInfo != null) {
             return;
         }
-        Map<String, Subscription> tempSubscriptionInfo = new HashMap<>();
-        Map<String, List<String>> tempDeviceToSubscriptionMap = new HashMap<>();
-        Map<String, List<String>> tempLocationToSubscriptionMap = new HashMap<>();
-        try {
-            File subscriptionsConfigFile = new File("config/subscriptions.yaml");
-            if (subscriptionsConfigFile.exists()) {
-                Yaml yaml = new Yaml();
-                List<Subscription> listObj = yaml.load(new FileInputStream(subscriptionsConfigFile));
-                for (Subscription sub : listObj) {
-                    tempSubscriptionInfo.put(sub.getId(), sub);
-                    if (sub.getDeviceId() != null) {
-                        if (tempDeviceToSubscriptionMap.get(sub.getDeviceId()) == null) {
-                            tempDeviceToSubscriptionMap.put(sub.getDeviceId(), new ArrayList<>(Arrays.asList(sub.getId())));
-                        } else {
-                            tempDeviceToSubscriptionMap.get(sub.getDeviceId()).add(sub.getId());
-                        }
-                    } else if (sub.getLocationId() != null) {
-                        if (tempLocationToSubscriptionMap.get(sub.getLocationId()) == null) {
-                            tempLocationToSubscriptionMap.put(sub.getLocationId(), new ArrayList<>(Arrays.asList(sub.getId())));
-                        } else {
-                            tempLocationToSubscriptionMap.get(sub.getLocationId()).add(sub.getId());
-                        }
-                    }
-                }
-            }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        subscriptionInfo = new HashMap<>();
+        deviceToSubscriptionMap = new HashMap<>();
+        locationToSubscriptionMap = new HashMap<>();
+        subscriptionIndex.clear();
+        for (Subscription subscription : subscriptionJournal.load()) {
+            addSubscription(subscription);
         }
-        subscriptionInfo = tempSubscriptionInfo;
-        deviceToSubscriptionMap = tempDeviceToSubscriptionMap;
-        locationToSubscriptionMap = tempLocationToSubscriptionMap;
-    }
-
-    private List<String> getSubscriptionListForDevice(String deviceId) {
-        return getDeviceToSubscriptionMap().get(deviceId);
-    }
-
-    private List<String> getSubscriptionListForLocation(String locationId) {
-        return getLocationToSubscriptionMap().get(locationId);
-    }
-
-    private Subscription getSubscriptionInfo(String subscriptionId) {
-        return getSubscriptionInfo().get(subscriptionId);
+        subscriptionsLoaded = true;
     }
 
     private Map<String, Subscription> getSubscriptionInfo() {
@@ -180,6 +154,16 @@ public class EventService {
         getEventDataStore().saveEvent(event);
     }
 
+    public void shutdown() {
+        if (eventHistoryRetention != null) {
+            eventHistoryRetention.shutdown();
+        }
+        subscriptionJournal.shutdown();
+        if (eventDataStore != null) {
+            eventDataStore.shutdown();
+        }
+    }
+
     public List<EventWrapper> eventsSince(String source, String sourceId, Date date, int maxEvents) {
         List<Event> events = getEventDataStore().eventsSince(source, sourceId, date, maxEvents);
         return events.stream().map(event -> new EventWrapperImpl(event)).collect(Collectors.toList());
@@ -191,151 +175,160 @@ public class EventService {
     }
 
     public List<Subscription> getAutomationAppList(Event event) {
-        List<Subscription> subscriptionListReturnValue = new ArrayList<>();
-
-        // look up subscription
-        if ("DEVICE".equals(event.getSource())) {
-            List<String> subscriptions = getSubscriptionListForDevice(event.getSourceId());
-            if (subscriptions != null && subscriptions.size() > 0) {
-                for (String subscriptionId : subscriptions) {
-                    Subscription subscriptionInfo = getSubscriptionInfo(subscriptionId);
-                    if (subscriptionInfo != null) {
-                        String attributeNameAndValue = subscriptionInfo.getAttributeNameAndValue();
-                        if (attributeNameAndValue == null || event.getName() != null && (event.getName().equals(attributeNameAndValue) ||
-                                (event.getValue() != null && (event.getName() + "." + event.getValue()).equals(attributeNameAndValue)))) {
-                            String handlerMethod = subscriptionInfo.getHandlerMethod();
-                            String installedAutomationAppId = subscriptionInfo.getSubscribedAppId();
-                            // if subscription has filter events = false or event is a state change
-                            if ((!subscriptionInfo.isFilterEvents() || event.isStateChange()) && handlerMethod != null &&
-                                    installedAutomationAppId != null) {
-                                subscriptionListReturnValue.add(subscriptionInfo);
-                            }
-                        }
-                    }
-                }
-            }
-        } else if ("HUB".equals(event.getSource()) || "LOCATION".equals(event.getSource())) {
-            // hub events are location events
-            //TODO: handle multiple locations and hubs
-            List<String> subscriptions = getLocationToSubscriptionMap().values().stream().flatMap(List::stream).collect(Collectors.toList());
-            if (subscriptions != null && subscriptions.size() > 0) {
-                for (String subscriptionId : subscriptions) {
-                    Subscription subscriptionInfo = getSubscriptionInfo(subscriptionId);
-                    if (subscriptionInfo != null) {
-                        String attributeNameAndValue = subscriptionInfo.getAttributeNameAndValue();
-                        if (attributeNameAndValue == null || (event.getName() != null && (event.getName().equals(attributeNameAndValue) ||
-                                (event.getValue() != null && (event.getName() + "." + event.getValue()).equals(attributeNameAndValue))))) {
-                            String handlerMethod = subscriptionInfo.getHandlerMethod();
-                            String installedAutomationAppId = subscriptionInfo.getSubscribedAppId();
-                            if ((!subscriptionInfo.isFilterEvents() || event.isStateChange()) && handlerMethod != null &&
-                                    installedAutomationAppId != null) {
-                                subscriptionListReturnValue.add(subscriptionInfo);
-                            }
-                        }
-                    }
-                }
-            }
-
+        if (!subscriptionsLoaded) {
+            loadSubscriptionInfo();
         }
-        return subscriptionListReturnValue;
+        return subscriptionIndex.getSubscriptions(event);
     }
 
-    public void removeSubscriptionsForDevice(String deviceId) {
+    public synchronized void removeSubscriptionsForDevice(String deviceId) {
         List<String> subscriptions = getDeviceToSubscriptionMap().get(deviceId);
-        for (String subscriptionId : subscriptions) {
-            getSubscriptionInfo().remove(subscriptionId);
+        if (subscriptions == null) {
+            return;
         }
-        saveSubscriptionInfo();
+        List<String> removedIds = new ArrayList<>(subscriptions);
+        for (String subscriptionId : removedIds) {
+            removeSubscription(getSubscriptionInfo().get(subscriptionId));
+        }
+        subscriptionJournal.update(Collections.emptyList(), removedIds);
     }
 
-    public void removeSubscriptionsOfAutomationApp(String installedAutomationAppId) {
+    public synchronized void removeSubscriptionsOfAutomationApp(String installedAutomationAppId) {
         if (installedAutomationAppId == null) {
             return;
         }
-        //remove subscription from device to subscription map, location to subscription map and subscription map
-        List<Map.Entry<String, Subscription>> subscriptions = getSubscriptionInfo().entrySet().stream()
-                .filter(entry -> installedAutomationAppId.equals(entry.getValue().getSubscribedAppId())).collect(Collectors.toList());
-        for (Map.Entry<String, Subscription> subscription : subscriptions) {
-            if (subscription.getValue().getDeviceId() != null) {
-                List<String> deviceSubscription = getDeviceToSubscriptionMap().get(subscription.getValue().getDeviceId());
-                if (deviceSubscription != null) {
-                    deviceSubscription.remove(installedAutomationAppId);
-                }
-            } else if (subscription.getValue().getLocationId() != null) {
-                List<String> locationSubscription = getLocationToSubscriptionMap().get(subscription.getValue().getLocationId());
-                if (locationSubscription != null) {
-                    locationSubscription.remove(installedAutomationAppId);
+        List<Subscription> subscriptions = getSubscriptionInfo().values().stream()
+                .filter(subscription -> installedAutomationAppId.equals(subscription.getSubscribedAppId())).collect(Collectors.toList());
+        removeSubscriptions(subscriptions);
+    }
+
+    /**
+     * Remove the subscriptions of an installed automation app to a group of devices.
+     */
+    public synchronized void removeDeviceSubscriptions(String installedAutomationAppId, Collection<String> deviceIds) {
+        if (installedAutomationAppId == null || deviceIds == null) {
+            return;
+        }
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            List<String> deviceSubscriptions = getDeviceToSubscriptionMap().get(deviceId);
+            if (deviceSubscriptions != null) {
+                for (String subscriptionId : deviceSubscriptions) {
+                    Subscription subscription = getSubscriptionInfo().get(subscriptionId);
+                    if (subscription != null && installedAutomationAppId.equals(subscription.getSubscribedAppId())) {
+                        subscriptions.add(subscription);
+                    }
                 }
             }
-
-            getSubscriptionInfo().remove(subscription.getKey(), subscription.getValue());
         }
-
+        removeSubscriptions(subscriptions);
     }
 
-    public void addLocationSubscription(String locationId, String subscribedAppId, String attributeNameAndValue, String handlerMethod, Map options) {
-        Subscription subscription = new Subscription();
-        subscription.setId(UUID.randomUUID().toString());
+    public synchronized void addLocationSubscription(String locationId, String subscribedAppId, String attributeNameAndValue, String handlerMethod,
+                                                     Map options) {
+        Subscription subscription = createSubscription(subscribedAppId, attributeNameAndValue, handlerMethod, options);
         subscription.setLocationId(locationId);
-        subscription.setAttributeNameAndValue(attributeNameAndValue);
-        subscription.setSubscribedAppId(subscribedAppId);
-        subscription.setHandlerMethod(handlerMethod);
-        if (options != null && options.containsKey("filterEvents")) {
-            subscription.setFilterEvents((Boolean) options.get("filterEvents"));
+        if (addSubscription(subscription)) {
+            subscriptionJournal.add(subscription);
         }
+    }
 
-        // check for existing subscription
-        if (!getSubscriptionInfo().values().stream().anyMatch(si -> si.equals(subscription))) {
-            getSubscriptionInfo().put(subscription.getId(), subscription);
-            if (subscription.getLocationId() != null) {
-                if (getLocationToSubscriptionMap().get(locationId) == null) {
-                    getLocationToSubscriptionMap().put(locationId, new ArrayList<>(Arrays.asList(subscription.getId())));
-                } else {
-                    getLocationToSubscriptionMap().get(locationId).add(subscription.getId());
-                }
-            }
+    public synchronized void addDeviceSubscription(String deviceId, String subscribedAppId, String attributeNameAndValue, String handlerMethod,
+                                                   Map options) {
+        addDeviceSubscriptions(Collections.singletonList(deviceId), subscribedAppId, attributeNameAndValue, handlerMethod, options);
+    }
 
-            saveSubscriptionInfo();
+    /**
+     * Subscribe an installed automation app to a group of devices, new subscriptions are saved together.
+     */
+    public synchronized void addDeviceSubscriptions(Collection<String> deviceIds, String subscribedAppId, String attributeNameAndValue,
+                                                    String handlerMethod, Map options) {
+        List<Subscription> added = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            Subscription subscription = createSubscription(subscribedAppId, attributeNameAndValue, handlerMethod, options);
+            subscription.setDeviceId(deviceId);
+            if (addSubscription(subscription)) {
+                added.add(subscription);
+            }
         }
+        subscriptionJournal.update(added, Collections.emptyList());
     }
 
-    public void addDeviceSubscription(String deviceId, String subscribedAppId, String attributeNameAndValue, String handlerMethod, Map options) {
+    private Subscription createSubscription(String subscribedAppId, String attributeNameAndValue, String handlerMethod, Map options) {
         Subscription subscription = new Subscription();
         subscription.setId(UUID.randomUUID().toString());
-        subscription.setDeviceId(deviceId);
         subscription.setAttributeNameAndValue(attributeNameAndValue);
         subscription.setSubscribedAppId(subscribedAppId);
         subscription.setHandlerMethod(handlerMethod);
         if (options != null && options.containsKey("filterEvents")) {
             subscription.setFilterEvents((Boolean) options.get("filterEvents"));
         }
+        return subscription;
+    }
+
+    /**
+     * Add a subscription to the lookup maps and index, unless the same subscription already exists.
+     *
+     * @return true if the subscription was added.
+     */
+    private boolean addSubscription(Subscription subscription) {
+        Map<String, List<String>> sourceToSubscriptionMap;
+        String sourceId;
+        if (subscription.getDeviceId() != null) {
+            sourceToSubscriptionMap = getDeviceToSubscriptionMap();
+            sourceId = subscription.getDeviceId();
+        } else if (subscription.getLocationId() != null) {
+            sourceToSubscriptionMap = getLocationToSubscriptionMap();
+            sourceId = subscription.getLocationId();
+        } else {
+            return false;
+        }
 
-        if (!getSubscriptionInfo().values().contains(subscription)) {
-            getSubscriptionInfo().put(subscription.getId(), subscription);
-            if (subscription.getDeviceId() != null) {
-                if (getDeviceToSubscriptionMap().get(deviceId) == null) {
-                    getDeviceToSubscriptionMap().put(deviceId, new ArrayList<>(Arrays.asList(subscription.getId())));
-                } else {
-                    getDeviceToSubscriptionMap().get(deviceId).add(subscription.getId());
-                }
+        // an existing subscription would be for the same device or location
+        List<String> sourceSubscriptions = sourceToSubscriptionMap.computeIfAbsent(sourceId, key -> new ArrayList<>());
+        for (String subscriptionId : sourceSubscriptions) {
+            if (subscription.equals(getSubscriptionInfo().get(subscriptionId))) {
+                return false;
             }
         }
+        sourceSubscriptions.add(subscription.getId());
+        getSubscriptionInfo().put(subscription.getId(), subscription);
+        subscriptionIndex.add(subscription);
+        return true;
+    }
 
-        saveSubscriptionInfo();
+    private void removeSubscriptions(List<Subscription> subscriptions) {
+        List<String> removedIds = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            removeSubscription(subscription);
+            removedIds.add(subscription.getId());
+        }
+        subscriptionJournal.update(Collections.emptyList(), removedIds);
     }
 
-    private void saveSubscriptionInfo() {
-        if (subscriptionInfo != null) {
-            try {
-                Yaml yaml = new Yaml();
-                File subscriptionConfig = new File("config/subscriptions.yaml");
-                FileWriter fileWriter = new FileWriter(subscriptionConfig);
-                yaml.dump(subscriptionInfo.values().stream().distinct().collect(Collectors.toList()), fileWriter);
-                fileWriter.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    private void removeSubscription(Subscription subscription) {
+        if (subscription == null) {
+            return;
+        }
+        Map<String, List<String>> sourceToSubscriptionMap = null;
+        String sourceId = null;
+        if (subscription.getDeviceId() != null) {
+            sourceToSubscriptionMap = getDeviceToSubscriptionMap();
+            sourceId = subscription.getDeviceId();
+        } else if (subscription.getLocationId() != null) {
+            sourceToSubscriptionMap = getLocationToSubscriptionMap();
+            sourceId = subscription.getLocationId();
+        }
+        if (sourceToSubscriptionMap != null) {
+            List<String> sourceSubscriptions = sourceToSubscriptionMap.get(sourceId);
+            if (sourceSubscriptions != null) {
+                sourceSubscriptions.remove(subscription.getId());
+                if (sourceSubscriptions.isEmpty()) {
+                    sourceToSubscriptionMap.remove(sourceId);
+                }
             }
         }
+        getSubscriptionInfo().remove(subscription.getId());
+        subscriptionIndex.remove(subscription);
     }
-
 }
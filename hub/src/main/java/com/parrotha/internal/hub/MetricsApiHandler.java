@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.internal.BaseApiHandler;
+import groovy.json.JsonBuilder;
+import io.javalin.Javalin;
+
+import java.util.Map;
+
+public class MetricsApiHandler extends BaseApiHandler {
+    private MetricsService metricsService;
+
+    public MetricsApiHandler(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    @Override
+    public void setupApi(Javalin app) {
+        app.get("/api/metrics", ctx -> {
+            ctx.status(200);
+            ctx.contentType("application/json");
+            ctx.result(new JsonBuilder(metricsService.getMetrics()).toString());
+        });
+
+        app.get("/api/metrics/:name", ctx -> {
+            Map<String, Object> metrics = metricsService.getMetrics(ctx.pathParam("name"));
+            if (metrics == null) {
+                ctx.status(404);
+                return;
+            }
+            ctx.status(200);
+            ctx.contentType("application/json");
+            ctx.result(new JsonBuilder(metrics).toString());
+        });
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Collects runtime metrics from hub services.  Each service registers a named supplier that is called when metrics
+ * are requested, so nothing is computed unless someone is looking.
+ */
+public class MetricsService {
+    private final Map<String, Supplier<Map<String, Object>>> metricSources = new ConcurrentSkipListMap<>();
+
+    public void registerMetrics(String name, Supplier<Map<String, Object>> metricSource) {
+        metricSources.put(name, metricSource);
+    }
+
+    public void unregisterMetrics(String name) {
+        metricSources.remove(name);
+    }
+
+    public Map<String, Object> getMetrics(String name) {
+        Supplier<Map<String, Object>> metricSource = metricSources.get(name);
+        return metricSource != null ? metricSource.get() : null;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        for (Map.Entry<String, Supplier<Map<String, Object>>> metricSource : metricSources.entrySet()) {
+            metrics.put(metricSource.getKey(), metricSource.getValue().get());
+        }
+        return metrics;
+    }
+}
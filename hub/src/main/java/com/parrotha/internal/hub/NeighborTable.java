@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.service.NeighborTableService;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In process copy of the kernel neighbor table, read from /proc/net/arp so that mac address lookups don't have to fork arp.
+ * The table is reloaded when it is older than the ttl or when an address is missing, misses are remembered for a short time
+ * so that unknown hosts don't cause a reload on every message.
+ */
+public class NeighborTable implements NeighborTableService {
+    private static final Logger logger = LoggerFactory.getLogger(NeighborTable.class);
+
+    private static final Path PROC_NET_ARP = Paths.get("/proc/net/arp");
+    private static final Pattern IPV4_ADDRESS = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    // output of arp -an on systems without /proc/net/arp: ? (192.168.1.1) at 0:11:22:33:44:55 on en0 ifscope [ethernet]
+    private static final Pattern ARP_COMMAND_LINE = Pattern.compile("\\((\\d{1,3}(?:\\.\\d{1,3}){3})\\) at ([0-9A-Fa-f]{1,2}(?::[0-9A-Fa-f]{1,2}){5})");
+    private static final String EMPTY_MAC_ADDRESS = "000000000000";
+
+    private final Path arpFile;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long minRefreshIntervalNanos;
+
+    private volatile Map<String, String> table = Collections.emptyMap();
+    private volatile long loadedAt;
+    private volatile boolean loaded;
+    private final Map<String, Long> misses = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private volatile long lastRefreshDurationNanos;
+
+    public NeighborTable() {
+        this(PROC_NET_ARP, 60, 10, 1);
+    }
+
+    public NeighborTable(long ttlSeconds, long negativeTtlSeconds, long minRefreshIntervalSeconds) {
+        this(PROC_NET_ARP, ttlSeconds, negativeTtlSeconds, minRefreshIntervalSeconds);
+    }
+
+    NeighborTable(Path arpFile, long ttlSeconds, long negativeTtlSeconds, long minRefreshIntervalSeconds) {
+        this.arpFile = arpFile;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.minRefreshIntervalNanos = TimeUnit.SECONDS.toNanos(minRefreshIntervalSeconds);
+    }
+
+    @Override
+    public String getMacAddress(String ipAddress) {
+        if (ipAddress == null || ipAddress.isEmpty()) {
+            return null;
+        }
+        lookups.increment();
+        String address = toIpAddress(ipAddress);
+        if (address == null) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        if (!loaded || now - loadedAt > ttlNanos) {
+            refresh(now, ttlNanos);
+        }
+        String macAddress = table.get(address);
+        if (macAddress != null) {
+            hits.increment();
+            return macAddress;
+        }
+
+        Long missExpires = misses.get(address);
+        if (missExpires != null && missExpires - now > 0) {
+            negativeHits.increment();
+            return null;
+        }
+
+        // the device may have just joined the network, reload the table unless it was just done
+        refresh(now, minRefreshIntervalNanos);
+        macAddress = table.get(address);
+        if (macAddress != null) {
+            misses.remove(address);
+            hits.increment();
+            return macAddress;
+        }
+        misses.put(address, now + negativeTtlNanos);
+        return null;
+    }
+
+    /**
+     * Reload the table from the kernel now.
+     */
+    public void refresh() {
+        refresh(System.nanoTime(), 0);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", table.size());
+        metrics.put("negativeEntries", misses.size());
+        metrics.put("lookups", lookups.sum());
+        metrics.put("hits", hits.sum());
+        metrics.put("negativeHits", negativeHits.sum());
+        metrics.put("refreshes", refreshes.sum());
+        metrics.put("refreshFailures", refreshFailures.sum());
+        metrics.put("lastRefreshDurationMillis", TimeUnit.NANOSECONDS.toMillis(lastRefreshDurationNanos));
+        return metrics;
+    }
+
+    private synchronized void refresh(long now, long maxAgeNanos) {
+        // another thread may have reloaded the table while this one was waiting
+        if (loaded && now - loadedAt < maxAgeNanos) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            table = Files.isReadable(arpFile) ? parseProcNetArp(Files.readAllLines(arpFile, StandardCharsets.UTF_8)) : readArpCommand();
+            refreshes.increment();
+        } catch (IOException e) {
+            refreshFailures.increment();
+            logger.warn("Exception while reading neighbor table", e);
+        }
+        long end = System.nanoTime();
+        lastRefreshDurationNanos = end - start;
+        loadedAt = end;
+        loaded = true;
+        misses.values().removeIf(expires -> expires - end <= 0);
+    }
+
+    // IP address       HW type     Flags       HW address            Mask     Device
+    // 192.168.1.1      0x1         0x2         00:11:22:33:44:55     *        eth0
+    static Map<String, String> parseProcNetArp(List<String> lines) {
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] columns = lines.get(i).trim().split("\\s+");
+            if (columns.length < 4 || "0x0".equals(columns[2])) {
+                // incomplete entry
+                continue;
+            }
+            String macAddress = formatMacAddress(columns[3]);
+            if (macAddress != null) {
+                entries.put(columns[0], macAddress);
+            }
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    static Map<String, String> parseArpCommand(List<String> lines) {
+        Map<String, String> entries = new HashMap<>();
+        for (String line : lines) {
+            Matcher matcher = ARP_COMMAND_LINE.matcher(line);
+            if (matcher.find()) {
+                String macAddress = formatMacAddress(matcher.group(2));
+                if (macAddress != null) {
+                    entries.put(matcher.group(1), macAddress);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private Map<String, String> readArpCommand() throws IOException {
+        // not linux, read the whole table once per refresh instead of once per lookup
+        Process process = new ProcessBuilder("arp", "-an").redirectErrorStream(true).start();
+        try {
+            List<String> output = IOUtils.readLines(process.getInputStream(), StandardCharsets.UTF_8);
+            process.waitFor();
+            return parseArpCommand(output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running arp", e);
+        }
+    }
+
+    private static String formatMacAddress(String macAddress) {
+        String[] octets = macAddress.split(":");
+        if (octets.length != 6) {
+            return null;
+        }
+        StringBuilder formatted = new StringBuilder(12);
+        for (String octet : octets) {
+            if (octet.length() == 1) {
+                formatted.append('0');
+            }
+            formatted.append(octet.toUpperCase());
+        }
+        String formattedMacAddress = formatted.toString();
+        return EMPTY_MAC_ADDRESS.equals(formattedMacAddress) ? null : formattedMacAddress;
+    }
+
+    static String toIpAddress(String host) {
+        if (IPV4_ADDRESS.matcher(host).matches()) {
+            return host;
+        }
+        // only ipv6 literals such as ::ffff:192.168.1.20 are converted, a host name would need a blocking dns lookup
+        if (host.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(host).getHostAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.parrotha.internal.entity.EntityJob;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.CronTrigger;
 import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobKey;
 import org.quartz.Scheduler;
@@ -34,7 +35,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,15 +52,26 @@ public class ScheduleService {
     public static final String DEVICE_TYPE = "DEV";
     public static final String INSTALLED_AUTOMATION_APP_TYPE = "IAA";
 
+    private final int threadCount;
+    private final TimerWheelScheduler singleRunScheduler;
     private Scheduler scheduler;
 
+    /**
+     * @param threadCount        Number of quartz threads that run cron schedules.
+     * @param singleRunScheduler Scheduler for single runs, these are kept out of the quartz job store.
+     */
+    public ScheduleService(int threadCount, TimerWheelScheduler singleRunScheduler) {
+        this.threadCount = Math.max(1, threadCount);
+        this.singleRunScheduler = singleRunScheduler;
+    }
+
     private Scheduler getScheduler() throws SchedulerException {
         if (scheduler == null) {
             Properties properties = new Properties();
             properties.setProperty("org.quartz.jobStore.class", "org.quartz.impl.jdbcjobstore.JobStoreTX");
             properties.setProperty("org.quartz.jobStore.dataSource", "parrotHubDS");
             properties.setProperty("org.quartz.dataSource.parrotHubDS.connectionProvider.class", "com.parrotha.internal.database.ConnectionProviderImpl");
-            properties.setProperty("org.quartz.threadPool.threadCount", "3");
+            properties.setProperty("org.quartz.threadPool.threadCount", Integer.toString(threadCount));
 
             scheduler = new StdSchedulerFactory(properties).getScheduler();
         }
@@ -68,7 +79,9 @@ public class ScheduleService {
     }
 
     public void start() {
+        singleRunScheduler.start();
         try {
+            moveSingleRunJobs(getScheduler());
             getScheduler().start();
         } catch (SchedulerException schedulerException) {
             schedulerException.printStackTrace();
@@ -76,6 +89,7 @@ public class ScheduleService {
     }
 
     public void shutdown() {
+        singleRunScheduler.shutdown();
         try {
             getScheduler().shutdown();
             this.scheduler = null;
@@ -85,6 +99,7 @@ public class ScheduleService {
     }
 
     public void unschedule(String type, String id) {
+        singleRunScheduler.unschedule(type, id);
         try {
             Scheduler scheduler = getScheduler();
             Set<JobKey> jobKeySet = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(type + ":" + id));
@@ -131,25 +146,34 @@ public class ScheduleService {
             schedulerException.printStackTrace();
         }
 
+        for (String handlerMethod : singleRunScheduler.getHandlerMethods(ScheduleService.INSTALLED_AUTOMATION_APP_TYPE, id)) {
+            Map<String, String> appSchedule = new HashMap<>();
+            appSchedule.put("handlerMethod", handlerMethod);
+            appSchedule.put("schedule", "Once");
+            scheduleList.add(appSchedule);
+        }
+
         return scheduleList;
     }
 
     public void unschedule(String type, String id, String handlerMethod) {
+        singleRunScheduler.unschedule(type, id, handlerMethod);
         try {
-            Scheduler scheduler = getScheduler();
-            Set<JobKey> jobKeySet = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(type + ":" + id));
-            for (JobKey jobKeyGroupMatch : jobKeySet) {
-                if (jobKeyGroupMatch.getName().startsWith(handlerMethod)) {
-                    scheduler.deleteJob(jobKeyGroupMatch);
-                }
-            }
-
-            scheduler.deleteJobs(new ArrayList<>(jobKeySet));
+            deleteJobs(getScheduler(), type, id, handlerMethod);
         } catch (SchedulerException e) {
             e.printStackTrace();
         }
     }
 
+    private void deleteJobs(Scheduler scheduler, String type, String id, String handlerMethod) throws SchedulerException {
+        Set<JobKey> jobKeySet = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(type + ":" + id));
+        for (JobKey jobKeyGroupMatch : jobKeySet) {
+            if (jobKeyGroupMatch.getName().startsWith(handlerMethod + ":")) {
+                scheduler.deleteJob(jobKeyGroupMatch);
+            }
+        }
+    }
+
     /*
      * When scheduling, there is an option to prevent overwrite (overwrite: false).  In ST this only applies to single
      * or multiple runs, they do not cross over, so runOnce() will not overwrite a runEvery5minutes().
@@ -169,12 +193,9 @@ public class ScheduleService {
         try {
             Scheduler scheduler = getScheduler();
             if (overwrite) {
-                Set<JobKey> jobKeySet = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(type + ":" + id));
-                for (JobKey jobKeyGroupMatch : jobKeySet) {
-                    if (jobKeyGroupMatch.getName().startsWith(handlerMethod)) {
-                        scheduler.deleteJob(jobKeyGroupMatch);
-                    }
-                }
+                // a schedule replaces any pending single run of the same handler method as well
+                deleteJobs(scheduler, type, id, handlerMethod);
+                singleRunScheduler.unschedule(type, id, handlerMethod);
             }
 
             // jobKeyName should be unique
@@ -205,36 +226,44 @@ public class ScheduleService {
     public void schedule(String type, String id, Long runTime, String handlerMethod, Map<String, Object> options) {
         if (runTime == null || handlerMethod == null) return;
 
-        //TODO: handle options data
-
         // handle overwrite: false
         boolean overwrite = options == null || options.get("overwrite") == null || (Boolean) options.get("overwrite");
 
-        try {
-            Scheduler scheduler = getScheduler();
+        String data = null;
+        if (options != null && options.get("data") != null) {
+            data = new JsonBuilder(options.get("data")).toString();
+        }
+        if (overwrite) {
+            // a single run replaces any schedule of the same handler method as well
+            try {
+                deleteJobs(getScheduler(), type, id, handlerMethod);
+            } catch (SchedulerException e) {
+                e.printStackTrace();
+            }
+        }
+        singleRunScheduler.schedule(type, id, handlerMethod, runTime, data, overwrite);
+    }
 
-            if (overwrite) {
-                Set<JobKey> jobKeySet = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(type + ":" + id));
-                for (JobKey jobKeyGroupMatch : jobKeySet) {
-                    if (jobKeyGroupMatch.getName().startsWith(handlerMethod)) {
-                        scheduler.deleteJob(jobKeyGroupMatch);
-                    }
+    /*
+     * Single runs used to be stored in quartz, move any that are still pending over to the single run scheduler.
+     */
+    private void moveSingleRunJobs(Scheduler scheduler) throws SchedulerException {
+        for (String jobGroup : scheduler.getJobGroupNames()) {
+            for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(jobGroup))) {
+                if (!jobKey.getName().contains(":SINGLE:")) {
+                    continue;
                 }
+                JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+                List<? extends Trigger> triggers = scheduler.getTriggersOfJob(jobKey);
+                if (jobDetail != null && !triggers.isEmpty()) {
+                    Trigger trigger = triggers.get(0);
+                    long runTime = trigger.getNextFireTime() != null ? trigger.getNextFireTime().getTime() : trigger.getStartTime().getTime();
+                    JobDataMap jobDataMap = jobDetail.getJobDataMap();
+                    singleRunScheduler.schedule(jobDataMap.getString("type"), jobDataMap.getString("id"),
+                            jobDataMap.getString("handlerMethod"), runTime, jobDataMap.getString("data"), false);
+                }
+                scheduler.deleteJob(jobKey);
             }
-
-            String jobKeyName = handlerMethod + ":SINGLE:" + UUID.randomUUID().toString();
-            String jobKeyGroup = type + ":" + id;
-            JobKey jobKey = new JobKey(jobKeyName, jobKeyGroup);
-
-            JobDetail jobDetail = buildJobDetail(jobKey, type, id, handlerMethod, options);
-
-            Trigger trigger = newTrigger().withIdentity(jobKeyName, jobKeyGroup)
-                    .startAt(new Date(runTime))
-                    .build();
-
-            scheduler.scheduleJob(jobDetail, trigger);
-        } catch (SchedulerException e) {
-            e.printStackTrace();
         }
     }
 
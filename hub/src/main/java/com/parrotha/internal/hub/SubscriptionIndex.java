@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import com.parrotha.internal.app.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of subscriptions by source, attribute name and attribute value so that the subscriptions for an event can
+ * be found with a few hash lookups.
+ * <p>
+ * Buckets are arrays that are replaced, never changed, when subscriptions are added or removed, so lookups do not
+ * need to lock.  Changes are synchronized.
+ */
+public class SubscriptionIndex {
+    private final Map<String, AttributeIndex> deviceIndex = new ConcurrentHashMap<>();
+    // location and hub events go to all location subscriptions
+    //TODO: handle multiple locations and hubs
+    private final AttributeIndex locationIndex = new AttributeIndex();
+    private long nextSequence = 0;
+
+    /**
+     * Subscriptions for the event in the order they were added.  Subscriptions without a handler method or
+     * subscribed app are never returned, and subscriptions that filter events only get state changes.
+     */
+    public List<Subscription> getSubscriptions(Event event) {
+        AttributeIndex attributeIndex;
+        if ("DEVICE".equals(event.getSource())) {
+            attributeIndex = event.getSourceId() != null ? deviceIndex.get(event.getSourceId()) : null;
+        } else if ("HUB".equals(event.getSource()) || "LOCATION".equals(event.getSource())) {
+            attributeIndex = locationIndex;
+        } else {
+            attributeIndex = null;
+        }
+        if (attributeIndex == null) {
+            return Collections.emptyList();
+        }
+        return attributeIndex.match(event.getName(), event.getValue(), event.isStateChange());
+    }
+
+    public synchronized void add(Subscription subscription) {
+        if (subscription.getHandlerMethod() == null || subscription.getSubscribedAppId() == null) {
+            // these would never be sent an event
+            return;
+        }
+        AttributeIndex attributeIndex = getAttributeIndex(subscription, true);
+        if (attributeIndex != null) {
+            attributeIndex.add(new Entry(nextSequence++, subscription));
+        }
+    }
+
+    public synchronized void remove(Subscription subscription) {
+        AttributeIndex attributeIndex = getAttributeIndex(subscription, false);
+        if (attributeIndex != null) {
+            attributeIndex.remove(subscription);
+            if (subscription.getDeviceId() != null && attributeIndex.isEmpty()) {
+                deviceIndex.remove(subscription.getDeviceId());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        deviceIndex.clear();
+        locationIndex.clear();
+    }
+
+    private AttributeIndex getAttributeIndex(Subscription subscription, boolean create) {
+        if (subscription.getDeviceId() != null) {
+            return create ? deviceIndex.computeIfAbsent(subscription.getDeviceId(), id -> new AttributeIndex()) :
+                    deviceIndex.get(subscription.getDeviceId());
+        } else if (subscription.getLocationId() != null) {
+            return locationIndex;
+        }
+        return null;
+    }
+
+    private static class Entry {
+        private final long sequence;
+        private final Subscription subscription;
+
+        private Entry(long sequence, Subscription subscription) {
+            this.sequence = sequence;
+            this.subscription = subscription;
+        }
+    }
+
+    private static class AttributeIndex {
+        private static final Entry[] EMPTY = new Entry[0];
+
+        // subscriptions to all events
+        private volatile Entry[] all = EMPTY;
+        // subscriptions to an attribute, any value
+        private final Map<String, Entry[]> byName = new ConcurrentHashMap<>();
+        // subscriptions to an attribute with a specific value
+        private final Map<String, Map<String, Entry[]>> byNameAndValue = new ConcurrentHashMap<>();
+
+        List<Subscription> match(String name, String value, boolean stateChange) {
+            Entry[] allEntries = all;
+            Entry[] nameEntries = EMPTY;
+            Entry[] valueEntries = EMPTY;
+            if (name != null) {
+                Entry[] entries = byName.get(name);
+                if (entries != null) {
+                    nameEntries = entries;
+                }
+                if (value != null) {
+                    Map<String, Entry[]> values = byNameAndValue.get(name);
+                    if (values != null) {
+                        entries = values.get(value);
+                        if (entries != null) {
+                            valueEntries = entries;
+                        }
+                    }
+                }
+            }
+            int total = allEntries.length + nameEntries.length + valueEntries.length;
+            if (total == 0) {
+                return Collections.emptyList();
+            }
+
+            // merge the buckets back into the order the subscriptions were added
+            List<Subscription> subscriptions = new ArrayList<>(total);
+            int a = 0, n = 0, v = 0;
+            while (a < allEntries.length || n < nameEntries.length || v < valueEntries.length) {
+                Entry next = null;
+                if (a < allEntries.length) {
+                    next = allEntries[a];
+                }
+                if (n < nameEntries.length && (next == null || nameEntries[n].sequence < next.sequence)) {
+                    next = nameEntries[n];
+                }
+                if (v < valueEntries.length && (next == null || valueEntries[v].sequence < next.sequence)) {
+                    next = valueEntries[v];
+                }
+                if (a < allEntries.length && next == allEntries[a]) {
+                    a++;
+                } else if (n < nameEntries.length && next == nameEntries[n]) {
+                    n++;
+                } else {
+                    v++;
+                }
+                if (!next.subscription.isFilterEvents() || stateChange) {
+                    subscriptions.add(next.subscription);
+                }
+            }
+            return subscriptions;
+        }
+
+        void add(Entry entry) {
+            String attributeNameAndValue = entry.subscription.getAttributeNameAndValue();
+            if (attributeNameAndValue == null) {
+                all = append(all, entry);
+                return;
+            }
+            // "switch.on" matches the attribute "switch.on" with any value as well as the attribute "switch" with the
+            // value "on", index it under each way it can match
+            byName.compute(attributeNameAndValue, (key, entries) -> append(entries, entry));
+            int separator = attributeNameAndValue.indexOf('.');
+            while (separator > -1) {
+                String name = attributeNameAndValue.substring(0, separator);
+                String value = attributeNameAndValue.substring(separator + 1);
+                byNameAndValue.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+                        .compute(value, (key, entries) -> append(entries, entry));
+                separator = attributeNameAndValue.indexOf('.', separator + 1);
+            }
+        }
+
+        void remove(Subscription subscription) {
+            String attributeNameAndValue = subscription.getAttributeNameAndValue();
+            if (attributeNameAndValue == null) {
+                Entry[] remaining = without(all, subscription);
+                all = remaining != null ? remaining : EMPTY;
+                return;
+            }
+            byName.computeIfPresent(attributeNameAndValue, (key, entries) -> without(entries, subscription));
+            int separator = attributeNameAndValue.indexOf('.');
+            while (separator > -1) {
+                String name = attributeNameAndValue.substring(0, separator);
+                String value = attributeNameAndValue.substring(separator + 1);
+                Map<String, Entry[]> values = byNameAndValue.get(name);
+                if (values != null) {
+                    values.computeIfPresent(value, (key, entries) -> without(entries, subscription));
+                    if (values.isEmpty()) {
+                        byNameAndValue.remove(name);
+                    }
+                }
+                separator = attributeNameAndValue.indexOf('.', separator + 1);
+            }
+        }
+
+        boolean isEmpty() {
+            return all.length == 0 && byName.isEmpty() && byNameAndValue.isEmpty();
+        }
+
+        void clear() {
+            all = EMPTY;
+            byName.clear();
+            byNameAndValue.clear();
+        }
+
+        private static Entry[] append(Entry[] entries, Entry entry) {
+            if (entries == null) {
+                return new Entry[]{entry};
+            }
+            Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+            newEntries[entries.length] = entry;
+            return newEntries;
+        }
+
+        /**
+         * @return the entries without the subscription, or null if none are left so the bucket is removed.
+         */
+        private static Entry[] without(Entry[] entries, Subscription subscription) {
+            List<Entry> remaining = new ArrayList<>(entries.length);
+            for (Entry entry : entries) {
+                // compare by instance, Subscription.equals ignores the id
+                if (entry.subscription != subscription) {
+                    remaining.add(entry);
+                }
+            }
+            if (remaining.isEmpty()) {
+                return null;
+            }
+            return remaining.toArray(EMPTY);
+        }
+    }
+}
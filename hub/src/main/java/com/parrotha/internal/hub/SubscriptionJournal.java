@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.internal.app.Subscription;
+import com.parrotha.internal.common.FileSystemUtils;
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurperClassic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores subscriptions as a yaml snapshot plus a journal of the subscriptions added and removed since the snapshot
+ * was written.  Changes only append to the journal, the snapshot is rewritten once the journal gets long.
+ */
+public class SubscriptionJournal {
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionJournal.class);
+
+    private final File snapshotFile;
+    private final File journalFile;
+    private final int compactThreshold;
+
+    private Map<String, Subscription> subscriptions;
+    private int journalEntries = 0;
+    // journal entries that could not be written yet, kept until an append or a snapshot succeeds
+    private final StringBuilder unwrittenEntries = new StringBuilder();
+
+    public SubscriptionJournal() {
+        this(new File("config/subscriptions.yaml"), new File("config/subscriptions.journal"), 500);
+    }
+
+    /**
+     * @param snapshotFile     Yaml file with all subscriptions.
+     * @param journalFile      File that changes are appended to.
+     * @param compactThreshold Number of journal entries after which the snapshot is rewritten and the journal cleared.
+     */
+    public SubscriptionJournal(File snapshotFile, File journalFile, int compactThreshold) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    /**
+     * Read the snapshot and replay the journal on top of it.
+     */
+    public synchronized List<Subscription> load() {
+        Map<String, Subscription> loadedSubscriptions = new LinkedHashMap<>();
+        if (snapshotFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(snapshotFile)) {
+                List<Subscription> snapshot = new Yaml().load(inputStream);
+                if (snapshot != null) {
+                    for (Subscription subscription : snapshot) {
+                        loadedSubscriptions.put(subscription.getId(), subscription);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Exception loading subscriptions", e);
+            }
+        }
+
+        journalEntries = 0;
+        if (journalFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Map entry = (Map) new JsonSlurperClassic().parseText(line);
+                        if (entry.get("add") instanceof Map) {
+                            Subscription subscription = fromMap((Map) entry.get("add"));
+                            loadedSubscriptions.put(subscription.getId(), subscription);
+                        } else if (entry.get("remove") != null) {
+                            loadedSubscriptions.remove(entry.get("remove").toString());
+                        }
+                        journalEntries++;
+                    } catch (RuntimeException e) {
+                        // most likely a partial line from a crash while appending
+                        logger.warn("Skipping unreadable subscription journal entry: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Exception loading subscription journal", e);
+            }
+        }
+
+        subscriptions = loadedSubscriptions;
+        if (journalEntries >= compactThreshold) {
+            compact();
+        }
+        return new ArrayList<>(subscriptions.values());
+    }
+
+    public void add(Subscription subscription) {
+        update(Collections.singletonList(subscription), Collections.emptyList());
+    }
+
+    /**
+     * Record added and removed subscriptions with a single append to the journal.
+     */
+    public synchronized void update(Collection<Subscription> added, Collection<String> removedIds) {
+        if (subscriptions == null) {
+            load();
+        }
+        if (added.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+        for (Subscription subscription : added) {
+            subscriptions.put(subscription.getId(), subscription);
+            unwrittenEntries.append(JsonOutput.toJson(Collections.singletonMap("add", toMap(subscription)))).append('\n');
+        }
+        for (String removedId : removedIds) {
+            subscriptions.remove(removedId);
+            unwrittenEntries.append(JsonOutput.toJson(Collections.singletonMap("remove", removedId))).append('\n');
+        }
+        journalEntries += added.size() + removedIds.size();
+
+        // the changes are in the journal before the snapshot is rewritten, so a failed rewrite loses nothing
+        try {
+            Files.write(journalFile.toPath(), unwrittenEntries.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+            unwrittenEntries.setLength(0);
+        } catch (IOException e) {
+            logger.warn("Exception writing subscription journal, rewriting subscriptions", e);
+            compact();
+            return;
+        }
+        if (journalEntries >= compactThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Write all subscriptions to the snapshot and clear the journal.
+     */
+    public synchronized void compact() {
+        if (subscriptions == null) {
+            return;
+        }
+        try {
+            List<Subscription> snapshot = new ArrayList<>(subscriptions.values());
+            FileSystemUtils.writeFileAtomically(snapshotFile, (Writer writer) -> new Yaml().dump(snapshot, writer));
+            Files.deleteIfExists(journalFile.toPath());
+            journalEntries = 0;
+            unwrittenEntries.setLength(0);
+        } catch (IOException e) {
+            // the journal and any unwritten entries are kept for the next attempt
+            logger.warn("Exception saving subscriptions", e);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (journalEntries > 0) {
+            compact();
+        }
+    }
+
+    private Map<String, Object> toMap(Subscription subscription) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", subscription.getId());
+        map.put("deviceId", subscription.getDeviceId());
+        map.put("locationId", subscription.getLocationId());
+        map.put("attributeNameAndValue", subscription.getAttributeNameAndValue());
+        map.put("handlerMethod", subscription.getHandlerMethod());
+        map.put("subscribedAppId", subscription.getSubscribedAppId());
+        map.put("filterEvents", subscription.isFilterEvents());
+        return map;
+    }
+
+    private Subscription fromMap(Map map) {
+        Subscription subscription = new Subscription((String) map.get("handlerMethod"), (String) map.get("subscribedAppId"));
+        subscription.setId((String) map.get("id"));
+        subscription.setDeviceId((String) map.get("deviceId"));
+        subscription.setLocationId((String) map.get("locationId"));
+        subscription.setAttributeNameAndValue((String) map.get("attributeNameAndValue"));
+        subscription.setFilterEvents(!Boolean.FALSE.equals(map.get("filterEvents")));
+        return subscription;
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel.  Four levels of 256 slots each cover 2^32 ticks, entries are kept in doubly linked slot
+ * lists so adding and cancelling are constant time.  Entries on the upper levels are moved down a level when the
+ * wheel below them wraps around.  Not thread safe, callers synchronize.
+ */
+public class TimerWheel<T> {
+    private static final int LEVEL_BITS = 8;
+    private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+    private static final int LEVEL_MASK = LEVEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (LEVEL_BITS * LEVELS)) - 1;
+
+    private final Entry<T>[][] slots;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long currentTick) {
+        this.slots = new Entry[LEVELS][LEVEL_SIZE];
+        this.currentTick = currentTick;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an item to the wheel, an expiry tick at or before the current tick expires on the next tick.
+     */
+    public Entry<T> add(long expiryTick, T item) {
+        Entry<T> entry = new Entry<>(expiryTick, item);
+        insert(entry, false);
+        size++;
+        return entry;
+    }
+
+    /**
+     * @return false if the entry already expired or was cancelled.
+     */
+    public boolean cancel(Entry<T> entry) {
+        if (entry == null || entry.level < 0) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advance the wheel to the given tick, adding expired items to the list.  A jump of more than one revolution of the
+     * lowest level (for example the system clock being set) rebuilds the wheel instead of stepping through every tick.
+     */
+    public void advanceTo(long tick, List<T> expired) {
+        if (Math.abs(tick - currentTick) > LEVEL_SIZE) {
+            rebuild(tick, expired);
+            return;
+        }
+        while (currentTick < tick) {
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                int shift = LEVEL_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> shift) & LEVEL_MASK));
+            }
+
+            int slot = (int) (currentTick & LEVEL_MASK);
+            Entry<T> entry = slots[0][slot];
+            slots[0][slot] = null;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                entry.detach();
+                size--;
+                expired.add(entry.item);
+                entry = next;
+            }
+        }
+    }
+
+    private void rebuild(long tick, List<T> expired) {
+        List<Entry<T>> entries = new ArrayList<>(size);
+        for (Entry<T>[] level : slots) {
+            for (int i = 0; i < LEVEL_SIZE; i++) {
+                for (Entry<T> entry = level[i]; entry != null; entry = entry.next) {
+                    entries.add(entry);
+                }
+                level[i] = null;
+            }
+        }
+        currentTick = tick;
+        for (Entry<T> entry : entries) {
+            entry.detach();
+            if (entry.expiryTick <= tick) {
+                size--;
+                expired.add(entry.item);
+            } else {
+                insert(entry, false);
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Entry<T> entry = slots[level][slot];
+        slots[level][slot] = null;
+        while (entry != null) {
+            Entry<T> next = entry.next;
+            entry.detach();
+            insert(entry, true);
+            entry = next;
+        }
+    }
+
+    /**
+     * @param currentSlotPending True while cascading, the current slot is processed after the cascade.
+     */
+    private void insert(Entry<T> entry, boolean currentSlotPending) {
+        long delta = entry.expiryTick - currentTick;
+        int level;
+        long slotTick;
+        if (delta <= 0) {
+            level = 0;
+            slotTick = currentSlotPending ? currentTick : currentTick + 1;
+        } else if (delta > MAX_DELTA) {
+            // park it in the furthest slot, it is placed again when that slot is cascaded
+            level = LEVELS - 1;
+            slotTick = currentTick + MAX_DELTA;
+        } else {
+            level = (63 - Long.numberOfLeadingZeros(delta)) / LEVEL_BITS;
+            slotTick = entry.expiryTick;
+        }
+        int slot = (int) ((slotTick >>> (LEVEL_BITS * level)) & LEVEL_MASK);
+
+        Entry<T> head = slots[level][slot];
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots[level][slot] = entry;
+        entry.level = level;
+        entry.slot = slot;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[entry.level][entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.detach();
+    }
+
+    public static class Entry<T> {
+        private final long expiryTick;
+        private final T item;
+        private Entry<T> prev;
+        private Entry<T> next;
+        private int level = -1;
+        private int slot;
+
+        private Entry(long expiryTick, T item) {
+            this.expiryTick = expiryTick;
+            this.item = item;
+        }
+
+        public long getExpiryTick() {
+            return expiryTick;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public boolean isScheduled() {
+            return level >= 0;
+        }
+
+        private void detach() {
+            prev = null;
+            next = null;
+            level = -1;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.internal.common.FileSystemUtils;
+import groovy.json.JsonOutput;
+import groovy.json.JsonSlurperClassic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs single run schedules (runIn, runOnce) from an in memory timer wheel.  Jobs are indexed by type, id and
+ * handler method so overwriting a schedule is a map replace.  Jobs added and removed are appended to a journal that is
+ * replayed on start, the journal is rewritten with just the pending jobs once it gets long.  Journal entries are
+ * buffered and written by the timer thread on each tick, so scheduling a job does not wait on the disk.
+ */
+public class TimerWheelScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheelScheduler.class);
+
+    public interface JobRunner {
+        void run(String type, String id, String handlerMethod, String data);
+    }
+
+    private final JobRunner jobRunner;
+    private final int workerCount;
+    private final long tickMillis;
+    private final File journalFile;
+    private final int compactThreshold;
+
+    // type:id -> handler method -> pending jobs, more than one job only when scheduled with overwrite: false
+    private final Map<String, Map<String, List<Job>>> jobsByEntity = new HashMap<>();
+    private TimerWheel<Job> wheel;
+    private long nextJobId = 1;
+    private int journalEntries = 0;
+    // journal entries not yet written, guarded by this
+    private final StringBuilder journalBuffer = new StringBuilder();
+    // incremented each time the journal is rewritten, buffered entries taken before a rewrite are already in it
+    private long journalGeneration = 0;
+    // held while writing the journal file
+    private final Object journalLock = new Object();
+
+    private ScheduledExecutorService timer;
+    private ThreadPoolExecutor workerPool;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder overwritten = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param jobRunner        Runs a job once it is due.
+     * @param workerCount      Number of threads that run due jobs.
+     * @param tickMillis       Resolution of the timer wheel.
+     * @param journalFile      File that scheduled and removed jobs are appended to.
+     * @param compactThreshold Number of stale journal entries after which the journal is rewritten with just the pending jobs.
+     */
+    public TimerWheelScheduler(JobRunner jobRunner, int workerCount, long tickMillis, File journalFile, int compactThreshold) {
+        this.jobRunner = jobRunner;
+        this.workerCount = Math.max(1, workerCount);
+        this.tickMillis = Math.max(1, tickMillis);
+        this.journalFile = journalFile;
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+    public synchronized void start() {
+        load();
+        if (timer != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("ScheduleWorker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        workerPool = pool;
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName("ScheduleTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        ScheduledExecutorService timer;
+        ThreadPoolExecutor workerPool;
+        synchronized (this) {
+            timer = this.timer;
+            workerPool = this.workerPool;
+            this.timer = null;
+            this.workerPool = null;
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
+            try {
+                workerPool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (wheel != null && journalEntries > 0) {
+                compact();
+            }
+        }
+        // anything the rewrite could not cover
+        flushJournal();
+    }
+
+    /**
+     * Schedule a handler method to run once.
+     *
+     * @param runTime   Time in milliseconds since the epoch to run the job at.
+     * @param data      Json data passed to the handler method, may be null.
+     * @param overwrite Replace any pending single run of the same handler method.
+     */
+    public synchronized void schedule(String type, String id, String handlerMethod, long runTime, String data, boolean overwrite) {
+        load();
+        Map<String, List<Job>> entityJobs = jobsByEntity.computeIfAbsent(type + ":" + id, k -> new HashMap<>());
+        List<Job> replaced = null;
+        if (overwrite) {
+            replaced = entityJobs.remove(handlerMethod);
+            if (replaced != null) {
+                for (Job job : replaced) {
+                    wheel.cancel(job.entry);
+                }
+                overwritten.add(replaced.size());
+            }
+        }
+
+        Job job = new Job(nextJobId++, type, id, handlerMethod, runTime, data);
+        addJob(job);
+        scheduled.increment();
+        appendJournal(Collections.singletonList(job), replaced != null ? replaced : Collections.emptyList());
+    }
+
+    /**
+     * Cancel all pending jobs for an entity.
+     *
+     * @return number of jobs cancelled.
+     */
+    public synchronized int unschedule(String type, String id) {
+        load();
+        Map<String, List<Job>> entityJobs = jobsByEntity.remove(type + ":" + id);
+        if (entityJobs == null) {
+            return 0;
+        }
+        List<Job> removed = new ArrayList<>();
+        for (List<Job> jobs : entityJobs.values()) {
+            removed.addAll(jobs);
+        }
+        return cancel(removed);
+    }
+
+    /**
+     * Cancel the pending jobs of a handler method for an entity.
+     *
+     * @return number of jobs cancelled.
+     */
+    public synchronized int unschedule(String type, String id, String handlerMethod) {
+        load();
+        String entityKey = type + ":" + id;
+        Map<String, List<Job>> entityJobs = jobsByEntity.get(entityKey);
+        if (entityJobs == null) {
+            return 0;
+        }
+        List<Job> removed = entityJobs.remove(handlerMethod);
+        if (entityJobs.isEmpty()) {
+            jobsByEntity.remove(entityKey);
+        }
+        return removed != null ? cancel(removed) : 0;
+    }
+
+    /**
+     * @return handler methods with a pending job, once for each job.
+     */
+    public synchronized List<String> getHandlerMethods(String type, String id) {
+        load();
+        List<String> handlerMethods = new ArrayList<>();
+        Map<String, List<Job>> entityJobs = jobsByEntity.get(type + ":" + id);
+        if (entityJobs != null) {
+            for (Map.Entry<String, List<Job>> handlerJobs : entityJobs.entrySet()) {
+                for (int i = 0; i < handlerJobs.getValue().size(); i++) {
+                    handlerMethods.add(handlerJobs.getKey());
+                }
+            }
+        }
+        return handlerMethods;
+    }
+
+    public synchronized int size() {
+        return wheel != null ? wheel.size() : 0;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        ThreadPoolExecutor workerPool;
+        synchronized (this) {
+            metrics.put("pending", wheel != null ? wheel.size() : 0);
+            metrics.put("journalEntries", journalEntries);
+            workerPool = this.workerPool;
+        }
+        metrics.put("queued", workerPool != null ? workerPool.getQueue().size() : 0);
+        metrics.put("scheduled", scheduled.sum());
+        metrics.put("overwritten", overwritten.sum());
+        metrics.put("cancelled", cancelled.sum());
+        metrics.put("fired", fired.sum());
+        metrics.put("failed", failed.sum());
+        return metrics;
+    }
+
+    void tick() {
+        // an exception here would cancel the timer and no single run would ever fire again
+        try {
+            runDueJobs();
+            flushJournal();
+        } catch (RuntimeException e) {
+            logger.warn("Exception running due schedules", e);
+        }
+    }
+
+    private void runDueJobs() {
+        List<Job> due = new ArrayList<>();
+        ThreadPoolExecutor workerPool;
+        synchronized (this) {
+            wheel.advanceTo(System.currentTimeMillis() / tickMillis, due);
+            if (due.isEmpty()) {
+                return;
+            }
+            for (Job job : due) {
+                removeFromIndex(job);
+            }
+            appendJournal(Collections.emptyList(), due);
+            workerPool = this.workerPool;
+        }
+        for (Job job : due) {
+            try {
+                if (workerPool != null) {
+                    workerPool.execute(() -> run(job));
+                }
+            } catch (RejectedExecutionException e) {
+                logger.warn("Scheduler is shutting down, not running " + job.handlerMethod + " for " + job.type + ":" + job.id);
+            }
+        }
+    }
+
+    private void run(Job job) {
+        fired.increment();
+        try {
+            jobRunner.run(job.type, job.id, job.handlerMethod, job.data);
+        } catch (RuntimeException e) {
+            failed.increment();
+            logger.warn("Exception running scheduled " + job.handlerMethod + " for " + job.type + ":" + job.id, e);
+        }
+    }
+
+    private int cancel(List<Job> removed) {
+        for (Job job : removed) {
+            wheel.cancel(job.entry);
+        }
+        cancelled.add(removed.size());
+        appendJournal(Collections.emptyList(), removed);
+        return removed.size();
+    }
+
+    private void addJob(Job job) {
+        job.entry = wheel.add(Math.floorDiv(job.runTime + tickMillis - 1, tickMillis), job);
+        jobsByEntity.computeIfAbsent(job.type + ":" + job.id, k -> new HashMap<>())
+                .computeIfAbsent(job.handlerMethod, k -> new ArrayList<>(1))
+                .add(job);
+    }
+
+    private void removeFromIndex(Job job) {
+        String entityKey = job.type + ":" + job.id;
+        Map<String, List<Job>> entityJobs = jobsByEntity.get(entityKey);
+        if (entityJobs == null) {
+            return;
+        }
+        List<Job> jobs = entityJobs.get(job.handlerMethod);
+        if (jobs != null && jobs.remove(job) && jobs.isEmpty()) {
+            entityJobs.remove(job.handlerMethod);
+            if (entityJobs.isEmpty()) {
+                jobsByEntity.remove(entityKey);
+            }
+        }
+    }
+
+    /**
+     * Create the wheel and replay the journal, jobs that came due while the hub was down run on the first tick.
+     */
+    private void load() {
+        if (wheel != null) {
+            return;
+        }
+        wheel = new TimerWheel<>(System.currentTimeMillis() / tickMillis);
+        Map<Long, Job> loadedJobs = new LinkedHashMap<>();
+        journalEntries = 0;
+        if (journalFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Map entry = (Map) new JsonSlurperClassic().parseText(line);
+                        if (entry.get("add") instanceof Map) {
+                            Job job = fromMap((Map) entry.get("add"));
+                            loadedJobs.put(job.jobId, job);
+                        } else if (entry.get("remove") instanceof Number) {
+                            loadedJobs.remove(((Number) entry.get("remove")).longValue());
+                        }
+                        journalEntries++;
+                    } catch (RuntimeException e) {
+                        // most likely a partial line from a crash while appending
+                        logger.warn("Skipping unreadable schedule journal entry: " + line);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Exception loading schedule journal", e);
+            }
+        }
+
+        for (Job job : loadedJobs.values()) {
+            addJob(job);
+            nextJobId = Math.max(nextJobId, job.jobId + 1);
+        }
+        if (journalEntries > loadedJobs.size()) {
+            compact();
+        }
+    }
+
+    private void appendJournal(Collection<Job> added, Collection<Job> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        journalEntries += added.size() + removed.size();
+        // entries that no longer describe a pending job
+        if (journalEntries - wheel.size() >= compactThreshold) {
+            compact();
+            return;
+        }
+        for (Job job : added) {
+            journalBuffer.append(JsonOutput.toJson(Collections.singletonMap("add", toMap(job)))).append('\n');
+        }
+        for (Job job : removed) {
+            journalBuffer.append(JsonOutput.toJson(Collections.singletonMap("remove", job.jobId))).append('\n');
+        }
+    }
+
+    /**
+     * Append the buffered journal entries to the journal file without holding the scheduler lock.
+     */
+    void flushJournal() {
+        String entries;
+        long generation;
+        synchronized (this) {
+            if (journalBuffer.length() == 0) {
+                return;
+            }
+            entries = journalBuffer.toString();
+            journalBuffer.setLength(0);
+            generation = journalGeneration;
+        }
+        boolean writeFailed = false;
+        synchronized (journalLock) {
+            if (generation != journalGeneration) {
+                // the journal was rewritten with all pending jobs after these entries were taken
+                return;
+            }
+            try {
+                Files.write(journalFile.toPath(), entries.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.warn("Exception writing schedule journal, rewriting journal", e);
+                writeFailed = true;
+            }
+        }
+        if (writeFailed) {
+            synchronized (this) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the pending jobs.
+     */
+    private void compact() {
+        List<Job> pending = new ArrayList<>(wheel.size());
+        for (Map<String, List<Job>> entityJobs : jobsByEntity.values()) {
+            for (List<Job> jobs : entityJobs.values()) {
+                pending.addAll(jobs);
+            }
+        }
+        synchronized (journalLock) {
+            try {
+                FileSystemUtils.writeFileAtomically(journalFile, (Writer writer) -> {
+                    for (Job job : pending) {
+                        writer.write(JsonOutput.toJson(Collections.singletonMap("add", toMap(job))));
+                        writer.write('\n');
+                    }
+                });
+                journalEntries = pending.size();
+                // buffered entries are covered by the rewrite
+                journalBuffer.setLength(0);
+                journalGeneration++;
+            } catch (IOException e) {
+                // keep the buffered entries, they are written on the next tick
+                logger.warn("Exception rewriting schedule journal", e);
+            }
+        }
+    }
+
+    private Map<String, Object> toMap(Job job) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", job.jobId);
+        map.put("type", job.type);
+        map.put("id", job.id);
+        map.put("handlerMethod", job.handlerMethod);
+        map.put("runTime", job.runTime);
+        if (job.data != null) {
+            map.put("data", job.data);
+        }
+        return map;
+    }
+
+    private Job fromMap(Map map) {
+        return new Job(((Number) map.get("jobId")).longValue(), (String) map.get("type"), (String) map.get("id"),
+                (String) map.get("handlerMethod"), ((Number) map.get("runTime")).longValue(), (String) map.get("data"));
+    }
+
+    private static class Job {
+        private final long jobId;
+        private final String type;
+        private final String id;
+        private final String handlerMethod;
+        private final long runTime;
+        private final String data;
+        private TimerWheel.Entry<Job> entry;
+
+        private Job(long jobId, String type, String id, String handlerMethod, long runTime, String data) {
+            this.jobId = jobId;
+            this.type = type;
+            this.id = id;
+            this.handlerMethod = handlerMethod;
+            this.runTime = runTime;
+            this.data = data;
+        }
+    }
+}
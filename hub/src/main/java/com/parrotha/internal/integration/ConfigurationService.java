@@ -41,4 +41,19 @@ public interface ConfigurationService {
     boolean removeIntegration(String integrationId);
 
     void updateIntegration(IntegrationConfiguration integrationConfiguration);
+
+    /**
+     * Look up a value in config/configuration.yaml.  Nested sections are separated by '.', for example
+     * "eventDispatcher.workerCount".
+     *
+     * @param key the configuration key
+     * @return the value or null if it is not set
+     */
+    Object getConfigurationValue(String key);
+
+    String getConfigurationValue(String key, String defaultValue);
+
+    int getConfigurationValue(String key, int defaultValue);
+
+    boolean getConfigurationValue(String key, boolean defaultValue);
 }
@@ -201,6 +201,53 @@ public class ConfigurationServiceImpl implements ConfigurationService {
         }
     }
 
+    @Override
+    public Object getConfigurationValue(String key) {
+        if (configuration == null || key == null) {
+            return null;
+        }
+        Object value = configuration;
+        for (String keyPart : key.split("\\.")) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            value = ((Map) value).get(keyPart);
+        }
+        return value;
+    }
+
+    @Override
+    public String getConfigurationValue(String key, String defaultValue) {
+        Object value = getConfigurationValue(key);
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    @Override
+    public int getConfigurationValue(String key, int defaultValue) {
+        Object value = getConfigurationValue(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid number for configuration " + key + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public boolean getConfigurationValue(String key, boolean defaultValue) {
+        Object value = getConfigurationValue(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value != null) {
+            return Boolean.parseBoolean(value.toString().trim());
+        }
+        return defaultValue;
+    }
+
     public void loadConfiguration() {
         configuration = new HashMap<>();
         Yaml yaml = new Yaml();
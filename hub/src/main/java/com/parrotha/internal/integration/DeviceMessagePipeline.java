@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.integration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands device messages from integration threads (for example the zigbee dongle's frame handler) to a worker pool that runs
+ * the device handlers, so a slow parse method does not hold up the integration.  Each device has a bounded queue that is
+ * drained by at most one worker at a time, so a device's messages are handled in the order they were received while
+ * different devices are handled in parallel.
+ */
+public class DeviceMessagePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceMessagePipeline.class);
+
+    // number of messages a worker handles for one device before giving other devices a turn
+    private static final int FAIRNESS_BATCH_SIZE = 16;
+
+    public enum OverflowPolicy {
+        // reject the incoming message
+        DROP_NEWEST,
+        // discard the oldest pending message to make room
+        DROP_OLDEST,
+        // make the integration wait for room, up to the max block time, then reject the incoming message
+        BLOCK
+    }
+
+    private final int workerCount;
+    private final int queueLimit;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBlockMillis;
+
+    private volatile ThreadPoolExecutor workerPool;
+    private volatile boolean shutdown = false;
+
+    private final Map<String, DeviceQueue> deviceQueues = new ConcurrentHashMap<>();
+    private final Map<String, IntegrationMetrics> integrationMetrics = new ConcurrentHashMap<>();
+
+    public DeviceMessagePipeline() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()), 50, OverflowPolicy.DROP_OLDEST, 100);
+    }
+
+    /**
+     * @param maxBlockMillis how long an integration waits for room with {@link OverflowPolicy#BLOCK}
+     */
+    public DeviceMessagePipeline(int workerCount, int queueLimit, OverflowPolicy overflowPolicy, long maxBlockMillis) {
+        this.workerCount = Math.max(1, workerCount);
+        this.queueLimit = Math.max(1, queueLimit);
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
+        this.maxBlockMillis = Math.max(0, maxBlockMillis);
+    }
+
+    /**
+     * Queue a message for a device.
+     *
+     * @param integrationId   the integration the message came from
+     * @param deviceNetworkId the device, messages for the same integration and device are handled one at a time in order
+     * @param handler         runs the device handler
+     * @return false if the message was dropped
+     */
+    public boolean submit(String integrationId, String deviceNetworkId, Runnable handler) {
+        if (handler == null) {
+            return false;
+        }
+        IntegrationMetrics metrics = getIntegrationMetrics(integrationId);
+        metrics.received.increment();
+        if (shutdown) {
+            metrics.dropped.increment();
+            return false;
+        }
+        String key = integrationId + ":" + deviceNetworkId;
+        Message message = new Message(handler, metrics);
+        while (true) {
+            DeviceQueue deviceQueue = deviceQueues.computeIfAbsent(key, DeviceQueue::new);
+            Boolean offered = deviceQueue.offer(message);
+            if (offered != null) {
+                return offered;
+            }
+            // the queue was removed after it drained, get a new one
+        }
+    }
+
+    /**
+     * Stop accepting messages and wait for queued messages to be handled.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        shutdown = true;
+        ThreadPoolExecutor pool = workerPool;
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(timeout, unit)) {
+                    logger.warn("Timed out waiting for device messages to be handled");
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("workerCount", workerCount);
+        metrics.put("queueLimit", queueLimit);
+        metrics.put("overflowPolicy", overflowPolicy.name());
+        metrics.put("maxBlockMillis", maxBlockMillis);
+        ThreadPoolExecutor pool = workerPool;
+        metrics.put("activeWorkers", pool != null ? pool.getActiveCount() : 0);
+        metrics.put("deviceQueues", deviceQueues.size());
+        Map<String, Object> integrations = new LinkedHashMap<>();
+        for (Map.Entry<String, IntegrationMetrics> entry : integrationMetrics.entrySet()) {
+            integrations.put(entry.getKey(), entry.getValue().getMetrics());
+        }
+        metrics.put("integrations", integrations);
+        return metrics;
+    }
+
+    private IntegrationMetrics getIntegrationMetrics(String integrationId) {
+        return integrationMetrics.computeIfAbsent(String.valueOf(integrationId), id -> new IntegrationMetrics());
+    }
+
+    private boolean execute(DeviceQueue deviceQueue) {
+        try {
+            getWorkerPool().execute(deviceQueue);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private ThreadPoolExecutor getWorkerPool() {
+        if (workerPool == null) {
+            synchronized (this) {
+                if (workerPool == null) {
+                    // the pool queue holds at most one entry per device
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = defaultThreadFactory.newThread(runnable);
+                        thread.setName("DeviceMessagePipeline-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    workerPool = pool;
+                }
+            }
+        }
+        return workerPool;
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static class Message {
+        private final Runnable handler;
+        private final IntegrationMetrics metrics;
+        private final long receivedNanos = System.nanoTime();
+
+        Message(Runnable handler, IntegrationMetrics metrics) {
+            this.handler = handler;
+            this.metrics = metrics;
+        }
+
+        void handle() {
+            long start = System.nanoTime();
+            metrics.recordLag(start - receivedNanos);
+            try {
+                handler.run();
+            } catch (Throwable t) {
+                metrics.failed.increment();
+                logger.warn("Exception while handling device message", t);
+            } finally {
+                metrics.handled.increment();
+                metrics.handlerNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private class DeviceQueue implements Runnable {
+        private final String key;
+        private final Deque<Message> queue = new ArrayDeque<>();
+        // true while the queue is queued on or running in the worker pool, guarded by this
+        private boolean scheduled = false;
+        // set once the queue has been removed from the device queue map, guarded by this
+        private boolean removed = false;
+
+        DeviceQueue(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return whether the message was accepted, or null if this queue has been removed and a new one is needed
+         */
+        Boolean offer(Message message) {
+            synchronized (this) {
+                if (removed) {
+                    return null;
+                }
+                if (queue.size() >= queueLimit && overflowPolicy == OverflowPolicy.BLOCK) {
+                    message.metrics.blocked.increment();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+                    try {
+                        while (queue.size() >= queueLimit && !removed) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (removed) {
+                        return null;
+                    }
+                }
+                if (queue.size() >= queueLimit) {
+                    if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                        Message dropped = queue.pollFirst();
+                        dropped.metrics.dropped.increment();
+                        dropped.metrics.queueDepth.decrementAndGet();
+                    } else {
+                        message.metrics.dropped.increment();
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Message queue for " + key + " is full, dropping message");
+                        }
+                        return false;
+                    }
+                }
+                queue.addLast(message);
+                message.metrics.queueDepth.incrementAndGet();
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            if (!execute(this)) {
+                // pool is shutting down, handle on the caller's thread so the message is not lost
+                run();
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            int processed = 0;
+            while (true) {
+                Message message;
+                synchronized (this) {
+                    message = queue.pollFirst();
+                    if (overflowPolicy == OverflowPolicy.BLOCK) {
+                        // wake integrations waiting for room
+                        notifyAll();
+                    }
+                    if (message == null) {
+                        scheduled = false;
+                        // remove idle queues so devices that stop sending do not keep one around
+                        removed = deviceQueues.remove(key, this);
+                        return;
+                    }
+                }
+                message.metrics.queueDepth.decrementAndGet();
+                message.handle();
+
+                if (++processed >= FAIRNESS_BATCH_SIZE && !shutdown) {
+                    // let other devices have a turn, this queue stays scheduled
+                    if (execute(this)) {
+                        return;
+                    }
+                    processed = 0;
+                }
+            }
+        }
+    }
+
+    private static class IntegrationMetrics {
+        private final LongAdder received = new LongAdder();
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder blocked = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final LongAdder lagNanos = new LongAdder();
+        private final AtomicLong maxLagNanos = new AtomicLong();
+        private volatile long lastLagNanos;
+        private final LongAdder handlerNanos = new LongAdder();
+
+        void recordLag(long lag) {
+            lagNanos.add(lag);
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            lastLagNanos = lag;
+        }
+
+        Map<String, Object> getMetrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            long handledCount = handled.sum();
+            metrics.put("received", received.sum());
+            metrics.put("handled", handledCount);
+            metrics.put("dropped", dropped.sum());
+            metrics.put("blocked", blocked.sum());
+            metrics.put("failed", failed.sum());
+            metrics.put("queueDepth", queueDepth.get());
+            metrics.put("lagAvgMillis", handledCount > 0 ? nanosToMillis(lagNanos.sum() / handledCount) : 0.0);
+            metrics.put("lagMaxMillis", nanosToMillis(maxLagNanos.get()));
+            metrics.put("lagLastMillis", nanosToMillis(lastLagNanos));
+            metrics.put("handlerLatencyAvgMillis", handledCount > 0 ? nanosToMillis(handlerNanos.sum() / handledCount) : 0.0);
+            return metrics;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.parrotha.integration.device.DeviceAddingEvent;
 import com.parrotha.integration.device.DeviceEvent;
 import com.parrotha.integration.device.DeviceMessageEvent;
 import com.parrotha.integration.device.LanDeviceMessageEvent;
+import com.parrotha.integration.device.ZigbeeMessageEvent;
 import com.parrotha.internal.Main;
 import com.parrotha.internal.device.DeviceService;
 import com.parrotha.internal.entity.CloudIntegrationServiceImpl;
@@ -37,6 +38,7 @@ import com.parrotha.internal.extension.ExtensionState;
 import com.parrotha.internal.extension.ExtensionStateListener;
 import com.parrotha.internal.hub.LocationService;
 import com.parrotha.service.DeviceIntegrationService;
+import com.parrotha.service.NeighborTableService;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -55,7 +57,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Stream;
+import java.util.concurrent.TimeUnit;
 
 public class IntegrationService implements ExtensionStateListener, IntegrationEventListener {
     private static final Logger logger = LoggerFactory.getLogger(IntegrationService.class);
@@ -71,6 +73,10 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
 
     private Map<String, Map<String, Object>> integrationTypeMap;
 
+    private DeviceMessagePipeline deviceMessagePipeline;
+    private NeighborTableService neighborTableService;
+    private final LanDeviceResolver lanDeviceResolver;
+
     public IntegrationService(IntegrationRegistry integrationRegistry, ConfigurationService configurationService, ExtensionService extensionService,
                               DeviceIntegrationService deviceIntegrationService, DeviceService deviceService, EntityService entityService,
                               LocationService locationService) {
@@ -81,6 +87,7 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
         this.deviceService = deviceService;
         this.entityService = entityService;
         this.locationService = locationService;
+        this.lanDeviceResolver = new LanDeviceResolver(deviceService);
 
         loadIntegrationTypes();
     }
@@ -254,6 +261,7 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
         abstractIntegration.setIntegrationEventListener(this);
         if (abstractIntegration instanceof DeviceIntegration) {
             ((DeviceIntegration) abstractIntegration).setDeviceIntegrationService(deviceIntegrationService);
+            ((DeviceIntegration) abstractIntegration).setNeighborTableService(neighborTableService);
         }
         if (abstractIntegration instanceof CloudIntegration) {
             ((CloudIntegration) abstractIntegration).setCloudIntegrationService(new CloudIntegrationServiceImpl(entityService, locationService));
@@ -270,6 +278,21 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
         if (extensionService != null) {
             extensionService.unregisterStateListener(this);
         }
+
+        if (deviceMessagePipeline != null) {
+            deviceMessagePipeline.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Handle device messages on a worker pool instead of the integration's thread.
+     */
+    public void setDeviceMessagePipeline(DeviceMessagePipeline deviceMessagePipeline) {
+        this.deviceMessagePipeline = deviceMessagePipeline;
+    }
+
+    public void setNeighborTableService(NeighborTableService neighborTableService) {
+        this.neighborTableService = neighborTableService;
     }
 
     private Map<String, AbstractIntegration> getIntegrationMap() {
@@ -479,12 +502,13 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
     public void eventReceived(IntegrationEvent integrationEvent) {
         if (integrationEvent instanceof DeviceEvent) {
             if (integrationEvent instanceof DeviceMessageEvent) {
-                if (integrationEvent instanceof LanDeviceMessageEvent) {
-                    lanDeviceMessageReceived((LanDeviceMessageEvent) integrationEvent);
+                DeviceMessageEvent deviceMessageEvent = (DeviceMessageEvent) integrationEvent;
+                if (deviceMessagePipeline != null) {
+                    // run the device handler on the pipeline so the integration thread can go back to receiving messages
+                    deviceMessagePipeline.submit(deviceMessageEvent.getIntegrationId(), getPipelineDeviceKey(deviceMessageEvent),
+                            () -> deviceMessageReceived(deviceMessageEvent));
                 } else {
-                    entityService.runDeviceMethodByDNI(integrationEvent.getIntegrationId(),
-                            ((DeviceMessageEvent) integrationEvent).getDeviceNetworkId(), "parse",
-                            ((DeviceMessageEvent) integrationEvent).getMessage());
+                    deviceMessageReceived(deviceMessageEvent);
                 }
             } else if (integrationEvent instanceof DeviceAddingEvent) {
                 DeviceAddingEvent deviceAddingEvent = (DeviceAddingEvent) integrationEvent;
@@ -506,7 +530,7 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
                     String deviceName = deviceHandlerInfo[1];
                     String deviceId = deviceService.addDevice(integrationEvent.getIntegrationId(), deviceHandlerId, deviceName,
                             deviceAddedEvent.getDeviceNetworkId(), deviceAddedEvent.getData(), deviceAddedEvent.getAdditionalParameters());
-                    List<String> capabilityList = deviceService.getDeviceHandler(deviceService.getDeviceById(deviceId).getDeviceHandlerId())
+                    List<String> capabilityList = deviceService.getDeviceHandler(deviceService.getDeviceSnapshotById(deviceId).getDeviceHandlerId())
                             .getCapabilityList();
                     if (capabilityList != null && capabilityList.contains("Configuration")) {
                         entityService.runDeviceMethod(deviceId, "configure");
@@ -517,52 +541,57 @@ public class IntegrationService implements ExtensionStateListener, IntegrationEv
         }
     }
 
-    private void lanDeviceMessageReceived(LanDeviceMessageEvent event) {
-        // look for device based on mac address first
-        if (deviceService.deviceExists(event.getIntegrationId(), event.getMacAddress(), false)) {
-            entityService.runDeviceMethodByDNI(event.getIntegrationId(), event.getMacAddress(), "parse", event.getMessage());
-            return;
-        }
-
-        String portHexString = String.format("%04x", event.getRemotePort());
-        String ipAddressHexString = Stream.of(event.getRemoteAddress().split("\\."))
-                .reduce("", (partialString, element) -> partialString + String.format("%02x", Integer.parseInt(element)));
-
-        // next look for device based on ip address : port
-        String ipAddressAndPortHexString = ipAddressHexString + ":" + portHexString;
-        if (deviceService.deviceExists(event.getIntegrationId(), ipAddressAndPortHexString, false)) {
-            entityService.runDeviceMethodByDNI(event.getIntegrationId(), ipAddressAndPortHexString, "parse", event.getMessage());
-            return;
+    private String getPipelineDeviceKey(DeviceMessageEvent event) {
+        if (event.getDeviceNetworkId() == null && event instanceof LanDeviceMessageEvent) {
+            // lan messages without a mac address are ordered by the address they came from so senders are not all
+            // handled one at a time on the same queue
+            return "address:" + ((LanDeviceMessageEvent) event).getRemoteAddress();
         }
+        return event.getDeviceNetworkId();
+    }
 
-        // look for device based on ip address
-        if (deviceService.deviceExists(event.getIntegrationId(), ipAddressHexString, false)) {
-            entityService.runDeviceMethodByDNI(event.getIntegrationId(), ipAddressHexString, "parse", event.getMessage());
-            return;
-        }
-
-        // look for device without integration id
-
-        // look for device based on mac address first
-        if (deviceService.deviceExists(event.getIntegrationId(), event.getMacAddress(), true)) {
-            entityService.runDeviceMethodByDNI(null, event.getMacAddress(), "parse", event.getMessage());
-            return;
+    private void deviceMessageReceived(DeviceMessageEvent event) {
+        if (event instanceof LanDeviceMessageEvent) {
+            LanDeviceMessageEvent lanDeviceMessageEvent = (LanDeviceMessageEvent) event;
+            if (lanDeviceMessageEvent.getLanMessage() != null) {
+                // parseLanMessage answers from the message instead of decoding the description while parse runs
+                lanDeviceMessageEvent.getLanMessage().runAsCurrent(() -> lanDeviceMessageReceived(lanDeviceMessageEvent));
+            } else {
+                lanDeviceMessageReceived(lanDeviceMessageEvent);
+            }
+        } else if (event instanceof ZigbeeMessageEvent) {
+            ZigbeeMessageEvent zigbeeMessageEvent = (ZigbeeMessageEvent) event;
+            // zigbee.parseDescriptionAsMap and zigbee.getEvent answer from the decoded message while parse runs
+            zigbeeMessageEvent.getZigbeeMessage().runAsCurrent(() ->
+                    entityService.runDeviceMethodByDNI(event.getIntegrationId(), event.getDeviceNetworkId(), "parse",
+                            event.getMessage()));
+        } else {
+            entityService.runDeviceMethodByDNI(event.getIntegrationId(), event.getDeviceNetworkId(), "parse", event.getMessage());
         }
+    }
 
-        // next look for device based on ip address : port
-        if (deviceService.deviceExists(event.getIntegrationId(), ipAddressAndPortHexString, true)) {
-            entityService.runDeviceMethodByDNI(null, ipAddressAndPortHexString, "parse", event.getMessage());
-            return;
+    private void lanDeviceMessageReceived(LanDeviceMessageEvent event) {
+        String macAddress = event.getMacAddress();
+        if (macAddress == null && neighborTableService != null) {
+            macAddress = neighborTableService.getMacAddress(event.getRemoteAddress());
         }
 
-        // look for device based on ip address
-        if (deviceService.deviceExists(event.getIntegrationId(), ipAddressHexString, true)) {
-            entityService.runDeviceMethodByDNI(null, ipAddressHexString, "parse", event.getMessage());
+        // look for device based on mac address, ip address : port and then ip address, first for this integration and then
+        // for devices without an integration
+        String[] device = lanDeviceResolver.resolve(event.getIntegrationId(), macAddress, event.getRemoteAddress(),
+                event.getRemotePort());
+        if (device != null) {
+            entityService.runDeviceMethodByDNI(device[0], device[1], "parse", event.getMessage());
             return;
         }
 
         // Finally, send message as hub event if no match above, it appears that Smartthings used to do this.
         // TODO: is lanMessage the right name of the event?  Can't find documentation about it.
-        entityService.sendHubEvent(new HashMap<>(Map.of("name", "lanMessage", "value", event.getMacAddress(), "description", event.getMessage())));
+        // the mac address is null when it could not be found
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("name", "lanMessage");
+        properties.put("value", macAddress);
+        properties.put("description", event.getMessage());
+        entityService.sendHubEvent(properties);
     }
 }
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.integration;
+
+import com.parrotha.internal.device.DeviceService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the device a LAN message is for.  A LAN device network id can be the mac address, the ip address and port or the
+ * ip address of the device, each with or without the integration, so a message could take six device lookups.  The lookups
+ * that don't depend on the sender's port are remembered per sender until a device network id changes, which leaves at most
+ * the two ip address and port lookups for each message.
+ */
+class LanDeviceResolver {
+    private static final int MAX_ENTRIES = 1024;
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final Pattern IPV4_ADDRESS = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    // order that device network ids are tried in
+    private static final int MAC_ADDRESS = 0;
+    private static final int IP_ADDRESS_AND_PORT = 1;
+    private static final int IP_ADDRESS = 2;
+    private static final int UNAFFILIATED_MAC_ADDRESS = 3;
+    private static final int UNAFFILIATED_IP_ADDRESS_AND_PORT = 4;
+    private static final int UNAFFILIATED_IP_ADDRESS = 5;
+    private static final int NO_MATCH = 6;
+
+    private final DeviceService deviceService;
+    private final Map<String, Match> matches = new ConcurrentHashMap<>();
+
+    LanDeviceResolver(DeviceService deviceService) {
+        this.deviceService = deviceService;
+    }
+
+    /**
+     * @return the integration id, null for a device without an integration, and the device network id of the device, or
+     * null if no device matches
+     */
+    String[] resolve(String integrationId, String macAddress, String remoteAddress, int remotePort) {
+        // read before the lookups so a change made during them makes this match stale
+        long version = deviceService.getDeviceNetworkIdVersion();
+        // a missing mac address or integration is an empty key part, the same as it is skipped in the lookups
+        String key = (integrationId != null ? integrationId : "") + "|" + (macAddress != null ? macAddress : "") + "|" + remoteAddress;
+        Match match = matches.get(key);
+        if (match == null || match.version != version) {
+            match = findMatch(integrationId, macAddress, remoteAddress, version);
+            if (matches.size() >= MAX_ENTRIES) {
+                matches.clear();
+            }
+            matches.put(key, match);
+        }
+
+        if (match.ipAddressHex != null && match.order > IP_ADDRESS_AND_PORT) {
+            String ipAddressAndPortHex = match.ipAddressHex + ":" + toHex(remotePort, 4);
+            if (deviceService.deviceExists(integrationId, ipAddressAndPortHex, false)) {
+                return new String[]{integrationId, ipAddressAndPortHex};
+            }
+            if (match.order > UNAFFILIATED_IP_ADDRESS_AND_PORT && deviceService.deviceExists(integrationId, ipAddressAndPortHex, true)) {
+                return new String[]{null, ipAddressAndPortHex};
+            }
+        }
+
+        if (match.order == NO_MATCH) {
+            return null;
+        }
+        return new String[]{match.order < UNAFFILIATED_MAC_ADDRESS ? integrationId : null, match.deviceNetworkId};
+    }
+
+    private Match findMatch(String integrationId, String macAddress, String remoteAddress, long version) {
+        String ipAddressHex = toIpAddressHex(remoteAddress);
+        if (macAddress != null && !macAddress.isEmpty() && deviceService.deviceExists(integrationId, macAddress, false)) {
+            return new Match(version, MAC_ADDRESS, macAddress, ipAddressHex);
+        }
+        if (ipAddressHex != null && deviceService.deviceExists(integrationId, ipAddressHex, false)) {
+            return new Match(version, IP_ADDRESS, ipAddressHex, ipAddressHex);
+        }
+        if (macAddress != null && !macAddress.isEmpty() && deviceService.deviceExists(integrationId, macAddress, true)) {
+            return new Match(version, UNAFFILIATED_MAC_ADDRESS, macAddress, ipAddressHex);
+        }
+        if (ipAddressHex != null && deviceService.deviceExists(integrationId, ipAddressHex, true)) {
+            return new Match(version, UNAFFILIATED_IP_ADDRESS, ipAddressHex, ipAddressHex);
+        }
+        return new Match(version, NO_MATCH, null, ipAddressHex);
+    }
+
+    static String toIpAddressHex(String ipAddress) {
+        if (ipAddress == null || !IPV4_ADDRESS.matcher(ipAddress).matches()) {
+            return null;
+        }
+        StringBuilder ipAddressHex = new StringBuilder(8);
+        int octet = 0;
+        for (int i = 0; i < ipAddress.length(); i++) {
+            char c = ipAddress.charAt(i);
+            if (c == '.') {
+                appendHex(ipAddressHex, octet, 2);
+                octet = 0;
+            } else {
+                octet = octet * 10 + (c - '0');
+            }
+        }
+        appendHex(ipAddressHex, octet, 2);
+        return ipAddressHex.toString();
+    }
+
+    static String toHex(int value, int digits) {
+        StringBuilder hex = new StringBuilder(digits);
+        appendHex(hex, value, digits);
+        return hex.toString();
+    }
+
+    private static void appendHex(StringBuilder sb, int value, int digits) {
+        // same as %02x and %04x, values too large for the digits are written in full
+        if (value >>> (digits * 4) != 0) {
+            sb.append(Integer.toHexString(value));
+            return;
+        }
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX_CHARS[(value >> shift) & 0xF]);
+        }
+    }
+
+    private static class Match {
+        private final long version;
+        private final int order;
+        private final String deviceNetworkId;
+        private final String ipAddressHex;
+
+        Match(long version, int order, String deviceNetworkId, String ipAddressHex) {
+            this.version = version;
+            this.order = order;
+            this.deviceNetworkId = deviceNetworkId;
+            this.ipAddressHex = ipAddressHex;
+        }
+    }
+}
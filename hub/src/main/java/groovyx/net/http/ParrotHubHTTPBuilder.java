@@ -55,6 +55,7 @@ import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -99,6 +100,7 @@ public class ParrotHubHTTPBuilder {
     //|    \--- xml-resolver:xml-resolver:1.2
 
     private HttpClient client;
+    private RequestConfig requestConfig;
 
     protected final Log log = LogFactory.getLog(getClass());
 
@@ -119,6 +121,18 @@ public class ParrotHubHTTPBuilder {
         encoders.putAt(ContentType.ANY.toString(), new MethodClosure(encoders, "encodeText"));
     }
 
+    /**
+     * Creates a new instance that sends requests with an existing (usually shared) client.
+     *
+     * @param client        the client to use, it is not closed by this builder
+     * @param requestConfig config (timeouts, etc) for requests, may be null to use the client's default config
+     */
+    public ParrotHubHTTPBuilder(HttpClient client, RequestConfig requestConfig) {
+        this();
+        this.client = client;
+        this.requestConfig = requestConfig;
+    }
+
     /**
      * <p>Convenience method to perform an HTTP GET.  It will use the HTTPBuilder's
      * registered response handlers to handle success or
@@ -265,6 +279,9 @@ public class ParrotHubHTTPBuilder {
     protected Object doRequest(final ParrotHubHTTPBuilder.RequestConfigDelegate delegate) throws ClientProtocolException, IOException {
         delegate.encodeBody();
         final HttpRequestBase reqMethod = delegate.getRequest();
+        if (requestConfig != null) {
+            reqMethod.setConfig(requestConfig);
+        }
 
         final Object contentType = delegate.getContentType();
 
@@ -0,0 +1,14 @@
+CREATE CACHED TABLE DEVICE_STATE_AGGREGATE(
+    DEVICE_ID VARCHAR(36) NOT NULL,
+    NAME VARCHAR(255) NOT NULL,
+    RESOLUTION INTEGER NOT NULL,
+    DATE TIMESTAMP NOT NULL,
+    VALUE_MIN DOUBLE,
+    VALUE_MAX DOUBLE,
+    VALUE_SUM DOUBLE,
+    VALUE_LAST DOUBLE,
+    VALUE_COUNT INTEGER,
+    UNIT VARCHAR(50),
+    PRIMARY KEY (DEVICE_ID, NAME, RESOLUTION, DATE)
+);
+CREATE INDEX DEVICE_STATE_AGGREGATE_RESOLUTION_DATE_INDEX ON DEVICE_STATE_AGGREGATE (RESOLUTION, DATE);
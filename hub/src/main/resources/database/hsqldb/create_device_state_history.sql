@@ -3,7 +3,9 @@ CREATE CACHED TABLE DEVICE_STATE_HISTORY(
     DEVICE_ID VARCHAR(36),
     NAME VARCHAR(255),
     VALUE VARCHAR(255),
+    NUMBER_VALUE DOUBLE,
     UNIT VARCHAR(50),
     DATE TIMESTAMP
 );
 CREATE INDEX DEVICE_STATE_HISTORY_DEVICEID_NAME_DATE_INDEX ON DEVICE_STATE_HISTORY (DEVICE_ID, NAME, DATE);
+CREATE INDEX DEVICE_STATE_HISTORY_DATE_INDEX ON DEVICE_STATE_HISTORY (DATE);
@@ -15,3 +15,5 @@ CREATE CACHED TABLE EVENT_HISTORY(
 );
 
 CREATE INDEX EVENT_HISTORY_SOURCEID_SOURCE_NAME_DATE_INDEX ON EVENT_HISTORY (SOURCE_ID, SOURCE, NAME, DATE);
+CREATE INDEX EVENT_HISTORY_DATE_INDEX ON EVENT_HISTORY (DATE);
+CREATE INDEX EVENT_HISTORY_SOURCE_DATE_INDEX ON EVENT_HISTORY (SOURCE, DATE);
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeTrackingMapTest {
+
+    private Map<String, Object> createState() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("level", 10);
+        List<Object> list = new ArrayList<>();
+        list.add("a");
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("count", 1);
+        state.put("name", "test");
+        state.put("nested", nested);
+        state.put("list", list);
+        return state;
+    }
+
+    @Test
+    public void testUnchangedState() {
+        Map<String, Object> state = createState();
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(state);
+
+        // reading nested values and writing the same value again is not a change
+        assertEquals(10, ((Map) changeTrackingMap.get("nested")).get("level"));
+        changeTrackingMap.put("count", 1);
+        changeTrackingMap.put("name", "test");
+        assertEquals(4, changeTrackingMap.size());
+        assertTrue(changeTrackingMap.changes().isEmpty());
+    }
+
+    @Test
+    public void testChanges() {
+        Map<String, Object> state = createState();
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(state);
+
+        changeTrackingMap.put("count", 2);
+        changeTrackingMap.remove("name");
+        ((Map) changeTrackingMap.get("nested")).put("level", 20);
+        ((List) changeTrackingMap.get("list")).add("b");
+        changeTrackingMap.put("added", 1.5d);
+
+        assertEquals(4, changeTrackingMap.size());
+        assertFalse(changeTrackingMap.containsKey("name"));
+        assertNull(changeTrackingMap.get("name"));
+
+        ChangeTrackingMap.ChangeSet changes = changeTrackingMap.changes();
+        assertEquals(Set.of("name"), changes.getRemoved());
+        assertEquals(Set.of("count", "nested", "list"), changes.getUpdated().keySet());
+        assertEquals(20, ((Map) changes.getUpdated().get("nested")).get("level"));
+        assertEquals(List.of("a", "b"), changes.getUpdated().get("list"));
+        // changed values are converted to what they will be read back as
+        assertEquals(new BigDecimal("1.5"), changes.getAdded().get("added"));
+
+        // the original state is never modified
+        assertEquals(createState(), state);
+    }
+
+    @Test
+    public void testChangesThroughViews() {
+        Map<String, Object> state = createState();
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(state);
+
+        changeTrackingMap.put("added", "x");
+        changeTrackingMap.keySet().remove("count");
+        changeTrackingMap.entrySet().removeIf(entry -> "name".equals(((Map.Entry) entry).getKey()));
+        ((Map) changeTrackingMap.values().stream().filter(value -> value instanceof Map).findFirst().get()).put("level", 5);
+
+        ChangeTrackingMap.ChangeSet changes = changeTrackingMap.changes();
+        assertEquals(Set.of("count", "name"), changes.getRemoved());
+        assertEquals(Set.of("nested"), changes.getUpdated().keySet());
+        assertEquals(Map.of("added", "x"), changes.getAdded());
+
+        changeTrackingMap.clear();
+        assertTrue(changeTrackingMap.isEmpty());
+        assertEquals(4, changeTrackingMap.changes().getRemoved().size());
+        assertEquals(createState(), state);
+    }
+
+    @Test
+    public void testPutValuesReadBackNormalized() {
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(createState());
+
+        // values read back the same as after being stored as json
+        changeTrackingMap.put("double", 1.5d);
+        changeTrackingMap.put("long", 5L);
+        assertEquals(new BigDecimal("1.5"), changeTrackingMap.get("double"));
+        assertEquals(5, changeTrackingMap.get("long"));
+
+        // writing the stored value back again is not a change
+        changeTrackingMap.put("count", 1L);
+        assertEquals(Set.of("double", "long"), changeTrackingMap.changes().getAdded().keySet());
+        assertTrue(changeTrackingMap.changes().getUpdated().isEmpty());
+    }
+
+    @Test
+    public void testOriginalValuesReadBackNormalized() {
+        // state loaded from yaml can hold values json would read back differently
+        Map<String, Object> state = createState();
+        state.put("double", 1.5d);
+        state.put("long", 5L);
+        ((Map) state.get("nested")).put("double", 2.5d);
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(state);
+
+        assertEquals(new BigDecimal("1.5"), changeTrackingMap.get("double"));
+        assertEquals(5, changeTrackingMap.get("long"));
+        assertEquals(new BigDecimal("2.5"), ((Map) changeTrackingMap.get("nested")).get("double"));
+        assertEquals(new BigDecimal("1.5"), changeTrackingMap.values().stream()
+                .filter(value -> value instanceof BigDecimal).findFirst().get());
+
+        // reading and writing back unchanged values is not a change
+        changeTrackingMap.put("double", changeTrackingMap.get("double"));
+        changeTrackingMap.put("long", 5L);
+        assertTrue(changeTrackingMap.changes().isEmpty());
+
+        changeTrackingMap.put("double", 1.75d);
+        assertEquals(Map.of("double", new BigDecimal("1.75")), changeTrackingMap.changes().getUpdated());
+        assertEquals(1.5d, state.get("double"));
+    }
+
+    @Test
+    public void testNestedCollectionsChangedInPlace() {
+        Map<String, Object> state = createState();
+        state.put("set", new LinkedHashSet<>(List.of("a")));
+        ChangeTrackingMap changeTrackingMap = new ChangeTrackingMap(state);
+
+        ((Set) changeTrackingMap.get("set")).add("b");
+        ((List) changeTrackingMap.get("list")).add("b");
+
+        ChangeTrackingMap.ChangeSet changes = changeTrackingMap.changes();
+        assertEquals(Set.of("set", "list"), changes.getUpdated().keySet());
+        assertEquals(Set.of("a"), state.get("set"));
+        assertEquals(List.of("a"), state.get("list"));
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.app;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AutomationAppStateStoreTest {
+
+    private AutomationAppDataStore createMockAutomationAppDataStore() {
+        InstalledAutomationApp installedAutomationApp = new InstalledAutomationApp();
+        installedAutomationApp.setId("1");
+        installedAutomationApp.setState(Map.of("existing", "value"));
+        AutomationAppDataStore automationAppDataStore = mock(AutomationAppDataStore.class);
+        when(automationAppDataStore.getInstalledAutomationAppById("1")).thenReturn(installedAutomationApp);
+        return automationAppDataStore;
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        Path logDirectory = Files.createTempDirectory("appState");
+        AutomationAppDataStore automationAppDataStore = createMockAutomationAppDataStore();
+        AutomationAppStateStore stateStore = new AutomationAppStateStore(automationAppDataStore, logDirectory.toFile(), 10000, 0);
+        Map atomicState = stateStore.getAtomicState("1");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 250; j++) {
+                    atomicState.merge("count", 1, (a, b) -> (Integer) a + (Integer) b);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, atomicState.get("count"));
+        assertFalse(atomicState.replace("count", 999, 0));
+        assertTrue(atomicState.replace("count", 1000, 0));
+        // nothing has been written to the data store yet
+        verify(automationAppDataStore, never()).updateInstalledAutomationAppState(any(), any());
+    }
+
+    @Test
+    public void testLogReplayedOnLoad() throws IOException {
+        Path logDirectory = Files.createTempDirectory("appState");
+        AutomationAppStateStore stateStore = new AutomationAppStateStore(createMockAutomationAppDataStore(),
+                logDirectory.toFile(), 10000, 0);
+        Map atomicState = stateStore.getAtomicState("1");
+        atomicState.put("list", List.of(1, 2));
+        atomicState.remove("existing");
+        ((List) atomicState.get("list")).add(3);
+        // previous values returned by changes are copies too
+        ((List) atomicState.replace("list", List.of(1, 2))).add(3);
+        assertEquals(List.of(1, 2), atomicState.get("list"));
+
+        // a new store replays the log over the state in the data store and writes a snapshot
+        AutomationAppDataStore automationAppDataStore = createMockAutomationAppDataStore();
+        AutomationAppStateStore reloadedStateStore = new AutomationAppStateStore(automationAppDataStore,
+                logDirectory.toFile(), 10000, 0);
+        assertEquals(Map.of("list", List.of(1, 2)), reloadedStateStore.getState("1"));
+
+        ArgumentCaptor<Map> stateCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(automationAppDataStore, times(1)).updateInstalledAutomationAppState(eq("1"), stateCaptor.capture());
+        assertEquals(Map.of("list", List.of(1, 2)), stateCaptor.getValue());
+        assertFalse(new File(logDirectory.toFile(), "1.log").exists());
+    }
+}
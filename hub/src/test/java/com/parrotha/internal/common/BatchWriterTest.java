@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchWriterTest {
+    @Test
+    public void testFailedBatchIsRetried() {
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger(2);
+        BatchWriter<Integer> batchWriter = new BatchWriter<>("test", 16, 4, 10, 100, 3, 1, items -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("database unavailable");
+            }
+            written.addAll(items);
+        });
+
+        for (int i = 0; i < 4; i++) {
+            batchWriter.add(i);
+        }
+        assertTrue(batchWriter.flush(5, TimeUnit.SECONDS));
+        batchWriter.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(0, 1, 2, 3), written);
+        assertEquals(4L, batchWriter.getMetrics().get("written"));
+        assertEquals(2L, batchWriter.getMetrics().get("retries"));
+        assertEquals(0L, batchWriter.getMetrics().get("dropped"));
+    }
+
+    @Test
+    public void testBatchIsDroppedAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        BatchWriter<Integer> batchWriter = new BatchWriter<>("test", 16, 4, 10, 100, 3, 1, items -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("database unavailable");
+        });
+
+        for (int i = 0; i < 4; i++) {
+            batchWriter.add(i);
+        }
+        assertTrue(batchWriter.flush(5, TimeUnit.SECONDS));
+        batchWriter.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(3, attempts.get());
+        assertEquals(0L, batchWriter.getMetrics().get("written"));
+        assertEquals(2L, batchWriter.getMetrics().get("retries"));
+        assertEquals(4L, batchWriter.getMetrics().get("dropped"));
+    }
+}
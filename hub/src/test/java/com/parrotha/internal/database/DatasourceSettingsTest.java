@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.database;
+
+import com.parrotha.internal.integration.ConfigurationServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DatasourceSettingsTest {
+
+    private static ConfigurationServiceImpl configuration(Map<String, Object> configuration) {
+        return new ConfigurationServiceImpl() {
+            @Override
+            public Object getConfigurationValue(String key) {
+                Object value = configuration;
+                for (String keyPart : key.split("\\.")) {
+                    if (!(value instanceof Map)) {
+                        return null;
+                    }
+                    value = ((Map) value).get(keyPart);
+                }
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void testDefaults() {
+        DatasourceSettings settings = DatasourceSettings.fromConfiguration(null, DatasourceFactory.DEFAULT);
+        assertEquals("jdbc:hsqldb:file:database/testdb", settings.getJdbcUrl());
+        assertEquals("database/testdb", settings.getHsqldbFilePath());
+        assertEquals(10, settings.getMaxPoolSize());
+        // database settings are left alone unless configured
+        assertTrue(settings.getHsqldbStatements().isEmpty());
+    }
+
+    @Test
+    public void testNamedSettingsFallBackToDatabaseSection() {
+        ConfigurationServiceImpl configurationService = configuration(Map.of("database", Map.of(
+                "maxPoolSize", 8,
+                "writeDelayMillis", 2000,
+                "events", Map.of("maxPoolSize", 3, "cacheRows", 10000),
+                "scheduler", Map.of("jdbcUrl", "jdbc:hsqldb:hsql://localhost/parrothub"))));
+
+        DatasourceSettings defaultSettings = DatasourceSettings.fromConfiguration(configurationService, DatasourceFactory.DEFAULT);
+        assertEquals(8, defaultSettings.getMaxPoolSize());
+        assertEquals(List.of("SET FILES WRITE DELAY 2000 MILLIS"), defaultSettings.getHsqldbStatements());
+
+        DatasourceSettings eventSettings = DatasourceSettings.fromConfiguration(configurationService, DatasourceFactory.EVENTS);
+        assertEquals(3, eventSettings.getMaxPoolSize());
+        assertEquals("jdbc:hsqldb:file:database/testdb", eventSettings.getJdbcUrl());
+        assertEquals(List.of("SET FILES CACHE ROWS 10000", "SET FILES WRITE DELAY 2000 MILLIS"), eventSettings.getHsqldbStatements());
+
+        DatasourceSettings schedulerSettings = DatasourceSettings.fromConfiguration(configurationService, DatasourceFactory.SCHEDULER);
+        assertEquals("jdbc:hsqldb:hsql://localhost/parrothub", schedulerSettings.getJdbcUrl());
+        assertNull(schedulerSettings.getHsqldbFilePath());
+        // file settings can not be applied to a server database
+        assertTrue(schedulerSettings.getHsqldbStatements().isEmpty());
+    }
+
+    @Test
+    public void testIsConfigured() {
+        ConfigurationServiceImpl configurationService = configuration(Map.of("database", Map.of("events", Map.of("maxPoolSize", 3))));
+        assertTrue(DatasourceSettings.isConfigured(configurationService, DatasourceFactory.EVENTS));
+        assertFalse(DatasourceSettings.isConfigured(configurationService, DatasourceFactory.SCHEDULER));
+        assertFalse(DatasourceSettings.isConfigured(null, DatasourceFactory.EVENTS));
+    }
+
+    @Test
+    public void testFilePathWithProperties() {
+        ConfigurationServiceImpl configurationService = configuration(Map.of("database",
+                Map.of("jdbcUrl", "jdbc:hsqldb:file:/var/parrot/hub;shutdown=true")));
+        assertEquals("/var/parrot/hub", DatasourceSettings.fromConfiguration(configurationService, DatasourceFactory.DEFAULT).getHsqldbFilePath());
+    }
+}
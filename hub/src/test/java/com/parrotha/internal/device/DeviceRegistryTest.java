@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeviceRegistryTest {
+    private static final int DEVICE_COUNT = 200;
+    private static final int THREAD_COUNT = 16;
+    private static final int OPERATIONS_PER_THREAD = 20000;
+
+    @Test
+    public void testIndexesFollowDeviceUpdates() {
+        DeviceRegistry registry = new DeviceRegistry();
+        registry.put(DeviceSnapshot.of(createDevice("1", "zigbee", "0A1B", "dh1", "parent")));
+
+        assertNotNull(registry.getByIntegrationAndDNI("zigbee", "0a1b"));
+        assertEquals(1, registry.getByParentDevice("parent").size());
+
+        Device changed = registry.get("1").toDevice();
+        changed.setDeviceNetworkId("0C2D");
+        changed.setDeviceHandlerId("dh2");
+        registry.update("1", existing -> existing.withUpdatesFrom(changed));
+
+        assertNull(registry.getByIntegrationAndDNI("zigbee", "0A1B"));
+        assertNotNull(registry.getByIntegrationAndDNI("zigbee", "0C2D"));
+        assertEquals(0, registry.getByDeviceHandler("dh1").size());
+        assertEquals(1, registry.getByDeviceHandler("dh2").size());
+
+        registry.remove("1");
+        assertNull(registry.getByIntegrationAndDNI("zigbee", "0C2D"));
+        assertEquals(0, registry.getByParentDevice("parent").size());
+        assertEquals(0, registry.getByIntegration("zigbee").size());
+    }
+
+    @Test
+    public void testConcurrentUpdatesKeepIndexesConsistent() throws Exception {
+        DeviceRegistry registry = new DeviceRegistry();
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            registry.put(DeviceSnapshot.of(createDevice(String.valueOf(i), "lan", dni(i, 0), "dh0", "parent" + (i % 10))));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int increments = 0;
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    String deviceId = String.valueOf(random.nextInt(DEVICE_COUNT));
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            // count increments per device to catch lost updates
+                            registry.update(deviceId, existing -> {
+                                Map<String, Object> state = new HashMap<>(existing.getState());
+                                state.put("count", (Integer) state.get("count") + 1);
+                                return existing.withState(state);
+                            });
+                            increments++;
+                            break;
+                        case 1:
+                            registry.update(deviceId, existing -> {
+                                Device device = existing.toDevice();
+                                device.setDeviceNetworkId(dni(Integer.parseInt(deviceId), random.nextInt(3)));
+                                device.setDeviceHandlerId("dh" + random.nextInt(5));
+                                return existing.withUpdatesFrom(device);
+                            });
+                            break;
+                        case 2:
+                            DeviceSnapshot device = registry.get(deviceId);
+                            DeviceSnapshot byDni = registry.getByIntegrationAndDNI("lan", device.getDeviceNetworkId());
+                            // the device may have moved to a new dni since it was read, but a lookup never returns another device
+                            assertTrue(byDni == null || byDni.getId().equals(deviceId));
+                            break;
+                        default:
+                            for (DeviceSnapshot child : registry.getByParentDevice("parent" + random.nextInt(10))) {
+                                assertNotNull(child.getParentDeviceId());
+                            }
+                    }
+                }
+                return increments;
+            }));
+        }
+        start.countDown();
+
+        int expectedIncrements = 0;
+        for (Future<Integer> future : futures) {
+            expectedIncrements += future.get(60, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        int increments = 0;
+        int devicesByHandler = 0;
+        int devicesByParent = 0;
+        for (DeviceSnapshot device : registry.getAll()) {
+            increments += (Integer) device.getState().get("count");
+            assertSame(device, registry.getByIntegrationAndDNI("lan", device.getDeviceNetworkId()));
+        }
+        for (int i = 0; i < 5; i++) {
+            devicesByHandler += registry.getByDeviceHandler("dh" + i).size();
+        }
+        for (int i = 0; i < 10; i++) {
+            devicesByParent += registry.getByParentDevice("parent" + i).size();
+        }
+        assertEquals(expectedIncrements, increments);
+        assertEquals(DEVICE_COUNT, devicesByHandler);
+        assertEquals(DEVICE_COUNT, devicesByParent);
+        assertEquals(DEVICE_COUNT, registry.getByIntegration("lan").size());
+    }
+
+    private static String dni(int device, int variant) {
+        return String.format("%04X%02X", device, variant);
+    }
+
+    private static Device createDevice(String id, String integrationId, String deviceNetworkId, String deviceHandlerId,
+                                       String parentDeviceId) {
+        Device device = new Device();
+        device.setId(id);
+        device.getIntegration().setId(integrationId);
+        device.setDeviceNetworkId(deviceNetworkId);
+        device.setDeviceHandlerId(deviceHandlerId);
+        device.setParentDeviceId(parentDeviceId);
+        Map<String, Object> state = new HashMap<>();
+        state.put("count", 0);
+        device.setState(state);
+        return device;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.apache.commons.io.IOUtils;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DeviceStateHistorySQLDataStoreTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long START = 1_700_000_000_000L - Math.floorMod(1_700_000_000_000L, 24 * HOUR);
+
+    private JDBCDataSource dataSource;
+    private DeviceStateHistorySQLDataStore dataStore;
+
+    @BeforeEach
+    public void setup() throws IOException, SQLException {
+        dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:" + UUID.randomUUID());
+        dataSource.setUser("SA");
+        dataSource.setPassword("");
+        runScript("/database/hsqldb/create_device_state_history.sql");
+        runScript("/database/hsqldb/create_device_state_aggregate.sql");
+        dataStore = new DeviceStateHistorySQLDataStore(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testNumberValuesReadBack() {
+        dataStore.saveStates(List.of(
+                StateHistoryEntry.fromState("1", "d1", state("temperature", "72", START + 1000)),
+                StateHistoryEntry.fromState("2", "d1", state("switch", "on", START + 1000))));
+
+        List<StateHistoryEntry> temperatures = dataStore.getStates("d1", "temperature", new Date(START), new Date(START + HOUR), -1);
+        assertEquals(1, temperatures.size());
+        assertNull(temperatures.get(0).getValue());
+        assertEquals(72.0, (double) temperatures.get(0).getNumberValue());
+        assertEquals("72", temperatures.get(0).toState().getValue());
+
+        List<StateHistoryEntry> switches = dataStore.getStates("d1", "switch", new Date(START), new Date(START + HOUR), -1);
+        assertEquals("on", switches.get(0).getValue());
+        assertNull(switches.get(0).getNumberValue());
+
+        assertEquals(1, dataStore.getNumericStates(new Date(START), new Date(START + HOUR)).size());
+    }
+
+    @Test
+    public void testRollup() {
+        DeviceStateHistory history = new DeviceStateHistory(dataStore, 100, 10, 10, 1000, 0, 7, 30, 730);
+        history.addState("d1", state("temperature", "70", START + 1000));
+        history.addState("d1", state("temperature", "74", START + 2000));
+        history.addState("d1", state("switch", "on", START + 3000));
+
+        history.rollup(START + 2 * HOUR);
+
+        List<StateAggregate> minutes = history.getAggregates("d1", "temperature", new Date(START), new Date(START + HOUR),
+                StateAggregate.MINUTE, -1);
+        assertEquals(1, minutes.size());
+        assertEquals(70, minutes.get(0).getMin());
+        assertEquals(74, minutes.get(0).getMax());
+        assertEquals(2, minutes.get(0).getCount());
+        assertEquals(1, history.getAggregates("d1", "temperature", new Date(START), new Date(START + 2 * HOUR),
+                StateAggregate.HOUR, -1).size());
+        history.shutdown();
+    }
+
+    private void runScript(String resource) throws IOException, SQLException {
+        String script;
+        try (InputStream inputStream = getClass().getResourceAsStream(resource)) {
+            script = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+        try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement()) {
+            for (String sql : script.split(";")) {
+                if (!sql.isBlank()) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static State state(String name, String value, long date) {
+        return new State(UUID.randomUUID().toString(), name, value, null, new Date(date));
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.device;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DeviceStateHistoryTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // midnight, so minutes and hours line up with the test times
+    private static final long START = 1_700_000_000_000L - Math.floorMod(1_700_000_000_000L, DAY);
+
+    @Test
+    public void testNumericValuesAreTyped() {
+        StateHistoryEntry entry = StateHistoryEntry.fromState("1", "d1", state("temperature", "72.5", START));
+        assertEquals(72.5, (double) entry.getNumberValue());
+        assertNull(entry.getValue());
+        assertEquals("72.5", entry.toState().getValue());
+
+        entry = StateHistoryEntry.fromState("1", "d1", state("temperature", "72.0", START));
+        assertEquals(72.0, (double) entry.getNumberValue());
+        assertEquals("72.0", entry.toState().getValue());
+
+        entry = StateHistoryEntry.fromState("1", "d1", state("switch", "on", START));
+        assertNull(entry.getNumberValue());
+        assertEquals("on", entry.toState().getValue());
+    }
+
+    @Test
+    public void testRollup() {
+        MemoryDataStore dataStore = new MemoryDataStore();
+        DeviceStateHistory history = new DeviceStateHistory(dataStore, 100, 10, 10, 1000, 0, 7, 30, 730);
+        history.addState("d1", state("temperature", "70", START + 1000));
+        history.addState("d1", state("temperature", "74", START + 2000));
+        history.addState("d1", state("temperature", "72", START + 3000));
+        history.addState("d1", state("temperature", "80", START + MINUTE + 1000));
+        history.addState("d1", state("switch", "on", START + 1000));
+        history.addState("d2", state("temperature", "60", START + 1000));
+
+        history.rollup(START + 2 * HOUR);
+
+        List<StateAggregate> minutes = history.getAggregates("d1", "temperature", new Date(START), new Date(START + HOUR),
+                StateAggregate.MINUTE, -1);
+        assertEquals(2, minutes.size());
+        assertEquals(70, minutes.get(0).getMin());
+        assertEquals(74, minutes.get(0).getMax());
+        assertEquals(72, minutes.get(0).getAverage());
+        assertEquals(72, minutes.get(0).getLast());
+        assertEquals(3, minutes.get(0).getCount());
+
+        List<StateAggregate> hours = history.getAggregates("d1", "temperature", new Date(START), new Date(START + DAY),
+                StateAggregate.HOUR, -1);
+        assertEquals(1, hours.size());
+        assertEquals(70, hours.get(0).getMin());
+        assertEquals(80, hours.get(0).getMax());
+        assertEquals(74, hours.get(0).getAverage());
+        assertEquals(80, hours.get(0).getLast());
+        assertEquals(4, hours.get(0).getCount());
+
+        // rolling up again does not count states twice
+        history.rollup(START + 3 * HOUR);
+        assertEquals(4, history.getAggregates("d1", "temperature", new Date(START), new Date(START + DAY),
+                StateAggregate.HOUR, -1).get(0).getCount());
+
+        assertEquals(2, history.getStates("d1", "temperature", new Date(START), new Date(START + 2000 + MINUTE), 2).size());
+        assertEquals("80", history.getStates("d1", "temperature", new Date(START), new Date(START + DAY), 10).get(0).getValue());
+        history.shutdown();
+    }
+
+    @Test
+    public void testRetention() {
+        MemoryDataStore dataStore = new MemoryDataStore();
+        DeviceStateHistory history = new DeviceStateHistory(dataStore, 100, 10, 10, 1000, 0, 1, 2, 3);
+        history.addState("d1", state("temperature", "70", START + 1000));
+
+        history.rollup(START + HOUR + MINUTE);
+        assertEquals(1, dataStore.states.size());
+        assertEquals(1, dataStore.aggregates.stream().filter(a -> a.getResolution() == StateAggregate.HOUR).count());
+
+        history.rollup(START + DAY + HOUR);
+        assertEquals(0, dataStore.states.size());
+        history.rollup(START + 2 * DAY + HOUR);
+        assertEquals(0, dataStore.aggregates.stream().filter(a -> a.getResolution() == StateAggregate.MINUTE).count());
+        assertEquals(1, dataStore.aggregates.size());
+        history.rollup(START + 3 * DAY + HOUR);
+        assertEquals(0, dataStore.aggregates.size());
+
+        assertEquals(StateAggregate.MINUTE, history.getResolution(new Date(START), new Date(START + HOUR), START + HOUR));
+        assertEquals(StateAggregate.HOUR, history.getResolution(new Date(START), new Date(START + 7 * DAY), START + 7 * DAY));
+        history.shutdown();
+    }
+
+    private static State state(String name, String value, long date) {
+        return new State(UUID.randomUUID().toString(), name, value, null, new Date(date));
+    }
+
+    private static class MemoryDataStore implements DeviceStateHistoryDataStore {
+        private final List<StateHistoryEntry> states = new ArrayList<>();
+        private final List<StateAggregate> aggregates = new ArrayList<>();
+
+        @Override
+        public synchronized void saveStates(List<StateHistoryEntry> entries) {
+            states.addAll(entries);
+        }
+
+        @Override
+        public synchronized List<StateHistoryEntry> getStates(String deviceId, String name, Date startDate, Date endDate, int maxStates) {
+            return states.stream()
+                    .filter(s -> s.getDeviceId().equals(deviceId) && s.getName().equals(name) && s.getDate().after(startDate) &&
+                            s.getDate().before(endDate))
+                    .sorted(Comparator.comparing(StateHistoryEntry::getDate).reversed())
+                    .limit(maxStates > -1 ? maxStates : Long.MAX_VALUE)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized List<StateHistoryEntry> getNumericStates(Date startDate, Date endDate) {
+            return states.stream()
+                    .filter(s -> s.getNumberValue() != null && !s.getDate().before(startDate) && s.getDate().before(endDate))
+                    .sorted(Comparator.comparing(StateHistoryEntry::getDate))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized void saveAggregates(List<StateAggregate> newAggregates) {
+            for (StateAggregate aggregate : newAggregates) {
+                aggregates.removeIf(a -> a.getDeviceId().equals(aggregate.getDeviceId()) && a.getName().equals(aggregate.getName()) &&
+                        a.getResolution() == aggregate.getResolution() && a.getDate().equals(aggregate.getDate()));
+                aggregates.add(aggregate);
+            }
+        }
+
+        @Override
+        public synchronized List<StateAggregate> getAggregates(String deviceId, String name, int resolution, Date startDate,
+                                                               Date endDate, int maxStates) {
+            return aggregates.stream()
+                    .filter(a -> a.getResolution() == resolution && (deviceId == null || a.getDeviceId().equals(deviceId)) &&
+                            (name == null || a.getName().equals(name)) && !a.getDate().before(startDate) && a.getDate().before(endDate))
+                    .sorted(Comparator.comparing(StateAggregate::getDate))
+                    .limit(maxStates > -1 ? maxStates : Long.MAX_VALUE)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized Date getLastAggregateDate(int resolution) {
+            return aggregates.stream().filter(a -> a.getResolution() == resolution).map(StateAggregate::getDate)
+                    .max(Comparator.naturalOrder()).orElse(null);
+        }
+
+        @Override
+        public synchronized void deleteStatesBefore(Date date) {
+            states.removeIf(s -> s.getDate().before(date));
+        }
+
+        @Override
+        public synchronized void deleteAggregatesBefore(int resolution, Date date) {
+            aggregates.removeIf(a -> a.getResolution() == resolution && a.getDate().before(date));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
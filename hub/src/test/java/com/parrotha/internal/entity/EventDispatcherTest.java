@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventDispatcherTest {
+
+    @Test
+    public void testHandlersForSameAppRunInOrder() throws InterruptedException {
+        EventDispatcher eventDispatcher = new EventDispatcher(4, 1000, EventDispatcher.OverflowPolicy.DROP_NEWEST, false);
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(500);
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            eventDispatcher.dispatch("app1", null, () -> {
+                delivered.add(value);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, (int) delivered.get(i));
+        }
+        eventDispatcher.shutdown(1, TimeUnit.SECONDS);
+
+        // the drained mailbox is removed, its counts are kept in the totals
+        Map<String, Object> metrics = eventDispatcher.getMetrics();
+        assertTrue(((Map) metrics.get("mailboxes")).isEmpty());
+        assertEquals(500L, metrics.get("delivered"));
+    }
+
+    @Test
+    public void testFullMailboxCoalescesPendingEvent() throws InterruptedException {
+        EventDispatcher eventDispatcher = new EventDispatcher(1, 2, EventDispatcher.OverflowPolicy.COALESCE, false);
+        CountDownLatch blockHandler = new CountDownLatch(1);
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+        eventDispatcher.dispatch("app1", "blocker", () -> {
+            handlerStarted.countDown();
+            try {
+                blockHandler.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(handlerStarted.await(5, TimeUnit.SECONDS));
+
+        assertTrue(eventDispatcher.dispatch("app1", "sub1:switch", () -> delivered.add("switch on")));
+        assertTrue(eventDispatcher.dispatch("app1", "sub1:level", () -> delivered.add("level 10")));
+        // mailbox is full, newer switch event replaces the pending one in its place
+        assertTrue(eventDispatcher.dispatch("app1", "sub1:switch", () -> delivered.add("switch off")));
+        // nothing to coalesce with, rejected
+        assertFalse(eventDispatcher.dispatch("app1", "sub1:motion", () -> delivered.add("motion active")));
+
+        blockHandler.countDown();
+        eventDispatcher.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("switch off", "level 10"), delivered);
+        Map<String, Object> metrics = eventDispatcher.getMetrics();
+        assertEquals(1L, metrics.get("coalesced"));
+        assertEquals(1L, metrics.get("rejected"));
+        assertEquals(3L, metrics.get("delivered"));
+    }
+
+    @Test
+    public void testFullMailboxDropsOldestEvent() throws InterruptedException {
+        EventDispatcher eventDispatcher = new EventDispatcher(1, 1, EventDispatcher.OverflowPolicy.DROP_OLDEST, false);
+        CountDownLatch blockHandler = new CountDownLatch(1);
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+        List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+        eventDispatcher.dispatch("app1", null, () -> {
+            handlerStarted.countDown();
+            try {
+                blockHandler.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(handlerStarted.await(5, TimeUnit.SECONDS));
+
+        eventDispatcher.dispatch("app1", null, () -> delivered.add("first"));
+        eventDispatcher.dispatch("app1", null, () -> delivered.add("second"));
+
+        blockHandler.countDown();
+        eventDispatcher.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("second"), delivered);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.entity;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.util.DelegatingScript;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScriptMethodCacheTest {
+
+    public static class Delegate {
+        public String delegateMethod() {
+            return "delegate";
+        }
+    }
+
+    private static DelegatingScript script(String sourceCode) throws Exception {
+        CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
+        compilerConfiguration.setScriptBaseClass(DelegatingScript.class.getName());
+        Class<?> scriptClass = new GroovyClassLoader(ScriptMethodCacheTest.class.getClassLoader(), compilerConfiguration)
+                .parseClass(sourceCode);
+        DelegatingScript script = (DelegatingScript) scriptClass.getConstructor().newInstance();
+        script.setDelegate(new Delegate());
+        return script;
+    }
+
+    @Test
+    public void testMissingMethod() throws Exception {
+        ScriptMethodCache scriptMethodCache = new ScriptMethodCache();
+        DelegatingScript script = script("def parse(String description) { description.toUpperCase() }");
+
+        assertFalse(scriptMethodCache.isMissingMethod(script, "parse"));
+        assertFalse(scriptMethodCache.isMissingMethod(script, "delegateMethod"));
+        assertTrue(scriptMethodCache.isMissingMethod(script, "installed"));
+        assertEquals("ON", scriptMethodCache.invokeMethod(script, "parse", "on"));
+        assertEquals("delegate", scriptMethodCache.invokeMethod(script, "delegateMethod", null));
+    }
+
+    @Test
+    public void testMethodMissingHandlesEveryName() throws Exception {
+        ScriptMethodCache scriptMethodCache = new ScriptMethodCache();
+        DelegatingScript script = script("def methodMissing(String name, args) { 'missing ' + name }");
+
+        // DelegatingScript passes unknown methods to the script, so methodMissing is called for them
+        assertFalse(scriptMethodCache.isMissingMethod(script, "installed"));
+        assertEquals("missing installed", scriptMethodCache.invokeMethod(script, "installed", null));
+        assertEquals("delegate", scriptMethodCache.invokeMethod(script, "delegateMethod", null));
+    }
+
+    @Test
+    public void testScriptsWithFieldsAreNotReused() throws Exception {
+        ScriptMethodCache scriptMethodCache = new ScriptMethodCache();
+        assertTrue(scriptMethodCache.isReusable(script("def parse(String description) { def count = 1 }").getClass()));
+        assertTrue(scriptMethodCache.isReusable(
+                script("import groovy.transform.Field\n@Field static int count = 0\ndef parse(String description) { count++ }").getClass()));
+        assertFalse(scriptMethodCache.isReusable(
+                script("import groovy.transform.Field\n@Field int count = 0\ndef parse(String description) { count++ }").getClass()));
+    }
+}
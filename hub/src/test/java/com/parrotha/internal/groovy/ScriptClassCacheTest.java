@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.groovy;
+
+import groovy.lang.Script;
+import groovy.util.DelegatingScript;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ScriptClassCacheTest {
+    private static final String SCRIPT = "def doubled() { [1, 2, 3].collect { it * 2 } }\n" +
+            "class Helper { int value = 3 }\n" +
+            "def helperValue() { new Helper().value }\n";
+
+    private File cacheDirectory;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        cacheDirectory = Files.createTempDirectory("scriptCache").toFile();
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    @Test
+    public void testCompiledScriptIsLoadedFromDisk() throws Exception {
+        ScriptClassCache firstCache = new ScriptClassCache(cacheDirectory, 10, 1);
+        Class<Script> compiled = firstCache.getScriptClass("DH_test", SCRIPT);
+        assertEquals(1L, firstCache.getMetrics().get("compiles"));
+
+        // a new cache simulates a restart of the hub
+        ScriptClassCache secondCache = new ScriptClassCache(cacheDirectory, 10, 1);
+        Class<Script> loaded = secondCache.getScriptClass("DH_test", SCRIPT);
+        assertEquals(0L, secondCache.getMetrics().get("compiles"));
+        assertEquals(1L, secondCache.getMetrics().get("diskHits"));
+        assertEquals("DH_test", loaded.getName());
+        assertNotSame(compiled, loaded);
+
+        DelegatingScript script = (DelegatingScript) secondCache.createScript(SCRIPT);
+        script.setDelegate(new Object());
+        assertEquals(3, script.invokeMethod("helperValue", null));
+        assertEquals(Arrays.asList(2, 4, 6), script.invokeMethod("doubled", null));
+    }
+
+    @Test
+    public void testChangedSourceIsRecompiled() {
+        ScriptClassCache scriptClassCache = new ScriptClassCache(cacheDirectory, 10, 1);
+        scriptClassCache.getScriptClass("DH_test", SCRIPT);
+        scriptClassCache.getScriptClass("DH_test", SCRIPT + "def another() { 1 }\n");
+        assertEquals(2L, scriptClassCache.getMetrics().get("compiles"));
+        assertEquals(2, cacheDirectory.list().length);
+    }
+
+    @Test
+    public void testCompileErrorIsThrown() {
+        ScriptClassCache scriptClassCache = new ScriptClassCache(cacheDirectory, 10, 1);
+        assertThrows(RuntimeException.class, () -> scriptClassCache.getScriptClass("DH_broken", "def x( {"));
+        assertEquals(0, cacheDirectory.list().length);
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpEngineTest {
+    private HttpServer server;
+    private HttpEngine httpEngine;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    // a permit for each request that reached the server
+    private final Semaphore arrived = new Semaphore(0);
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            arrived.release();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (httpEngine != null) {
+            httpEngine.shutdown();
+        }
+        server.stop(0);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    public void testAsyncRequestsAreLimitedPerHost() throws InterruptedException {
+        httpEngine = new HttpEngine(10, 2, 5, 5, 60, 100, 2);
+        release = new CountDownLatch(1);
+        BlockingQueue<String> bodies = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 6; i++) {
+            assertTrue(httpEngine.executeAsync(new HttpGet(url("/" + i)), new HttpEngine.ResponseCallback() {
+                @Override
+                public void completed(CloseableHttpResponse response, String body) {
+                    bodies.add(response.getStatusLine().getStatusCode() + body);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    bodies.add(e.toString());
+                }
+            }));
+        }
+        // two requests running, the rest waiting
+        assertTrue(arrived.tryAcquire(2, 5, TimeUnit.SECONDS));
+        assertEquals(4, httpEngine.getQueueDepth());
+        release.countDown();
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(bodies.poll(5, TimeUnit.SECONDS).startsWith("200/"));
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, httpEngine.getQueueDepth());
+        assertEquals(6L, httpEngine.getMetrics().get("requests"));
+        // connections were returned to the pool for reuse
+        assertEquals(0, httpEngine.getMetrics().get("connectionsLeased"));
+        assertEquals(2, httpEngine.getMetrics().get("connectionsAvailable"));
+    }
+
+    @Test
+    public void testRequestsRejectedWhenQueueIsFull() throws InterruptedException {
+        httpEngine = new HttpEngine(1, 1, 5, 5, 60, 2, 1);
+        release = new CountDownLatch(1);
+        assertTrue(httpEngine.executeAsync(new HttpGet(url("/1")), null));
+        assertTrue(arrived.tryAcquire(5, TimeUnit.SECONDS));
+        // one running and two waiting
+        assertTrue(httpEngine.executeAsync(new HttpGet(url("/2")), null));
+        assertTrue(httpEngine.executeAsync(new HttpGet(url("/3")), null));
+        assertFalse(httpEngine.executeAsync(new HttpGet(url("/4")), null));
+        assertEquals(1L, httpEngine.getMetrics().get("rejected"));
+        release.countDown();
+    }
+
+    @Test
+    public void testFailedRequest() throws InterruptedException {
+        httpEngine = new HttpEngine(2, 2, 5, 5, 60, 10, 1);
+        BlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+        // nothing listens on port 1
+        httpEngine.executeAsync(new HttpGet("http://127.0.0.1:1/"), new HttpEngine.ResponseCallback() {
+            @Override
+            public void completed(CloseableHttpResponse response, String body) {
+            }
+
+            @Override
+            public void failed(Exception e) {
+                failures.add(e);
+            }
+        });
+        assertTrue(failures.poll(5, TimeUnit.SECONDS) instanceof IOException);
+        assertEquals(1L, httpEngine.getMetrics().get("failed"));
+    }
+
+    @Test
+    public void testRequestFailsAfterShutdown() throws InterruptedException {
+        httpEngine = new HttpEngine(2, 2, 5, 5, 60, 10, 1);
+        httpEngine.shutdown();
+        BlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+        assertTrue(httpEngine.executeAsync(new HttpGet(url("/1")), new HttpEngine.ResponseCallback() {
+            @Override
+            public void completed(CloseableHttpResponse response, String body) {
+            }
+
+            @Override
+            public void failed(Exception e) {
+                failures.add(e);
+            }
+        }));
+        assertTrue(failures.poll(5, TimeUnit.SECONDS) instanceof RejectedExecutionException);
+        assertEquals(0, httpEngine.getQueueDepth());
+        assertEquals(1L, httpEngine.getMetrics().get("rejected"));
+    }
+}
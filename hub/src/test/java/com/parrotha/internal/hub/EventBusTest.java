@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventBusTest {
+
+    private static Event event(String source, String sourceId, String name, String value) {
+        return new Event("id-" + value, name, value, null, true, null, true, null, null, new Date(), source, sourceId, false);
+    }
+
+    @Test
+    public void testRoutesByTopicAndFilter() throws InterruptedException {
+        EventBus eventBus = new EventBus(2, 100);
+        BlockingQueue<EventBus.EventMessage> device1 = new LinkedBlockingQueue<>();
+        BlockingQueue<EventBus.EventMessage> switches = new LinkedBlockingQueue<>();
+        BlockingQueue<EventBus.EventMessage> all = new LinkedBlockingQueue<>();
+        eventBus.subscribe(EventBus.Filter.forDevice("1"), device1::add, null);
+        eventBus.subscribe(EventBus.Filter.fromParameters(Map.of("source", List.of("DEVICE"), "attribute", List.of("switch,level"))),
+                switches::add, null);
+        eventBus.subscribe(EventBus.Filter.ALL, all::add, null);
+
+        eventBus.publish(event("DEVICE", "1", "switch", "on"));
+        eventBus.publish(event("DEVICE", "2", "temperature", "20"));
+        eventBus.publish(event("LOCATION", "1", "mode", "Away"));
+
+        EventBus.EventMessage message = device1.poll(5, TimeUnit.SECONDS);
+        assertEquals("on", message.getEvent().getValue());
+        assertSame(message, switches.poll(5, TimeUnit.SECONDS));
+        for (String value : List.of("on", "20", "Away")) {
+            assertEquals(value, all.poll(5, TimeUnit.SECONDS).getEvent().getValue());
+        }
+        assertNull(device1.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(switches.isEmpty());
+
+        // subscribers share one message, it is serialized once
+        assertTrue(message.getJson().contains("\"sourceId\":\"1\""));
+        assertSame(message.getJson(), message.getJson());
+        assertEquals(1L, eventBus.getMetrics().get("serialized"));
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void testSlowSubscriberIsEvicted() throws InterruptedException {
+        EventBus eventBus = new EventBus(2, 5);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        BlockingQueue<EventBus.EventMessage> fast = new LinkedBlockingQueue<>();
+        eventBus.subscribe(EventBus.Filter.ALL, message -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, evicted::countDown);
+        eventBus.subscribe(EventBus.Filter.ALL, fast::add, null);
+
+        // the slow subscriber does not hold up anyone else
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish(event("DEVICE", "1", "switch", String.valueOf(i)));
+            assertEquals(String.valueOf(i), fast.poll(5, TimeUnit.SECONDS).getEvent().getValue());
+        }
+        assertTrue(evicted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals(1, eventBus.getSubscriberCount());
+        assertEquals(1L, eventBus.getMetrics().get("evicted"));
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void testUnsubscribe() throws InterruptedException {
+        EventBus eventBus = new EventBus(1, 10);
+        BlockingQueue<EventBus.EventMessage> received = new LinkedBlockingQueue<>();
+        EventBus.Subscriber subscriber = eventBus.subscribe(EventBus.Filter.forDevice("1"), received::add, null);
+        eventBus.unsubscribe(subscriber);
+        eventBus.publish(event("DEVICE", "1", "switch", "on"));
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, eventBus.getSubscriberCount());
+        assertEquals(0, eventBus.getMetrics().get("topics"));
+        assertFalse(EventBus.Filter.forDevice("1").matches(event("IAA", "1", "switch", "on")));
+        eventBus.shutdown();
+    }
+}
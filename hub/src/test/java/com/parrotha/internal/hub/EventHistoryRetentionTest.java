@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EventHistoryRetentionTest {
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Keeps only the date of each event, sorted oldest first.
+     */
+    private static class InMemoryEventDataStore implements EventDataStore {
+        final Map<String, List<Long>> events = new HashMap<>();
+        int deleteCalls = 0;
+
+        void add(String source, long date, int count) {
+            List<Long> dates = events.computeIfAbsent(source, key -> new ArrayList<>());
+            for (int i = 0; i < count; i++) {
+                dates.add(date);
+            }
+            dates.sort(null);
+        }
+
+        int count(String source) {
+            return events.getOrDefault(source, List.of()).size();
+        }
+
+        @Override
+        public void saveEvent(Event event) {
+        }
+
+        @Override
+        public void saveEvents(List<Event> events) {
+        }
+
+        @Override
+        public List<Event> eventsSince(String source, String sourceId, Date date, int maxEvents) {
+            return List.of();
+        }
+
+        @Override
+        public List<Event> eventsBetween(String source, String sourceId, Date startDate, Date endDate, int maxEvents) {
+            return List.of();
+        }
+
+        @Override
+        public int countEvents(String source) {
+            return count(source);
+        }
+
+        @Override
+        public int deleteEventsBefore(String source, Date date, int maxEvents) {
+            deleteCalls++;
+            int deleted = 0;
+            Iterator<Long> iterator = events.getOrDefault(source, new ArrayList<>()).iterator();
+            while (iterator.hasNext() && deleted < maxEvents) {
+                if (iterator.next() < date.getTime()) {
+                    iterator.remove();
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+
+        @Override
+        public int deleteOldestEvents(String source, int maxEvents) {
+            deleteCalls++;
+            List<Long> dates = events.getOrDefault(source, new ArrayList<>());
+            int deleted = Math.min(maxEvents, dates.size());
+            dates.subList(0, deleted).clear();
+            return deleted;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    @Test
+    public void testPurgeByAge() {
+        InMemoryEventDataStore dataStore = new InMemoryEventDataStore();
+        dataStore.add("DEVICE", NOW - 40 * DAY, 25);
+        dataStore.add("DEVICE", NOW - DAY, 5);
+        dataStore.add("HUB", NOW - 40 * DAY, 3);
+
+        EventHistoryRetention retention = new EventHistoryRetention(dataStore,
+                Map.of("DEVICE", new EventHistoryRetention.Policy(30, 0)), 0, 10, 0, 0, 0, () -> 0);
+        retention.purge(NOW);
+
+        assertEquals(5, dataStore.count("DEVICE"));
+        // sources without a policy are kept
+        assertEquals(3, dataStore.count("HUB"));
+        // two full batches and one partial batch
+        assertEquals(3, dataStore.deleteCalls);
+        assertEquals(25L, retention.getMetrics().get("eventsPurged"));
+    }
+
+    @Test
+    public void testPurgeByMaxEvents() {
+        InMemoryEventDataStore dataStore = new InMemoryEventDataStore();
+        dataStore.add("DEVICE", NOW - 3 * DAY, 10);
+        dataStore.add("DEVICE", NOW - DAY, 15);
+
+        EventHistoryRetention retention = new EventHistoryRetention(dataStore,
+                Map.of("DEVICE", new EventHistoryRetention.Policy(0, 12)), 0, 4, 0, 0, 0, () -> 0);
+        retention.purge(NOW);
+
+        assertEquals(12, dataStore.count("DEVICE"));
+        // the oldest events are deleted first
+        assertEquals(NOW - DAY, dataStore.events.get("DEVICE").get(0));
+    }
+
+    @Test
+    public void testCompactAfterEnoughEventsPurged() {
+        InMemoryEventDataStore dataStore = new InMemoryEventDataStore();
+        AtomicInteger compactions = new AtomicInteger();
+        EventHistoryRetention retention = new EventHistoryRetention(dataStore,
+                Map.of("DEVICE", new EventHistoryRetention.Policy(30, 0)), 0, 100, 0, 24, 50, () -> {
+            compactions.incrementAndGet();
+            return 1024;
+        });
+
+        // not enough events purged
+        dataStore.add("DEVICE", NOW - 40 * DAY, 20);
+        retention.purge(NOW + 2 * DAY);
+        assertEquals(0, compactions.get());
+
+        dataStore.add("DEVICE", NOW - 40 * DAY, 40);
+        retention.purge(NOW + 2 * DAY);
+        assertEquals(1, compactions.get());
+        assertEquals(1024L, retention.getMetrics().get("bytesReclaimed"));
+
+        // the interval has not passed since the last compaction
+        dataStore.add("DEVICE", NOW - 40 * DAY, 60);
+        retention.purge(NOW + 2 * DAY + 1000);
+        assertEquals(1, compactions.get());
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NeighborTableTest {
+    private static final String HEADER = "IP address       HW type     Flags       HW address            Mask     Device";
+
+    @Test
+    public void testLookupAndRefreshOnMiss() throws IOException {
+        Path arpFile = Files.createTempFile("arp", null);
+        try {
+            Files.write(arpFile, List.of(HEADER,
+                    "192.168.1.20     0x1         0x2         d4:d2:52:a8:98:64     *        eth0",
+                    "192.168.1.21     0x1         0x0         00:00:00:00:00:00     *        eth0"), StandardCharsets.UTF_8);
+            NeighborTable neighborTable = new NeighborTable(arpFile, 3600, 3600, 0);
+
+            assertEquals("D4D252A89864", neighborTable.getMacAddress("192.168.1.20"));
+            assertNull(neighborTable.getMacAddress("192.168.1.21"));
+            assertEquals(1, neighborTable.size());
+
+            // a new device is picked up by the reload on miss
+            Files.write(arpFile, List.of(HEADER,
+                    "192.168.1.20     0x1         0x2         d4:d2:52:a8:98:64     *        eth0",
+                    "192.168.1.22     0x1         0x2         00:1b:44:11:3a:b7     *        wlan0"), StandardCharsets.UTF_8);
+            assertEquals("001B44113AB7", neighborTable.getMacAddress("192.168.1.22"));
+
+            // the earlier miss is remembered until the table is refreshed
+            Files.write(arpFile, List.of(HEADER,
+                    "192.168.1.21     0x1         0x2         00:1b:44:11:3a:b8     *        eth0"), StandardCharsets.UTF_8);
+            assertNull(neighborTable.getMacAddress("192.168.1.21"));
+            neighborTable.refresh();
+            assertEquals("001B44113AB8", neighborTable.getMacAddress("192.168.1.21"));
+            assertNull(neighborTable.getMacAddress("192.168.1.20"));
+        } finally {
+            Files.delete(arpFile);
+        }
+    }
+
+    @Test
+    public void testToIpAddress() {
+        assertEquals("192.168.1.20", NeighborTable.toIpAddress("192.168.1.20"));
+        assertEquals("192.168.1.20", NeighborTable.toIpAddress("::ffff:192.168.1.20"));
+        assertNull(NeighborTable.toIpAddress("example.invalid"));
+    }
+
+    @Test
+    public void testParseArpCommand() {
+        assertEquals("0011022A4455", NeighborTable.parseArpCommand(List.of(
+                "? (192.168.1.1) at 0:11:2:2a:44:55 on en0 ifscope [ethernet]",
+                "? (192.168.1.2) at (incomplete) on en0 ifscope [ethernet]")).get("192.168.1.1"));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.device.Event;
+import com.parrotha.internal.app.Subscription;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SubscriptionIndexTest {
+
+    @Test
+    public void testDeviceEventMatchesAttributeAndValue() {
+        SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+        Subscription all = deviceSubscription("device1", null);
+        Subscription switchAny = deviceSubscription("device1", "switch");
+        Subscription switchOn = deviceSubscription("device1", "switch.on");
+        Subscription switchOff = deviceSubscription("device1", "switch.off");
+        Subscription otherDevice = deviceSubscription("device2", "switch");
+        for (Subscription subscription : Arrays.asList(all, switchAny, switchOn, switchOff, otherDevice)) {
+            subscriptionIndex.add(subscription);
+        }
+
+        assertEquals(Arrays.asList(all, switchAny, switchOn),
+                subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "switch", "on", true)));
+        assertEquals(Arrays.asList(all, switchAny, switchOff),
+                subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "switch", "off", true)));
+        assertEquals(Collections.singletonList(all), subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "level", "50", true)));
+        assertEquals(Collections.emptyList(), subscriptionIndex.getSubscriptions(event("DEVICE", "device3", "switch", "on", true)));
+    }
+
+    @Test
+    public void testFilteredSubscriptionsOnlyGetStateChanges() {
+        SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+        Subscription filtered = deviceSubscription("device1", "switch");
+        Subscription unfiltered = deviceSubscription("device1", "switch");
+        unfiltered.setFilterEvents(false);
+        subscriptionIndex.add(filtered);
+        subscriptionIndex.add(unfiltered);
+
+        assertEquals(Arrays.asList(filtered, unfiltered),
+                subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "switch", "on", true)));
+        assertEquals(Collections.singletonList(unfiltered),
+                subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "switch", "on", false)));
+    }
+
+    @Test
+    public void testRemoveAndLocationEvents() {
+        SubscriptionIndex subscriptionIndex = new SubscriptionIndex();
+        Subscription mode = new Subscription("modeHandler", "app1");
+        mode.setLocationId("location1");
+        mode.setAttributeNameAndValue("mode");
+        Subscription sunset = new Subscription("sunsetHandler", "app2");
+        sunset.setLocationId("location1");
+        sunset.setAttributeNameAndValue("sunset");
+        Subscription device = deviceSubscription("device1", "switch.on");
+        subscriptionIndex.add(mode);
+        subscriptionIndex.add(sunset);
+        subscriptionIndex.add(device);
+
+        // hub and location events go to all location subscriptions
+        assertEquals(Collections.singletonList(mode), subscriptionIndex.getSubscriptions(event("HUB", "hub1", "mode", "Away", true)));
+        assertEquals(Collections.singletonList(sunset),
+                subscriptionIndex.getSubscriptions(event("LOCATION", "location1", "sunset", null, true)));
+
+        subscriptionIndex.remove(mode);
+        subscriptionIndex.remove(device);
+        assertEquals(Collections.emptyList(), subscriptionIndex.getSubscriptions(event("LOCATION", "location1", "mode", "Away", true)));
+        assertEquals(Collections.emptyList(), subscriptionIndex.getSubscriptions(event("DEVICE", "device1", "switch", "on", true)));
+    }
+
+    private Subscription deviceSubscription(String deviceId, String attributeNameAndValue) {
+        Subscription subscription = new Subscription("handler", "app1");
+        subscription.setDeviceId(deviceId);
+        subscription.setAttributeNameAndValue(attributeNameAndValue);
+        return subscription;
+    }
+
+    private Event event(String source, String sourceId, String name, String value, boolean stateChange) {
+        return new Event(null, name, value, null, true, null, stateChange, null, null, new Date(), source, sourceId, false);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import com.parrotha.internal.app.Subscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubscriptionJournalTest {
+    private File directory;
+    private File snapshotFile;
+    private File journalFile;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("subscriptions").toFile();
+        snapshotFile = new File(directory, "subscriptions.yaml");
+        journalFile = new File(directory, "subscriptions.journal");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        try (Stream<java.nio.file.Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static Subscription subscription(String id, String deviceId) {
+        Subscription subscription = new Subscription("switchHandler", "app1");
+        subscription.setId(id);
+        subscription.setDeviceId(deviceId);
+        subscription.setAttributeNameAndValue("switch.on");
+        subscription.setFilterEvents(false);
+        return subscription;
+    }
+
+    private static Set<String> ids(List<Subscription> subscriptions) {
+        return subscriptions.stream().map(Subscription::getId).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testAddRemoveReplay() {
+        SubscriptionJournal subscriptionJournal = new SubscriptionJournal(snapshotFile, journalFile, 500);
+        assertTrue(subscriptionJournal.load().isEmpty());
+        subscriptionJournal.add(subscription("s1", "dev1"));
+        subscriptionJournal.update(List.of(subscription("s2", "dev2"), subscription("s3", "dev3")), List.of("s1"));
+
+        // only the journal is written until it is compacted
+        assertFalse(snapshotFile.exists());
+        List<Subscription> loaded = new SubscriptionJournal(snapshotFile, journalFile, 500).load();
+        assertEquals(Set.of("s2", "s3"), ids(loaded));
+        Subscription s2 = loaded.stream().filter(subscription -> subscription.getId().equals("s2")).findFirst().get();
+        assertEquals("dev2", s2.getDeviceId());
+        assertEquals("switch.on", s2.getAttributeNameAndValue());
+        assertEquals("switchHandler", s2.getHandlerMethod());
+        assertEquals("app1", s2.getSubscribedAppId());
+        assertFalse(s2.isFilterEvents());
+    }
+
+    @Test
+    public void testCompact() {
+        SubscriptionJournal subscriptionJournal = new SubscriptionJournal(snapshotFile, journalFile, 3);
+        subscriptionJournal.load();
+        subscriptionJournal.add(subscription("s1", "dev1"));
+        subscriptionJournal.add(subscription("s2", "dev2"));
+        assertTrue(journalFile.exists());
+        subscriptionJournal.update(List.of(), List.of("s1"));
+
+        assertTrue(snapshotFile.exists());
+        assertFalse(journalFile.exists());
+        assertEquals(Set.of("s2"), ids(new SubscriptionJournal(snapshotFile, journalFile, 3).load()));
+
+        // changes after the snapshot are replayed on top of it
+        subscriptionJournal.add(subscription("s3", "dev3"));
+        assertEquals(Set.of("s2", "s3"), ids(new SubscriptionJournal(snapshotFile, journalFile, 3).load()));
+    }
+
+    @Test
+    public void testPartialLastLineSkipped() throws IOException {
+        SubscriptionJournal subscriptionJournal = new SubscriptionJournal(snapshotFile, journalFile, 500);
+        subscriptionJournal.load();
+        subscriptionJournal.add(subscription("s1", "dev1"));
+        subscriptionJournal.add(subscription("s2", "dev2"));
+        // crash while appending
+        Files.write(journalFile.toPath(), "{\"add\":{\"id\":\"s3\",\"devi".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(Set.of("s1", "s2"), ids(new SubscriptionJournal(snapshotFile, journalFile, 500).load()));
+    }
+
+    @Test
+    public void testFailedCompactKeepsJournal() throws IOException {
+        // the snapshot can not be written because its directory is a file
+        File blocked = new File(directory, "blocked");
+        Files.createFile(blocked.toPath());
+        File unwritableSnapshot = new File(blocked, "subscriptions.yaml");
+
+        SubscriptionJournal subscriptionJournal = new SubscriptionJournal(unwritableSnapshot, journalFile, 1);
+        subscriptionJournal.load();
+        subscriptionJournal.add(subscription("s1", "dev1"));
+        subscriptionJournal.add(subscription("s2", "dev2"));
+        subscriptionJournal.shutdown();
+
+        assertEquals(Set.of("s1", "s2"), ids(new SubscriptionJournal(unwritableSnapshot, journalFile, 500).load()));
+    }
+}
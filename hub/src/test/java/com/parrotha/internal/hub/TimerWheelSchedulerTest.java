@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.hub;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimerWheelSchedulerTest {
+
+    @Test
+    public void testWheelExpiresOnTickAcrossLevels() {
+        TimerWheel<Long> wheel = new TimerWheel<>(1000);
+        Random random = new Random(42);
+        List<TimerWheel.Entry<Long>> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long expiryTick = 1000 + 1 + random.nextInt(i % 2 == 0 ? 300 : 200_000);
+            entries.add(wheel.add(expiryTick, expiryTick));
+        }
+        // cancelled entries never expire
+        for (int i = 0; i < entries.size(); i += 3) {
+            assertTrue(wheel.cancel(entries.get(i)));
+        }
+        int remaining = wheel.size();
+
+        int expiredCount = 0;
+        List<Long> expired = new ArrayList<>();
+        for (long tick = 1001; tick <= 1000 + 200_000; tick++) {
+            expired.clear();
+            wheel.advanceTo(tick, expired);
+            for (Long expiryTick : expired) {
+                assertEquals(tick, expiryTick.longValue());
+            }
+            expiredCount += expired.size();
+        }
+        assertEquals(remaining, expiredCount);
+        assertEquals(0, wheel.size());
+        assertFalse(wheel.cancel(entries.get(1)));
+    }
+
+    @Test
+    public void testWheelClockJump() {
+        TimerWheel<String> wheel = new TimerWheel<>(0);
+        wheel.add(10, "soon");
+        wheel.add(1_000_000, "later");
+        List<String> expired = new ArrayList<>();
+        wheel.advanceTo(500_000, expired);
+        assertEquals(List.of("soon"), expired);
+
+        expired.clear();
+        wheel.advanceTo(999_999, expired);
+        assertTrue(expired.isEmpty());
+        wheel.advanceTo(1_000_000, expired);
+        assertEquals(List.of("later"), expired);
+    }
+
+    @Test
+    public void testOverwriteAndRestore() throws IOException, InterruptedException {
+        File journalFile = Files.createTempFile("schedules", ".journal").toFile();
+        try {
+            BlockingQueue<String> runs = new LinkedBlockingQueue<>();
+            TimerWheelScheduler.JobRunner jobRunner = (type, id, handlerMethod, data) ->
+                    runs.add(type + ":" + id + ":" + handlerMethod + ":" + data);
+            TimerWheelScheduler scheduler = new TimerWheelScheduler(jobRunner, 2, 10, journalFile, 500);
+            scheduler.start();
+
+            long now = System.currentTimeMillis();
+            scheduler.schedule("IAA", "app1", "off", now + 500, null, true);
+            scheduler.schedule("IAA", "app1", "off", now + 500, "{\"level\":1}", true);
+            scheduler.schedule("IAA", "app1", "offAll", now + 500, null, false);
+            scheduler.schedule("IAA", "app1", "offAll", now + 500, null, false);
+            scheduler.schedule("DEV", "dev1", "refresh", now + 3_600_000, null, true);
+            scheduler.schedule("DEV", "dev1", "poll", now + 3_600_000, null, true);
+            assertEquals(5, scheduler.size());
+
+            List<String> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(runs.poll(5, TimeUnit.SECONDS));
+            }
+            assertTrue(results.contains("IAA:app1:off:{\"level\":1}"));
+            assertEquals(2, results.stream().filter("IAA:app1:offAll:null"::equals).count());
+            assertNull(runs.poll(100, TimeUnit.MILLISECONDS));
+            assertEquals(1, scheduler.unschedule("DEV", "dev1", "poll"));
+            scheduler.shutdown();
+
+            // pending jobs survive a restart
+            TimerWheelScheduler restarted = new TimerWheelScheduler(jobRunner, 2, 10, journalFile, 1);
+            assertEquals(List.of("refresh"), restarted.getHandlerMethods("DEV", "dev1"));
+            assertEquals(1, restarted.unschedule("DEV", "dev1"));
+            restarted.shutdown();
+            assertTrue(new TimerWheelScheduler(jobRunner, 2, 10, journalFile, 500).getHandlerMethods("DEV", "dev1").isEmpty());
+        } finally {
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    public void testFailingJobDoesNotStopTimer() throws IOException, InterruptedException {
+        File journalFile = Files.createTempFile("schedules", ".journal").toFile();
+        try {
+            BlockingQueue<String> runs = new LinkedBlockingQueue<>();
+            TimerWheelScheduler scheduler = new TimerWheelScheduler((type, id, handlerMethod, data) -> {
+                if ("fail".equals(handlerMethod)) {
+                    throw new IllegalStateException("handler failed");
+                }
+                runs.add(handlerMethod);
+            }, 1, 10, journalFile, 500);
+
+            // a tick that throws is logged instead of cancelling the timer
+            scheduler.tick();
+
+            scheduler.start();
+            long now = System.currentTimeMillis();
+            scheduler.schedule("IAA", "app1", "fail", now + 20, null, true);
+            scheduler.schedule("IAA", "app1", "later", now + 200, null, true);
+
+            assertEquals("later", runs.poll(5, TimeUnit.SECONDS));
+            assertEquals(1L, scheduler.getMetrics().get("failed"));
+            scheduler.shutdown();
+        } finally {
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    public void testJournalWrittenOnTick() throws IOException {
+        File journalFile = Files.createTempFile("schedules", ".journal").toFile();
+        try {
+            TimerWheelScheduler scheduler = new TimerWheelScheduler((type, id, handlerMethod, data) -> {
+            }, 1, 10, journalFile, 500);
+            scheduler.schedule("DEV", "dev1", "refresh", System.currentTimeMillis() + 3_600_000, null, true);
+            // scheduling only buffers the journal entry
+            assertEquals(0, journalFile.length());
+            scheduler.flushJournal();
+            assertTrue(journalFile.length() > 0);
+            assertEquals(List.of("refresh"),
+                    new TimerWheelScheduler(null, 1, 10, journalFile, 500).getHandlerMethods("DEV", "dev1"));
+        } finally {
+            journalFile.delete();
+        }
+    }
+}
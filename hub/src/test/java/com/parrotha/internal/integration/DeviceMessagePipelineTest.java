@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.integration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeviceMessagePipelineTest {
+
+    @Test
+    public void testMessagesForSameDeviceHandledInOrder() throws InterruptedException {
+        DeviceMessagePipeline pipeline = new DeviceMessagePipeline(4, 1000, DeviceMessagePipeline.OverflowPolicy.DROP_NEWEST, 0);
+        List<List<Integer>> handled = new ArrayList<>();
+        for (int device = 0; device < 10; device++) {
+            handled.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch latch = new CountDownLatch(10 * 200);
+        for (int i = 0; i < 200; i++) {
+            for (int device = 0; device < 10; device++) {
+                int value = i;
+                List<Integer> deviceMessages = handled.get(device);
+                assertTrue(pipeline.submit("zigbee", String.format("%04X", device), () -> {
+                    deviceMessages.add(value);
+                    latch.countDown();
+                }));
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (List<Integer> deviceMessages : handled) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals(i, (int) deviceMessages.get(i));
+            }
+        }
+        pipeline.shutdown(1, TimeUnit.SECONDS);
+
+        Map<String, Object> integrationMetrics = (Map<String, Object>) ((Map<String, Object>) pipeline.getMetrics().get("integrations"))
+                .get("zigbee");
+        assertEquals(2000L, integrationMetrics.get("handled"));
+        assertEquals(0, integrationMetrics.get("queueDepth"));
+    }
+
+    @Test
+    public void testFullQueueDropsOldestMessage() throws InterruptedException {
+        DeviceMessagePipeline pipeline = new DeviceMessagePipeline(2, 1, DeviceMessagePipeline.OverflowPolicy.DROP_OLDEST, 0);
+        CountDownLatch blockHandler = new CountDownLatch(1);
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+        pipeline.submit("zigbee", "1234", () -> {
+            handlerStarted.countDown();
+            try {
+                blockHandler.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(handlerStarted.await(5, TimeUnit.SECONDS));
+
+        pipeline.submit("zigbee", "1234", () -> handled.add("first"));
+        pipeline.submit("zigbee", "1234", () -> handled.add("second"));
+        // other devices are handled while the first device is still blocked
+        CountDownLatch otherDevice = new CountDownLatch(1);
+        pipeline.submit("zigbee", "5678", otherDevice::countDown);
+        assertTrue(otherDevice.await(5, TimeUnit.SECONDS));
+        assertTrue(handled.isEmpty());
+
+        blockHandler.countDown();
+        pipeline.shutdown(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("second"), handled);
+    }
+
+    @Test
+    public void testFullQueueBlocksThenRejects() throws InterruptedException {
+        DeviceMessagePipeline pipeline = new DeviceMessagePipeline(1, 1, DeviceMessagePipeline.OverflowPolicy.BLOCK, 50);
+        CountDownLatch blockHandler = new CountDownLatch(1);
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+
+        pipeline.submit("zigbee", "1234", () -> {
+            handlerStarted.countDown();
+            try {
+                blockHandler.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(handlerStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit("zigbee", "1234", () -> {
+        }));
+
+        long start = System.nanoTime();
+        assertFalse(pipeline.submit("zigbee", "1234", () -> {
+        }));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+
+        blockHandler.countDown();
+        pipeline.shutdown(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.internal.integration;
+
+import com.parrotha.internal.device.DeviceService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LanDeviceResolverTest {
+    // 192.168.1.20 port 8080
+    private static final String IP_ADDRESS_HEX = "c0a80114";
+    private static final String IP_ADDRESS_AND_PORT_HEX = "c0a80114:1f90";
+
+    private static class FakeDeviceService extends DeviceService {
+        // devices as integration id or "none" + ":" + device network id
+        final Set<String> devices = new HashSet<>();
+        final List<String> lookups = new ArrayList<>();
+        long version = 1;
+
+        FakeDeviceService() {
+            super(null, null, null);
+        }
+
+        void add(String integrationId, String deviceNetworkId) {
+            devices.add((integrationId != null ? integrationId : "none") + ":" + deviceNetworkId);
+            version++;
+        }
+
+        void remove(String integrationId, String deviceNetworkId) {
+            devices.remove((integrationId != null ? integrationId : "none") + ":" + deviceNetworkId);
+            version++;
+        }
+
+        @Override
+        public long getDeviceNetworkIdVersion() {
+            return version;
+        }
+
+        @Override
+        public boolean deviceExists(String integrationId, String deviceNetworkId, boolean includeUnaffiliated) {
+            lookups.add(deviceNetworkId);
+            // the same as a device lookup by device network id, unaffiliated lookups match any integration
+            if (includeUnaffiliated) {
+                return devices.stream().anyMatch(device -> device.endsWith(":" + deviceNetworkId));
+            }
+            return devices.contains(integrationId + ":" + deviceNetworkId);
+        }
+    }
+
+    @Test
+    public void testResolutionOrder() {
+        FakeDeviceService deviceService = new FakeDeviceService();
+        LanDeviceResolver resolver = new LanDeviceResolver(deviceService);
+        deviceService.add(null, IP_ADDRESS_HEX);
+        deviceService.add(null, IP_ADDRESS_AND_PORT_HEX);
+        deviceService.add(null, "aabbccddeeff");
+        deviceService.add("lan", IP_ADDRESS_HEX);
+        deviceService.add("lan", IP_ADDRESS_AND_PORT_HEX);
+        deviceService.add("lan", "aabbccddeeff");
+
+        String[][] expected = {
+                {"lan", "aabbccddeeff"},
+                {"lan", IP_ADDRESS_AND_PORT_HEX},
+                {"lan", IP_ADDRESS_HEX},
+                {null, "aabbccddeeff"},
+                {null, IP_ADDRESS_AND_PORT_HEX},
+                {null, IP_ADDRESS_HEX}};
+        String[][] removeOrder = {
+                {"lan", "aabbccddeeff"},
+                {"lan", IP_ADDRESS_AND_PORT_HEX},
+                {"lan", IP_ADDRESS_HEX},
+                {null, "aabbccddeeff"},
+                {null, IP_ADDRESS_AND_PORT_HEX},
+                {null, IP_ADDRESS_HEX}};
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], resolver.resolve("lan", "aabbccddeeff", "192.168.1.20", 8080));
+            deviceService.remove(removeOrder[i][0], removeOrder[i][1]);
+        }
+        assertNull(resolver.resolve("lan", "aabbccddeeff", "192.168.1.20", 8080));
+    }
+
+    @Test
+    public void testCacheHitAndInvalidation() {
+        FakeDeviceService deviceService = new FakeDeviceService();
+        LanDeviceResolver resolver = new LanDeviceResolver(deviceService);
+        deviceService.add("lan", "aabbccddeeff");
+
+        assertArrayEquals(new String[]{"lan", "aabbccddeeff"}, resolver.resolve("lan", "aabbccddeeff", "192.168.1.20", 8080));
+        deviceService.lookups.clear();
+        // a mac address match is cached, no lookups at all
+        assertArrayEquals(new String[]{"lan", "aabbccddeeff"}, resolver.resolve("lan", "aabbccddeeff", "192.168.1.20", 8080));
+        assertEquals(List.of(), deviceService.lookups);
+
+        // an ip address match only leaves the port dependent lookups
+        deviceService.add("lan", IP_ADDRESS_HEX);
+        assertArrayEquals(new String[]{"lan", IP_ADDRESS_HEX}, resolver.resolve("lan", "001122334455", "192.168.1.20", 8080));
+        deviceService.lookups.clear();
+        assertArrayEquals(new String[]{"lan", IP_ADDRESS_HEX}, resolver.resolve("lan", "001122334455", "192.168.1.20", 8080));
+        assertEquals(List.of(IP_ADDRESS_AND_PORT_HEX), deviceService.lookups);
+
+        // a device network id change invalidates the cached match
+        deviceService.add("lan", "001122334455");
+        assertArrayEquals(new String[]{"lan", "001122334455"}, resolver.resolve("lan", "001122334455", "192.168.1.20", 8080));
+    }
+
+    @Test
+    public void testMissingMacAddress() {
+        FakeDeviceService deviceService = new FakeDeviceService();
+        LanDeviceResolver resolver = new LanDeviceResolver(deviceService);
+        deviceService.add("lan", "null");
+
+        // a missing mac address is not looked up, not even as the text "null"
+        assertNull(resolver.resolve("lan", null, "192.168.1.20", 8080));
+        assertFalse(deviceService.lookups.contains(null));
+        assertFalse(deviceService.lookups.contains("null"));
+
+        deviceService.add("lan", IP_ADDRESS_HEX);
+        assertArrayEquals(new String[]{"lan", IP_ADDRESS_HEX}, resolver.resolve("lan", null, "192.168.1.20", 8080));
+        // the sender without a mac address does not share a cached match with a mac address "null"
+        assertArrayEquals(new String[]{"lan", "null"}, resolver.resolve("lan", "null", "192.168.1.20", 8080));
+        assertArrayEquals(new String[]{"lan", IP_ADDRESS_HEX}, resolver.resolve("lan", null, "192.168.1.20", 8080));
+    }
+}
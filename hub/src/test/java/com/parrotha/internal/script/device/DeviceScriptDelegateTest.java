@@ -18,6 +18,7 @@
  */
 package com.parrotha.internal.script.device;
 
+import com.parrotha.device.LanMessage;
 import groovy.lang.GroovyShell;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import com.parrotha.internal.device.Device;
@@ -26,6 +27,7 @@ import com.parrotha.internal.hub.ScheduleService;
 import com.parrotha.internal.script.ParrotHubDelegatingScript;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
@@ -114,6 +116,18 @@ public class DeviceScriptDelegateTest {
         assertNotNull(parsedLanMessage);
     }
 
+    @Test
+    public void testParseLanMessageFromMessage() {
+        LanMessage lanMessage = new LanMessage("D4D252A89864", "192.168.1.20", 49152,
+                "POST / HTTP/1.1\nContent-Type: application/json\nHost: 192.168.1.11:39500\n",
+                "{\"status\":\"complete\"}".getBytes(StandardCharsets.UTF_8));
+        Map parsedDescription = DeviceScriptDelegateImpl.parseLanMessage(lanMessage.getDescription());
+        assertEquals("{\"status\":\"complete\"}", parsedDescription.get("body"));
+
+        // while the message is being handled it is parsed from the message itself, with the same result
+        lanMessage.runAsCurrent(() -> assertEquals(parsedDescription, DeviceScriptDelegateImpl.parseLanMessage(lanMessage.getDescription())));
+    }
+
     @Test
     public void testMultiAttributeTiles() {
         String script =
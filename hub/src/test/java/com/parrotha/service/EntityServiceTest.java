@@ -29,8 +29,10 @@ import com.parrotha.internal.hub.ScheduleService;
 import com.parrotha.internal.integration.IntegrationRegistry;
 import com.parrotha.internal.entity.EntityService;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
@@ -41,6 +43,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class EntityServiceTest {
@@ -283,4 +286,115 @@ public class EntityServiceTest {
         assertEquals(deviceHandlerId, foundDH[0]);
         assertEquals("Sonoff Temperature and Humidity Sensor", foundDH[1]);
     }
+
+    @Test
+    public void testGetDeviceHandlerByFingerprintAfterDeviceHandlersChanged() {
+        DeviceService mockDeviceService = mock(DeviceService.class);
+        AutomationAppService mockAutomationAppService = mock(AutomationAppService.class);
+        EventService mockEventService = mock(EventService.class);
+        LocationService mockLocationService = mock(LocationService.class);
+        ScheduleService mockScheduleService = mock(ScheduleService.class);
+        IntegrationRegistry mockIntegrationRegistry = mock(IntegrationRegistry.class);
+        EntityService entityService = new EntityServiceImpl(mockDeviceService, mockAutomationAppService, mockEventService, mockLocationService,
+                mockScheduleService, mockIntegrationRegistry);
+        ArgumentCaptor<Runnable> listenerCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(mockDeviceService).addDeviceHandlersChangedListener(listenerCaptor.capture());
+
+        Fingerprint fp = new Fingerprint();
+        fp.setProfileId("0104");
+        fp.setInClusters("0000,0003,0004,0005,0006");
+        fp.setModel("PLUG");
+        fp.setManufacturer("LEDVANCE");
+        fp.setDeviceJoinName("Sylvania Outlet");
+        DeviceHandler dh = new DeviceHandler();
+        dh.setId("abc123");
+        dh.setFingerprints(Collections.singletonList(fp));
+
+        when(mockDeviceService.getAllDeviceHandlers()).thenReturn(new ArrayList<>());
+        Map<String, String> deviceInfo = Stream.of(new String[][]{
+                {"profileId", "0104"},
+                {"inClusters", "0000,0003,0004,0005,0006"},
+                {"model", "PLUG"},
+                {"manufacturer", "LEDVANCE"},
+        }).collect(Collectors.toMap(data -> data[0], data -> data[1]));
+        assertNull(entityService.getDeviceHandlerByFingerprint(deviceInfo));
+
+        // a new device handler is picked up once the device service reports a change
+        when(mockDeviceService.getAllDeviceHandlers()).thenReturn(Collections.singletonList(dh));
+        listenerCaptor.getValue().run();
+
+        String[] foundDH = entityService.getDeviceHandlerByFingerprint(deviceInfo);
+        assertNotNull(foundDH);
+        assertEquals("abc123", foundDH[0]);
+        assertEquals("Sylvania Outlet", foundDH[1]);
+    }
+
+    @Test
+    public void testGetDeviceHandlerByFingerprintPrefersManufacturerAndModelMatch() {
+        DeviceService mockDeviceService = mock(DeviceService.class);
+        AutomationAppService mockAutomationAppService = mock(AutomationAppService.class);
+        EventService mockEventService = mock(EventService.class);
+        LocationService mockLocationService = mock(LocationService.class);
+        ScheduleService mockScheduleService = mock(ScheduleService.class);
+        IntegrationRegistry mockIntegrationRegistry = mock(IntegrationRegistry.class);
+        EntityService entityService = new EntityServiceImpl(mockDeviceService, mockAutomationAppService, mockEventService, mockLocationService,
+                mockScheduleService, mockIntegrationRegistry);
+
+        // matches on profile, endpoint and clusters only
+        Fingerprint genericFp = new Fingerprint();
+        genericFp.setProfileId("0104");
+        genericFp.setEndpointId("01");
+        genericFp.setInClusters("0000,0003,0006");
+        genericFp.setDeviceJoinName("Generic Switch");
+        DeviceHandler genericDh = new DeviceHandler();
+        genericDh.setId("generic");
+        genericDh.setFingerprints(Collections.singletonList(genericFp));
+
+        // same clusters but a different manufacturer
+        Fingerprint otherFp = new Fingerprint();
+        otherFp.setProfileId("0104");
+        otherFp.setInClusters("0000,0003,0006");
+        otherFp.setManufacturer("Other");
+        otherFp.setModel("SW1");
+        otherFp.setDeviceJoinName("Other Switch");
+        DeviceHandler otherDh = new DeviceHandler();
+        otherDh.setId("other");
+        otherDh.setFingerprints(Collections.singletonList(otherFp));
+
+        Fingerprint exactFp = new Fingerprint();
+        exactFp.setProfileId("0104");
+        exactFp.setInClusters("0000,0003,0006");
+        exactFp.setManufacturer("Acme");
+        exactFp.setModel("SW1");
+        exactFp.setDeviceJoinName("Acme Switch");
+        DeviceHandler exactDh = new DeviceHandler();
+        exactDh.setId("exact");
+        exactDh.setFingerprints(Collections.singletonList(exactFp));
+
+        when(mockDeviceService.getAllDeviceHandlers()).thenReturn(Arrays.asList(genericDh, otherDh, exactDh));
+
+        Map<String, String> acmeDeviceInfo = Stream.of(new String[][]{
+                {"profileId", "0104"},
+                {"endpointId", "01"},
+                {"inClusters", "0000,0003,0006"},
+                {"model", "SW1"},
+                {"manufacturer", "Acme"},
+        }).collect(Collectors.toMap(data -> data[0], data -> data[1]));
+        String[] foundDH = entityService.getDeviceHandlerByFingerprint(acmeDeviceInfo);
+        assertNotNull(foundDH);
+        assertEquals("exact", foundDH[0]);
+        assertEquals("Acme Switch", foundDH[1]);
+
+        Map<String, String> unknownDeviceInfo = Stream.of(new String[][]{
+                {"profileId", "0104"},
+                {"endpointId", "01"},
+                {"inClusters", "0000,0003,0006"},
+                {"model", "XYZ"},
+                {"manufacturer", "Unknown"},
+        }).collect(Collectors.toMap(data -> data[0], data -> data[1]));
+        foundDH = entityService.getDeviceHandlerByFingerprint(unknownDeviceInfo);
+        assertNotNull(foundDH);
+        assertEquals("generic", foundDH[0]);
+        assertEquals("Generic Switch", foundDH[1]);
+    }
 }
@@ -25,6 +25,7 @@ import com.parrotha.integration.device.DeviceAddedEvent;
 import com.parrotha.integration.device.DeviceMessageEvent;
 import com.parrotha.internal.integration.AbstractIntegration;
 import com.parrotha.service.DeviceIntegrationService;
+import com.parrotha.service.NeighborTableService;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -78,6 +79,17 @@ public abstract class DeviceIntegration extends AbstractIntegration {
         this.deviceIntegrationService = deviceIntegrationService;
     }
 
+    private NeighborTableService neighborTableService;
+
+    public void setNeighborTableService(NeighborTableService neighborTableService) {
+        this.neighborTableService = neighborTableService;
+    }
+
+    // shared mac address lookup for integrations that talk to ip devices, can be null if the hub doesn't provide one
+    protected NeighborTableService getNeighborTableService() {
+        return neighborTableService;
+    }
+
     @Deprecated
     public void sendDeviceMessage(String deviceNetworkId, String message) {
         sendEvent(new DeviceMessageEvent(deviceNetworkId, message));
@@ -18,6 +18,8 @@
  */
 package com.parrotha.integration.device;
 
+import com.parrotha.device.LanMessage;
+
 public class LanDeviceMessageEvent extends DeviceMessageEvent {
     public LanDeviceMessageEvent(String deviceNetworkId, String message) {
         super(deviceNetworkId, message);
@@ -29,8 +31,19 @@ public class LanDeviceMessageEvent extends DeviceMessageEvent {
         this.remotePort = remotePort;
     }
 
+    /**
+     * The description is only built from the message when it is asked for.
+     */
+    public LanDeviceMessageEvent(LanMessage lanMessage) {
+        super(lanMessage.getMacAddress(), null);
+        this.remoteAddress = lanMessage.getRemoteAddress();
+        this.remotePort = lanMessage.getRemotePort();
+        this.lanMessage = lanMessage;
+    }
+
     private String remoteAddress;
     private int remotePort;
+    private LanMessage lanMessage;
 
 
     public String getRemoteAddress() {
@@ -44,4 +57,16 @@ public class LanDeviceMessageEvent extends DeviceMessageEvent {
     public String getMacAddress() {
         return getDeviceNetworkId();
     }
+
+    /**
+     * @return the message this event was created from, or null if it was created from a description
+     */
+    public LanMessage getLanMessage() {
+        return lanMessage;
+    }
+
+    @Override
+    public String getMessage() {
+        return lanMessage != null ? lanMessage.getDescription() : super.getMessage();
+    }
 }
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.integration.device;
+
+import com.parrotha.zigbee.ZigbeeMessage;
+
+/**
+ * A zigbee device message that carries the decoded message along with the description passed to the device handler.
+ */
+public class ZigbeeMessageEvent extends DeviceMessageEvent {
+    private final ZigbeeMessage zigbeeMessage;
+
+    public ZigbeeMessageEvent(String deviceNetworkId, ZigbeeMessage zigbeeMessage) {
+        super(deviceNetworkId, null);
+        this.zigbeeMessage = zigbeeMessage;
+    }
+
+    public ZigbeeMessage getZigbeeMessage() {
+        return zigbeeMessage;
+    }
+
+    @Override
+    public String getMessage() {
+        return zigbeeMessage.getDescription();
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.service;
+
+public interface NeighborTableService {
+    /**
+     * Look up the mac address of a host on the local network from the hub's neighbor (ARP) table.
+     *
+     * @param ipAddress ip address or host name of the device
+     * @return mac address as upper case hex without separators, or null if the address is not in the table
+     */
+    String getMacAddress(String ipAddress);
+}
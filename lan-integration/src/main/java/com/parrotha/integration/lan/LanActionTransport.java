@@ -0,0 +1,656 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.integration.lan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Sends raw HTTP hub actions to LAN devices over asynchronous sockets.  Connections are kept open and reused for each host
+ * and port, requests to a host wait in a queue for one of a limited number of connections and no thread is held while a
+ * device answers.
+ */
+class LanActionTransport {
+    private static final Logger logger = LoggerFactory.getLogger(LanActionTransport.class);
+
+    private static final Pattern CONNECTION_CLOSE = Pattern.compile("^connection:\\s*close\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+
+    private final int maxConnectionsPerHost;
+    private final int maxQueuedPerHost;
+    private final long connectTimeoutMillis;
+    private final long readTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int maxResponseSize;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AsynchronousChannelGroup channelGroup;
+    private final ScheduledExecutorService timer;
+    private volatile boolean shutdown;
+
+    LanActionTransport(int maxConnectionsPerHost, int maxQueuedPerHost, long connectTimeoutMillis, long readTimeoutMillis,
+                       long idleTimeoutMillis, int maxResponseSize) throws IOException {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxQueuedPerHost = maxQueuedPerHost;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxResponseSize = maxResponseSize;
+
+        this.channelGroup = AsynchronousChannelGroup.withFixedThreadPool(2, daemonThreadFactory("LanActionTransport"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("LanActionTimer"));
+        this.timer.scheduleWithFixedDelay(this::closeIdleConnections, idleTimeoutMillis, idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send a raw HTTP request.  The future completes on a transport thread, so work done when it completes should be short.
+     */
+    CompletableFuture<Response> send(String hostname, int port, String request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (shutdown) {
+            future.completeExceptionally(new IOException("LAN action transport is stopped"));
+            return future;
+        }
+        hosts.computeIfAbsent(hostname + ":" + port, key -> new Host(hostname, port))
+                .enqueue(new Exchange(request, future));
+        return future;
+    }
+
+    void shutdown() {
+        shutdown = true;
+        for (Host host : hosts.values()) {
+            host.close();
+        }
+        hosts.clear();
+        timer.shutdownNow();
+        try {
+            channelGroup.shutdownNow();
+        } catch (IOException e) {
+            logger.warn("Exception while stopping LAN action transport", e);
+        }
+    }
+
+    int getOpenConnectionCount() {
+        int openConnections = 0;
+        for (Host host : hosts.values()) {
+            openConnections += host.getOpenConnections();
+        }
+        return openConnections;
+    }
+
+    private void closeIdleConnections() {
+        for (Host host : hosts.values()) {
+            host.closeIdleConnections();
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaultThreadFactory.newThread(runnable);
+            thread.setName(name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A response from a device, the head is the status line and headers, one per line.
+     */
+    static class Response {
+        private final String head;
+        private final byte[] body;
+
+        Response(String head, byte[] body) {
+            this.head = head;
+            this.body = body;
+        }
+
+        String getHead() {
+            return head;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        String getBodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Exchange {
+        private final byte[] request;
+        private final boolean keepAlive;
+        private final boolean headRequest;
+        // safe to send again if a reused connection closes before the response arrives
+        private final boolean idempotent;
+        private final CompletableFuture<Response> future;
+        private boolean retried;
+
+        Exchange(String request, CompletableFuture<Response> future) {
+            this.request = request.getBytes(StandardCharsets.UTF_8);
+            this.keepAlive = !CONNECTION_CLOSE.matcher(request).find();
+            this.headRequest = request.startsWith("HEAD ");
+            this.idempotent = headRequest || request.startsWith("GET ");
+            this.future = future;
+        }
+    }
+
+    // requests and connections for one host and port
+    private class Host {
+        private final String hostname;
+        private final int port;
+        private final Deque<Exchange> pending = new ArrayDeque<>();
+        private final Deque<Connection> idle = new ArrayDeque<>();
+        private int openConnections;
+
+        Host(String hostname, int port) {
+            this.hostname = hostname;
+            this.port = port;
+        }
+
+        void enqueue(Exchange exchange) {
+            synchronized (this) {
+                if (pending.size() >= maxQueuedPerHost) {
+                    exchange.future.completeExceptionally(
+                            new RejectedExecutionException("Too many queued LAN actions for " + hostname + ":" + port));
+                    return;
+                }
+                pending.addLast(exchange);
+            }
+            dispatch();
+        }
+
+        void dispatch() {
+            while (true) {
+                Exchange exchange;
+                Connection connection;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    while ((connection = idle.pollFirst()) != null && connection.isIdleExpired(now)) {
+                        connection.close();
+                        openConnections--;
+                    }
+                    if (connection == null) {
+                        if (openConnections >= maxConnectionsPerHost) {
+                            // sent when a connection is released
+                            return;
+                        }
+                        openConnections++;
+                    }
+                    exchange = pending.pollFirst();
+                }
+                if (connection != null) {
+                    connection.start(exchange);
+                } else {
+                    connect(exchange);
+                }
+            }
+        }
+
+        private void connect(Exchange exchange) {
+            AsynchronousSocketChannel channel;
+            try {
+                channel = AsynchronousSocketChannel.open(channelGroup);
+            } catch (IOException e) {
+                connectionClosed();
+                exchange.future.completeExceptionally(e);
+                return;
+            }
+            Connection connection = new Connection(this, channel);
+            ScheduledFuture<?> connectTimeout = timer.schedule(connection::close, connectTimeoutMillis, TimeUnit.MILLISECONDS);
+            channel.connect(new InetSocketAddress(hostname, port), null, new CompletionHandler<Void, Void>() {
+                @Override
+                public void completed(Void result, Void attachment) {
+                    connectTimeout.cancel(false);
+                    connection.start(exchange);
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    connectTimeout.cancel(false);
+                    connection.close();
+                    connectionClosed();
+                    exchange.future.completeExceptionally(exc instanceof AsynchronousCloseException ?
+                            new SocketTimeoutException("Connect to " + hostname + ":" + port + " timed out") : exc);
+                }
+            });
+        }
+
+        // the connection finished an exchange
+        void release(Connection connection, boolean reusable) {
+            if (!reusable || shutdown) {
+                connection.close();
+                connectionClosed();
+                return;
+            }
+            Exchange next;
+            synchronized (this) {
+                next = pending.pollFirst();
+                if (next == null) {
+                    connection.idleSince = System.nanoTime();
+                    idle.addFirst(connection);
+                    return;
+                }
+            }
+            connection.start(next);
+        }
+
+        void failed(Connection connection, Exchange exchange, Throwable exc, boolean retry) {
+            connection.close();
+            synchronized (this) {
+                openConnections--;
+                if (retry) {
+                    // the device closed a kept alive connection before answering, try once more on a new connection
+                    exchange.retried = true;
+                    pending.addFirst(exchange);
+                }
+            }
+            if (!retry) {
+                exchange.future.completeExceptionally(exc);
+            }
+            dispatch();
+        }
+
+        private void connectionClosed() {
+            synchronized (this) {
+                openConnections--;
+            }
+            dispatch();
+        }
+
+        synchronized void closeIdleConnections() {
+            long now = System.nanoTime();
+            idle.removeIf(connection -> {
+                if (connection.isIdleExpired(now)) {
+                    connection.close();
+                    openConnections--;
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        synchronized int getOpenConnections() {
+            return openConnections;
+        }
+
+        void close() {
+            synchronized (this) {
+                for (Connection connection : idle) {
+                    connection.close();
+                }
+                idle.clear();
+                for (Exchange exchange : pending) {
+                    exchange.future.completeExceptionally(new IOException("LAN action transport is stopped"));
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    private class Connection {
+        private final Host host;
+        private final AsynchronousSocketChannel channel;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+        private boolean reused;
+        private long idleSince;
+        private Exchange exchange;
+        private ResponseParser parser;
+        // whether the whole request has been written, the device may have acted on it even if no response arrives
+        private boolean requestWritten;
+
+        Connection(Host host, AsynchronousSocketChannel channel) {
+            this.host = host;
+            this.channel = channel;
+        }
+
+        boolean isIdleExpired(long now) {
+            return now - idleSince > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis) || !channel.isOpen();
+        }
+
+        void start(Exchange exchange) {
+            this.exchange = exchange;
+            this.parser = new ResponseParser(maxResponseSize, exchange.headRequest);
+            readBuffer.clear();
+            requestWritten = false;
+            write(ByteBuffer.wrap(exchange.request));
+        }
+
+        private void write(ByteBuffer request) {
+            channel.write(request, readTimeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer result, Void attachment) {
+                    if (request.hasRemaining()) {
+                        write(request);
+                    } else {
+                        requestWritten = true;
+                        read();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    fail(exc);
+                }
+            });
+        }
+
+        private void read() {
+            channel.read(readBuffer, readTimeoutMillis, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer result, Void attachment) {
+                    try {
+                        if (result < 0) {
+                            if (parser.endOfStream()) {
+                                finish(false);
+                            } else {
+                                fail(new EOFException("Connection closed by " + host.hostname + ":" + host.port));
+                            }
+                            return;
+                        }
+                        readBuffer.flip();
+                        parser.parse(readBuffer);
+                        readBuffer.clear();
+                        if (parser.isComplete()) {
+                            finish(exchange.keepAlive && parser.isKeepAlive() && !parser.hasExtraData());
+                        } else {
+                            read();
+                        }
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Void attachment) {
+                    fail(exc instanceof InterruptedByTimeoutException ?
+                            new SocketTimeoutException("Read from " + host.hostname + ":" + host.port + " timed out") : exc);
+                }
+            });
+        }
+
+        private void finish(boolean reusable) {
+            Exchange finished = exchange;
+            Response response = parser.getResponse();
+            exchange = null;
+            parser = null;
+            reused = true;
+            host.release(this, reusable);
+            finished.future.complete(response);
+        }
+
+        private void fail(Throwable exc) {
+            Exchange failed = exchange;
+            // only send a request again if the device can not have acted on it or acting on it twice is harmless
+            boolean retry = reused && !failed.retried && !parser.hasReceivedData() && (failed.idempotent || !requestWritten);
+            exchange = null;
+            parser = null;
+            if (!retry && logger.isDebugEnabled()) {
+                logger.debug("LAN action to {}:{} failed: {}", host.hostname, host.port, exc.toString());
+            }
+            host.failed(this, failed, exc, retry);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    /**
+     * Incremental parser for an HTTP/1.x response with a content length, chunked or ended by the connection closing.
+     */
+    static class ResponseParser {
+        private enum State {HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILER, UNTIL_CLOSE, COMPLETE}
+
+        private final int maxResponseSize;
+        private final boolean headRequest;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private final StringBuilder head = new StringBuilder();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private State state = State.HEAD;
+        private boolean statusLine = true;
+        private int statusCode;
+        private boolean keepAlive;
+        private long contentLength = -1;
+        private boolean chunked;
+        private long remaining;
+        private int received;
+        private boolean extraData;
+
+        ResponseParser(int maxResponseSize, boolean headRequest) {
+            this.maxResponseSize = maxResponseSize;
+            this.headRequest = headRequest;
+        }
+
+        void parse(ByteBuffer buffer) throws IOException {
+            received += buffer.remaining();
+            if (received > maxResponseSize) {
+                throw new IOException("Response larger than " + maxResponseSize + " bytes");
+            }
+            while (buffer.hasRemaining()) {
+                switch (state) {
+                    case HEAD:
+                    case CHUNK_SIZE:
+                    case CHUNK_END:
+                    case TRAILER:
+                        String text = readLine(buffer);
+                        if (text != null) {
+                            line(text);
+                        }
+                        break;
+                    case BODY:
+                    case CHUNK_DATA:
+                        int length = (int) Math.min(remaining, buffer.remaining());
+                        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                        buffer.position(buffer.position() + length);
+                        remaining -= length;
+                        if (remaining == 0) {
+                            state = state == State.BODY ? State.COMPLETE : State.CHUNK_END;
+                        }
+                        break;
+                    case UNTIL_CLOSE:
+                        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                        buffer.position(buffer.limit());
+                        break;
+                    case COMPLETE:
+                        // more than the response, can't tell where the next one starts so the connection is not reused
+                        extraData = true;
+                        buffer.position(buffer.limit());
+                        break;
+                }
+            }
+        }
+
+        /**
+         * @return true if the response is complete now that the connection is closed
+         */
+        boolean endOfStream() {
+            if (state == State.UNTIL_CLOSE) {
+                state = State.COMPLETE;
+            }
+            return state == State.COMPLETE;
+        }
+
+        boolean isComplete() {
+            return state == State.COMPLETE;
+        }
+
+        boolean isKeepAlive() {
+            return keepAlive;
+        }
+
+        boolean hasExtraData() {
+            return extraData;
+        }
+
+        boolean hasReceivedData() {
+            return received > 0;
+        }
+
+        Response getResponse() {
+            return new Response(head.toString(), body.toByteArray());
+        }
+
+        private String readLine(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    line.reset();
+                    int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+
+        private void line(String text) throws IOException {
+            switch (state) {
+                case HEAD:
+                    if (text.isEmpty()) {
+                        endOfHead();
+                    } else {
+                        headLine(text);
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    int extension = text.indexOf(';');
+                    try {
+                        remaining = Long.parseLong((extension > -1 ? text.substring(0, extension) : text).trim(), 16);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed chunked encoding");
+                    }
+                    state = remaining == 0 ? State.TRAILER : State.CHUNK_DATA;
+                    break;
+                case CHUNK_END:
+                    if (!text.isEmpty()) {
+                        throw new IOException("Malformed chunked encoding");
+                    }
+                    state = State.CHUNK_SIZE;
+                    break;
+                case TRAILER:
+                    if (text.isEmpty()) {
+                        state = State.COMPLETE;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void headLine(String text) throws IOException {
+            head.append(text).append("\n");
+            if (statusLine) {
+                statusLine = false;
+                String[] status = text.split(" ", 3);
+                if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+                    throw new IOException("Malformed status line: " + text);
+                }
+                // HTTP/1.1 connections stay open unless the device says otherwise
+                keepAlive = !"HTTP/1.0".equals(status[0]);
+                try {
+                    statusCode = Integer.parseInt(status[1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed status line: " + text);
+                }
+                return;
+            }
+            int colon = text.indexOf(':');
+            if (colon < 0) {
+                return;
+            }
+            String name = text.substring(0, colon).trim();
+            String value = text.substring(colon + 1).trim();
+            if ("content-length".equalsIgnoreCase(name)) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed Content-Length header");
+                }
+            } else if ("transfer-encoding".equalsIgnoreCase(name) && value.toLowerCase().contains("chunked")) {
+                chunked = true;
+            } else if ("connection".equalsIgnoreCase(name)) {
+                if (value.equalsIgnoreCase("close")) {
+                    keepAlive = false;
+                } else if (value.equalsIgnoreCase("keep-alive")) {
+                    keepAlive = true;
+                }
+            }
+        }
+
+        private void endOfHead() {
+            if (statusCode >= 100 && statusCode < 200) {
+                // interim response, the real one follows
+                head.setLength(0);
+                statusLine = true;
+                contentLength = -1;
+                chunked = false;
+                return;
+            }
+            if (headRequest || statusCode == 204 || statusCode == 304) {
+                state = State.COMPLETE;
+            } else if (chunked) {
+                state = State.CHUNK_SIZE;
+            } else if (contentLength >= 0) {
+                remaining = contentLength;
+                state = contentLength == 0 ? State.COMPLETE : State.BODY;
+            } else {
+                keepAlive = false;
+                state = State.UNTIL_CLOSE;
+            }
+        }
+    }
+}
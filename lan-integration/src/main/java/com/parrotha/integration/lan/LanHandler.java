@@ -18,7 +18,7 @@
  */
 package com.parrotha.integration.lan;
 
-import org.apache.commons.io.IOUtils;
+import com.parrotha.device.LanMessage;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.slf4j.Logger;
@@ -27,8 +27,9 @@ import org.slf4j.LoggerFactory;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.Enumeration;
 
@@ -113,17 +114,25 @@ public class LanHandler extends AbstractHandler {
         //Content-Length: 47, data:[status:complete, value:mine], json:[status:complete, value:mine]]'
 
 
-        String macAddress = LanUtils.getFormattedMacAddressForIpAddress(baseRequest.getRemoteAddr());
-
-        response.setStatus(HttpServletResponse.SC_ACCEPTED);
         response.setHeader("Connection", "close");
         response.setHeader("Content-Length", "0");
         response.setHeader("Server", "ParrotHub");
+        baseRequest.setHandled(true);
+
+        if (request.getContentLengthLong() > LanIntegration.MAX_BODY_SIZE) {
+            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        byte[] body = readBody(request.getInputStream());
+        if (body == null) {
+            // no content length, but sent more than allowed
+            response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
 
-        String body = IOUtils.toString(request.getInputStream(), StandardCharsets.UTF_8);
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
 
-        response.setStatus(202);
-        baseRequest.setHandled(true);
+        String macAddress = lanIntegration.getMacAddress(baseRequest.getRemoteAddr());
 
         // must parse headers into base64
         StringBuilder headerSB = new StringBuilder();
@@ -142,16 +151,22 @@ public class LanHandler extends AbstractHandler {
             Collections.list(headers).forEach((s) -> headerSB.append(headerName).append(": ").append(s).append("\n"));
         }
 
-        processLanMessage(macAddress, request.getRemoteAddr(), request.getRemotePort(), body, headerSB.toString());
+        // the hub queues device messages, so this does not wait for the device handler
+        LanUtils.processLanMessage(lanIntegration,
+                new LanMessage(macAddress, request.getRemoteAddr(), request.getRemotePort(), headerSB.toString(), body));
     }
 
-    private void processLanMessage(String macAddress, String remoteAddress, int remotePort, String body, String headers) {
-        Runnable lanMessageProcessor =
-                () -> {
-                    LanUtils.processLanMessage(lanIntegration, macAddress, remoteAddress, remotePort, body, headers);
-                };
-
-        Thread lanMessageProcessorThead = new Thread(lanMessageProcessor, "LanMessageProcessor");
-        lanMessageProcessorThead.start();
+    // returns null if the body is larger than the maximum body size
+    private static byte[] readBody(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            if (body.size() + read > LanIntegration.MAX_BODY_SIZE) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
     }
 }
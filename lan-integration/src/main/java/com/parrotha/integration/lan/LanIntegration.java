@@ -20,30 +20,29 @@ package com.parrotha.integration.lan;
 
 import com.parrotha.device.HubAction;
 import com.parrotha.device.HubResponse;
+import com.parrotha.device.LanMessage;
 import com.parrotha.device.Protocol;
 import com.parrotha.integration.DeviceIntegration;
 import com.parrotha.integration.IntegrationHubEvent;
 import com.parrotha.internal.utils.HexUtils;
+import com.parrotha.service.NeighborTableService;
 import com.parrotha.ui.PreferencesBuilder;
 import org.apache.commons.collections4.map.CaseInsensitiveMap;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.io.Reader;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -51,7 +50,10 @@ import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -63,16 +65,46 @@ public class LanIntegration extends DeviceIntegration {
     private static final String validIpAddressRegex = "(([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])\\.){3}([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])";
     private static final String validHostnameRegex = "(([a-zA-Z0-9]|[a-zA-Z0-9][a-zA-Z0-9\\-]*[a-zA-Z0-9])\\.)*([A-Za-z0-9]|[A-Za-z0-9][A-Za-z0-9\\-]*[A-Za-z0-9])";
     private static final String HOST_REGEX = "[hH][oO][sS][Tt]: (" + validIpAddressRegex + "|" + validHostnameRegex + ")[:0-9]*";
+    private static final Pattern HOST_PATTERN = Pattern.compile(HOST_REGEX);
+
+    // limits for messages from devices, so a misbehaving device can't flood the hub
+    static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+    private static final int MAX_SERVER_THREADS = 8;
+    private static final int MIN_SERVER_THREADS = 2;
+    private static final int MAX_QUEUED_REQUESTS = 64;
+
+    // limits for hub actions sent to devices
+    private static final int MAX_CONNECTIONS_PER_HOST = 2;
+    private static final int MAX_QUEUED_ACTIONS_PER_HOST = 32;
+    private static final long CONNECT_TIMEOUT = 5000;
+    private static final long READ_TIMEOUT = 10000;
+    // long enough to reuse the connection for devices polled every 30 seconds, devices that close sooner are reconnected
+    private static final long IDLE_CONNECTION_TIMEOUT = 60000;
+    private static final long ACTION_CALLBACK_TIMEOUT = 60000;
+    private static final int MAX_RESPONSE_SIZE = 256 * 1024;
 
     private Server server;
     private Integer serverPort;
+    private LanActionTransport actionTransport;
 
     @Override
     public void start() {
         logger.info("Starting LAN integration");
         serverPort = getSettingAsInteger("serverPort", 39500);
 
-        server = new Server(serverPort);
+        // bounded pool and queue, requests beyond the queue are rejected instead of starting more threads
+        QueuedThreadPool threadPool = new QueuedThreadPool(MAX_SERVER_THREADS, MIN_SERVER_THREADS, 60000,
+                new BlockingArrayQueue<>(MAX_QUEUED_REQUESTS));
+        threadPool.setName("LanServer");
+        server = new Server(threadPool);
+
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setRequestHeaderSize(MAX_HEADER_SIZE);
+        httpConfiguration.setSendServerVersion(false);
+        ServerConnector connector = new ServerConnector(server, 1, 1, new HttpConnectionFactory(httpConfiguration));
+        connector.setPort(serverPort);
+        server.addConnector(connector);
         server.setHandler(new LanHandler(this));
 
         try {
@@ -92,6 +124,12 @@ public class LanIntegration extends DeviceIntegration {
                 logger.warn("Exception while stopping LAN server", e);
             }
         }
+        synchronized (this) {
+            if (actionTransport != null) {
+                actionTransport.shutdown();
+                actionTransport = null;
+            }
+        }
     }
 
     @Override
@@ -138,6 +176,8 @@ public class LanIntegration extends DeviceIntegration {
         if (server != null) {
             model.put("Port", serverPort != null ? serverPort.toString() : "Not Set");
             model.put("Status", server.getState());
+            LanActionTransport transport = actionTransport;
+            model.put("Open Device Connections", Integer.toString(transport != null ? transport.getOpenConnectionCount() : 0));
         } else {
             model.put("Status", "STOPPED");
         }
@@ -149,6 +189,14 @@ public class LanIntegration extends DeviceIntegration {
         return CompletableFuture.completedFuture(true);
     }
 
+    String getMacAddress(String ipAddress) {
+        NeighborTableService neighborTableService = getNeighborTableService();
+        if (neighborTableService != null) {
+            return neighborTableService.getMacAddress(ipAddress);
+        }
+        return LanUtils.getFormattedMacAddressForIpAddress(ipAddress);
+    }
+
     private void processUpnpResponse(String response) {
         Map<String, String> values = Arrays.stream(response.trim().split("\r\n"))
                 .collect(Collectors.toMap(k -> k.substring(0, k.indexOf(':') > -1 ? k.indexOf(':') : k.length()).trim(),
@@ -159,7 +207,7 @@ public class LanIntegration extends DeviceIntegration {
         String networkAddress = Stream.of(uri.getHost().split("\\."))
                 .reduce("", (partialString, element) ->
                         partialString + String.format("%02X", Integer.parseInt(element)));
-        String mac = LanUtils.getFormattedMacAddressForIpAddress(uri.getHost());
+        String mac = getMacAddress(uri.getHost());
         String deviceAddress = HexUtils.integerToHexString(uri.getPort(), 2);
 
         String ssdpPath = uri.getPath();
@@ -213,12 +261,12 @@ public class LanIntegration extends DeviceIntegration {
         HubResponse hubResponse = new HubResponse();
 
         //https://stackoverflow.com/questions/106179/regular-expression-to-match-dns-hostname-or-ip-address
-        Pattern pattern = Pattern.compile(HOST_REGEX);
-        Matcher matcher = pattern.matcher(hubAction.getAction());
-        String hostHeader = null;
-        if (matcher.find()) {
-            hostHeader = matcher.group().substring("host:".length()).trim();
+        Matcher matcher = HOST_PATTERN.matcher(hubAction.getAction());
+        if (!matcher.find()) {
+            logger.warn("No host header in LAN action: {}", hubAction.getAction());
+            return hubResponse;
         }
+        String hostHeader = matcher.group().substring("host:".length()).trim();
 
         String[] hostArray = hostHeader.split(":");
         int port = 80;
@@ -227,128 +275,42 @@ public class LanIntegration extends DeviceIntegration {
         }
         String hostname = hostArray[0];
 
-        //https://www.codejava.net/java-se/networking/java-socket-client-examples-tcp-ip
-        try (Socket socket = new Socket(hostname, port)) {
-
-            OutputStream output = socket.getOutputStream();
-            PrintWriter writer = new PrintWriter(output, true);
-
-            writer.print(hubAction.getAction());
-            writer.flush();
-            InputStream input = socket.getInputStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-
-            StringBuilder head = new StringBuilder();
-            String body = "";
-
+        CompletableFuture<LanActionTransport.Response> responseFuture = getActionTransport().send(hostname, port, hubAction.getAction());
+        if (hubAction.getCallback() != null) {
+            // the caller passes the response to the callback
             try {
-                // read the headers
-                while (true) {
-                    String headerLine = reader.readLine();
-                    if (headerLine.length() == 0) {
-                        break;
-                    }
-                    head.append(headerLine).append("\n");
-                }
-
-                StringBuffer buf = new StringBuffer();
-                InputStream in = new HttpInputStream(reader, head.toString().split("\n"));
-                int c;
-                while ((c = in.read()) != -1) {
-                    buf.append((char) c);
-                }
-                body = buf.toString();
-            } catch (IOException ioExcep) {
-                logger.info("IOException", ioExcep);
+                hubResponse.setBody(responseFuture.get(ACTION_CALLBACK_TIMEOUT, TimeUnit.MILLISECONDS).getBodyAsString());
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("Exception while sending LAN action to {}:{}", hostname, port, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-            if (hubAction.getCallback() != null) {
-                hubResponse.setBody(body.toString());
-            } else {
-                // send message to device
-                LanUtils.processLanMessage(this,
-                        LanUtils.getFormattedMacAddressForIpAddress(hostname),
-                        hostname,
-                        port,
-                        body.toString(),
-                        head.toString());
-            }
-        } catch (UnknownHostException ex) {
-            System.out.println("Server not found: " + ex.getMessage());
-        } catch (IOException ex) {
-            System.out.println("I/O error: " + ex.getMessage());
+        } else {
+            // send the response to the device when it arrives, nothing waits for it
+            int devicePort = port;
+            responseFuture.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    logger.warn("Exception while sending LAN action to {}:{}: {}", hostname, devicePort, throwable.toString());
+                } else {
+                    LanUtils.processLanMessage(this,
+                            new LanMessage(getMacAddress(hostname), hostname, devicePort, response.getHead(), response.getBody()));
+                }
+            });
         }
 
         return hubResponse;
     }
 
-    // thanks to https://commandlinefanatic.com/cgi-bin/showarticle.cgi?article=art077
-    private class HttpInputStream extends InputStream {
-        private Reader source;
-        private int bytesRemaining;
-        private boolean chunked = false;
-
-        public HttpInputStream(Reader source, String[] headers) throws IOException {
-            this.source = source;
-
-            for (String header : headers) {
-                if (header.toLowerCase().startsWith("transfer-encoding") && header.contains("chunked")) {
-                    chunked = true;
-                    bytesRemaining = parseChunkSize();
-                } else if (header.toLowerCase().startsWith("content-length")) {
-                    try {
-                        String[] contentLengthHeader = header.split(":");
-                        bytesRemaining = Integer.parseInt(contentLengthHeader[1].trim());
-                    } catch (Exception e) {
-                        throw new IOException("Malformed or missing Content-Length header");
-                    }
-                }
-            }
-        }
-
-        private int parseChunkSize() throws IOException {
-            int b;
-            int chunkSize = 0;
-
-            while ((b = source.read()) != '\r') {
-                chunkSize = (chunkSize << 4) |
-                        ((b > '9') ?
-                                (b > 'F') ?
-                                        (b - 'a' + 10) :
-                                        (b - 'A' + 10) :
-                                (b - '0'));
-            }
-            // Consume the trailing '\n'
-            if (source.read() != '\n') {
-                throw new IOException("Malformed chunked encoding");
-            }
-
-            return chunkSize;
-        }
-
-        public int read() throws IOException {
-            if (bytesRemaining == 0) {
-                if (!chunked) {
-                    return -1;
-                } else {
-                    // Read next chunk size; return -1 if 0 indicating end of stream
-                    // Read and discard extraneous \r\n
-                    if (source.read() != '\r') {
-                        throw new IOException("Malformed chunked encoding");
-                    }
-                    if (source.read() != '\n') {
-                        throw new IOException("Malformed chunked encoding");
-                    }
-                    bytesRemaining = parseChunkSize();
-
-                    if (bytesRemaining == 0) {
-                        return -1;
-                    }
-                }
+    private synchronized LanActionTransport getActionTransport() {
+        if (actionTransport == null) {
+            try {
+                actionTransport = new LanActionTransport(MAX_CONNECTIONS_PER_HOST, MAX_QUEUED_ACTIONS_PER_HOST, CONNECT_TIMEOUT,
+                        READ_TIMEOUT, IDLE_CONNECTION_TIMEOUT, MAX_RESPONSE_SIZE);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to start LAN action transport", e);
             }
-
-            bytesRemaining -= 1;
-            return source.read();
         }
+        return actionTransport;
     }
 
     //https://objectpartners.com/2014/03/25/a-groovy-time-with-upnp-and-wemo/
@@ -18,6 +18,7 @@
  */
 package com.parrotha.integration.lan;
 
+import com.parrotha.device.LanMessage;
 import com.parrotha.integration.DeviceIntegration;
 import com.parrotha.integration.device.LanDeviceMessageEvent;
 import org.apache.commons.io.IOUtils;
@@ -27,7 +28,6 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -73,19 +73,16 @@ public class LanUtils {
 
     public static void processLanMessage(DeviceIntegration integration, String macAddress, String remoteAddress, int remotePort, String body,
                                          String headers) {
-        String base64Headers = Base64.getEncoder().encodeToString(headers.getBytes(StandardCharsets.UTF_8));
-
-        String base64Body = "";
-        if (body != null) {
-            base64Body = Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8));
-        }
-
-        String deviceDescription = "mac: " + macAddress + ", headers: " + base64Headers + ", body: " + base64Body;
+        processLanMessage(integration, new LanMessage(macAddress, remoteAddress, remotePort, headers,
+                body != null ? body.getBytes(StandardCharsets.UTF_8) : null));
+    }
 
+    public static void processLanMessage(DeviceIntegration integration, LanMessage lanMessage) {
         if (logger.isDebugEnabled()) {
-            logger.debug("Message received: " + deviceDescription);
+            logger.debug("Message received: " + lanMessage.getDescription());
         }
 
-        integration.sendEvent(new LanDeviceMessageEvent(macAddress, remoteAddress, remotePort, deviceDescription));
+        // the description is only encoded if the message is delivered to a device or logged
+        integration.sendEvent(new LanDeviceMessageEvent(lanMessage));
     }
 }
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.integration.lan;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LanActionTransportTest {
+    private static final String REQUEST = "GET /status HTTP/1.1\r\nHOST: 127.0.0.1\r\n\r\n";
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread server = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        new Thread(() -> answerRequests(socket)).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            LanActionTransport transport = new LanActionTransport(2, 8, 1000, 1000, 60000, 65536);
+            try {
+                for (int i = 0; i < 3; i++) {
+                    LanActionTransport.Response response = transport.send("127.0.0.1", serverSocket.getLocalPort(), REQUEST)
+                            .get(5, TimeUnit.SECONDS);
+                    assertEquals("HTTP/1.1 200 OK\nContent-Length: 15\n", response.getHead());
+                    assertEquals("{\"switch\":\"on\"}", response.getBodyAsString());
+                }
+                assertEquals(1, connections.get());
+                assertEquals(1, transport.getOpenConnectionCount());
+            } finally {
+                transport.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyIdempotentRequestsAreRetried() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread server = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        new Thread(() -> answerFirstRequest(socket, requests)).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            server.setDaemon(true);
+            server.start();
+
+            LanActionTransport transport = new LanActionTransport(1, 8, 1000, 1000, 60000, 65536);
+            try {
+                int port = serverSocket.getLocalPort();
+                String post = "POST /toggle HTTP/1.1\r\nHOST: 127.0.0.1\r\nContent-Length: 0\r\n\r\n";
+                transport.send("127.0.0.1", port, post).get(5, TimeUnit.SECONDS);
+                // the device closes the kept alive connection after reading the request, it may have acted on it
+                assertThrows(ExecutionException.class, () -> transport.send("127.0.0.1", port, post).get(5, TimeUnit.SECONDS));
+                assertEquals(2, requests.get());
+
+                transport.send("127.0.0.1", port, REQUEST).get(5, TimeUnit.SECONDS);
+                // a get is sent again on a new connection
+                assertEquals("{\"switch\":\"on\"}", transport.send("127.0.0.1", port, REQUEST).get(5, TimeUnit.SECONDS)
+                        .getBodyAsString());
+                assertEquals(5, requests.get());
+            } finally {
+                transport.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            LanActionTransport transport = new LanActionTransport(2, 8, 1000, 200, 60000, 65536);
+            try {
+                ExecutionException exception = assertThrows(ExecutionException.class,
+                        () -> transport.send("127.0.0.1", serverSocket.getLocalPort(), REQUEST).get(5, TimeUnit.SECONDS));
+                assertTrue(exception.getCause() instanceof SocketTimeoutException);
+                assertEquals(0, transport.getOpenConnectionCount());
+            } finally {
+                transport.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedResponse() throws IOException {
+        LanActionTransport.ResponseParser parser = new LanActionTransport.ResponseParser(65536, false);
+        String response = "HTTP/1.1 100 Continue\r\n\r\n" +
+                "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\nConnection: close\r\n\r\n" +
+                "5\r\nhello\r\n7;name=value\r\n, world\r\n0\r\n\r\n";
+        // one byte at a time to cover reads that end anywhere in the response
+        for (byte b : response.getBytes(StandardCharsets.UTF_8)) {
+            assertFalse(parser.isComplete());
+            parser.parse(ByteBuffer.wrap(new byte[]{b}));
+        }
+        assertTrue(parser.isComplete());
+        assertFalse(parser.isKeepAlive());
+        assertEquals("HTTP/1.1 200 OK\nTransfer-Encoding: chunked\nConnection: close\n", parser.getResponse().getHead());
+        assertEquals("hello, world", parser.getResponse().getBodyAsString());
+    }
+
+    // answer the first request on the connection, then close it after reading the next one without answering
+    private static void answerFirstRequest(Socket socket, AtomicInteger requests) {
+        try (socket) {
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            boolean answered = false;
+            int b;
+            while ((b = input.read()) != -1) {
+                request.write(b);
+                if (request.toString(StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+                    requests.incrementAndGet();
+                    if (answered) {
+                        return;
+                    }
+                    answered = true;
+                    output.write("HTTP/1.1 200 OK\r\nContent-Length: 15\r\n\r\n{\"switch\":\"on\"}".getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                    request.reset();
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the transport
+        }
+    }
+
+    private static void answerRequests(Socket socket) {
+        try (socket) {
+            InputStream input = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            int b;
+            while ((b = input.read()) != -1) {
+                request.write(b);
+                if (request.toString(StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+                    output.write("HTTP/1.1 200 OK\r\nContent-Length: 15\r\n\r\n{\"switch\":\"on\"}".getBytes(StandardCharsets.UTF_8));
+                    output.flush();
+                    request.reset();
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the transport
+        }
+    }
+}
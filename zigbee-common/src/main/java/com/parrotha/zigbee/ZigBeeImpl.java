@@ -22,6 +22,7 @@ import com.parrotha.app.DeviceWrapper;
 import com.parrotha.internal.utils.HexUtils;
 import com.parrotha.internal.utils.ObjectUtils;
 import com.parrotha.zigbee.clusters.iaszone.ZoneStatus;
+import com.parrotha.zigbee.zcl.AttributeRecords;
 import com.parrotha.zigbee.zcl.DataType;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
@@ -52,6 +53,10 @@ public class ZigBeeImpl implements ZigBee {
     public static final int ATTRIBUTE_IAS_ZONE_STATUS = 0x0002;
 
     public static ZoneStatus parseZoneStatus(String description) {
+        ZigbeeMessage zigbeeMessage = ZigbeeMessage.current(description);
+        if (zigbeeMessage != null) {
+            return zigbeeMessage.getType() == ZigbeeMessage.Type.ZONE_STATUS ? new ZoneStatus(zigbeeMessage.getZoneStatus()) : null;
+        }
         // example: zone status 0x0000 -- extended status 0x00
         String[] zoneStatusArray = StringUtils.split(description, "--");
         for (String zoneStatus : zoneStatusArray) {
@@ -80,6 +85,11 @@ public class ZigBeeImpl implements ZigBee {
         if (description == null) {
             return null;
         }
+        // the zigbee integration passes along the decoded message, no need to parse the description
+        ZigbeeMessage zigbeeMessage = ZigbeeMessage.current(description);
+        if (zigbeeMessage != null) {
+            return zigbeeMessage.toDescriptionMap();
+        }
         if (description.startsWith("read attr - ")) {
             HashMap<String, Object> descriptionMap = new HashMap<>();
             String[] descriptionArray = description.substring("read attr -".length()).split(",");
@@ -89,6 +99,14 @@ public class ZigBeeImpl implements ZigBee {
                 descriptionMap.put(keyValue[0].trim(), keyValue[1].trim());
             }
 
+            ZigbeeMessage multipleAttributeMessage = getMultipleAttributeMessage(descriptionMap);
+            if (multipleAttributeMessage != null) {
+                Map<String, Object> multipleAttributeMap = multipleAttributeMessage.toDescriptionMap();
+                multipleAttributeMap.put("raw", descriptionMap.get("raw"));
+                multipleAttributeMap.put("size", descriptionMap.get("size"));
+                return multipleAttributeMap;
+            }
+
             // need to flip the value for some encodings:
             // 29 = Signed 16 bit integer
             // 21 = Unsigned 16-bit integer
@@ -133,6 +151,40 @@ public class ZigBeeImpl implements ZigBee {
         }
     }
 
+    // the value of a read attr description holds everything after the first encoding, which can be more attribute records
+    private static ZigbeeMessage getMultipleAttributeMessage(Map<String, Object> descriptionMap) {
+        try {
+            int[] value = HexUtils.hexStringToIntArray((String) descriptionMap.get("value"));
+            int encoding = HexUtils.hexStringToInt((String) descriptionMap.get("encoding"));
+            Integer firstValueLength = DataType.getLength(encoding);
+            if (firstValueLength == null || firstValueLength <= 0 || value.length <= firstValueLength) {
+                return null;
+            }
+            int attrId = HexUtils.hexStringToInt((String) descriptionMap.get("attrId"));
+            int command = HexUtils.hexStringToInt((String) descriptionMap.get("command"));
+            boolean readResponse = command == 0x01;
+
+            // rebuild the attribute records the way they were in the frame
+            int recordsStart = readResponse ? 4 : 3;
+            int[] records = new int[recordsStart + value.length];
+            records[0] = attrId & 0xFF;
+            records[1] = attrId >> 8;
+            records[recordsStart - 1] = encoding;
+            System.arraycopy(value, 0, records, recordsStart, value.length);
+
+            int[] attributeOffsets = AttributeRecords.findRecordOffsets(records, 0, readResponse);
+            if (attributeOffsets.length < 2) {
+                return null;
+            }
+            return new ZigbeeMessage(ZigbeeMessage.Type.ATTRIBUTE, 0x0104, HexUtils.hexStringToInt((String) descriptionMap.get("cluster")),
+                    HexUtils.hexStringToInt((String) descriptionMap.get("dni")), HexUtils.hexStringToInt((String) descriptionMap.get("endpoint")),
+                    0, 0, 0, command, records, 0, attributeOffsets);
+        } catch (RuntimeException e) {
+            // not something we can split up, leave the value as it is
+            return null;
+        }
+    }
+
     //https://docs.smartthings.com/en/latest/ref-docs/zigbee-ref.html#zigbee-getevent
     // example to parse:
     // read attr - raw: 3F9A0A00080A000020FE, dni: 3F9A, endpoint: 0A, cluster: 0008, size: 0A, attrId: 0000, encoding: 20, command: 01, value: FE
@@ -144,6 +196,10 @@ public class ZigBeeImpl implements ZigBee {
         if (StringUtils.isEmpty(description)) {
             return event;
         }
+        ZigbeeMessage zigbeeMessage = ZigbeeMessage.current(description);
+        if (zigbeeMessage != null) {
+            return (Map) zigbeeMessage.getEvent();
+        }
 
         if (description.startsWith("read attr - ")) {
             Map parsedDescription = parseDescriptionAsMap(description);
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zigbee.zcl;
+
+import java.util.Arrays;
+
+/**
+ * Splits the payload of a report attributes (0x0A) or read attributes response (0x01) command into its attribute records
+ * using the data type sizes from {@link DataType}.
+ */
+public class AttributeRecords {
+    private AttributeRecords() {
+    }
+
+    /**
+     * Find where each attribute record starts.  A record runs from its offset up to the next record's offset, or the end of
+     * the payload for the last record.  Read attributes response records have a status after the attribute id and no type or
+     * value when the status is not success.
+     * <p>
+     * If a record has a type whose size is not known (arrays, structures, etc) it is the last record found.  If the records do
+     * not add up to the payload, only the first offset is returned so the payload is handled as a single record.
+     *
+     * @param payload      The ZCL payload
+     * @param offset       Offset of the first attribute id
+     * @param readResponse True for read attributes response records
+     * @return offsets of the attribute records in the payload
+     */
+    public static int[] findRecordOffsets(int[] payload, int offset, boolean readResponse) {
+        int[] offsets = new int[4];
+        int count = 0;
+        int position = offset;
+        while (position < payload.length) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = position;
+
+            int index = position + 2;
+            if (readResponse) {
+                if (index >= payload.length) {
+                    return new int[]{offset};
+                }
+                if (payload[index++] != 0) {
+                    // unsuccessful status, no type or value follows
+                    position = index;
+                    continue;
+                }
+            }
+            if (index >= payload.length) {
+                return new int[]{offset};
+            }
+            int type = payload[index++];
+            int valueLength = getValueLength(type, payload, index);
+            if (valueLength < 0) {
+                // size is unknown, the value runs to the end of the payload
+                break;
+            }
+            position = index + valueLength;
+            if (position > payload.length) {
+                return new int[]{offset};
+            }
+        }
+        if (count == 0) {
+            return new int[]{offset};
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    // length of a value including any length prefix, -1 if it can not be worked out
+    private static int getValueLength(int type, int[] payload, int index) {
+        switch (type) {
+            case DataType.STRING_OCTET:
+            case DataType.STRING_CHAR:
+                if (index >= payload.length) {
+                    return -1;
+                }
+                // 0xFF is an invalid (empty) string
+                return 1 + (payload[index] == 0xFF ? 0 : payload[index]);
+            case DataType.STRING_LONG_OCTET:
+            case DataType.STRING_LONG_CHAR:
+                if (index + 1 >= payload.length) {
+                    return -1;
+                }
+                int length = payload[index] | payload[index + 1] << 8;
+                return 2 + (length == 0xFFFF ? 0 : length);
+            case DataType.NO_DATA:
+                return 0;
+            default:
+                int typeLength = DataType.getLength(type);
+                // types that are not in the table have a length of 0
+                return typeLength > 0 ? typeLength : -1;
+        }
+    }
+}
@@ -39,7 +39,6 @@ public class DataType {
             case UINT8:
             case INT8:
             case ENUM8:
-            case FLOAT8:
                 return 1;
             case DATA16:
             case BITMAP16:
@@ -84,6 +83,7 @@ public class DataType {
             case BITMAP64:
             case UINT64:
             case INT64:
+            case FLOAT8:
             case IEEE_ADDRESS:
                 return 8;
             case SECKEY128:
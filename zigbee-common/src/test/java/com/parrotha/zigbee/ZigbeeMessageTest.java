@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zigbee;
+
+import com.parrotha.zigbee.clusters.iaszone.ZoneStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ZigbeeMessageTest {
+
+    @Test
+    public void testAttributeReportMatchesDescription() {
+        // report attributes, temperature measurement, int16 0x0764
+        ZigbeeMessage zigbeeMessage = new ZigbeeMessage(ZigbeeMessage.Type.ATTRIBUTE, 0x0104, 0x0402, 0xE6A2, 0x01, 0x01,
+                0x18, 0, 0x0A, new int[]{0x18, 0xF1, 0x0A, 0x00, 0x00, 0x29, 0x64, 0x07}, 3);
+        assertEquals("read attr - raw: E6A20104020A0000296407, dni: E6A2, endpoint: 01, cluster: 0402, size: 0A, attrId: 0000, " +
+                "encoding: 29, command: 0A, value: 6407", zigbeeMessage.getDescription());
+        assertParsedSameAsDescription(zigbeeMessage);
+        assertEquals("0764", zigbeeMessage.toDescriptionMap().get("value"));
+        assertEquals(0x0764, zigbeeMessage.getValue().getShort());
+    }
+
+    @Test
+    public void testReadAttributeResponseEvent() {
+        // read attributes response, level control current level = 0xFE
+        ZigbeeMessage zigbeeMessage = new ZigbeeMessage(ZigbeeMessage.Type.ATTRIBUTE, 0x0104, 0x0008, 0x3F9A, 0x0A, 0x01,
+                0x18, 0, 0x01, new int[]{0x18, 0x7A, 0x01, 0x00, 0x00, 0x00, 0x20, 0xFE}, 3);
+        assertEquals("read attr - raw: 3F9A0A00080A000020FE, dni: 3F9A, endpoint: 0A, cluster: 0008, size: 0A, attrId: 0000, " +
+                "encoding: 20, command: 01, value: FE", zigbeeMessage.getDescription());
+        assertParsedSameAsDescription(zigbeeMessage);
+
+        zigbeeMessage.runAsCurrent(() -> {
+            Map event = ZigBeeImpl.getEvent(zigbeeMessage.getDescription());
+            assertEquals("level", event.get("name"));
+            assertEquals(100, event.get("value"));
+        });
+    }
+
+    @Test
+    public void testCatchAllMatchesDescription() {
+        ZigbeeMessage zigbeeMessage = new ZigbeeMessage(ZigbeeMessage.Type.CATCH_ALL, 0x0104, 0x0500, 0xACFE, 0x01, 0x01,
+                0x19, 0, 0x00, new int[]{0x19, 0x01, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00}, 3);
+        assertEquals("catchall: 0104 0500 01 01 0040 00 ACFE 01 00 0000 00 01 010000000000", zigbeeMessage.getDescription());
+        assertParsedSameAsDescription(zigbeeMessage);
+    }
+
+    @Test
+    public void testZoneStatus() {
+        ZigbeeMessage zigbeeMessage = new ZigbeeMessage(ZigbeeMessage.Type.ZONE_STATUS, 0x0104, 0x0500, 0x453E, 0x01, 0x01,
+                0x19, 0, 0x00, new int[]{0x19, 0x01, 0x00, 0x30, 0x00, 0x00}, 3);
+        assertEquals("zone status 0x0030 -- extended status 0x00", zigbeeMessage.getDescription());
+        zigbeeMessage.runAsCurrent(() -> {
+            assertNull(ZigBeeImpl.parseDescriptionAsMap(zigbeeMessage.getDescription()));
+            ZoneStatus zoneStatus = ZigBeeImpl.parseZoneStatus(zigbeeMessage.getDescription());
+            assertTrue(zoneStatus.isSupervisionReportsSet());
+            assertTrue(zoneStatus.isRestoreReportsSet());
+            assertFalse(zoneStatus.isAlarm1Set());
+        });
+    }
+
+    @Test
+    public void testOtherDescriptionIsParsed() {
+        ZigbeeMessage zigbeeMessage = new ZigbeeMessage(ZigbeeMessage.Type.CATCH_ALL, 0x0104, 0x0006, 0xE6A2, 0x01, 0x01,
+                0x08, 0, 0x0B, new int[]{0x08, 0x08, 0x0B, 0x00, 0x00}, 3);
+        zigbeeMessage.runAsCurrent(() -> {
+            Map<String, Object> parsed = ZigBeeImpl.parseDescriptionAsMap("catchall: 0104 0500 01 01 0040 00 ACFE 01 00 0000 00 01 01");
+            assertEquals("0500", parsed.get("clusterId"));
+        });
+        assertNull(ZigbeeMessage.current(zigbeeMessage.getDescription()));
+    }
+
+    private void assertParsedSameAsDescription(ZigbeeMessage zigbeeMessage) {
+        String description = zigbeeMessage.getDescription();
+        Map<String, Object> parsedFromString = ZigBeeImpl.parseDescriptionAsMap(description);
+        Map<String, String> eventFromString = ZigBeeImpl.getEvent(description);
+        zigbeeMessage.runAsCurrent(() -> {
+            assertEquals(parsedFromString, ZigBeeImpl.parseDescriptionAsMap(description));
+            assertEquals(eventFromString, ZigBeeImpl.getEvent(description));
+        });
+    }
+}
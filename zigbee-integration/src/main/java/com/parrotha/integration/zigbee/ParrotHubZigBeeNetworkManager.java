@@ -18,8 +18,9 @@
  */
 package com.parrotha.integration.zigbee;
 
-import com.parrotha.integration.device.DeviceMessageEvent;
+import com.parrotha.integration.device.ZigbeeMessageEvent;
 import com.parrotha.internal.utils.HexUtils;
+import com.parrotha.zigbee.ZigbeeMessage;
 import com.zsmartsystems.zigbee.ZigBeeNetworkManager;
 import com.zsmartsystems.zigbee.aps.ZigBeeApsFrame;
 import com.zsmartsystems.zigbee.dongle.ember.ezsp.structure.EmberStatus;
@@ -57,10 +58,10 @@ public class ParrotHubZigBeeNetworkManager extends ZigBeeNetworkManager {
         // don't transform messages from the radio
         if (incomingApsFrame.getSourceAddress() != 0) {
             try {
-                String description = ApsFrameTransformer.transformApsFrame(incomingApsFrame);
-                if (description != null) {
+                ZigbeeMessage zigbeeMessage = ApsFrameTransformer.toZigbeeMessage(incomingApsFrame);
+                if (zigbeeMessage != null) {
                     // send message to user code
-                    zigBeeIntegration.sendEvent(new DeviceMessageEvent(HexUtils.integerToHexString(incomingApsFrame.getSourceAddress(), 2), description));
+                    zigBeeIntegration.sendEvent(new ZigbeeMessageEvent(HexUtils.integerToHexString(incomingApsFrame.getSourceAddress(), 2), zigbeeMessage));
                 }
             } catch (Exception e) {
                 logger.warn(String.format("Caught exception while processing zigbee message: {%s}", incomingApsFrame.toString()), e);
@@ -18,9 +18,14 @@
  */
 package com.parrotha.integration.zigbee;
 
+import com.parrotha.zigbee.ZigBeeImpl;
+import com.parrotha.zigbee.ZigbeeMessage;
 import com.zsmartsystems.zigbee.aps.ZigBeeApsFrame;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -81,6 +86,34 @@ public class ApsFrameTransformerTest {
         assertEquals("read attr - raw: E6A20104020A0000296407, dni: E6A2, endpoint: 01, cluster: 0402, size: 0A, attrId: 0000, encoding: 29, command: 0A, value: 6407", transformedStr);
     }
 
+    @Test
+    public void testMultipleAttributeReport() {
+        ZigBeeApsFrame apsFrame = new ZigBeeApsFrame();
+        apsFrame.setSourceAddress(0x1B84);
+        apsFrame.setSourceEndpoint(0x01);
+        apsFrame.setCluster(0x0201);
+        apsFrame.setProfile(0x0104);
+        apsFrame.setPayload(new int[]{0x1C, 0x39, 0x10, 0xBC, 0x0A, 0x23, 0x00, 0x30, 0x00, 0x24, 0x00, 0x21, 0x00, 0x00, 0x02, 0x01, 0x21, 0x00, 0x00});
+
+        ZigbeeMessage message = ApsFrameTransformer.toZigbeeMessage(apsFrame);
+        assertEquals(3, message.getAttributeCount());
+        assertEquals(0x0023, message.getAttributeId(0));
+        assertEquals(0x0024, message.getAttributeId(1));
+        assertEquals(0x0102, message.getAttributeId(2));
+        assertEquals(0x21, message.getEncoding(2));
+
+        Map<String, Object> descriptionMap = message.toDescriptionMap();
+        assertEquals("00", descriptionMap.get("value"));
+        List<Map<String, Object>> additionalAttrs = (List<Map<String, Object>>) descriptionMap.get("additionalAttrs");
+        assertEquals(2, additionalAttrs.size());
+        assertEquals("0024", additionalAttrs.get(0).get("attrId"));
+        assertEquals("0000", additionalAttrs.get(0).get("value"));
+        assertEquals("0102", additionalAttrs.get(1).get("attrId"));
+
+        // the string description is parsed the same way
+        assertEquals(descriptionMap, ZigBeeImpl.parseDescriptionAsMap(message.getDescription()));
+    }
+
     @Test
     public void testCatchAllResponse() {
         ZigBeeApsFrame apsFrame = new ZigBeeApsFrame();
@@ -19,21 +19,36 @@
 package com.parrotha.zwave;
 
 import com.parrotha.internal.utils.HexUtils;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
+ * <p>
+ * Commands implement either the byte[] or the List&lt;Short&gt; payload methods, the other pair converts.
  */
 public abstract class Command {
     public abstract String getCMD();
 
-    public abstract List<Short> getPayload();
+    public byte[] getPayloadBytes() {
+        return PayloadUtils.toByteArray(getPayload());
+    }
+
+    public void setPayloadBytes(byte[] payload) {
+        setPayload(payload == null ? null : PayloadUtils.toShortList(payload));
+    }
 
-    public abstract void setPayload(List<Short> payload);
+    public List<Short> getPayload() {
+        return PayloadUtils.toShortList(getPayloadBytes());
+    }
+
+    public void setPayload(List<Short> payload) {
+        setPayloadBytes(payload == null ? null : PayloadUtils.toByteArray(payload));
+    }
 
     public String format() {
-        return getCMD() + HexUtils.shortListToHexString(getPayload());
+        return getCMD() + PayloadUtils.toHexString(getPayloadBytes());
     }
 
     public Short getCommandClassIdentifier() {
@@ -0,0 +1,439 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zwave;
+
+import java.util.function.Supplier;
+
+/**
+ * Note: This code is autogenerated, changes will be overwritten.
+ * <p>
+ * Constructors of all commands indexed by command class, command and version.
+ */
+public final class ZWaveCommandTable {
+    private static final Supplier<?>[][][] COMMANDS = new Supplier<?>[256][][];
+
+    static {
+        register(0x20, 0x01,
+                null,
+                com.parrotha.zwave.commands.basicv1.BasicSet::new,
+                com.parrotha.zwave.commands.basicv2.BasicSet::new);
+        register(0x20, 0x02,
+                null,
+                com.parrotha.zwave.commands.basicv1.BasicGet::new,
+                com.parrotha.zwave.commands.basicv2.BasicGet::new);
+        register(0x20, 0x03,
+                null,
+                com.parrotha.zwave.commands.basicv1.BasicReport::new,
+                com.parrotha.zwave.commands.basicv2.BasicReport::new);
+        register(0x22, 0x01,
+                null,
+                com.parrotha.zwave.commands.applicationstatusv1.ApplicationBusy::new);
+        register(0x22, 0x02,
+                null,
+                com.parrotha.zwave.commands.applicationstatusv1.ApplicationRejectedRequest::new);
+        register(0x23, 0x02,
+                null,
+                null,
+                com.parrotha.zwave.commands.zipv2.ZipPacket::new,
+                com.parrotha.zwave.commands.zipv3.ZipPacket::new,
+                com.parrotha.zwave.commands.zipv4.ZipPacket::new);
+        register(0x23, 0x03,
+                null,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.zipv4.ZipKeepAlive::new);
+        register(0x25, 0x01,
+                null,
+                com.parrotha.zwave.commands.switchbinaryv1.SwitchBinarySet::new,
+                com.parrotha.zwave.commands.switchbinaryv2.SwitchBinarySet::new);
+        register(0x25, 0x02,
+                null,
+                com.parrotha.zwave.commands.switchbinaryv1.SwitchBinaryGet::new,
+                com.parrotha.zwave.commands.switchbinaryv2.SwitchBinaryGet::new);
+        register(0x25, 0x03,
+                null,
+                com.parrotha.zwave.commands.switchbinaryv1.SwitchBinaryReport::new,
+                com.parrotha.zwave.commands.switchbinaryv2.SwitchBinaryReport::new);
+        register(0x26, 0x01,
+                null,
+                com.parrotha.zwave.commands.switchmultilevelv1.SwitchMultilevelSet::new,
+                com.parrotha.zwave.commands.switchmultilevelv2.SwitchMultilevelSet::new,
+                com.parrotha.zwave.commands.switchmultilevelv3.SwitchMultilevelSet::new);
+        register(0x26, 0x02,
+                null,
+                com.parrotha.zwave.commands.switchmultilevelv1.SwitchMultilevelGet::new,
+                com.parrotha.zwave.commands.switchmultilevelv2.SwitchMultilevelGet::new,
+                com.parrotha.zwave.commands.switchmultilevelv3.SwitchMultilevelGet::new);
+        register(0x26, 0x03,
+                null,
+                com.parrotha.zwave.commands.switchmultilevelv1.SwitchMultilevelReport::new,
+                com.parrotha.zwave.commands.switchmultilevelv2.SwitchMultilevelReport::new,
+                com.parrotha.zwave.commands.switchmultilevelv3.SwitchMultilevelReport::new);
+        register(0x34, 0x01,
+                null,
+                com.parrotha.zwave.commands.networkmanagementinclusionv1.NodeAdd::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv2.NodeAdd::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv3.NodeAdd::new);
+        register(0x34, 0x02,
+                null,
+                com.parrotha.zwave.commands.networkmanagementinclusionv1.NodeAddStatus::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv2.NodeAddStatus::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv3.NodeAddStatus::new);
+        register(0x34, 0x03,
+                null,
+                com.parrotha.zwave.commands.networkmanagementinclusionv1.NodeRemove::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv2.NodeRemove::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv3.NodeRemove::new);
+        register(0x34, 0x04,
+                null,
+                com.parrotha.zwave.commands.networkmanagementinclusionv1.NodeRemoveStatus::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv2.NodeRemoveStatus::new,
+                com.parrotha.zwave.commands.networkmanagementinclusionv3.NodeRemoveStatus::new);
+        register(0x44, 0x01,
+                null,
+                com.parrotha.zwave.commands.thermostatfanmodev1.ThermostatFanModeSet::new,
+                com.parrotha.zwave.commands.thermostatfanmodev2.ThermostatFanModeSet::new);
+        register(0x44, 0x02,
+                null,
+                com.parrotha.zwave.commands.thermostatfanmodev1.ThermostatFanModeGet::new,
+                com.parrotha.zwave.commands.thermostatfanmodev2.ThermostatFanModeGet::new);
+        register(0x44, 0x03,
+                null,
+                com.parrotha.zwave.commands.thermostatfanmodev1.ThermostatFanModeReport::new,
+                com.parrotha.zwave.commands.thermostatfanmodev2.ThermostatFanModeReport::new);
+        register(0x44, 0x04,
+                null,
+                com.parrotha.zwave.commands.thermostatfanmodev1.ThermostatFanModeSupportedGet::new,
+                com.parrotha.zwave.commands.thermostatfanmodev2.ThermostatFanModeSupportedGet::new);
+        register(0x44, 0x05,
+                null,
+                com.parrotha.zwave.commands.thermostatfanmodev1.ThermostatFanModeSupportedReport::new,
+                com.parrotha.zwave.commands.thermostatfanmodev2.ThermostatFanModeSupportedReport::new);
+        register(0x4D, 0x01,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.LearnModeSet::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.LearnModeSet::new);
+        register(0x4D, 0x02,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.LearnModeSetStatus::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.LearnModeSetStatus::new);
+        register(0x4D, 0x03,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.NetworkUpdateRequest::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.NetworkUpdateRequest::new);
+        register(0x4D, 0x04,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.NetworkUpdateRequestStatus::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.NetworkUpdateRequestStatus::new);
+        register(0x4D, 0x05,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.NodeInformationSend::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.NodeInformationSend::new);
+        register(0x4D, 0x06,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.DefaultSet::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.DefaultSet::new);
+        register(0x4D, 0x07,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv1.DefaultSetComplete::new,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.DefaultSetComplete::new);
+        register(0x4D, 0x08,
+                null,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.DSKGet::new);
+        register(0x4D, 0x09,
+                null,
+                null,
+                com.parrotha.zwave.commands.networkmanagementbasicv2.DSKReport::new);
+        register(0x52, 0x01,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv1.NodeListGet::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv2.NodeListGet::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.NodeListGet::new);
+        register(0x52, 0x02,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv1.NodeListReport::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv2.NodeListReport::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.NodeListReport::new);
+        register(0x52, 0x03,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv1.NodeInfoCachedGet::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv2.NodeInfoCachedGet::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.NodeInfoCachedGet::new);
+        register(0x52, 0x04,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv1.NodeInfoCachedReport::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv2.NodeInfoCachedReport::new,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.NodeInfoCachedReport::new);
+        register(0x52, 0x0B,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.FailedNodeListGet::new);
+        register(0x52, 0x0C,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.networkmanagementproxyv3.FailedNodeListReport::new);
+        register(0x56, 0x01,
+                null,
+                com.parrotha.zwave.commands.crc16encapv1.Crc16Encap::new);
+        register(0x58, 0x01,
+                null,
+                com.parrotha.zwave.commands.zipndv1.ZipNodeAdvertisement::new);
+        register(0x58, 0x03,
+                null,
+                com.parrotha.zwave.commands.zipndv1.ZipNodeSolicitation::new);
+        register(0x58, 0x04,
+                null,
+                com.parrotha.zwave.commands.zipndv1.ZipInvNodeSolicitation::new);
+        register(0x5F, 0x08,
+                null,
+                com.parrotha.zwave.commands.zipgatewayv1.UnsolicitedDestinationSet::new);
+        register(0x5F, 0x09,
+                null,
+                com.parrotha.zwave.commands.zipgatewayv1.UnsolicitedDestinationGet::new);
+        register(0x5F, 0x0A,
+                null,
+                com.parrotha.zwave.commands.zipgatewayv1.UnsolicitedDestinationReport::new);
+        register(0x62, 0x01,
+                null,
+                com.parrotha.zwave.commands.doorlockv1.DoorLockOperationSet::new);
+        register(0x62, 0x02,
+                null,
+                com.parrotha.zwave.commands.doorlockv1.DoorLockOperationGet::new);
+        register(0x62, 0x03,
+                null,
+                com.parrotha.zwave.commands.doorlockv1.DoorLockOperationReport::new);
+        register(0x63, 0x01,
+                null,
+                com.parrotha.zwave.commands.usercodev1.UserCodeSet::new,
+                com.parrotha.zwave.commands.usercodev2.UserCodeSet::new);
+        register(0x63, 0x02,
+                null,
+                com.parrotha.zwave.commands.usercodev1.UserCodeGet::new,
+                com.parrotha.zwave.commands.usercodev2.UserCodeGet::new);
+        register(0x63, 0x03,
+                null,
+                com.parrotha.zwave.commands.usercodev1.UserCodeReport::new,
+                com.parrotha.zwave.commands.usercodev2.UserCodeReport::new);
+        register(0x63, 0x04,
+                null,
+                com.parrotha.zwave.commands.usercodev1.UsersNumberGet::new,
+                com.parrotha.zwave.commands.usercodev2.UsersNumberGet::new);
+        register(0x63, 0x05,
+                null,
+                com.parrotha.zwave.commands.usercodev1.UsersNumberReport::new,
+                com.parrotha.zwave.commands.usercodev2.UsersNumberReport::new);
+        register(0x63, 0x06,
+                null,
+                null,
+                com.parrotha.zwave.commands.usercodev2.UserCodeCapabilitiesGet::new);
+        register(0x70, 0x04,
+                null,
+                com.parrotha.zwave.commands.configurationv1.ConfigurationSet::new,
+                com.parrotha.zwave.commands.configurationv2.ConfigurationSet::new);
+        register(0x70, 0x05,
+                null,
+                com.parrotha.zwave.commands.configurationv1.ConfigurationGet::new,
+                com.parrotha.zwave.commands.configurationv2.ConfigurationGet::new);
+        register(0x70, 0x06,
+                null,
+                com.parrotha.zwave.commands.configurationv1.ConfigurationReport::new,
+                com.parrotha.zwave.commands.configurationv2.ConfigurationReport::new);
+        register(0x71, 0x04,
+                null,
+                com.parrotha.zwave.commands.alarmv1.AlarmGet::new,
+                com.parrotha.zwave.commands.alarmv2.AlarmGet::new);
+        register(0x71, 0x05,
+                null,
+                com.parrotha.zwave.commands.alarmv1.AlarmReport::new,
+                com.parrotha.zwave.commands.alarmv2.AlarmReport::new);
+        register(0x71, 0x06,
+                null,
+                null,
+                com.parrotha.zwave.commands.alarmv2.AlarmSet::new);
+        register(0x71, 0x07,
+                null,
+                null,
+                com.parrotha.zwave.commands.alarmv2.AlarmTypeSupportedGet::new);
+        register(0x71, 0x08,
+                null,
+                null,
+                com.parrotha.zwave.commands.alarmv2.AlarmTypeSupportedReport::new);
+        register(0x72, 0x04,
+                null,
+                com.parrotha.zwave.commands.manufacturerspecificv1.ManufacturerSpecificGet::new,
+                com.parrotha.zwave.commands.manufacturerspecificv2.ManufacturerSpecificGet::new);
+        register(0x72, 0x05,
+                null,
+                com.parrotha.zwave.commands.manufacturerspecificv1.ManufacturerSpecificReport::new,
+                com.parrotha.zwave.commands.manufacturerspecificv2.ManufacturerSpecificReport::new);
+        register(0x72, 0x06,
+                null,
+                null,
+                com.parrotha.zwave.commands.manufacturerspecificv2.DeviceSpecificGet::new);
+        register(0x72, 0x07,
+                null,
+                null,
+                com.parrotha.zwave.commands.manufacturerspecificv2.DeviceSpecificReport::new);
+        register(0x80, 0x02,
+                null,
+                com.parrotha.zwave.commands.batteryv1.BatteryGet::new);
+        register(0x80, 0x03,
+                null,
+                com.parrotha.zwave.commands.batteryv1.BatteryReport::new);
+        register(0x82, 0x01,
+                null,
+                com.parrotha.zwave.commands.hailv1.Hail::new);
+        register(0x85, 0x01,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationSet::new,
+                com.parrotha.zwave.commands.associationv2.AssociationSet::new,
+                com.parrotha.zwave.commands.associationv3.AssociationSet::new);
+        register(0x85, 0x02,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationGet::new,
+                com.parrotha.zwave.commands.associationv2.AssociationGet::new,
+                com.parrotha.zwave.commands.associationv3.AssociationGet::new);
+        register(0x85, 0x03,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationReport::new,
+                com.parrotha.zwave.commands.associationv2.AssociationReport::new,
+                com.parrotha.zwave.commands.associationv3.AssociationReport::new);
+        register(0x85, 0x04,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationRemove::new,
+                com.parrotha.zwave.commands.associationv2.AssociationRemove::new,
+                com.parrotha.zwave.commands.associationv3.AssociationRemove::new);
+        register(0x85, 0x05,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationGroupingsGet::new,
+                com.parrotha.zwave.commands.associationv2.AssociationGroupingsGet::new,
+                com.parrotha.zwave.commands.associationv3.AssociationGroupingsGet::new);
+        register(0x85, 0x06,
+                null,
+                com.parrotha.zwave.commands.associationv1.AssociationGroupingsReport::new,
+                com.parrotha.zwave.commands.associationv2.AssociationGroupingsReport::new,
+                com.parrotha.zwave.commands.associationv3.AssociationGroupingsReport::new);
+        register(0x85, 0x0B,
+                null,
+                null,
+                com.parrotha.zwave.commands.associationv2.AssociationSpecificGroupGet::new,
+                com.parrotha.zwave.commands.associationv3.AssociationSpecificGroupGet::new);
+        register(0x85, 0x0C,
+                null,
+                null,
+                com.parrotha.zwave.commands.associationv2.AssociationSpecificGroupReport::new,
+                com.parrotha.zwave.commands.associationv3.AssociationSpecificGroupReport::new);
+        register(0x86, 0x11,
+                null,
+                com.parrotha.zwave.commands.versionv1.VersionGet::new,
+                com.parrotha.zwave.commands.versionv2.VersionGet::new,
+                com.parrotha.zwave.commands.versionv3.VersionGet::new);
+        register(0x86, 0x12,
+                null,
+                com.parrotha.zwave.commands.versionv1.VersionReport::new,
+                com.parrotha.zwave.commands.versionv2.VersionReport::new,
+                com.parrotha.zwave.commands.versionv3.VersionReport::new);
+        register(0x86, 0x13,
+                null,
+                com.parrotha.zwave.commands.versionv1.VersionCommandClassGet::new,
+                com.parrotha.zwave.commands.versionv2.VersionCommandClassGet::new,
+                com.parrotha.zwave.commands.versionv3.VersionCommandClassGet::new);
+        register(0x86, 0x14,
+                null,
+                com.parrotha.zwave.commands.versionv1.VersionCommandClassReport::new,
+                com.parrotha.zwave.commands.versionv2.VersionCommandClassReport::new,
+                com.parrotha.zwave.commands.versionv3.VersionCommandClassReport::new);
+        register(0x86, 0x15,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.versionv3.VersionCapabilitiesGet::new);
+        register(0x86, 0x16,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.versionv3.VersionCapabilitiesReport::new);
+        register(0x86, 0x17,
+                null,
+                null,
+                null,
+                com.parrotha.zwave.commands.versionv3.VersionZWaveSoftwareGet::new);
+        register(0x8A, 0x01,
+                null,
+                com.parrotha.zwave.commands.timev1.TimeGet::new);
+        register(0x8A, 0x02,
+                null,
+                com.parrotha.zwave.commands.timev1.TimeReport::new);
+        register(0x8A, 0x03,
+                null,
+                com.parrotha.zwave.commands.timev1.DateGet::new);
+        register(0x8A, 0x04,
+                null,
+                com.parrotha.zwave.commands.timev1.DateReport::new);
+        register(0x98, 0x03,
+                null,
+                com.parrotha.zwave.commands.securityv1.SecurityCommandsSupportedReport::new);
+        register(0x98, 0x07,
+                null,
+                com.parrotha.zwave.commands.securityv1.NetworkKeyVerify::new);
+        register(0x98, 0x81,
+                null,
+                com.parrotha.zwave.commands.securityv1.SecurityMessageEncapsulation::new);
+    }
+
+    private ZWaveCommandTable() {
+    }
+
+    private static void register(int commandClass, int command, Supplier<?>... versions) {
+        if (COMMANDS[commandClass] == null) {
+            COMMANDS[commandClass] = new Supplier<?>[256][];
+        }
+        COMMANDS[commandClass][command] = versions;
+    }
+
+    private static Supplier<?>[] getVersions(int commandClass, int command) {
+        if (commandClass < 0 || commandClass > 0xFF || command < 0 || command > 0xFF) return null;
+        Supplier<?>[][] commands = COMMANDS[commandClass];
+        return commands == null ? null : commands[command];
+    }
+
+    /**
+     * @param version command class version, 0 or less for the latest version
+     * @return a new command or null if there is no implementation
+     */
+    public static Command create(int commandClass, int command, int version) {
+        Supplier<?>[] versions = getVersions(commandClass, command);
+        if (versions == null) return null;
+        if (version <= 0) version = versions.length - 1;
+        if (version >= versions.length || versions[version] == null) return null;
+        return (Command) versions[version].get();
+    }
+
+    /**
+     * @return the latest version of the command or 0 if there is no implementation
+     */
+    public static int getMaxVersion(int commandClass, int command) {
+        Supplier<?>[] versions = getVersions(commandClass, command);
+        return versions == null ? 0 : versions.length - 1;
+    }
+}
@@ -18,7 +18,7 @@
  */
 package com.parrotha.zwave;
 
-import com.parrotha.internal.utils.HexUtils;
+import com.parrotha.zwave.internal.PayloadUtils;
 import groovy.lang.GroovyObjectSupport;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -33,42 +33,59 @@ import java.util.Map;
 public class Zwave extends GroovyObjectSupport {
     private static final Logger logger = LoggerFactory.getLogger(com.parrotha.zwave.Zwave.class);
 
+    private static final String COMMAND_PREFIX = "command:";
+    private static final String PAYLOAD_PREFIX = "payload:";
+
+    /**
+     * Parse a description like "zw device: 0B, command: 2603, payload: 00 00 00" into a command.
+     *
+     * @param commandVersions map of command class to version, the latest version is used for missing command classes
+     * @return the command or null if the command is not implemented
+     */
     public Command parse(String description, Map commandVersions) {
-        String[] descriptionArray = description.split(",");
-        if (descriptionArray.length == 3) {
-            String payloadString = descriptionArray[2].substring("payload: ".length()).trim();
-            if (descriptionArray[1].trim().startsWith("command:")) {
-                String command = descriptionArray[1].trim().substring("command: ".length()).trim();
-                ZWaveCommandEnum zWaveCommand = ZWaveCommandEnum.getZWaveClass(command);
-                if (zWaveCommand != null) {
-                    try {
-                        int version = zWaveCommand.getMaxVersion();
-                        if (commandVersions.containsKey(zWaveCommand.getCommandClass())) {
-                            version = (int) commandVersions.get(zWaveCommand.getCommandClass());
-                        }
-                        Class<? extends Command> commandClazz = Class.forName(
-                                        "com.parrotha.zwave.commands." + zWaveCommand.getPackageName() + "v" + version + "." + zWaveCommand.getClassName())
-                                .asSubclass(Command.class);
-                        Command cmd = commandClazz.getDeclaredConstructor().newInstance();
-                        if (StringUtils.isNotBlank(payloadString)) {
-                            cmd.setPayload(HexUtils.hexStringToShortList(payloadString));
-                        }
-                        return cmd;
-                    } catch (ClassNotFoundException classNotFoundException) {
-                        classNotFoundException.printStackTrace();
-                    } catch (InstantiationException instantiationException) {
-                        instantiationException.printStackTrace();
-                    } catch (InvocationTargetException e) {
-                        e.printStackTrace();
-                    } catch (NoSuchMethodException e) {
-                        e.printStackTrace();
-                    } catch (IllegalAccessException illegalAccessException) {
-                        illegalAccessException.printStackTrace();
-                    }
+        if (description == null) return null;
+        int commandIndex = description.indexOf(COMMAND_PREFIX);
+        if (commandIndex < 0) return null;
+        int payloadIndex = description.indexOf(PAYLOAD_PREFIX, commandIndex);
+        if (payloadIndex < 0) return null;
+
+        int commandStart = commandIndex + COMMAND_PREFIX.length();
+        while (commandStart < payloadIndex && Character.isWhitespace(description.charAt(commandStart))) {
+            commandStart++;
+        }
+        if (commandStart + 4 > payloadIndex) return null;
+        int commandClass = parseHexByte(description, commandStart);
+        int command = parseHexByte(description, commandStart + 2);
+        if (commandClass < 0 || command < 0) return null;
+
+        int version = 0;
+        if (commandVersions != null) {
+            Object commandVersion = commandVersions.get(commandClass);
+            if (commandVersion instanceof Number) {
+                version = ((Number) commandVersion).intValue();
+            }
+        }
+
+        Command cmd = ZWaveCommandTable.create(commandClass, command, version);
+        if (cmd != null) {
+            try {
+                byte[] payload = PayloadUtils.hexToBytes(description, payloadIndex + PAYLOAD_PREFIX.length(), description.length());
+                if (payload.length > 0) {
+                    cmd.setPayloadBytes(payload);
                 }
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unable to parse Z-Wave payload: " + description, e);
+                return null;
             }
         }
-        return null;
+        return cmd;
+    }
+
+    private static int parseHexByte(String s, int index) {
+        int high = Character.digit(s.charAt(index), 16);
+        int low = Character.digit(s.charAt(index + 1), 16);
+        if (high < 0 || low < 0) return -1;
+        return (high << 4) | low;
     }
 
     @Override
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.alarmv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -51,17 +47,20 @@ public class AlarmReport extends Command {
         this.alarmLevel = alarmLevel;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(alarmType, alarmLevel).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = alarmType.byteValue();
+        payload[1] = alarmLevel.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            alarmType = payload.get(0);
+        if (payload.length > 0) {
+            alarmType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            alarmLevel = payload.get(1);
+        if (payload.length > 1) {
+            alarmLevel = (short) (payload[1] & 0xFF);
         }
     }
 
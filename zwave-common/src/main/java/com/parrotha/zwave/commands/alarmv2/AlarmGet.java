@@ -18,10 +18,6 @@
  */
 package com.parrotha.zwave.commands.alarmv2;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -59,17 +55,20 @@ public class AlarmGet extends com.parrotha.zwave.commands.alarmv1.AlarmGet {
         this.zwaveAlarmType = zwaveAlarmType;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(alarmType, zwaveAlarmType).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = alarmType.byteValue();
+        payload[1] = zwaveAlarmType.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            alarmType = payload.get(0);
+        if (payload.length > 0) {
+            alarmType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            zwaveAlarmType = payload.get(1);
+        if (payload.length > 1) {
+            zwaveAlarmType = (short) (payload[1] & 0xFF);
         }
     }
 
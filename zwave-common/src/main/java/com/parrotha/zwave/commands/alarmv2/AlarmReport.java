@@ -18,9 +18,9 @@
  */
 package com.parrotha.zwave.commands.alarmv2;
 
+import com.parrotha.zwave.internal.PayloadUtils;
+
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -117,37 +117,44 @@ public class AlarmReport extends com.parrotha.zwave.commands.alarmv1.AlarmReport
         this.eventParameter = eventParameter;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(alarmType, alarmLevel, zensorNetSourceNodeId, zwaveAlarmStatus, zwaveAlarmType, zwaveAlarmEvent, numberOfEventParameters).collect(Collectors.toList());
-        retList.addAll(eventParameter);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[7 + PayloadUtils.size(eventParameter)];
+        payload[0] = alarmType.byteValue();
+        payload[1] = alarmLevel.byteValue();
+        payload[2] = zensorNetSourceNodeId.byteValue();
+        payload[3] = zwaveAlarmStatus.byteValue();
+        payload[4] = zwaveAlarmType.byteValue();
+        payload[5] = zwaveAlarmEvent.byteValue();
+        payload[6] = numberOfEventParameters.byteValue();
+        PayloadUtils.put(payload, 7, eventParameter);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            alarmType = payload.get(0);
+        if (payload.length > 0) {
+            alarmType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            alarmLevel = payload.get(1);
+        if (payload.length > 1) {
+            alarmLevel = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            zensorNetSourceNodeId = payload.get(2);
+        if (payload.length > 2) {
+            zensorNetSourceNodeId = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            zwaveAlarmStatus = payload.get(3);
+        if (payload.length > 3) {
+            zwaveAlarmStatus = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            zwaveAlarmType = payload.get(4);
+        if (payload.length > 4) {
+            zwaveAlarmType = (short) (payload[4] & 0xFF);
         }
-        if (payload.size() > 5) {
-            zwaveAlarmEvent = payload.get(5);
+        if (payload.length > 5) {
+            zwaveAlarmEvent = (short) (payload[5] & 0xFF);
         }
-        if (payload.size() > 6) {
-            numberOfEventParameters = payload.get(6);
+        if (payload.length > 6) {
+            numberOfEventParameters = (short) (payload[6] & 0xFF);
         }
-        if (payload.size() > 7) {
-            eventParameter = payload.subList(7, (payload.size() - 1));
+        if (payload.length > 7) {
+            eventParameter = PayloadUtils.toShortList(payload, 7, payload.length);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.alarmv2;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -65,17 +61,20 @@ public class AlarmSet extends Command {
         this.zwaveAlarmStatus = zwaveAlarmStatus;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(zwaveAlarmType, zwaveAlarmStatus).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = zwaveAlarmType.byteValue();
+        payload[1] = zwaveAlarmStatus.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            zwaveAlarmType = payload.get(0);
+        if (payload.length > 0) {
+            zwaveAlarmType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            zwaveAlarmStatus = payload.get(1);
+        if (payload.length > 1) {
+            zwaveAlarmStatus = (short) (payload[1] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.applicationstatusv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -55,17 +51,20 @@ public class ApplicationBusy extends Command {
         this.waitTime = waitTime;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(status, waitTime).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = status.byteValue();
+        payload[1] = waitTime.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            status = payload.get(0);
+        if (payload.length > 0) {
+            status = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            waitTime = payload.get(1);
+        if (payload.length > 1) {
+            waitTime = (short) (payload[1] & 0xFF);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.associationv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -69,25 +68,28 @@ public class AssociationReport extends Command {
         this.nodeId = nodeId;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(groupingIdentifier, maxNodesSupported, reportsToFollow).collect(Collectors.toList());
-        retList.addAll(nodeId);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[3 + PayloadUtils.size(nodeId)];
+        payload[0] = groupingIdentifier.byteValue();
+        payload[1] = maxNodesSupported.byteValue();
+        payload[2] = reportsToFollow.byteValue();
+        PayloadUtils.put(payload, 3, nodeId);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            groupingIdentifier = payload.get(0);
+        if (payload.length > 0) {
+            groupingIdentifier = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            maxNodesSupported = payload.get(1);
+        if (payload.length > 1) {
+            maxNodesSupported = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            reportsToFollow = payload.get(2);
+        if (payload.length > 2) {
+            reportsToFollow = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            nodeId = payload.subList(3, (payload.size() - 1));
+        if (payload.length > 3) {
+            nodeId = PayloadUtils.toShortList(payload, 3, payload.length);
         }
     }
 
@@ -19,11 +19,10 @@
 package com.parrotha.zwave.commands.associationv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -52,19 +51,20 @@ public class AssociationSet extends Command {
         this.nodeId = nodeId;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(groupingIdentifier).collect(Collectors.toList());
-        retList.addAll(nodeId);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1 + PayloadUtils.size(nodeId)];
+        payload[0] = groupingIdentifier.byteValue();
+        PayloadUtils.put(payload, 1, nodeId);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            groupingIdentifier = payload.get(0);
+        if (payload.length > 0) {
+            groupingIdentifier = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            nodeId = payload.subList(1, (payload.size() - 1));
+        if (payload.length > 1) {
+            nodeId = PayloadUtils.toShortList(payload, 1, payload.length);
         }
     }
 
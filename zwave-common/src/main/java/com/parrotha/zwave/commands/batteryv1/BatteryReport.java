@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.batteryv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -42,14 +38,16 @@ public class BatteryReport extends Command {
         this.batteryLevel = batteryLevel;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(batteryLevel).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1];
+        payload[0] = batteryLevel.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            batteryLevel = payload.get(0);
+        if (payload.length > 0) {
+            batteryLevel = (short) (payload[0] & 0xFF);
         }
     }
 
@@ -19,11 +19,10 @@
 package com.parrotha.zwave.commands.configurationv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.math.BigInteger;
+import java.util.List;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -70,26 +69,28 @@ public class ConfigurationSet extends Command {
         this.configurationValue = configurationValue;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((defaultValue == true ? (1 << 7) : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((defaultValue == true ? (1 << 7) : 0) | 
                 (size & 7));
 
-        List<Short> retList = Stream.of(parameterNumber, data1).collect(Collectors.toList());
-        retList.addAll(configurationValue);
-        return retList;
+        byte[] payload = new byte[2 + PayloadUtils.size(configurationValue)];
+        payload[0] = parameterNumber.byteValue();
+        payload[1] = data1;
+        PayloadUtils.put(payload, 2, configurationValue);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            parameterNumber = payload.get(0);
+        if (payload.length > 0) {
+            parameterNumber = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            defaultValue = ((payload.get(1) >> 7) & 1) == 1;
-            size = (short) (payload.get(1) & 7);
+        if (payload.length > 1) {
+            defaultValue = ((payload[1] >> 7) & 1) == 1;
+            size = (short) (payload[1] & 7);
         }
-        if (payload.size() > 2) {
-            configurationValue = payload.subList(2, (payload.size() - 1));
+        if (payload.length > 2) {
+            configurationValue = PayloadUtils.toShortList(payload, 2, payload.length);
         }
     }
 
@@ -19,11 +19,9 @@
 package com.parrotha.zwave.commands.crc16encapv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
-import com.parrotha.internal.utils.HexUtils;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -70,26 +68,28 @@ public class Crc16Encap extends Command {
         this.checksum = checksum;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(commandClass, command).collect(Collectors.toList());
-        retList.addAll(data);
-        retList.addAll(HexUtils.integerToShortList(checksum, 2));
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2 + PayloadUtils.size(data) + PayloadUtils.integerSize(checksum, 2)];
+        payload[0] = commandClass.byteValue();
+        payload[1] = command.byteValue();
+        int index = PayloadUtils.put(payload, 2, data);
+        PayloadUtils.putInteger(payload, index, checksum, 2);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            commandClass = payload.get(0);
+        if (payload.length > 0) {
+            commandClass = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            command = payload.get(1);
+        if (payload.length > 1) {
+            command = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 4) {
-            data = payload.subList(2, (payload.size() - 3));
+        if (payload.length > 4) {
+            data = PayloadUtils.toShortList(payload, 2, (payload.length - 2));
         }
-        if (payload.size() > 3) {
-            checksum = HexUtils.shortListToInteger(payload.subList((payload.size() - 2), (payload.size() - 1)));
+        if (payload.length > 3) {
+            checksum = PayloadUtils.toInteger(payload, (payload.length - 2), payload.length);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.doorlockv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -95,30 +91,36 @@ public class DoorLockOperationReport extends Command {
         this.lockTimeoutSeconds = lockTimeoutSeconds;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((insideDoorHandlesMode & 15) | 
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((insideDoorHandlesMode & 15) | 
                 ((outsideDoorHandlesMode & 15) << 4));
 
-        return Stream.of(doorLockMode, data1, doorCondition, lockTimeoutMinutes, lockTimeoutSeconds).collect(Collectors.toList());
+        byte[] payload = new byte[5];
+        payload[0] = doorLockMode.byteValue();
+        payload[1] = data1;
+        payload[2] = doorCondition.byteValue();
+        payload[3] = lockTimeoutMinutes.byteValue();
+        payload[4] = lockTimeoutSeconds.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            doorLockMode = payload.get(0);
+        if (payload.length > 0) {
+            doorLockMode = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            insideDoorHandlesMode = (short) (payload.get(1) & 15);
-            outsideDoorHandlesMode = (short) ((payload.get(1) & 240) >> 4);
+        if (payload.length > 1) {
+            insideDoorHandlesMode = (short) (payload[1] & 15);
+            outsideDoorHandlesMode = (short) ((payload[1] & 240) >> 4);
         }
-        if (payload.size() > 2) {
-            doorCondition = payload.get(2);
+        if (payload.length > 2) {
+            doorCondition = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            lockTimeoutMinutes = payload.get(3);
+        if (payload.length > 3) {
+            lockTimeoutMinutes = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            lockTimeoutSeconds = payload.get(4);
+        if (payload.length > 4) {
+            lockTimeoutSeconds = (short) (payload[4] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.doorlockv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -50,14 +46,16 @@ public class DoorLockOperationSet extends Command {
         this.doorLockMode = doorLockMode;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(doorLockMode).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1];
+        payload[0] = doorLockMode.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            doorLockMode = payload.get(0);
+        if (payload.length > 0) {
+            doorLockMode = (short) (payload[0] & 0xFF);
         }
     }
 
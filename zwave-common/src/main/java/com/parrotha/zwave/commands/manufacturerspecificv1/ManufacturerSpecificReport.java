@@ -19,10 +19,7 @@
 package com.parrotha.zwave.commands.manufacturerspecificv1;
 
 import com.parrotha.zwave.Command;
-
-import com.parrotha.internal.utils.HexUtils;
-import java.util.ArrayList;
-import java.util.List;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -60,24 +57,24 @@ public class ManufacturerSpecificReport extends Command {
         this.productTypeId = productTypeId;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = new ArrayList<>();
-        retList.addAll(HexUtils.integerToShortList(manufacturerId, 2));
-        retList.addAll(HexUtils.integerToShortList(productId, 2));
-        retList.addAll(HexUtils.integerToShortList(productTypeId, 2));
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[0 + PayloadUtils.integerSize(manufacturerId, 2) + PayloadUtils.integerSize(productId, 2) + PayloadUtils.integerSize(productTypeId, 2)];
+        int index = PayloadUtils.putInteger(payload, 0, manufacturerId, 2);
+        index = PayloadUtils.putInteger(payload, index, productId, 2);
+        PayloadUtils.putInteger(payload, index, productTypeId, 2);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 1) {
-            manufacturerId = HexUtils.shortListToInteger(payload.subList(0, 2));
+        if (payload.length > 1) {
+            manufacturerId = PayloadUtils.toInteger(payload, 0, 2);
         }
-        if (payload.size() > 3) {
-            productId = HexUtils.shortListToInteger(payload.subList(2, 4));
+        if (payload.length > 3) {
+            productId = PayloadUtils.toInteger(payload, 2, 4);
         }
-        if (payload.size() > 5) {
-            productTypeId = HexUtils.shortListToInteger(payload.subList(4, 6));
+        if (payload.length > 5) {
+            productTypeId = PayloadUtils.toInteger(payload, 4, 6);
         }
     }
 
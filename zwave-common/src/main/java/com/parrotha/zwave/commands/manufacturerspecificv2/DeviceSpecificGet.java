@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.manufacturerspecificv2;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -46,16 +42,18 @@ public class DeviceSpecificGet extends Command {
         this.deviceIdType = deviceIdType;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((deviceIdType & 7));
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((deviceIdType & 7));
 
-        return Stream.of(data0).collect(Collectors.toList());
+        byte[] payload = new byte[1];
+        payload[0] = data0;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            deviceIdType = (short) (payload.get(0) & 7);
+        if (payload.length > 0) {
+            deviceIdType = (short) (payload[0] & 7);
         }
     }
 
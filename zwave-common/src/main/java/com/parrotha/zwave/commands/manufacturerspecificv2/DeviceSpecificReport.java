@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.manufacturerspecificv2;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -75,27 +74,29 @@ public class DeviceSpecificReport extends Command {
         this.deviceIdData = deviceIdData;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((deviceIdType & 7));
-        Short data1 = (short) (((deviceIdDataFormat & 7) << 5) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((deviceIdType & 7));
+        byte data1 = (byte) (((deviceIdDataFormat & 7) << 5) | 
                 (deviceIdDataLength & 15));
 
-        List<Short> retList = Stream.of(data0, data1).collect(Collectors.toList());
-        retList.addAll(deviceIdData);
-        return retList;
+        byte[] payload = new byte[2 + PayloadUtils.size(deviceIdData)];
+        payload[0] = data0;
+        payload[1] = data1;
+        PayloadUtils.put(payload, 2, deviceIdData);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            deviceIdType = (short) (payload.get(0) & 7);
+        if (payload.length > 0) {
+            deviceIdType = (short) (payload[0] & 7);
         }
-        if (payload.size() > 1) {
-            deviceIdDataFormat = (short) ((payload.get(1) & 224) >> 5);
-            deviceIdDataLength = (short) (payload.get(1) & 15);
+        if (payload.length > 1) {
+            deviceIdDataFormat = (short) ((payload[1] & 224) >> 5);
+            deviceIdDataLength = (short) (payload[1] & 15);
         }
-        if (payload.size() > (deviceIdDataLength + 1)) {
-            deviceIdData = payload.subList(2, (deviceIdDataLength + 1));
+        if (payload.length > (deviceIdDataLength + 1)) {
+            deviceIdData = PayloadUtils.toShortList(payload, 2, (deviceIdDataLength + 1));
         }
     }
 
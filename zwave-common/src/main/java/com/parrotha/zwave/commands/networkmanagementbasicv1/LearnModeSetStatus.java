@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.networkmanagementbasicv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -64,20 +60,25 @@ public class LearnModeSetStatus extends Command {
         this.newNodeId = newNodeId;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(seqNo, status, (short) 0, newNodeId).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[4];
+        payload[0] = seqNo.byteValue();
+        payload[1] = status.byteValue();
+        payload[2] = (byte) 0;
+        payload[3] = newNodeId.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = payload.get(1);
+        if (payload.length > 1) {
+            status = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 3) {
-            newNodeId = payload.get(3);
+        if (payload.length > 3) {
+            newNodeId = (short) (payload[3] & 0xFF);
         }
     }
 
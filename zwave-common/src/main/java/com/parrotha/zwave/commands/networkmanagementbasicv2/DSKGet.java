@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.networkmanagementbasicv2;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -51,19 +47,22 @@ public class DSKGet extends Command {
         this.addMode = addMode;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((addMode == true ? 1 : 0));
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((addMode == true ? 1 : 0));
 
-        return Stream.of(seqNo, data1).collect(Collectors.toList());
+        byte[] payload = new byte[2];
+        payload[0] = seqNo.byteValue();
+        payload[1] = data1;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            addMode = ((payload.get(1)) & 1) == 1;
+        if (payload.length > 1) {
+            addMode = (payload[1] & 1) == 1;
         }
     }
 
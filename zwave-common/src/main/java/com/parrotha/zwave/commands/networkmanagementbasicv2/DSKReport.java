@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.networkmanagementbasicv2;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -60,24 +59,26 @@ public class DSKReport extends Command {
         this.dsk = dsk;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((addMode == true ? 1 : 0));
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((addMode == true ? 1 : 0));
 
-        List<Short> retList = Stream.of(seqNo, data1).collect(Collectors.toList());
-        retList.addAll(dsk);
-        return retList;
+        byte[] payload = new byte[2 + PayloadUtils.size(dsk)];
+        payload[0] = seqNo.byteValue();
+        payload[1] = data1;
+        PayloadUtils.put(payload, 2, dsk);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            addMode = ((payload.get(1)) & 1) == 1;
+        if (payload.length > 1) {
+            addMode = (payload[1] & 1) == 1;
         }
-        if (payload.size() > 18) {
-            dsk = payload.subList(2, 18);
+        if (payload.length > 18) {
+            dsk = PayloadUtils.toShortList(payload, 2, 18);
         }
     }
 
@@ -18,10 +18,6 @@
  */
 package com.parrotha.zwave.commands.networkmanagementbasicv2;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -54,22 +50,26 @@ public class LearnModeSet extends com.parrotha.zwave.commands.networkmanagementb
         this.mode = mode;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((returnInterviewStatus == true ? 1 : 0));
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((returnInterviewStatus == true ? 1 : 0));
 
-        return Stream.of(seqNo, data1, mode).collect(Collectors.toList());
+        byte[] payload = new byte[3];
+        payload[0] = seqNo.byteValue();
+        payload[1] = data1;
+        payload[2] = mode.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            returnInterviewStatus = ((payload.get(1)) & 1) == 1;
+        if (payload.length > 1) {
+            returnInterviewStatus = (payload[1] & 1) == 1;
         }
-        if (payload.size() > 2) {
-            mode = payload.get(2);
+        if (payload.length > 2) {
+            mode = (short) (payload[2] & 0xFF);
         }
     }
 
@@ -18,9 +18,9 @@
  */
 package com.parrotha.zwave.commands.networkmanagementbasicv2;
 
+import com.parrotha.zwave.internal.PayloadUtils;
+
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -92,31 +92,37 @@ public class LearnModeSetStatus extends com.parrotha.zwave.commands.networkmanag
         this.dsk = dsk;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(seqNo, status, (short) 0, newNodeId, grantedKeys, kexFailType).collect(Collectors.toList());
-        retList.addAll(dsk);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[6 + PayloadUtils.size(dsk)];
+        payload[0] = seqNo.byteValue();
+        payload[1] = status.byteValue();
+        payload[2] = (byte) 0;
+        payload[3] = newNodeId.byteValue();
+        payload[4] = grantedKeys.byteValue();
+        payload[5] = kexFailType.byteValue();
+        PayloadUtils.put(payload, 6, dsk);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = payload.get(1);
+        if (payload.length > 1) {
+            status = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 3) {
-            newNodeId = payload.get(3);
+        if (payload.length > 3) {
+            newNodeId = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            grantedKeys = payload.get(4);
+        if (payload.length > 4) {
+            grantedKeys = (short) (payload[4] & 0xFF);
         }
-        if (payload.size() > 5) {
-            kexFailType = payload.get(5);
+        if (payload.length > 5) {
+            kexFailType = (short) (payload[5] & 0xFF);
         }
-        if (payload.size() > 22) {
-            dsk = payload.subList(6, 22);
+        if (payload.length > 22) {
+            dsk = PayloadUtils.toShortList(payload, 6, 22);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.networkmanagementinclusionv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -66,20 +62,25 @@ public class NodeAdd extends Command {
         this.txOptions = txOptions;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(seqNo, (short) 0, mode, txOptions).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[4];
+        payload[0] = seqNo.byteValue();
+        payload[1] = (byte) 0;
+        payload[2] = mode.byteValue();
+        payload[3] = txOptions.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 2) {
-            mode = payload.get(2);
+        if (payload.length > 2) {
+            mode = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            txOptions = payload.get(3);
+        if (payload.length > 3) {
+            txOptions = (short) (payload[3] & 0xFF);
         }
     }
 
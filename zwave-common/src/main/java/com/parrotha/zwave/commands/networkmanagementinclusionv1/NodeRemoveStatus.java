@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.networkmanagementinclusionv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -63,20 +59,24 @@ public class NodeRemoveStatus extends Command {
         this.nodeId = nodeId;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(seqNo, status, nodeId).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[3];
+        payload[0] = seqNo.byteValue();
+        payload[1] = status.byteValue();
+        payload[2] = nodeId.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = payload.get(1);
+        if (payload.length > 1) {
+            status = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            nodeId = payload.get(2);
+        if (payload.length > 2) {
+            nodeId = (short) (payload[2] & 0xFF);
         }
     }
 
@@ -18,9 +18,9 @@
  */
 package com.parrotha.zwave.commands.networkmanagementinclusionv2;
 
+import com.parrotha.zwave.internal.PayloadUtils;
+
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -163,58 +163,68 @@ public class NodeAddStatus extends com.parrotha.zwave.commands.networkmanagement
         this.kexFailType = kexFailType;
     }
 
-    public List<Short> getPayload() {
-        Short data5 = (short) ((listening == true ? (1 << 7) : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data5 = (byte) ((listening == true ? (1 << 7) : 0) | 
                 (capability & 15));
-        Short data6 = (short) ((opt == true ? (1 << 7) : 0) | 
+        byte data6 = (byte) ((opt == true ? (1 << 7) : 0) | 
                 (security & 15));
 
-        List<Short> retList = Stream.of(seqNo, status, (short) 0, newNodeId, nodeInfoLength, data5, data6, basicDeviceClass, genericDeviceClass, specificDeviceClass).collect(Collectors.toList());
-        retList.addAll(commandClass);
-        retList.add(grantedKeys);
-        retList.add(kexFailType);
-        return retList;
-    }
-
-    public void setPayload(List<Short> payload) {
+        byte[] payload = new byte[12 + PayloadUtils.size(commandClass)];
+        payload[0] = seqNo.byteValue();
+        payload[1] = status.byteValue();
+        payload[2] = (byte) 0;
+        payload[3] = newNodeId.byteValue();
+        payload[4] = nodeInfoLength.byteValue();
+        payload[5] = data5;
+        payload[6] = data6;
+        payload[7] = basicDeviceClass.byteValue();
+        payload[8] = genericDeviceClass.byteValue();
+        payload[9] = specificDeviceClass.byteValue();
+        int index = PayloadUtils.put(payload, 10, commandClass);
+        payload[index++] = grantedKeys.byteValue();
+        payload[index] = kexFailType.byteValue();
+        return payload;
+    }
+
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = payload.get(1);
+        if (payload.length > 1) {
+            status = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 3) {
-            newNodeId = payload.get(3);
+        if (payload.length > 3) {
+            newNodeId = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            nodeInfoLength = payload.get(4);
+        if (payload.length > 4) {
+            nodeInfoLength = (short) (payload[4] & 0xFF);
         }
-        if (payload.size() > 5) {
-            listening = ((payload.get(5) >> 7) & 1) == 1;
-            capability = (short) (payload.get(5) & 15);
+        if (payload.length > 5) {
+            listening = ((payload[5] >> 7) & 1) == 1;
+            capability = (short) (payload[5] & 15);
         }
-        if (payload.size() > 6) {
-            opt = ((payload.get(6) >> 7) & 1) == 1;
-            security = (short) (payload.get(6) & 15);
+        if (payload.length > 6) {
+            opt = ((payload[6] >> 7) & 1) == 1;
+            security = (short) (payload[6] & 15);
         }
-        if (payload.size() > 7) {
-            basicDeviceClass = payload.get(7);
+        if (payload.length > 7) {
+            basicDeviceClass = (short) (payload[7] & 0xFF);
         }
-        if (payload.size() > 8) {
-            genericDeviceClass = payload.get(8);
+        if (payload.length > 8) {
+            genericDeviceClass = (short) (payload[8] & 0xFF);
         }
-        if (payload.size() > 9) {
-            specificDeviceClass = payload.get(9);
+        if (payload.length > 9) {
+            specificDeviceClass = (short) (payload[9] & 0xFF);
         }
-        if (payload.size() > (nodeInfoLength + 4)) {
-            commandClass = payload.subList(10, (nodeInfoLength + 4));
+        if (payload.length > (nodeInfoLength + 4)) {
+            commandClass = PayloadUtils.toShortList(payload, 10, (nodeInfoLength + 4));
         }
-        if (payload.size() > (nodeInfoLength  + 4)) {
-            grantedKeys = payload.get((nodeInfoLength  + 4));
+        if (payload.length > (nodeInfoLength  + 4)) {
+            grantedKeys = (short) (payload[(nodeInfoLength  + 4)] & 0xFF);
         }
-        if (payload.size() > (nodeInfoLength + 5)) {
-            kexFailType = payload.get((nodeInfoLength + 5));
+        if (payload.length > (nodeInfoLength + 5)) {
+            kexFailType = (short) (payload[(nodeInfoLength + 5)] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.networkmanagementproxyv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -60,22 +56,26 @@ public class NodeInfoCachedGet extends Command {
         this.nodeId = nodeId;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) ((maxAge & 15));
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) ((maxAge & 15));
 
-        return Stream.of(seqNo, data1, nodeId).collect(Collectors.toList());
+        byte[] payload = new byte[3];
+        payload[0] = seqNo.byteValue();
+        payload[1] = data1;
+        payload[2] = nodeId.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            maxAge = (short) (payload.get(1) & 15);
+        if (payload.length > 1) {
+            maxAge = (short) (payload[1] & 15);
         }
-        if (payload.size() > 2) {
-            nodeId = payload.get(2);
+        if (payload.length > 2) {
+            nodeId = (short) (payload[2] & 0xFF);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.networkmanagementproxyv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -136,47 +135,55 @@ public class NodeInfoCachedReport extends Command {
         this.commandClass = commandClass;
     }
 
-    public List<Short> getPayload() {
-        Short data1 = (short) (((status & 15) << 4) | 
+    public byte[] getPayloadBytes() {
+        byte data1 = (byte) (((status & 15) << 4) | 
                 (age & 15));
-        Short data2 = (short) ((listening == true ? (1 << 7) : 0) | 
+        byte data2 = (byte) ((listening == true ? (1 << 7) : 0) | 
                 (capability & 15));
-        Short data3 = (short) ((opt == true ? (1 << 7) : 0) | 
+        byte data3 = (byte) ((opt == true ? (1 << 7) : 0) | 
                 (security & 15));
 
-        List<Short> retList = Stream.of(seqNo, data1, data2, data3, (short) 0, basicDeviceClass, genericDeviceClass, specificDeviceClass).collect(Collectors.toList());
-        retList.addAll(commandClass);
-        return retList;
+        byte[] payload = new byte[8 + PayloadUtils.size(commandClass)];
+        payload[0] = seqNo.byteValue();
+        payload[1] = data1;
+        payload[2] = data2;
+        payload[3] = data3;
+        payload[4] = (byte) 0;
+        payload[5] = basicDeviceClass.byteValue();
+        payload[6] = genericDeviceClass.byteValue();
+        payload[7] = specificDeviceClass.byteValue();
+        PayloadUtils.put(payload, 8, commandClass);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = (short) ((payload.get(1) & 240) >> 4);
-            age = (short) (payload.get(1) & 15);
+        if (payload.length > 1) {
+            status = (short) ((payload[1] & 240) >> 4);
+            age = (short) (payload[1] & 15);
         }
-        if (payload.size() > 2) {
-            listening = ((payload.get(2) >> 7) & 1) == 1;
-            capability = (short) (payload.get(2) & 15);
+        if (payload.length > 2) {
+            listening = ((payload[2] >> 7) & 1) == 1;
+            capability = (short) (payload[2] & 15);
         }
-        if (payload.size() > 3) {
-            opt = ((payload.get(3) >> 7) & 1) == 1;
-            security = (short) (payload.get(3) & 15);
+        if (payload.length > 3) {
+            opt = ((payload[3] >> 7) & 1) == 1;
+            security = (short) (payload[3] & 15);
         }
-        if (payload.size() > 5) {
-            basicDeviceClass = payload.get(5);
+        if (payload.length > 5) {
+            basicDeviceClass = (short) (payload[5] & 0xFF);
         }
-        if (payload.size() > 6) {
-            genericDeviceClass = payload.get(6);
+        if (payload.length > 6) {
+            genericDeviceClass = (short) (payload[6] & 0xFF);
         }
-        if (payload.size() > 7) {
-            specificDeviceClass = payload.get(7);
+        if (payload.length > 7) {
+            specificDeviceClass = (short) (payload[7] & 0xFF);
         }
-        if (payload.size() > 8) {
-            commandClass = payload.subList(8, (payload.size() - 1));
+        if (payload.length > 8) {
+            commandClass = PayloadUtils.toShortList(payload, 8, payload.length);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.networkmanagementproxyv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -72,25 +71,28 @@ public class NodeListReport extends Command {
         this.nodeList = nodeList;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(seqNo, status, nodeListControllerId).collect(Collectors.toList());
-        retList.addAll(nodeList);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[3 + PayloadUtils.size(nodeList)];
+        payload[0] = seqNo.byteValue();
+        payload[1] = status.byteValue();
+        payload[2] = nodeListControllerId.byteValue();
+        PayloadUtils.put(payload, 3, nodeList);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            status = payload.get(1);
+        if (payload.length > 1) {
+            status = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            nodeListControllerId = payload.get(2);
+        if (payload.length > 2) {
+            nodeListControllerId = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 32) {
-            nodeList = payload.subList(3, 32);
+        if (payload.length > 32) {
+            nodeList = PayloadUtils.toShortList(payload, 3, 32);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.networkmanagementproxyv3;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -51,19 +50,20 @@ public class FailedNodeListReport extends Command {
         this.nodeList = nodeList;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(seqNo).collect(Collectors.toList());
-        retList.addAll(nodeList);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1 + PayloadUtils.size(nodeList)];
+        payload[0] = seqNo.byteValue();
+        PayloadUtils.put(payload, 1, nodeList);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            seqNo = payload.get(0);
+        if (payload.length > 0) {
+            seqNo = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 30) {
-            nodeList = payload.subList(1, 30);
+        if (payload.length > 30) {
+            nodeList = PayloadUtils.toShortList(payload, 1, 30);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.securityv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -87,31 +86,34 @@ public class SecurityMessageEncapsulation extends Command {
         this.commandByte = commandByte;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((secondFrame == true ? (1 << 5) : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((secondFrame == true ? (1 << 5) : 0) | 
                 (sequenced == true ? (1 << 4) : 0) | 
                 (sequenceCounter & 15));
 
-        List<Short> retList = Stream.of(data0, commandClassIdentifier, commandIdentifier).collect(Collectors.toList());
-        retList.addAll(commandByte);
-        return retList;
+        byte[] payload = new byte[3 + PayloadUtils.size(commandByte)];
+        payload[0] = data0;
+        payload[1] = commandClassIdentifier.byteValue();
+        payload[2] = commandIdentifier.byteValue();
+        PayloadUtils.put(payload, 3, commandByte);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            secondFrame = ((payload.get(0) >> 5) & 1) == 1;
-            sequenced = ((payload.get(0) >> 4) & 1) == 1;
-            sequenceCounter = (short) (payload.get(0) & 15);
+        if (payload.length > 0) {
+            secondFrame = ((payload[0] >> 5) & 1) == 1;
+            sequenced = ((payload[0] >> 4) & 1) == 1;
+            sequenceCounter = (short) (payload[0] & 15);
         }
-        if (payload.size() > 1) {
-            commandClassIdentifier = payload.get(1);
+        if (payload.length > 1) {
+            commandClassIdentifier = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            commandIdentifier = payload.get(2);
+        if (payload.length > 2) {
+            commandIdentifier = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            commandByte = payload.subList(3, (payload.size() - 1));
+        if (payload.length > 3) {
+            commandByte = PayloadUtils.toShortList(payload, 3, payload.length);
         }
     }
 
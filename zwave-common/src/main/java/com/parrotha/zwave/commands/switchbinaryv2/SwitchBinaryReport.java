@@ -18,10 +18,6 @@
  */
 package com.parrotha.zwave.commands.switchbinaryv2;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -58,20 +54,24 @@ public class SwitchBinaryReport extends com.parrotha.zwave.commands.switchbinary
         this.duration = duration;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(value, targetValue, duration).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[3];
+        payload[0] = value.byteValue();
+        payload[1] = targetValue.byteValue();
+        payload[2] = duration.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            value = payload.get(0);
+        if (payload.length > 0) {
+            value = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            targetValue = payload.get(1);
+        if (payload.length > 1) {
+            targetValue = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            duration = payload.get(2);
+        if (payload.length > 2) {
+            duration = (short) (payload[2] & 0xFF);
         }
     }
 
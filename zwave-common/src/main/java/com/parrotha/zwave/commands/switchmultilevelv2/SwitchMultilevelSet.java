@@ -18,10 +18,6 @@
  */
 package com.parrotha.zwave.commands.switchmultilevelv2;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -49,17 +45,20 @@ public class SwitchMultilevelSet extends com.parrotha.zwave.commands.switchmulti
         this.duration = duration;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(value, duration).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = value.byteValue();
+        payload[1] = duration.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            value = payload.get(0);
+        if (payload.length > 0) {
+            value = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            duration = payload.get(1);
+        if (payload.length > 1) {
+            duration = (short) (payload[1] & 0xFF);
         }
     }
 
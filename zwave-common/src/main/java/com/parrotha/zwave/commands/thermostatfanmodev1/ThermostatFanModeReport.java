@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.thermostatfanmodev1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -47,16 +43,18 @@ public class ThermostatFanModeReport extends Command {
         this.fanMode = fanMode;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((fanMode & 15));
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((fanMode & 15));
 
-        return Stream.of(data0).collect(Collectors.toList());
+        byte[] payload = new byte[1];
+        payload[0] = data0;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            fanMode = (short) (payload.get(0) & 15);
+        if (payload.length > 0) {
+            fanMode = (short) (payload[0] & 15);
         }
     }
 
@@ -20,9 +20,6 @@ package com.parrotha.zwave.commands.thermostatfanmodev1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -31,11 +28,11 @@ public class ThermostatFanModeSupportedGet extends Command {
         return "4404";
     }
 
-    public List<Short> getPayload() {
-        return new ArrayList<>();
+    public byte[] getPayloadBytes() {
+        return new byte[0];
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
     }
 
     @Override
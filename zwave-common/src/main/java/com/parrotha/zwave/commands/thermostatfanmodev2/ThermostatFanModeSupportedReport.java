@@ -18,10 +18,6 @@
  */
 package com.parrotha.zwave.commands.thermostatfanmodev2;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -81,26 +77,28 @@ public class ThermostatFanModeSupportedReport extends com.parrotha.zwave.command
         this.medium = medium;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((auto == true ? 1 : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((auto == true ? 1 : 0) | 
                 (low == true ? (1 << 1) : 0) | 
                 (autoHigh == true ? (1 << 2) : 0) | 
                 (high == true ? (1 << 3) : 0) | 
                 (autoMedium == true ? (1 << 4) : 0) | 
                 (medium == true ? (1 << 5) : 0));
 
-        return Stream.of(data0).collect(Collectors.toList());
+        byte[] payload = new byte[1];
+        payload[0] = data0;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            auto = ((payload.get(0)) & 1) == 1;
-            low = ((payload.get(0) >> 1) & 1) == 1;
-            autoHigh = ((payload.get(0) >> 2) & 1) == 1;
-            high = ((payload.get(0) >> 3) & 1) == 1;
-            autoMedium = ((payload.get(0) >> 4) & 1) == 1;
-            medium = ((payload.get(0) >> 5) & 1) == 1;
+        if (payload.length > 0) {
+            auto = (payload[0] & 1) == 1;
+            low = ((payload[0] >> 1) & 1) == 1;
+            autoHigh = ((payload[0] >> 2) & 1) == 1;
+            high = ((payload[0] >> 3) & 1) == 1;
+            autoMedium = ((payload[0] >> 4) & 1) == 1;
+            medium = ((payload[0] >> 5) & 1) == 1;
         }
     }
 
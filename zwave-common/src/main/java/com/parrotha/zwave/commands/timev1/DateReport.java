@@ -19,10 +19,7 @@
 package com.parrotha.zwave.commands.timev1;
 
 import com.parrotha.zwave.Command;
-
-import com.parrotha.internal.utils.HexUtils;
-import java.util.ArrayList;
-import java.util.List;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -60,24 +57,24 @@ public class DateReport extends Command {
         this.day = day;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = new ArrayList<>();
-        retList.addAll(HexUtils.integerToShortList(year, 2));
-        retList.add(month);
-        retList.add(day);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2 + PayloadUtils.integerSize(year, 2)];
+        int index = PayloadUtils.putInteger(payload, 0, year, 2);
+        payload[index++] = month.byteValue();
+        payload[index] = day.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 2) {
-            year = HexUtils.shortListToInteger(payload.subList(0, 2));
+        if (payload.length > 2) {
+            year = PayloadUtils.toInteger(payload, 0, 2);
         }
-        if (payload.size() > 2) {
-            month = payload.get(2);
+        if (payload.length > 2) {
+            month = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            day = payload.get(3);
+        if (payload.length > 3) {
+            day = (short) (payload[3] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.timev1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -60,20 +56,24 @@ public class TimeGet extends Command {
         this.day = day;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(year, month, day).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[3];
+        payload[0] = year.byteValue();
+        payload[1] = month.byteValue();
+        payload[2] = day.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            year = payload.get(0);
+        if (payload.length > 0) {
+            year = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 0) {
-            month = payload.get(0);
+        if (payload.length > 0) {
+            month = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 0) {
-            day = payload.get(0);
+        if (payload.length > 0) {
+            day = (short) (payload[0] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.timev1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -69,24 +65,28 @@ public class TimeReport extends Command {
         this.secondLocalTime = secondLocalTime;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((rtcFailure == true ? (1 << 7) : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((rtcFailure == true ? (1 << 7) : 0) | 
                 (hourLocalTime & 15));
 
-        return Stream.of(data0, minuteLocalTime, secondLocalTime).collect(Collectors.toList());
+        byte[] payload = new byte[3];
+        payload[0] = data0;
+        payload[1] = minuteLocalTime.byteValue();
+        payload[2] = secondLocalTime.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            rtcFailure = ((payload.get(0) >> 7) & 1) == 1;
-            hourLocalTime = (short) (payload.get(0) & 15);
+        if (payload.length > 0) {
+            rtcFailure = ((payload[0] >> 7) & 1) == 1;
+            hourLocalTime = (short) (payload[0] & 15);
         }
-        if (payload.size() > 1) {
-            minuteLocalTime = payload.get(1);
+        if (payload.length > 1) {
+            minuteLocalTime = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            secondLocalTime = payload.get(2);
+        if (payload.length > 2) {
+            secondLocalTime = (short) (payload[2] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.usercodev1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -42,14 +38,16 @@ public class UsersNumberReport extends Command {
         this.supportedUsers = supportedUsers;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(supportedUsers).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1];
+        payload[0] = supportedUsers.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            supportedUsers = payload.get(0);
+        if (payload.length > 0) {
+            supportedUsers = (short) (payload[0] & 0xFF);
         }
     }
 
@@ -18,10 +18,7 @@
  */
 package com.parrotha.zwave.commands.usercodev2;
 
-import com.parrotha.internal.utils.HexUtils;
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -46,19 +43,20 @@ public class UsersNumberReport extends com.parrotha.zwave.commands.usercodev1.Us
         this.extendedSupportedUsers = extendedSupportedUsers;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(supportedUsers).collect(Collectors.toList());
-        retList.addAll(HexUtils.integerToShortList(extendedSupportedUsers, 2));
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[1 + PayloadUtils.integerSize(extendedSupportedUsers, 2)];
+        payload[0] = supportedUsers.byteValue();
+        PayloadUtils.putInteger(payload, 1, extendedSupportedUsers, 2);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            supportedUsers = payload.get(0);
+        if (payload.length > 0) {
+            supportedUsers = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 3) {
-            extendedSupportedUsers = HexUtils.shortListToInteger(payload.subList(1, 3));
+        if (payload.length > 3) {
+            extendedSupportedUsers = PayloadUtils.toInteger(payload, 1, 3);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.versionv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -51,17 +47,20 @@ public class VersionCommandClassReport extends Command {
         this.commandClassVersion = commandClassVersion;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(requestedCommandClass, commandClassVersion).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2];
+        payload[0] = requestedCommandClass.byteValue();
+        payload[1] = commandClassVersion.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            requestedCommandClass = payload.get(0);
+        if (payload.length > 0) {
+            requestedCommandClass = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            commandClassVersion = payload.get(1);
+        if (payload.length > 1) {
+            commandClassVersion = (short) (payload[1] & 0xFF);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.versionv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -89,26 +85,32 @@ public class VersionReport extends Command {
         this.applicationSubVersion = applicationSubVersion;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(zWaveLibraryType, zWaveProtocolVersion, zWaveProtocolSubVersion, applicationVersion, applicationSubVersion).collect(Collectors.toList());
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[5];
+        payload[0] = zWaveLibraryType.byteValue();
+        payload[1] = zWaveProtocolVersion.byteValue();
+        payload[2] = zWaveProtocolSubVersion.byteValue();
+        payload[3] = applicationVersion.byteValue();
+        payload[4] = applicationSubVersion.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            zWaveLibraryType = payload.get(0);
+        if (payload.length > 0) {
+            zWaveLibraryType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            zWaveProtocolVersion = payload.get(1);
+        if (payload.length > 1) {
+            zWaveProtocolVersion = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            zWaveProtocolSubVersion = payload.get(2);
+        if (payload.length > 2) {
+            zWaveProtocolSubVersion = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            applicationVersion = payload.get(3);
+        if (payload.length > 3) {
+            applicationVersion = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            applicationSubVersion = payload.get(4);
+        if (payload.length > 4) {
+            applicationSubVersion = (short) (payload[4] & 0xFF);
         }
     }
 
@@ -18,9 +18,9 @@
  */
 package com.parrotha.zwave.commands.versionv2;
 
+import com.parrotha.zwave.internal.PayloadUtils;
+
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -99,37 +99,44 @@ public class VersionReport extends com.parrotha.zwave.commands.versionv1.Version
         this.firmwareTargets = firmwareTargets;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of(zWaveLibraryType, zWaveProtocolVersion, zWaveProtocolSubVersion, firmware0Version, firmware0SubVersion, hardwareVersion, numberOfFirmwareTargets).collect(Collectors.toList());
-        retList.addAll(firmwareTargets);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[7 + PayloadUtils.size(firmwareTargets)];
+        payload[0] = zWaveLibraryType.byteValue();
+        payload[1] = zWaveProtocolVersion.byteValue();
+        payload[2] = zWaveProtocolSubVersion.byteValue();
+        payload[3] = firmware0Version.byteValue();
+        payload[4] = firmware0SubVersion.byteValue();
+        payload[5] = hardwareVersion.byteValue();
+        payload[6] = numberOfFirmwareTargets.byteValue();
+        PayloadUtils.put(payload, 7, firmwareTargets);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            zWaveLibraryType = payload.get(0);
+        if (payload.length > 0) {
+            zWaveLibraryType = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            zWaveProtocolVersion = payload.get(1);
+        if (payload.length > 1) {
+            zWaveProtocolVersion = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            zWaveProtocolSubVersion = payload.get(2);
+        if (payload.length > 2) {
+            zWaveProtocolSubVersion = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            firmware0Version = payload.get(3);
+        if (payload.length > 3) {
+            firmware0Version = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            firmware0SubVersion = payload.get(4);
+        if (payload.length > 4) {
+            firmware0SubVersion = (short) (payload[4] & 0xFF);
         }
-        if (payload.size() > 5) {
-            hardwareVersion = payload.get(5);
+        if (payload.length > 5) {
+            hardwareVersion = (short) (payload[5] & 0xFF);
         }
-        if (payload.size() > 6) {
-            numberOfFirmwareTargets = payload.get(6);
+        if (payload.length > 6) {
+            numberOfFirmwareTargets = (short) (payload[6] & 0xFF);
         }
-        if (payload.size() > 7) {
-            firmwareTargets = payload.subList(7, (payload.size() - 1));
+        if (payload.length > 7) {
+            firmwareTargets = PayloadUtils.toShortList(payload, 7, payload.length);
         }
     }
 
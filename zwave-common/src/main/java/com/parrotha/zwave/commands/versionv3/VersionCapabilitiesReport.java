@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.versionv3;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -60,20 +56,22 @@ public class VersionCapabilitiesReport extends Command {
         this.zWaveSoftware = zWaveSoftware;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((version == true ? 1 : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((version == true ? 1 : 0) | 
                 (commandClass == true ? (1 << 1) : 0) | 
                 (zWaveSoftware == true ? (1 << 2) : 0));
 
-        return Stream.of(data0).collect(Collectors.toList());
+        byte[] payload = new byte[1];
+        payload[0] = data0;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            version = ((payload.get(0)) & 1) == 1;
-            commandClass = ((payload.get(0) >> 1) & 1) == 1;
-            zWaveSoftware = ((payload.get(0) >> 2) & 1) == 1;
+        if (payload.length > 0) {
+            version = (payload[0] & 1) == 1;
+            commandClass = ((payload[0] >> 1) & 1) == 1;
+            zWaveSoftware = ((payload[0] >> 2) & 1) == 1;
         }
     }
 
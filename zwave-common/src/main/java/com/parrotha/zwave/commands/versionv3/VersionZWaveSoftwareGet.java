@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.versionv3;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -240,80 +236,104 @@ public class VersionZWaveSoftwareGet extends Command {
         this.applicationBuildNumber2 = applicationBuildNumber2;
     }
 
-    public List<Short> getPayload() {
-        return Stream.of(sdkVersion1, sdkVersion2, sdkVersion3, zWaveApplicationFrameworkAPIVersion1, zWaveApplicationFrameworkAPIVersion2, zWaveApplicationFrameworkAPIVersion3, zWaveApplicationFrameworkBuildNumber1, zWaveApplicationFrameworkBuildNumber2, hostInterfaceVersion1, hostInterfaceVersion2, hostInterfaceVersion3, hostInterfaceBuildNumber1, hostInterfaceBuildNumber2, zWaveProtocolVersion1, zWaveProtocolVersion2, zWaveProtocolVersion3, zWaveProtocolBuildNumber1, zWaveProtocolBuildNumber2, applicationVersion1, applicationVersion2, applicationVersion3, applicationBuildNumber1, applicationBuildNumber2).collect(Collectors.toList());
-    }
-
-    public void setPayload(List<Short> payload) {
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[23];
+        payload[0] = sdkVersion1.byteValue();
+        payload[1] = sdkVersion2.byteValue();
+        payload[2] = sdkVersion3.byteValue();
+        payload[3] = zWaveApplicationFrameworkAPIVersion1.byteValue();
+        payload[4] = zWaveApplicationFrameworkAPIVersion2.byteValue();
+        payload[5] = zWaveApplicationFrameworkAPIVersion3.byteValue();
+        payload[6] = zWaveApplicationFrameworkBuildNumber1.byteValue();
+        payload[7] = zWaveApplicationFrameworkBuildNumber2.byteValue();
+        payload[8] = hostInterfaceVersion1.byteValue();
+        payload[9] = hostInterfaceVersion2.byteValue();
+        payload[10] = hostInterfaceVersion3.byteValue();
+        payload[11] = hostInterfaceBuildNumber1.byteValue();
+        payload[12] = hostInterfaceBuildNumber2.byteValue();
+        payload[13] = zWaveProtocolVersion1.byteValue();
+        payload[14] = zWaveProtocolVersion2.byteValue();
+        payload[15] = zWaveProtocolVersion3.byteValue();
+        payload[16] = zWaveProtocolBuildNumber1.byteValue();
+        payload[17] = zWaveProtocolBuildNumber2.byteValue();
+        payload[18] = applicationVersion1.byteValue();
+        payload[19] = applicationVersion2.byteValue();
+        payload[20] = applicationVersion3.byteValue();
+        payload[21] = applicationBuildNumber1.byteValue();
+        payload[22] = applicationBuildNumber2.byteValue();
+        return payload;
+    }
+
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            sdkVersion1 = payload.get(0);
+        if (payload.length > 0) {
+            sdkVersion1 = (short) (payload[0] & 0xFF);
         }
-        if (payload.size() > 1) {
-            sdkVersion2 = payload.get(1);
+        if (payload.length > 1) {
+            sdkVersion2 = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 2) {
-            sdkVersion3 = payload.get(2);
+        if (payload.length > 2) {
+            sdkVersion3 = (short) (payload[2] & 0xFF);
         }
-        if (payload.size() > 3) {
-            zWaveApplicationFrameworkAPIVersion1 = payload.get(3);
+        if (payload.length > 3) {
+            zWaveApplicationFrameworkAPIVersion1 = (short) (payload[3] & 0xFF);
         }
-        if (payload.size() > 4) {
-            zWaveApplicationFrameworkAPIVersion2 = payload.get(4);
+        if (payload.length > 4) {
+            zWaveApplicationFrameworkAPIVersion2 = (short) (payload[4] & 0xFF);
         }
-        if (payload.size() > 5) {
-            zWaveApplicationFrameworkAPIVersion3 = payload.get(5);
+        if (payload.length > 5) {
+            zWaveApplicationFrameworkAPIVersion3 = (short) (payload[5] & 0xFF);
         }
-        if (payload.size() > 6) {
-            zWaveApplicationFrameworkBuildNumber1 = payload.get(6);
+        if (payload.length > 6) {
+            zWaveApplicationFrameworkBuildNumber1 = (short) (payload[6] & 0xFF);
         }
-        if (payload.size() > 7) {
-            zWaveApplicationFrameworkBuildNumber2 = payload.get(7);
+        if (payload.length > 7) {
+            zWaveApplicationFrameworkBuildNumber2 = (short) (payload[7] & 0xFF);
         }
-        if (payload.size() > 8) {
-            hostInterfaceVersion1 = payload.get(8);
+        if (payload.length > 8) {
+            hostInterfaceVersion1 = (short) (payload[8] & 0xFF);
         }
-        if (payload.size() > 9) {
-            hostInterfaceVersion2 = payload.get(9);
+        if (payload.length > 9) {
+            hostInterfaceVersion2 = (short) (payload[9] & 0xFF);
         }
-        if (payload.size() > 10) {
-            hostInterfaceVersion3 = payload.get(10);
+        if (payload.length > 10) {
+            hostInterfaceVersion3 = (short) (payload[10] & 0xFF);
         }
-        if (payload.size() > 11) {
-            hostInterfaceBuildNumber1 = payload.get(11);
+        if (payload.length > 11) {
+            hostInterfaceBuildNumber1 = (short) (payload[11] & 0xFF);
         }
-        if (payload.size() > 12) {
-            hostInterfaceBuildNumber2 = payload.get(12);
+        if (payload.length > 12) {
+            hostInterfaceBuildNumber2 = (short) (payload[12] & 0xFF);
         }
-        if (payload.size() > 13) {
-            zWaveProtocolVersion1 = payload.get(13);
+        if (payload.length > 13) {
+            zWaveProtocolVersion1 = (short) (payload[13] & 0xFF);
         }
-        if (payload.size() > 14) {
-            zWaveProtocolVersion2 = payload.get(14);
+        if (payload.length > 14) {
+            zWaveProtocolVersion2 = (short) (payload[14] & 0xFF);
         }
-        if (payload.size() > 15) {
-            zWaveProtocolVersion3 = payload.get(15);
+        if (payload.length > 15) {
+            zWaveProtocolVersion3 = (short) (payload[15] & 0xFF);
         }
-        if (payload.size() > 16) {
-            zWaveProtocolBuildNumber1 = payload.get(16);
+        if (payload.length > 16) {
+            zWaveProtocolBuildNumber1 = (short) (payload[16] & 0xFF);
         }
-        if (payload.size() > 17) {
-            zWaveProtocolBuildNumber2 = payload.get(17);
+        if (payload.length > 17) {
+            zWaveProtocolBuildNumber2 = (short) (payload[17] & 0xFF);
         }
-        if (payload.size() > 18) {
-            applicationVersion1 = payload.get(18);
+        if (payload.length > 18) {
+            applicationVersion1 = (short) (payload[18] & 0xFF);
         }
-        if (payload.size() > 19) {
-            applicationVersion2 = payload.get(19);
+        if (payload.length > 19) {
+            applicationVersion2 = (short) (payload[19] & 0xFF);
         }
-        if (payload.size() > 20) {
-            applicationVersion3 = payload.get(20);
+        if (payload.length > 20) {
+            applicationVersion3 = (short) (payload[20] & 0xFF);
         }
-        if (payload.size() > 21) {
-            applicationBuildNumber1 = payload.get(21);
+        if (payload.length > 21) {
+            applicationBuildNumber1 = (short) (payload[21] & 0xFF);
         }
-        if (payload.size() > 22) {
-            applicationBuildNumber2 = payload.get(22);
+        if (payload.length > 22) {
+            applicationBuildNumber2 = (short) (payload[22] & 0xFF);
         }
     }
 
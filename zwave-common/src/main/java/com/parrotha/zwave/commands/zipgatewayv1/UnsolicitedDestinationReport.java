@@ -19,9 +19,8 @@
 package com.parrotha.zwave.commands.zipgatewayv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
-import com.parrotha.internal.utils.HexUtils;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -51,20 +50,20 @@ public class UnsolicitedDestinationReport extends Command {
         this.destinationPort = destinationPort;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = new ArrayList<>();
-        retList.addAll(ipv6Destination);
-        retList.addAll(HexUtils.integerToShortList(destinationPort, 2));
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[0 + PayloadUtils.size(ipv6Destination) + PayloadUtils.integerSize(destinationPort, 2)];
+        int index = PayloadUtils.put(payload, 0, ipv6Destination);
+        PayloadUtils.putInteger(payload, index, destinationPort, 2);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 15) {
-            ipv6Destination = payload.subList(0, 15);
+        if (payload.length > 15) {
+            ipv6Destination = PayloadUtils.toShortList(payload, 0, 15);
         }
-        if (payload.size() > 17) {
-            destinationPort = HexUtils.shortListToInteger(payload.subList(16, 18));
+        if (payload.length > 17) {
+            destinationPort = PayloadUtils.toInteger(payload, 16, 18);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.zipndv1;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -51,19 +47,22 @@ public class ZipInvNodeSolicitation extends Command {
         this.nodeId = nodeId;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((local == true ? (1 << 3) : 0));
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((local == true ? (1 << 3) : 0));
 
-        return Stream.of(data0, nodeId).collect(Collectors.toList());
+        byte[] payload = new byte[2];
+        payload[0] = data0;
+        payload[1] = nodeId.byteValue();
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            local = ((payload.get(0) >> 3) & 1) == 1;
+        if (payload.length > 0) {
+            local = ((payload[0] >> 3) & 1) == 1;
         }
-        if (payload.size() > 1) {
-            nodeId = payload.get(1);
+        if (payload.length > 1) {
+            nodeId = (short) (payload[1] & 0xFF);
         }
     }
 
@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.zipndv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -69,28 +68,30 @@ public class ZipNodeAdvertisement extends Command {
         this.homeId = homeId;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((local == true ? (1 << 3) : 0));
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((local == true ? (1 << 3) : 0));
 
-        List<Short> retList = Stream.of(data0, nodeId).collect(Collectors.toList());
-        retList.addAll(ipv6Address);
-        retList.addAll(homeId);
-        return retList;
+        byte[] payload = new byte[2 + PayloadUtils.size(ipv6Address) + PayloadUtils.size(homeId)];
+        payload[0] = data0;
+        payload[1] = nodeId.byteValue();
+        int index = PayloadUtils.put(payload, 2, ipv6Address);
+        PayloadUtils.put(payload, index, homeId);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            local = ((payload.get(0) >> 3) & 1) == 1;
+        if (payload.length > 0) {
+            local = ((payload[0] >> 3) & 1) == 1;
         }
-        if (payload.size() > 1) {
-            nodeId = payload.get(1);
+        if (payload.length > 1) {
+            nodeId = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 18) {
-            ipv6Address = payload.subList(2, 18);
+        if (payload.length > 18) {
+            ipv6Address = PayloadUtils.toShortList(payload, 2, 18);
         }
-        if (payload.size() > 22) {
-            homeId = payload.subList(19, 22);
+        if (payload.length > 22) {
+            homeId = PayloadUtils.toShortList(payload, 19, 22);
         }
     }
 
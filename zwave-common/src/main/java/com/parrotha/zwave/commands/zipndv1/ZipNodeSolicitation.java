@@ -19,10 +19,9 @@
 package com.parrotha.zwave.commands.zipndv1;
 
 import com.parrotha.zwave.Command;
+import com.parrotha.zwave.internal.PayloadUtils;
 
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Note: This code is autogenerated, changes will be overwritten.
@@ -51,19 +50,21 @@ public class ZipNodeSolicitation extends Command {
         this.ipv6Address = ipv6Address;
     }
 
-    public List<Short> getPayload() {
-        List<Short> retList = Stream.of((short) 0, nodeId).collect(Collectors.toList());
-        retList.addAll(ipv6Address);
-        return retList;
+    public byte[] getPayloadBytes() {
+        byte[] payload = new byte[2 + PayloadUtils.size(ipv6Address)];
+        payload[0] = (byte) 0;
+        payload[1] = nodeId.byteValue();
+        PayloadUtils.put(payload, 2, ipv6Address);
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 1) {
-            nodeId = payload.get(1);
+        if (payload.length > 1) {
+            nodeId = (short) (payload[1] & 0xFF);
         }
-        if (payload.size() > 18) {
-            ipv6Address = payload.subList(2, 18);
+        if (payload.length > 18) {
+            ipv6Address = PayloadUtils.toShortList(payload, 2, 18);
         }
     }
 
@@ -20,10 +20,6 @@ package com.parrotha.zwave.commands.zipv4;
 
 import com.parrotha.zwave.Command;
 
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
 /**
  * Note: This code is autogenerated, changes will be overwritten.
  */
@@ -51,18 +47,20 @@ public class ZipKeepAlive extends Command {
         this.ackResponse = ackResponse;
     }
 
-    public List<Short> getPayload() {
-        Short data0 = (short) ((ackRequest == true ? (1 << 7) : 0) | 
+    public byte[] getPayloadBytes() {
+        byte data0 = (byte) ((ackRequest == true ? (1 << 7) : 0) | 
                 (ackResponse == true ? (1 << 6) : 0));
 
-        return Stream.of(data0).collect(Collectors.toList());
+        byte[] payload = new byte[1];
+        payload[0] = data0;
+        return payload;
     }
 
-    public void setPayload(List<Short> payload) {
+    public void setPayloadBytes(byte[] payload) {
         if (payload == null) return;
-        if (payload.size() > 0) {
-            ackRequest = ((payload.get(0) >> 7) & 1) == 1;
-            ackResponse = ((payload.get(0) >> 6) & 1) == 1;
+        if (payload.length > 0) {
+            ackRequest = ((payload[0] >> 7) & 1) == 1;
+            ackResponse = ((payload[0] >> 6) & 1) == 1;
         }
     }
 
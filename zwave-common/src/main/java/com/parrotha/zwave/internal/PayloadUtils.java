@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2021-2023 by the respective copyright holders.
+ * All rights reserved.
+ * <p>
+ * This file is part of Parrot Home Automation Hub.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.parrotha.zwave.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers used by the generated command classes to encode and decode their payload as bytes.  Payload bytes are
+ * unsigned, a byte of 0xFF is the short 255.
+ */
+public class PayloadUtils {
+    public static final byte[] EMPTY = new byte[0];
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * @return bytes from index from (inclusive) to index to (exclusive), clamped to the payload.
+     */
+    public static List<Short> toShortList(byte[] payload, int from, int to) {
+        to = Math.min(to, payload.length);
+        List<Short> list = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            list.add((short) (payload[i] & 0xFF));
+        }
+        return list;
+    }
+
+    public static List<Short> toShortList(byte[] payload) {
+        return toShortList(payload, 0, payload.length);
+    }
+
+    /**
+     * Groovy can put Integers in a List&lt;Short&gt;, so any number is accepted.
+     */
+    public static byte[] toByteArray(List<?> list) {
+        if (list == null || list.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] bytes = new byte[list.size()];
+        put(bytes, 0, list);
+        return bytes;
+    }
+
+    public static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Write the list into the payload starting at index.
+     *
+     * @return the index after the last byte written
+     */
+    public static int put(byte[] payload, int index, List<?> list) {
+        if (list == null) {
+            return index;
+        }
+        for (Object value : list) {
+            payload[index++] = toByte(value);
+        }
+        return index;
+    }
+
+    private static byte toByte(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).byteValue();
+        }
+        return (byte) Short.parseShort(value.toString());
+    }
+
+    /**
+     * @return the unsigned big endian integer in bytes from (inclusive) to to (exclusive).
+     */
+    public static int toInteger(byte[] payload, int from, int to) {
+        to = Math.min(to, payload.length);
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = (value << 8) | (payload[i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @return number of bytes needed to write the integer, at least minBytes.
+     */
+    public static int integerSize(Integer value, int minBytes) {
+        int bits = 32 - Integer.numberOfLeadingZeros(value);
+        return Math.max(minBytes, (bits + 7) / 8);
+    }
+
+    /**
+     * Write the integer big endian into the payload starting at index.
+     *
+     * @return the index after the last byte written
+     */
+    public static int putInteger(byte[] payload, int index, Integer value, int minBytes) {
+        int size = integerSize(value, minBytes);
+        for (int i = size - 1; i >= 0; i--) {
+            payload[index++] = i < 4 ? (byte) (value >>> (i * 8)) : 0;
+        }
+        return index;
+    }
+
+    /**
+     * Convert hex digits to bytes, whitespace is ignored and an odd number of digits is padded with a leading zero.
+     */
+    public static byte[] hexToBytes(CharSequence hex, int start, int end) {
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(hex.charAt(i))) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return EMPTY;
+        }
+        byte[] bytes = new byte[(digits + 1) / 2];
+        // with an odd number of digits the first byte only gets a low nibble
+        int nibble = digits % 2;
+        for (int i = start; i < end; i++) {
+            char c = hex.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid hex character '" + c + "'");
+            }
+            int byteIndex = nibble / 2;
+            if (nibble % 2 == 0) {
+                bytes[byteIndex] = (byte) (digit << 4);
+            } else {
+                bytes[byteIndex] |= (byte) digit;
+            }
+            nibble++;
+        }
+        return bytes;
+    }
+
+    public static String toHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+}
@@ -51,6 +51,9 @@ generateZwaveJavaClass(zwaveClasses, basePackage, baseDirectory + basePackage.re
 // generate Zwave command enum class
 generateZWaveCommandEnumJavaClass(zwaveClasses, basePackage, baseDirectory + basePackage.replace(".", "/"), licenseText)
 
+// generate Z-Wave command table class
+generateZWaveCommandTableJavaClass(zwaveClasses, basePackage, baseDirectory + basePackage.replace(".", "/"), licenseText)
+
 /*
  *  Methods to generate java files
  */
@@ -93,32 +96,12 @@ void generateCommandClassesJava(List zwaveClasses, String basePackage, String ba
     }
 }
 
-boolean firstVariableIsListType(List payload) {
-    if(payload != null && payload.size() > 0 && (((String) payload.get(0).type).startsWith("List") || ((String) payload.get(0).type).startsWith("Integer"))) {
-        return true;
-    }
-    return false
+boolean containsListVariables(List payload) {
+    return payload != null && payload.any { ((String) it.type).startsWith("List") }
 }
 
-boolean containsSingleVariables(List payload) {
-    boolean retVal = false
-    payload.each { payloadItem ->
-        if (((String) payloadItem.type).equalsIgnoreCase("short") ||
-                ((String) payloadItem.type).equalsIgnoreCase("boolean")) {
-            retVal = true
-        }
-    }
-    return retVal
-}
-
-boolean containsIntegerVariables(List payload) {
-    boolean retVal = false
-    payload.each { payloadItem ->
-        if (((String) payloadItem.type).equalsIgnoreCase("Integer")) {
-            retVal = true
-        }
-    }
-    return retVal
+boolean containsMultiByteVariables(List payload) {
+    return payload != null && payload.any { ((String) it.type).startsWith("List") || ((String) it.type).equalsIgnoreCase("Integer") }
 }
 
 
@@ -141,26 +124,33 @@ void generateCommandsJava(List zwaveClasses, String basePackage, String baseDire
                 if (f.exists()) f.delete()
                 f << licenseText
                 f << "package ${basePackage}.commands.${commandClassDetails.commandClass.toLowerCase()}v${commandClassDetails.version};\n"
+                List<String> parrotImports = []
+                Set<String> javaImports = new TreeSet<>()
                 if (commandDetails.extends == null) {
-                    f << "\n"
-                    f << "import com.parrotha.zwave.Command;\n"
+                    parrotImports << "com.parrotha.zwave.Command"
                 }
                 if (commandDetails.overridePayload == null || commandDetails.overridePayload == true) {
-                    f << "\n"
-                    if (containsIntegerVariables((List) commandDetails.payload)) {
-                        f << "import com.parrotha.internal.utils.HexUtils;\n"
+                    if (containsMultiByteVariables((List) commandDetails.payload)) {
+                        parrotImports << "com.parrotha.zwave.internal.PayloadUtils"
                     }
-                    if (commandDetails.payload?.size() > 0 && containsSingleVariables((List) commandDetails.payload) && !firstVariableIsListType((List) commandDetails.payload)) {
-                        f << "import java.util.List;\n"
-                        f << "import java.util.stream.Collectors;\n"
-                        f << "import java.util.stream.Stream;\n"
-                    } else {
-                        f << "import java.util.ArrayList;\n"
-                        f << "import java.util.List;\n"
+                    if (containsListVariables((List) commandDetails.payload)) {
+                        javaImports << "java.util.List"
                     }
                 }
-                if(commandDetails.additionalImports != null) {
-                    f << commandDetails.additionalImports
+                if (commandDetails.additionalImports != null) {
+                    ((String) commandDetails.additionalImports).eachLine { String line ->
+                        if (line.trim().startsWith("import ")) {
+                            javaImports << line.trim().substring("import ".length()).replace(";", "").trim()
+                        }
+                    }
+                }
+                if (parrotImports.size() > 0) {
+                    f << "\n"
+                    parrotImports.each { f << "import ${it};\n" }
+                }
+                if (javaImports.size() > 0) {
+                    f << "\n"
+                    javaImports.each { f << "import ${it};\n" }
                 }
 
                 f << "\n"
@@ -215,24 +205,49 @@ void generateCommandsJava(List zwaveClasses, String basePackage, String baseDire
     }
 }
 
+String stripRaw(String data) {
+    if (data.startsWith("RAW[")) {
+        data = data.substring("RAW[".length(), data.length() - 1)
+    }
+    // expressions in the yaml are written against the list payload
+    return data.replace("payload.size()", "payload.length")
+}
+
 String createPayload(List payload, Integer commandClass, Integer command) {
-    StringBuilder setPayloadBuilder = new StringBuilder("    public void setPayload(List<Short> payload) {\n")
+    StringBuilder getPayloadBuilder = new StringBuilder("    public byte[] getPayloadBytes() {\n")
+    StringBuilder setPayloadBuilder = new StringBuilder("    public void setPayloadBytes(byte[] payload) {\n")
     if (payload?.size() > 0) {
         setPayloadBuilder.append("        if (payload == null) return;\n")
-    }
-    StringBuilder getPayloadBuilder = new StringBuilder("    public List<Short> getPayload() {\n")
-    if (payload?.size() > 0) {
-        boolean dataVariablesRequired = false
-        boolean listVariablesPresent = false
-        boolean firstVariableIsList = firstVariableIsListType(payload)
-        boolean singleVariablesPresent = containsSingleVariables(payload)
 
-        payload.each { payloadItem ->
-            if (((String) payloadItem.data).contains(":")) {
+        // each slot is either a single byte or a variable length value
+        List<Map> slots = []
+        String lastMultiBitData = "-1"
+        boolean dataVariablesRequired = false
+        payload.each { Map payloadItem ->
+            String data = (String) payloadItem.data
+            if (data.contains(":")) {
                 dataVariablesRequired = true
-            }
-            if (((String) payloadItem.type).startsWith("List") || ((String) payloadItem.type).startsWith("Integer")) {
-                listVariablesPresent = true
+                String dataNum = data.split(":")[0]
+                if (dataNum != lastMultiBitData) {
+                    lastMultiBitData = dataNum
+                    slots << [type: "byte", value: payloadItem.dataVarName ?: "data${dataNum}"]
+                }
+            } else if (payloadItem.name == "RESERVED" && payloadItem.type == "Short" && payloadItem.defaultValue != null) {
+                slots << [type: "byte", value: "(byte) ${payloadItem.defaultValue}"]
+            } else if (payloadItem.type == "Short") {
+                slots << [type: "byte", value: "${payloadItem.name}.byteValue()"]
+            } else if (payloadItem.type == "List<Short>") {
+                slots << [type: "list", name: payloadItem.name]
+            } else if (payloadItem.type == "Integer") {
+                int minBytes
+                if (payloadItem.minBytes != null) {
+                    minBytes = payloadItem.minBytes
+                } else {
+                    minBytes = Integer.valueOf(stripRaw(data.split("~")[1])) - Integer.valueOf(stripRaw(data.split("~")[0])) + 1
+                }
+                slots << [type: "integer", name: payloadItem.name, minBytes: minBytes]
+            } else {
+                slots << [type: "byte", value: "(byte) 0 /*TODO: FixMe*/"]
             }
         }
 
@@ -240,48 +255,58 @@ String createPayload(List payload, Integer commandClass, Integer command) {
             getPayloadBuilder << buildGetPayloadDataVariables(payload)
         }
 
-        String lastMultiBitData = "-1"
-        boolean openSetPayloadIf = false
-        boolean closedGetPayloadStream = false;
-
-        if (!listVariablesPresent) {
-            getPayloadBuilder.append("        return Stream.of(")
-        } else if ((singleVariablesPresent || dataVariablesRequired) && !firstVariableIsList) {
-            getPayloadBuilder.append("        List<Short> retList = Stream.of(")
-        } else {
-            getPayloadBuilder.append("        List<Short> retList = new ArrayList<>();\n")
-            closedGetPayloadStream = true;
+        StringBuilder sizeBuilder = new StringBuilder("${slots.count { it.type == "byte" }}")
+        slots.each { Map slot ->
+            if (slot.type == "list") {
+                sizeBuilder.append(" + PayloadUtils.size(${slot.name})")
+            } else if (slot.type == "integer") {
+                sizeBuilder.append(" + PayloadUtils.integerSize(${slot.name}, ${slot.minBytes})")
+            }
         }
-
-
-        for (int index = 0; index < payload.size(); index++) {
-            Map payloadItem = payload.get(index)
-            if (((String) payloadItem.data).contains(":")) {
-                String dataNum = ((String) payloadItem.data).split(":")[0]
-                String payloadItemData = dataNum
-                if (dataNum.startsWith("RAW[")) {
-                    payloadItemData = dataNum.substring("RAW[".length(), dataNum.length() - 1)
+        getPayloadBuilder.append("        byte[] payload = new byte[${sizeBuilder}];\n")
+
+        // positions are constant until the first variable length value
+        int fixedIndex = 0
+        boolean variableIndex = false
+        slots.eachWithIndex { Map slot, int slotIndex ->
+            boolean lastSlot = slotIndex == slots.size() - 1
+            String position = variableIndex ? "index" : "${fixedIndex}"
+            if (slot.type == "byte") {
+                if (!variableIndex) {
+                    getPayloadBuilder.append("        payload[${fixedIndex++}] = ${slot.value};\n")
+                } else {
+                    getPayloadBuilder.append("        payload[${lastSlot ? "index" : "index++"}] = ${slot.value};\n")
                 }
+            } else {
+                String put = slot.type == "list" ?
+                        "PayloadUtils.put(payload, ${position}, ${slot.name})" :
+                        "PayloadUtils.putInteger(payload, ${position}, ${slot.name}, ${slot.minBytes})"
+                if (lastSlot) {
+                    getPayloadBuilder.append("        ${put};\n")
+                } else if (!variableIndex) {
+                    getPayloadBuilder.append("        int index = ${put};\n")
+                    variableIndex = true
+                } else {
+                    getPayloadBuilder.append("        index = ${put};\n")
+                }
+            }
+        }
+        getPayloadBuilder.append("        return payload;\n")
 
+        lastMultiBitData = "-1"
+        boolean openSetPayloadIf = false
+        payload.each { Map payloadItem ->
+            String data = (String) payloadItem.data
+            if (data.contains(":")) {
+                String dataNum = data.split(":")[0]
+                String payloadItemData = stripRaw(dataNum)
                 if (dataNum != lastMultiBitData) {
                     if (openSetPayloadIf) {
                         setPayloadBuilder.append("        }\n")
                     }
                     lastMultiBitData = dataNum
-
                     openSetPayloadIf = true
-
-                    String dataVarName = payloadItem.dataVarName ?: "data${dataNum}"
-                    if (closedGetPayloadStream) {
-                        getPayloadBuilder.append("        retList.add(${dataVarName});\n");
-                    } else {
-                        if (index > 0) {
-                            getPayloadBuilder.append(", ")
-                        }
-                        getPayloadBuilder.append(dataVarName)
-                    }
-
-                    setPayloadBuilder.append("        if (payload.size() > ${payloadItemData}) {\n")
+                    setPayloadBuilder.append("        if (payload.length > ${payloadItemData}) {\n")
                 }
                 setPayloadBuilder.append(buildSetPayloadSubBitField(payloadItem, payloadItemData))
             } else {
@@ -291,109 +316,42 @@ String createPayload(List payload, Integer commandClass, Integer command) {
                 }
 
                 if (payloadItem.name == "RESERVED" && payloadItem.type == "Short" && payloadItem.defaultValue != null) {
-                    if (closedGetPayloadStream) {
-                        getPayloadBuilder.append("        retList.add((short) ${payloadItem.defaultValue});\n");
-                    } else {
-                        if (index > 0) {
-                            getPayloadBuilder.append(", ")
-                        }
-                        getPayloadBuilder.append("(short) ${payloadItem.defaultValue}")
-                    }
+                    // constant, nothing to read
                 } else if (payloadItem.type == "Short") {
-                    buildShortPayload(setPayloadBuilder, getPayloadBuilder, payloadItem, index, closedGetPayloadStream)
-                } else if (payloadItem.type == "List<Short>") {
-                    // we have a value that spans multiple bytes
-                    String strStartDataNum = ((String) payloadItem.data).split("~")[0]
-                    String strEndDataNum = ((String) payloadItem.data).split("~")[1]
-
-                    if (strStartDataNum.startsWith("RAW[")) {
-                        strStartDataNum = strStartDataNum.substring("RAW[".length(), strStartDataNum.length() - 1)
-                    }
-                    if (strEndDataNum.startsWith("RAW[")) {
-                        strEndDataNum = strEndDataNum.substring("RAW[".length(), strEndDataNum.length() - 1)
-                    }
-
-                    if(payloadItem.minPayloadSize != null) {
-                        setPayloadBuilder.append("        if (payload.size() > ${payloadItem.minPayloadSize}) {\n")
-                    } else {
-                        if(strEndDataNum.replace(" ", "") == "(payload.size()-1)") {
-                            setPayloadBuilder.append("        if (payload.size() > ${strStartDataNum}) {\n")
-                        } else {
-                            setPayloadBuilder.append("        if (payload.size() > ${strEndDataNum}) {\n")
-                        }
-                    }
-
-                    setPayloadBuilder.append("            ${payloadItem.name} = payload.subList(${strStartDataNum}, ${strEndDataNum});\n")
+                    String payloadItemData = stripRaw(data)
+                    setPayloadBuilder.append("        if (payload.length > ${payloadItemData}) {\n")
+                    setPayloadBuilder.append("            ${payloadItem.name} = (short) (payload[${payloadItemData}] & 0xFF);\n")
                     setPayloadBuilder.append("        }\n")
-
-                    if (!closedGetPayloadStream && (singleVariablesPresent || dataVariablesRequired)) {
-                        getPayloadBuilder.append(").collect(Collectors.toList());\n")
-                        closedGetPayloadStream = true;
-                    }
-                    getPayloadBuilder.append("        retList.addAll(${payloadItem.name});\n")
-                } else if (payloadItem.type == "Integer") {
+                } else if (payloadItem.type == "List<Short>" || payloadItem.type == "Integer") {
                     // we have a value that spans multiple bytes
-                    String strStartDataNum = ((String) payloadItem.data).split("~")[0]
-                    String strEndDataNum = ((String) payloadItem.data).split("~")[1]
-
-                    if (strStartDataNum.startsWith("RAW[")) {
-                        strStartDataNum = strStartDataNum.substring("RAW[".length(), strStartDataNum.length() - 1)
-                    }
-                    if (strEndDataNum.startsWith("RAW[")) {
-                        strEndDataNum = strEndDataNum.substring("RAW[".length(), strEndDataNum.length() - 1)
-                    }
-
-                    int minBytes
-                    if(payloadItem.minBytes != null) {
-                        minBytes = payloadItem.minBytes
+                    String strStartDataNum = stripRaw(data.split("~")[0])
+                    String strEndDataNum = stripRaw(data.split("~")[1])
+
+                    String minPayloadSize
+                    if (payloadItem.minPayloadSize != null) {
+                        minPayloadSize = stripRaw(payloadItem.minPayloadSize.toString())
+                    } else if (payloadItem.type == "List<Short>" && strEndDataNum == "payload.length") {
+                        // a list running to the end of the payload is read when it has at least one item
+                        minPayloadSize = strStartDataNum
                     } else {
-                        minBytes = Integer.valueOf(strEndDataNum) - Integer.valueOf(strStartDataNum) + 1
-                    }
-
-                    String minPayloadSize = strEndDataNum
-                    if(payloadItem.minPayloadSize != null) {
-                        minPayloadSize = payloadItem.minPayloadSize
+                        minPayloadSize = strEndDataNum
                     }
 
-                    setPayloadBuilder.append("        if (payload.size() > ${minPayloadSize}) {\n")
-                    setPayloadBuilder.append("            ${payloadItem.name} = HexUtils.shortListToInteger(payload.subList(${strStartDataNum}, ${strEndDataNum}));\n")
-                    setPayloadBuilder.append("        }\n")
-
-                    if (closedGetPayloadStream) {
-                        getPayloadBuilder.append("        retList.addAll(HexUtils.integerToShortList(${payloadItem.name}, ${minBytes}));\n");
+                    setPayloadBuilder.append("        if (payload.length > ${minPayloadSize}) {\n")
+                    if (payloadItem.type == "List<Short>") {
+                        setPayloadBuilder.append("            ${payloadItem.name} = PayloadUtils.toShortList(payload, ${strStartDataNum}, ${strEndDataNum});\n")
                     } else {
-                        if (!closedGetPayloadStream && (singleVariablesPresent || dataVariablesRequired)) {
-                            getPayloadBuilder.append(").collect(Collectors.toList());\n")
-                            closedGetPayloadStream = true;
-                        }
-                        getPayloadBuilder.append("        retList.addAll(HexUtils.integerToShortList(${payloadItem.name}, ${minBytes}));\n");
-                    }
-                } else {
-                    if (closedGetPayloadStream) {
-                        getPayloadBuilder.append("        retList.add((short) 0 /*TODO: FixMe*/);\n");
-                    } else {
-                        if (index > 0) {
-                            getPayloadBuilder.append(", ")
-                        }
-                        getPayloadBuilder.append("(short) 0 /*TODO: FixMe*/")
+                        setPayloadBuilder.append("            ${payloadItem.name} = PayloadUtils.toInteger(payload, ${strStartDataNum}, ${strEndDataNum});\n")
                     }
+                    setPayloadBuilder.append("        }\n")
                 }
             }
         }
         if (openSetPayloadIf) {
             setPayloadBuilder.append("        }\n")
-            openSetPayloadIf = false
         }
-
-        if (listVariablesPresent) {
-            getPayloadBuilder.append("        return retList;\n")
-        } else {
-            getPayloadBuilder.append(").collect(Collectors.toList());\n")
-        }
-
-
     } else {
-        getPayloadBuilder.append("        return new ArrayList<>();\n")
+        getPayloadBuilder.append("        return new byte[0];\n")
     }
     getPayloadBuilder.append("    }\n")
     setPayloadBuilder.append("    }\n")
@@ -401,28 +359,6 @@ String createPayload(List payload, Integer commandClass, Integer command) {
     return getPayloadBuilder.append("\n").append(setPayloadBuilder.toString()).toString()
 }
 
-void buildShortPayload(StringBuilder setPayloadBuilder, StringBuilder getPayloadBuilder, Map payloadItem, int index, boolean closedGetPayloadStream) {
-    if (closedGetPayloadStream) {
-        getPayloadBuilder.append("        retList.add(${payloadItem.name});\n");
-    } else {
-        if (index > 0) {
-            getPayloadBuilder.append(", ")
-        }
-        getPayloadBuilder.append("${payloadItem.name}")
-    }
-
-    if (((String) payloadItem.data).startsWith("RAW[")) {
-        String payloadItemData = ((String) payloadItem.data).substring("RAW[".length(), ((String) payloadItem.data).length() - 1)
-        setPayloadBuilder.append("        if (payload.size() > ${payloadItemData}) {\n")
-        setPayloadBuilder.append("            ${payloadItem.name} = payload.get(${payloadItemData});\n")
-    } else {
-        setPayloadBuilder.append("        if (payload.size() > ${payloadItem.data}) {\n")
-        setPayloadBuilder.append("            ${payloadItem.name} = payload.get(${payloadItem.data});\n")
-    }
-
-    setPayloadBuilder.append("        }\n")
-}
-
 String buildSetPayloadSubBitField(Map payloadItem, String dataNum) {
     String bits = ((String) payloadItem.data).split(":")[1]
     if (bits.contains("~")) {
@@ -431,13 +367,13 @@ String buildSetPayloadSubBitField(Map payloadItem, String dataNum) {
         if (startBit > 0) {
             // shift value
             if (payloadItem.type == "Short") {
-                return "            ${payloadItem.name} = (short) ((payload.get(${dataNum}) & ${getBitwiseAndByte(stopBit - startBit + 1, startBit)}) >> ${startBit});\n"
+                return "            ${payloadItem.name} = (short) ((payload[${dataNum}] & ${getBitwiseAndByte(stopBit - startBit + 1, startBit)}) >> ${startBit});\n"
             } else {
 
             }
         } else {
             if (payloadItem.type == "Short") {
-                return "            ${payloadItem.name} = (short) (payload.get(${dataNum}) & ${getBitwiseAndByte(stopBit - startBit + 1)});\n"
+                return "            ${payloadItem.name} = (short) (payload[${dataNum}] & ${getBitwiseAndByte(stopBit - startBit + 1)});\n"
             } else {
 
             }
@@ -447,9 +383,9 @@ String buildSetPayloadSubBitField(Map payloadItem, String dataNum) {
         int bit = Integer.parseInt(bits)
         if (payloadItem.type == "Boolean") {
             if (bit > 0) {
-                return "            ${payloadItem.name} = ((payload.get(${dataNum}) >> ${bit}) & 1) == 1;\n"
+                return "            ${payloadItem.name} = ((payload[${dataNum}] >> ${bit}) & 1) == 1;\n"
             } else {
-                return "            ${payloadItem.name} = ((payload.get(${dataNum})) & 1) == 1;\n"
+                return "            ${payloadItem.name} = (payload[${dataNum}] & 1) == 1;\n"
             }
         }
     }
@@ -472,7 +408,7 @@ String buildGetPayloadDataVariables(List<Map> payload) {
                 }
             }
             String dataVarName = payloadItem.dataVarName ?: "data${dataNum}"
-            dataVariablesStringBuilder.append("        Short ${dataVarName} = (short) (")
+            dataVariablesStringBuilder.append("        byte ${dataVarName} = (byte) (")
             dataPayloadList.eachWithIndex { dataPayloadListItem, dataPayloadListIndex ->
                 String bits = ((String) dataPayloadListItem.data).split(":")[1]
                 if (bits.contains("~")) {
@@ -588,21 +524,36 @@ void generateCommandJavaClass(String basePackage, String baseCodeDirectory, Stri
     commandJavaClass << "package ${basePackage};\n"
     commandJavaClass << "\n"
     commandJavaClass << "import com.parrotha.internal.utils.HexUtils;\n"
+    commandJavaClass << "import com.parrotha.zwave.internal.PayloadUtils;\n"
     commandJavaClass << "\n"
     commandJavaClass << "import java.util.List;\n"
     commandJavaClass << "\n"
     commandJavaClass << "/**\n"
     commandJavaClass << " * Note: This code is autogenerated, changes will be overwritten.\n"
+    commandJavaClass << " * <p>\n"
+    commandJavaClass << " * Commands implement either the byte[] or the List&lt;Short&gt; payload methods, the other pair converts.\n"
     commandJavaClass << " */\n"
     commandJavaClass << "public abstract class Command {\n"
     commandJavaClass << "    public abstract String getCMD();\n"
     commandJavaClass << "\n"
-    commandJavaClass << "    public abstract List<Short> getPayload();\n"
+    commandJavaClass << "    public byte[] getPayloadBytes() {\n"
+    commandJavaClass << "        return PayloadUtils.toByteArray(getPayload());\n"
+    commandJavaClass << "    }\n"
+    commandJavaClass << "\n"
+    commandJavaClass << "    public void setPayloadBytes(byte[] payload) {\n"
+    commandJavaClass << "        setPayload(payload == null ? null : PayloadUtils.toShortList(payload));\n"
+    commandJavaClass << "    }\n"
+    commandJavaClass << "\n"
+    commandJavaClass << "    public List<Short> getPayload() {\n"
+    commandJavaClass << "        return PayloadUtils.toShortList(getPayloadBytes());\n"
+    commandJavaClass << "    }\n"
     commandJavaClass << "\n"
-    commandJavaClass << "    public abstract void setPayload(List<Short> payload);\n"
+    commandJavaClass << "    public void setPayload(List<Short> payload) {\n"
+    commandJavaClass << "        setPayloadBytes(payload == null ? null : PayloadUtils.toByteArray(payload));\n"
+    commandJavaClass << "    }\n"
     commandJavaClass << "\n"
     commandJavaClass << "    public String format() {\n"
-    commandJavaClass << "        return getCMD() + HexUtils.shortListToHexString(getPayload());\n"
+    commandJavaClass << "        return getCMD() + PayloadUtils.toHexString(getPayloadBytes());\n"
     commandJavaClass << "    }\n"
     commandJavaClass << "\n"
     commandJavaClass << "    public Short getCommandClassIdentifier() {\n"
@@ -616,30 +567,6 @@ void generateCommandJavaClass(String basePackage, String baseCodeDirectory, Stri
 }
 
 void generateZwaveJavaClass(List zwaveClasses, String basePackage, String baseCodeDirectory, String licenseText) {
-    Map<String, Map<String, Object>> commandClasses = new LinkedHashMap<>()
-    // SwitchMultilevelReport("2603", 0x26, "switchmultilevel", "SwitchMultilevelReport", 3);
-    zwaveClasses.each { zci ->
-        zci.commands.each { zcicmd ->
-            String key = zci.commandClass + zcicmd.key
-            if (commandClasses.containsKey(key)) {
-                if (zci.version > commandClasses.get(key).version) {
-                    commandClasses.get(key).version = zci.version
-                }
-            } else {
-                commandClasses.put(key, [version: zci.version])
-            }
-            if (zcicmd.value.value != null && commandClasses.get(key).commandHex == null) {
-                commandClasses.get(key).commandHex = String.format("%02X", zcicmd.value.value)
-            }
-            if (zci.value != null && commandClasses.get(key).commandClassHex == null) {
-                commandClasses.get(key).commandClassHex = String.format("%02X", zci.value)
-            }
-            if (zci.commandClass != null && commandClasses.get(key).package == null) {
-                commandClasses.get(key).package = zci.commandClass.toLowerCase()
-            }
-        }
-    }
-
     new File("${baseCodeDirectory}/").mkdirs()
     File zwaveJavaClass = new File("${baseCodeDirectory}/Zwave.java")
     if (zwaveJavaClass.exists()) zwaveJavaClass.delete()
@@ -647,17 +574,14 @@ void generateZwaveJavaClass(List zwaveClasses, String basePackage, String baseCo
     zwaveJavaClass << licenseText
     zwaveJavaClass << "package ${basePackage};\n"
     zwaveJavaClass << "\n"
+    zwaveJavaClass << "import com.parrotha.zwave.internal.PayloadUtils;\n"
     zwaveJavaClass << "import groovy.lang.GroovyObjectSupport;\n"
     zwaveJavaClass << "import org.apache.commons.lang3.StringUtils;\n"
-    zwaveJavaClass << "import com.parrotha.internal.utils.HexUtils;\n"
     zwaveJavaClass << "import org.slf4j.Logger;\n"
     zwaveJavaClass << "import org.slf4j.LoggerFactory;\n"
     zwaveJavaClass << "\n"
     zwaveJavaClass << "import java.lang.reflect.InvocationTargetException;\n"
-    zwaveJavaClass << "import java.util.Arrays;\n"
-    zwaveJavaClass << "import java.util.List;\n"
     zwaveJavaClass << "import java.util.Map;\n"
-    zwaveJavaClass << "import java.util.stream.Collectors;\n"
     zwaveJavaClass << "\n"
     zwaveJavaClass << "/**\n"
     zwaveJavaClass << " * Note: This code is autogenerated, changes will be overwritten.\n"
@@ -665,44 +589,59 @@ void generateZwaveJavaClass(List zwaveClasses, String basePackage, String baseCo
     zwaveJavaClass << "public class Zwave extends GroovyObjectSupport {\n"
     zwaveJavaClass << "    private static final Logger logger = LoggerFactory.getLogger(${basePackage}.Zwave.class);\n"
     zwaveJavaClass << "\n"
+    zwaveJavaClass << "    private static final String COMMAND_PREFIX = \"command:\";\n"
+    zwaveJavaClass << "    private static final String PAYLOAD_PREFIX = \"payload:\";\n"
+    zwaveJavaClass << "\n"
+    zwaveJavaClass << "    /**\n"
+    zwaveJavaClass << "     * Parse a description like \"zw device: 0B, command: 2603, payload: 00 00 00\" into a command.\n"
+    zwaveJavaClass << "     *\n"
+    zwaveJavaClass << "     * @param commandVersions map of command class to version, the latest version is used for missing command classes\n"
+    zwaveJavaClass << "     * @return the command or null if the command is not implemented\n"
+    zwaveJavaClass << "     */\n"
     zwaveJavaClass << "    public Command parse(String description, Map commandVersions) {\n"
-    zwaveJavaClass << "        String[] descriptionArray = description.split(\",\");\n"
-    zwaveJavaClass << "        if (descriptionArray.length == 3) {\n"
-    zwaveJavaClass << "            String payloadString = descriptionArray[2].substring(\"payload: \".length()).trim();\n"
-    zwaveJavaClass << "            if (descriptionArray[1].trim().startsWith(\"command:\")) {\n"
-    zwaveJavaClass << "                String command = descriptionArray[1].trim().substring(\"command: \".length()).trim();\n"
-    zwaveJavaClass << "                ZWaveCommandEnum zWaveCommand = ZWaveCommandEnum.getZWaveClass(command);\n"
-    zwaveJavaClass << "                if (zWaveCommand != null) {\n"
-    zwaveJavaClass << "                    try {\n"
-    zwaveJavaClass << "                        int version = zWaveCommand.getMaxVersion();\n"
-    zwaveJavaClass << "                        if (commandVersions.containsKey(zWaveCommand.getCommandClass()))\n"
-    zwaveJavaClass << "                            version = (int) commandVersions.get(zWaveCommand.getCommandClass());\n"
-    zwaveJavaClass << "                        Class<? extends Command> commandClazz = Class.forName(\"${basePackage}.commands.\" + zWaveCommand.getPackageName() + \"v\" + version + \".\" + zWaveCommand.getClassName()).asSubclass(Command.class);\n"
-    zwaveJavaClass << "                        Command cmd = commandClazz.getDeclaredConstructor().newInstance();\n"
-    zwaveJavaClass << "                        if (StringUtils.isNotBlank(payloadString)) {\n"
-    zwaveJavaClass << "                            cmd.setPayload(hexStringToShortList(payloadString));\n"
-    zwaveJavaClass << "                        }\n"
-    zwaveJavaClass << "                        return cmd;\n"
-    zwaveJavaClass << "                    } catch (ClassNotFoundException classNotFoundException) {\n"
-    zwaveJavaClass << "                        classNotFoundException.printStackTrace();\n"
-    zwaveJavaClass << "                    } catch (InstantiationException instantiationException) {\n"
-    zwaveJavaClass << "                        instantiationException.printStackTrace();\n"
-    zwaveJavaClass << "                    } catch (InvocationTargetException e) {\n"
-    zwaveJavaClass << "                        e.printStackTrace();\n"
-    zwaveJavaClass << "                    } catch (NoSuchMethodException e) {\n"
-    zwaveJavaClass << "                        e.printStackTrace();\n"
-    zwaveJavaClass << "                    } catch (IllegalAccessException illegalAccessException) {\n"
-    zwaveJavaClass << "                        illegalAccessException.printStackTrace();\n"
-    zwaveJavaClass << "                    }\n"
+    zwaveJavaClass << "        if (description == null) return null;\n"
+    zwaveJavaClass << "        int commandIndex = description.indexOf(COMMAND_PREFIX);\n"
+    zwaveJavaClass << "        if (commandIndex < 0) return null;\n"
+    zwaveJavaClass << "        int payloadIndex = description.indexOf(PAYLOAD_PREFIX, commandIndex);\n"
+    zwaveJavaClass << "        if (payloadIndex < 0) return null;\n"
+    zwaveJavaClass << "\n"
+    zwaveJavaClass << "        int commandStart = commandIndex + COMMAND_PREFIX.length();\n"
+    zwaveJavaClass << "        while (commandStart < payloadIndex && Character.isWhitespace(description.charAt(commandStart))) {\n"
+    zwaveJavaClass << "            commandStart++;\n"
+    zwaveJavaClass << "        }\n"
+    zwaveJavaClass << "        if (commandStart + 4 > payloadIndex) return null;\n"
+    zwaveJavaClass << "        int commandClass = parseHexByte(description, commandStart);\n"
+    zwaveJavaClass << "        int command = parseHexByte(description, commandStart + 2);\n"
+    zwaveJavaClass << "        if (commandClass < 0 || command < 0) return null;\n"
+    zwaveJavaClass << "\n"
+    zwaveJavaClass << "        int version = 0;\n"
+    zwaveJavaClass << "        if (commandVersions != null) {\n"
+    zwaveJavaClass << "            Object commandVersion = commandVersions.get(commandClass);\n"
+    zwaveJavaClass << "            if (commandVersion instanceof Number) {\n"
+    zwaveJavaClass << "                version = ((Number) commandVersion).intValue();\n"
+    zwaveJavaClass << "            }\n"
+    zwaveJavaClass << "        }\n"
+    zwaveJavaClass << "\n"
+    zwaveJavaClass << "        Command cmd = ZWaveCommandTable.create(commandClass, command, version);\n"
+    zwaveJavaClass << "        if (cmd != null) {\n"
+    zwaveJavaClass << "            try {\n"
+    zwaveJavaClass << "                byte[] payload = PayloadUtils.hexToBytes(description, payloadIndex + PAYLOAD_PREFIX.length(), description.length());\n"
+    zwaveJavaClass << "                if (payload.length > 0) {\n"
+    zwaveJavaClass << "                    cmd.setPayloadBytes(payload);\n"
     zwaveJavaClass << "                }\n"
+    zwaveJavaClass << "            } catch (IllegalArgumentException e) {\n"
+    zwaveJavaClass << "                logger.warn(\"Unable to parse Z-Wave payload: \" + description, e);\n"
+    zwaveJavaClass << "                return null;\n"
     zwaveJavaClass << "            }\n"
     zwaveJavaClass << "        }\n"
-    zwaveJavaClass << "        return null;\n"
+    zwaveJavaClass << "        return cmd;\n"
     zwaveJavaClass << "    }\n"
     zwaveJavaClass << "\n"
-    zwaveJavaClass << "    private static List<Short> hexStringToShortList(String hexString) {\n"
-    zwaveJavaClass << "        List<Short> shortList = Arrays.stream(HexUtils.hexStringToIntArray(hexString)).mapToObj(s -> Short.valueOf((short) s)).collect(Collectors.toList());\n"
-    zwaveJavaClass << "        return shortList;\n"
+    zwaveJavaClass << "    private static int parseHexByte(String s, int index) {\n"
+    zwaveJavaClass << "        int high = Character.digit(s.charAt(index), 16);\n"
+    zwaveJavaClass << "        int low = Character.digit(s.charAt(index + 1), 16);\n"
+    zwaveJavaClass << "        if (high < 0 || low < 0) return -1;\n"
+    zwaveJavaClass << "        return (high << 4) | low;\n"
     zwaveJavaClass << "    }\n"
     zwaveJavaClass << "\n"
     zwaveJavaClass << "    @Override\n"
@@ -719,6 +658,91 @@ void generateZwaveJavaClass(List zwaveClasses, String basePackage, String baseCo
     zwaveJavaClass << "}\n"
 }
 
+void generateZWaveCommandTableJavaClass(List zwaveClasses, String basePackage, String baseCodeDirectory, String licenseText) {
+    // command class value -> command value -> version -> fully qualified class name
+    Map<Integer, Map<Integer, Map<Integer, String>>> commandTable = new TreeMap<>()
+    zwaveClasses.each { zci ->
+        Integer commandClassValue = (Integer) zwaveClasses.find { it.commandClass == zci.commandClass && it.value != null }?.value
+        zci.commands.each { zcicmd ->
+            Integer commandValue = (Integer) zwaveClasses.findResult {
+                it.commandClass == zci.commandClass ? it.commands.get(zcicmd.key)?.value : null
+            }
+            if (commandClassValue == null || commandValue == null) return
+            commandTable.computeIfAbsent(commandClassValue, { new TreeMap<>() })
+                    .computeIfAbsent(commandValue, { new TreeMap<>() })
+                    .put((Integer) zci.version, "${basePackage}.commands.${zci.commandClass.toLowerCase()}v${zci.version}.${zcicmd.key}".toString())
+        }
+    }
+
+    new File("${baseCodeDirectory}/").mkdirs()
+    File tableJavaClass = new File("${baseCodeDirectory}/ZWaveCommandTable.java")
+    if (tableJavaClass.exists()) tableJavaClass.delete()
+
+    tableJavaClass << licenseText
+    tableJavaClass << "package ${basePackage};\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "import java.util.function.Supplier;\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "/**\n"
+    tableJavaClass << " * Note: This code is autogenerated, changes will be overwritten.\n"
+    tableJavaClass << " * <p>\n"
+    tableJavaClass << " * Constructors of all commands indexed by command class, command and version.\n"
+    tableJavaClass << " */\n"
+    tableJavaClass << "public final class ZWaveCommandTable {\n"
+    tableJavaClass << "    private static final Supplier<?>[][][] COMMANDS = new Supplier<?>[256][][];\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    static {\n"
+    commandTable.each { Integer commandClassValue, Map<Integer, Map<Integer, String>> commands ->
+        commands.each { Integer commandValue, Map<Integer, String> versions ->
+            tableJavaClass << "        register(${String.format("0x%02X", commandClassValue)}, ${String.format("0x%02X", commandValue)}"
+            int maxVersion = versions.keySet().max()
+            // index 0 is unused, versions start at 1
+            (0..maxVersion).each { int version ->
+                tableJavaClass << ",\n                ${versions.get(version) != null ? versions.get(version) + "::new" : "null"}"
+            }
+            tableJavaClass << ");\n"
+        }
+    }
+    tableJavaClass << "    }\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    private ZWaveCommandTable() {\n"
+    tableJavaClass << "    }\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    private static void register(int commandClass, int command, Supplier<?>... versions) {\n"
+    tableJavaClass << "        if (COMMANDS[commandClass] == null) {\n"
+    tableJavaClass << "            COMMANDS[commandClass] = new Supplier<?>[256][];\n"
+    tableJavaClass << "        }\n"
+    tableJavaClass << "        COMMANDS[commandClass][command] = versions;\n"
+    tableJavaClass << "    }\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    private static Supplier<?>[] getVersions(int commandClass, int command) {\n"
+    tableJavaClass << "        if (commandClass < 0 || commandClass > 0xFF || command < 0 || command > 0xFF) return null;\n"
+    tableJavaClass << "        Supplier<?>[][] commands = COMMANDS[commandClass];\n"
+    tableJavaClass << "        return commands == null ? null : commands[command];\n"
+    tableJavaClass << "    }\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    /**\n"
+    tableJavaClass << "     * @param version command class version, 0 or less for the latest version\n"
+    tableJavaClass << "     * @return a new command or null if there is no implementation\n"
+    tableJavaClass << "     */\n"
+    tableJavaClass << "    public static Command create(int commandClass, int command, int version) {\n"
+    tableJavaClass << "        Supplier<?>[] versions = getVersions(commandClass, command);\n"
+    tableJavaClass << "        if (versions == null) return null;\n"
+    tableJavaClass << "        if (version <= 0) version = versions.length - 1;\n"
+    tableJavaClass << "        if (version >= versions.length || versions[version] == null) return null;\n"
+    tableJavaClass << "        return (Command) versions[version].get();\n"
+    tableJavaClass << "    }\n"
+    tableJavaClass << "\n"
+    tableJavaClass << "    /**\n"
+    tableJavaClass << "     * @return the latest version of the command or 0 if there is no implementation\n"
+    tableJavaClass << "     */\n"
+    tableJavaClass << "    public static int getMaxVersion(int commandClass, int command) {\n"
+    tableJavaClass << "        Supplier<?>[] versions = getVersions(commandClass, command);\n"
+    tableJavaClass << "        return versions == null ? 0 : versions.length - 1;\n"
+    tableJavaClass << "    }\n"
+    tableJavaClass << "}\n"
+}
+
 
 void generateZWaveCommandEnumJavaClass(List zwaveClasses, String basePackage, String baseCodeDirectory, String licenseText) {
     Map<String, Map<String, Object>> commandClasses = new LinkedHashMap<>()
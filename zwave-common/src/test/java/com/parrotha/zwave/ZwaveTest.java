@@ -22,6 +22,7 @@ import com.parrotha.zwave.commands.switchmultilevelv1.SwitchMultilevelReport;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,4 +52,39 @@ public class ZwaveTest {
         Assertions.assertNotNull(cmd);
         Assertions.assertTrue(cmd instanceof com.parrotha.zwave.commands.usercodev1.UserCodeReport);
     }
+
+    @Test
+    public void testParsePayload() {
+        Command cmd = new Zwave().parse("zw device: 0B, command: 7006, payload: 03 02 01 F4", new HashMap<>());
+        Assertions.assertTrue(cmd instanceof com.parrotha.zwave.commands.configurationv1.ConfigurationReport);
+        com.parrotha.zwave.commands.configurationv1.ConfigurationReport report = (com.parrotha.zwave.commands.configurationv1.ConfigurationReport) cmd;
+        Assertions.assertEquals((short) 3, report.getParameterNumber());
+        Assertions.assertEquals((short) 2, report.getSize());
+        Assertions.assertEquals(Arrays.asList((short) 0x01, (short) 0xF4), report.getConfigurationValue());
+        Assertions.assertEquals("7006030201F4", cmd.format());
+
+        // a trailing list runs to the end of the payload
+        cmd = new Zwave().parse("zw device: 0B, command: 8503, payload: 01 05 00 02 03", null);
+        Assertions.assertEquals(Arrays.asList((short) 2, (short) 3),
+                ((com.parrotha.zwave.commands.associationv1.AssociationReport) cmd).getNodeId());
+
+        cmd = new Zwave().parse("zw device: 0B, command: 2603, payload: FF", null);
+        Assertions.assertEquals((short) 0xFF, ((com.parrotha.zwave.commands.switchmultilevelv3.SwitchMultilevelReport) cmd).getValue());
+        Assertions.assertEquals("2603FF", cmd.format());
+        Assertions.assertEquals(Arrays.asList((short) 0xFF), cmd.getPayload());
+
+        // unknown command class and unknown version
+        Assertions.assertNull(new Zwave().parse("zw device: 0B, command: FF03, payload: 00", new HashMap<>()));
+        Map<Integer, Integer> map = new HashMap<>();
+        map.put(0x26, 9);
+        Assertions.assertNull(new Zwave().parse("zw device: 0B, command: 2603, payload: 00", map));
+    }
+
+    @Test
+    public void testCommandTable() {
+        Assertions.assertEquals(3, ZWaveCommandTable.getMaxVersion(0x26, 0x03));
+        Assertions.assertEquals(0, ZWaveCommandTable.getMaxVersion(0x26, 0xFF));
+        Assertions.assertTrue(ZWaveCommandTable.create(0x26, 0x03, 2) instanceof com.parrotha.zwave.commands.switchmultilevelv2.SwitchMultilevelReport);
+        Assertions.assertNull(ZWaveCommandTable.create(0x26, 0x03, 4));
+    }
 }